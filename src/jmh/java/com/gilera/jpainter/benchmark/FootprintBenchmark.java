@@ -0,0 +1,67 @@
+package com.gilera.jpainter.benchmark;
+
+
+/**
+ * File: FootprintBenchmark.java
+ *
+ * Description: JMH benchmark of Footprint.drawFootprint.
+ */
+import com.gilera.jpainter.drawables.Footprint;
+import com.gilera.jpainter.raster.IntRasterTarget;
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * FootprintBenchmark class
+ *
+ * Purpose: Stamps a footprint of both types onto an offscreen image, for
+ * every thickness of the thickness menu (see DrawCanvas.getThickness).
+ * This is the inner step of every outline of the translucent Drawables.
+ *
+ * @author Ryan Gilera <jalapaomaji-github@yahoo.com>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(1)
+@State(Scope.Thread)
+public class FootprintBenchmark {
+
+    @Param({"1", "4", "6", "9", "14"})
+    public int thickness;
+
+    @Param({"circle", "square"})
+    public String footprint;
+
+    private IntRasterTarget target;
+    private boolean footprintType;
+
+    @Setup
+    public void setUp() {
+        BufferedImage image = new BufferedImage(200, 200,
+                BufferedImage.TYPE_INT_ARGB);
+        this.target = new IntRasterTarget(image);
+        this.target.clear(Color.WHITE);
+        this.target.setColor(Color.BLACK);
+        this.footprintType = this.footprint.equals("square");
+    }
+
+    @Benchmark
+    public void drawFootprint() {
+        Footprint.drawFootprint(this.target, 100, 100, this.thickness,
+                this.footprintType);
+    }
+}
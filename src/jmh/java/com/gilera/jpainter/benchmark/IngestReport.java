@@ -0,0 +1,175 @@
+package com.gilera.jpainter.benchmark;
+
+
+/**
+ * File: IngestReport.java
+ *
+ * Description: Feeds shapes into a canvas from several producer threads
+ * and reports the ingest throughput.
+ */
+import com.gilera.jpainter.canvas.DrawCanvas;
+import com.gilera.jpainter.canvas.IngestQueue;
+import com.gilera.jpainter.data.GlobalSettingsManager;
+import com.gilera.jpainter.drawables.Drawable;
+import com.gilera.jpainter.drawables.DrawableLine;
+import java.awt.Color;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import javax.swing.SwingUtilities;
+
+/**
+ * IngestReport class
+ *
+ * Purpose: Starts a number of producer threads that hand short lines to
+ * a DrawCanvas, one at a time through submitShape or in chunks through
+ * submitShapes, backing off while the ingest queue is full, the way a
+ * simulation or a plotting script would. While they run, the depth, drain
+ * rate and rejected count of the IngestQueue are printed every 250 ms. At
+ * the end the producer rate and the end-to-end rate, until the canvas has
+ * drained every shape, are printed. Run with:
+ * java -cp target/benchmarks.jar
+ * com.gilera.jpainter.benchmark.IngestReport [producers] [shapes] [chunk]
+ *
+ * @author Ryan Gilera <jalapaomaji-github@yahoo.com>
+ */
+public final class IngestReport {
+
+    private static final int DEFAULT_PRODUCERS = 4;
+    private static final int DEFAULT_SHAPES = 400000;
+
+    // Shapes handed to submitShapes at once, 1 for submitShape.
+    private static final int DEFAULT_CHUNK = 256;
+
+    // Time between two printed samples, in milliseconds.
+    private static final long SAMPLE_DELAY = 250;
+
+    // Class constructor.
+    private IngestReport() {
+    }
+
+    /**
+     * Runs the producers and prints the report.
+     *
+     * @param args the number of producers, the number of shapes and the
+     * number of shapes handed over at once
+     * @throws InterruptedException if interrupted while waiting
+     * @throws InvocationTargetException if the canvas cannot be created
+     */
+    public static void main(String[] args) throws InterruptedException,
+            InvocationTargetException {
+        int producers = args.length > 0
+                ? Integer.parseInt(args[0]) : DEFAULT_PRODUCERS;
+        final int shapes = args.length > 1
+                ? Integer.parseInt(args[1]) : DEFAULT_SHAPES;
+        final int chunk = args.length > 2
+                ? Integer.parseInt(args[2]) : DEFAULT_CHUNK;
+
+        final DrawCanvas[] created = new DrawCanvas[1];
+        SwingUtilities.invokeAndWait(new Runnable() {
+            @Override
+            public void run() {
+                created[0] = new DrawCanvas();
+                created[0].activateDraw();
+            }
+        });
+        final DrawCanvas canvas = created[0];
+        IngestQueue queue = canvas.getIngestQueue();
+
+        System.out.printf("%d producers, %d shapes in chunks of %d,"
+                + " queue capacity %d%n", producers, shapes, chunk,
+                queue.getCapacity());
+        System.out.printf("%8s %10s %12s %10s %10s%n", "ms", "depth",
+                "drain/s", "drained", "rejected");
+
+        long start = System.nanoTime();
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            final int seed = p;
+            final int count = shapes / producers
+                    + (p < shapes % producers ? 1 : 0);
+            threads[p] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    produce(canvas, seed, count, chunk);
+                }
+            }, "Producer " + p);
+            threads[p].start();
+        }
+
+        // Samples the queue until the producers are done and the canvas
+        //      has drained everything.
+        long produced = 0;
+        while (queue.getDrained() < shapes) {
+            Thread.sleep(SAMPLE_DELAY);
+            if (produced == 0 && !isAlive(threads)) {
+                produced = System.nanoTime() - start;
+            }
+            System.out.printf("%8d %10d %12.0f %10d %10d%n",
+                    (System.nanoTime() - start) / 1000000, queue.getDepth(),
+                    queue.getDrainRate(), queue.getDrained(),
+                    queue.getRejected());
+        }
+        long total = System.nanoTime() - start;
+        if (produced == 0) {
+            produced = total;
+        }
+
+        System.out.printf("produced %d shapes in %d ms, %.0f shapes/s%n",
+                shapes, produced / 1000000, shapes * 1e9 / produced);
+        System.out.printf("drained %d shapes in %d ms, %.0f shapes/s"
+                + " end to end, %d offers rejected%n", queue.getDrained(),
+                total / 1000000, queue.getDrained() * 1e9 / total,
+                queue.getRejected());
+        System.exit(0);
+    }
+
+    /**
+     * Hands random short lines to the canvas, a chunk at a time, yielding
+     * while the queue is full.
+     *
+     * @param canvas the canvas
+     * @param seed the seed of the random lines
+     * @param count the number of lines
+     * @param size the number of lines handed over at once
+     */
+    private static void produce(DrawCanvas canvas, int seed, int count,
+            int size) {
+        Random random = new Random(seed);
+        Color color = new Color(random.nextInt(0xFFFFFF));
+        List<Drawable> chunk = new ArrayList<>(size);
+
+        int done = 0;
+        while (done < count) {
+            while (chunk.size() < size && done + chunk.size() < count) {
+                int x = random.nextInt(GlobalSettingsManager.CANVAS_WIDTH);
+                int y = random.nextInt(GlobalSettingsManager.CANVAS_HEIGHT);
+                chunk.add(new DrawableLine(x, y, x + random.nextInt(17) - 8,
+                        y + random.nextInt(17) - 8, 1, color, false));
+            }
+
+            int queued;
+            if (size == 1) {
+                queued = canvas.submitShape(chunk.get(0)) ? 1 : 0;
+            } else {
+                queued = canvas.submitShapes(chunk);
+            }
+            done += queued;
+            chunk.subList(0, queued).clear();
+            if (!chunk.isEmpty()) {
+                // The queue is full, the canvas has to catch up.
+                Thread.yield();
+            }
+        }
+    }
+
+    private static boolean isAlive(Thread[] threads) {
+        for (Thread thread : threads) {
+            if (thread.isAlive()) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
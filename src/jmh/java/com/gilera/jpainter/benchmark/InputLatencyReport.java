@@ -0,0 +1,376 @@
+package com.gilera.jpainter.benchmark;
+
+
+/**
+ * File: InputLatencyReport.java
+ *
+ * Description: Replays a recorded input trace headless and reports the
+ * latency of the canvas.
+ */
+import com.gilera.jpainter.canvas.DrawCanvas;
+import com.gilera.jpainter.data.GlobalSettingsManager;
+import com.gilera.jpainter.eventhandlers.InputTrace;
+import com.gilera.jpainter.eventhandlers.MouseClickListener;
+import com.gilera.jpainter.eventhandlers.MousePositionListener;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseListener;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.swing.SwingUtilities;
+
+/**
+ * InputLatencyReport class
+ *
+ * Purpose: Replays a trace recorded with -Djpainter.inputTrace (see
+ * InputRecorder) against a DrawCanvas and the MouseClickListeners the
+ * pencil and image buttons create, the way the event thread would run
+ * it, and prints the p50, p90, p99 and maximum of:
+ * <ul>
+ * <li>every event type - handling the event, as the listeners do.</li>
+ * <li>tick - the frame tick of a drag, updating the endpoints of the
+ * dragged Drawable (see MouseClickListener.tick and
+ * DrawCanvas.activateDraw).</li>
+ * <li>paint - painting the area the canvas asked to repaint, after every
+ * event and tick, as the RepaintManager would.</li>
+ * </ul>
+ * The events are replayed as fast as possible, the recorded times only
+ * decide when the frame ticks fall. Every pass starts from a new canvas,
+ * the first passes warm up the JIT and only the last one is reported.
+ * Background rendering is off, everything is measured on the replaying
+ * thread. Run with:
+ * java -cp target/benchmarks.jar
+ * com.gilera.jpainter.benchmark.InputLatencyReport trace.jpt [warmups]
+ *
+ * @author Ryan Gilera <jalapaomaji-github@yahoo.com>
+ */
+public final class InputLatencyReport {
+
+    // Passes run before the reported one.
+    private static final int DEFAULT_WARMUPS = 3;
+
+    // Reported percentiles.
+    private static final double[] PERCENTILES = {0.50, 0.90, 0.99};
+
+    /**
+     * Object variables declarations.
+     * <ul>
+     * <li>trace - the trace to replay.</li>
+     * <li>canvas - the canvas of the current pass.</li>
+     * <li>screen - stands in for the screen, the canvas paints onto
+     * it.</li>
+     * <li>series - the measured nanoseconds, by event type, then tick and
+     * paint.</li>
+     * </ul>
+     */
+    private final InputTrace trace;
+    private ReplayCanvas canvas;
+    private final BufferedImage screen;
+    private final Map<String, Series> series;
+
+    /**
+     * ReplayCanvas class
+     *
+     * Purpose: A DrawCanvas that collects the areas it asks to repaint,
+     * as the RepaintManager does, so they are painted by the replay.
+     */
+    private static final class ReplayCanvas extends DrawCanvas {
+
+        private Rectangle dirty;
+
+        @Override
+        public void repaint(long time, int x, int y, int width, int height) {
+            if (width <= 0 || height <= 0) {
+                return;
+            }
+            Rectangle area = new Rectangle(x, y, width, height);
+            if (this.dirty == null) {
+                this.dirty = area;
+            } else {
+                this.dirty = this.dirty.union(area);
+            }
+        }
+    }
+
+    /**
+     * Series class
+     *
+     * Purpose: The measured times of one kind of work.
+     */
+    private static final class Series {
+
+        private long[] times = new long[1024];
+        private int count = 0;
+
+        void add(long time) {
+            if (this.count == this.times.length) {
+                this.times = Arrays.copyOf(this.times, this.count * 2);
+            }
+            this.times[this.count++] = time;
+        }
+    }
+
+    // Class constructor.
+    private InputLatencyReport(InputTrace trace) {
+        this.trace = trace;
+        this.screen = new BufferedImage(GlobalSettingsManager.CANVAS_WIDTH,
+                GlobalSettingsManager.CANVAS_HEIGHT,
+                BufferedImage.TYPE_INT_RGB);
+        this.series = new LinkedHashMap<>();
+    }
+
+    /**
+     * Replays a trace and prints the report.
+     *
+     * @param args the trace file, then the number of warm up passes
+     * @throws IOException if the trace cannot be read
+     * @throws InterruptedException if interrupted while replaying
+     * @throws InvocationTargetException if the replay failed
+     */
+    public static void main(String[] args) throws IOException,
+            InterruptedException, InvocationTargetException {
+        if (args.length == 0) {
+            System.err.println("Usage: InputLatencyReport trace.jpt"
+                    + " [warmups]");
+            System.exit(2);
+        }
+
+        File file = new File(args[0]);
+        final int warmups = args.length > 1
+                ? Integer.parseInt(args[1]) : DEFAULT_WARMUPS;
+        final InputLatencyReport report
+                = new InputLatencyReport(InputTrace.read(file));
+
+        // The listeners and the canvas belong to the event thread, their
+        //      timers fire there too, after the replay.
+        SwingUtilities.invokeAndWait(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < warmups; i++) {
+                    report.replay();
+                }
+                report.series.clear();
+                report.replay();
+            }
+        });
+
+        System.out.printf("%s: %d events over %.1f s, %d warm up passes%n",
+                file.getName(), report.trace.getEvents().size(),
+                report.trace.getDuration() / 1e9, warmups);
+        report.print();
+    }
+
+    /**
+     * Replays the whole trace once, on a new canvas.
+     */
+    private void replay() {
+        this.canvas = new ReplayCanvas();
+        this.canvas.setBackgroundRendering(false);
+        this.canvas.setSize(GlobalSettingsManager.CANVAS_WIDTH,
+                GlobalSettingsManager.CANVAS_HEIGHT);
+        this.canvas.addMouseMotionListener(
+                new MousePositionListener(this.canvas));
+        this.canvas.dirty = null;
+
+        long frame = GlobalSettingsManager.FRAME_DELAY * 1000000L;
+        long nextFrame = frame;
+        for (InputTrace.Event event : this.trace.getEvents()) {
+            // The frame timers tick at most once between two events.
+            if (event.getTime() >= nextFrame) {
+                this.frame();
+                nextFrame = (event.getTime() / frame + 1) * frame;
+            }
+
+            long start = System.nanoTime();
+            this.handle(event);
+            this.series(event.getType()).add(System.nanoTime() - start);
+
+            this.paint();
+        }
+        this.frame();
+    }
+
+    /**
+     * Handles an event the way the listeners of the canvas and the
+     * toolbar do.
+     *
+     * @param event the event to handle
+     */
+    private void handle(InputTrace.Event event) {
+        switch (event.getType()) {
+            case InputTrace.TOOL:
+                MouseClickListener listener = new MouseClickListener(
+                        this.canvas, new Color(event.getArg(1), true),
+                        event.getArg(2), event.getArg(3) != 0,
+                        event.getArg(0));
+                if (event.getArg(0) == 7) {
+                    listener.setImage(this.blankImage(event));
+                }
+                this.canvas.addMouseListener(listener);
+                this.canvas.addMouseMotionListener(listener);
+                break;
+            case InputTrace.PRESS:
+                this.dispatch(event, MouseEvent.MOUSE_PRESSED);
+                break;
+            case InputTrace.RELEASE:
+                this.dispatch(event, MouseEvent.MOUSE_RELEASED);
+                break;
+            case InputTrace.DRAG:
+                this.dispatch(event, MouseEvent.MOUSE_DRAGGED);
+                break;
+            case InputTrace.MOVE:
+                this.dispatch(event, MouseEvent.MOUSE_MOVED);
+                break;
+            case InputTrace.UNDO:
+                this.canvas.undo();
+                break;
+            case InputTrace.REDO:
+                this.canvas.redo();
+                break;
+            case InputTrace.CLEAR:
+                this.canvas.clearCanvas();
+                this.canvas.repaint();
+                break;
+            case InputTrace.NEW:
+                this.canvas.startANew();
+                this.canvas.repaint();
+                break;
+        }
+    }
+
+    /**
+     * Dispatches a mouse event to the listeners of the canvas.
+     *
+     * @param event the recorded event
+     * @param id the MouseEvent id
+     */
+    private void dispatch(InputTrace.Event event, int id) {
+        int modifiers = id == MouseEvent.MOUSE_MOVED
+                ? 0 : MouseEvent.BUTTON1_DOWN_MASK;
+        int button = id == MouseEvent.MOUSE_PRESSED
+                || id == MouseEvent.MOUSE_RELEASED
+                ? MouseEvent.BUTTON1 : MouseEvent.NOBUTTON;
+        this.canvas.dispatchEvent(new MouseEvent(this.canvas, id,
+                event.getTime() / 1000000L, modifiers, event.getArg(0),
+                event.getArg(1), 1, false, button));
+    }
+
+    /**
+     * Returns an image of the recorded size, the pixels are not recorded.
+     *
+     * @param event the TOOL event of an image
+     * @return a grey image
+     */
+    private BufferedImage blankImage(InputTrace.Event event) {
+        int width = 64;
+        int height = 64;
+        if (event.getArgCount() >= 6) {
+            width = Math.max(1, event.getArg(4));
+            height = Math.max(1, event.getArg(5));
+        }
+        BufferedImage image = new BufferedImage(width, height,
+                BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.GRAY);
+        g.fillRect(0, 0, width, height);
+        g.dispose();
+        return image;
+    }
+
+    /**
+     * Runs a frame tick: the frame timers of the MouseClickListeners
+     * draw the latest dragged endpoint, the status bar is updated and the
+     * result painted.
+     */
+    private void frame() {
+        for (MouseListener listener : this.canvas.getMouseListeners()) {
+            if (listener instanceof MouseClickListener) {
+                Rectangle before = this.canvas.dirty;
+                long start = System.nanoTime();
+                ((MouseClickListener) listener).tick();
+                long time = System.nanoTime() - start;
+                // Only ticks with a pending endpoint draw anything.
+                if (this.canvas.dirty != before) {
+                    this.series("tick").add(time);
+                }
+            }
+        }
+        this.canvas.flushStatus();
+        this.paint();
+    }
+
+    /**
+     * Paints the area the canvas asked to repaint, if there is one.
+     */
+    private void paint() {
+        Rectangle dirty = this.canvas.dirty;
+        if (dirty == null) {
+            return;
+        }
+        this.canvas.dirty = null;
+
+        Graphics2D g = this.screen.createGraphics();
+        g.setClip(dirty);
+        long start = System.nanoTime();
+        this.canvas.paintComponent(g);
+        this.series("paint").add(System.nanoTime() - start);
+        g.dispose();
+    }
+
+    /**
+     * Returns the series of a kind of work, created on first use.
+     *
+     * @param name the event type, tick or paint
+     * @return the series
+     */
+    private Series series(String name) {
+        Series s = this.series.get(name);
+        if (s == null) {
+            s = new Series();
+            this.series.put(name, s);
+        }
+        return s;
+    }
+
+    /**
+     * Prints the percentiles of every series, in microseconds.
+     */
+    private void print() {
+        System.out.printf("%-8s %8s %10s %10s %10s %10s%n", "", "count",
+                "p50 us", "p90 us", "p99 us", "max us");
+        for (Map.Entry<String, Series> entry : this.series.entrySet()) {
+            Series s = entry.getValue();
+            long[] sorted = Arrays.copyOf(s.times, s.count);
+            Arrays.sort(sorted);
+
+            StringBuilder line = new StringBuilder(String.format(
+                    "%-8s %8d", entry.getKey(), s.count));
+            for (double p : PERCENTILES) {
+                line.append(String.format(" %10.1f",
+                        percentile(sorted, p) / 1e3));
+            }
+            line.append(String.format(" %10.1f",
+                    sorted[sorted.length - 1] / 1e3));
+            System.out.println(line);
+        }
+    }
+
+    /**
+     * Returns a percentile of sorted times, by the nearest rank.
+     *
+     * @param sorted the times, sorted, not empty
+     * @param p the percentile, between 0 and 1
+     * @return the time at the percentile
+     */
+    private static long percentile(long[] sorted, double p) {
+        int rank = (int) Math.ceil(p * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+}
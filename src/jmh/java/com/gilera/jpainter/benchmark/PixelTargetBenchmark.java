@@ -0,0 +1,101 @@
+package com.gilera.jpainter.benchmark;
+
+
+/**
+ * File: PixelTargetBenchmark.java
+ * 
+ * Description: JMH comparison of the Graphics and int[] raster PixelTargets.
+ */
+import com.gilera.jpainter.drawables.Drawable;
+import com.gilera.jpainter.drawables.DrawableArc;
+import com.gilera.jpainter.drawables.DrawableCircle;
+import com.gilera.jpainter.drawables.DrawableEllipse;
+import com.gilera.jpainter.drawables.DrawableLine;
+import com.gilera.jpainter.raster.IntRasterTarget;
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * PixelTargetBenchmark class
+ * 
+ * Purpose: Draws the same Drawable through the Graphics fallback path and
+ * through the IntRasterTarget, on the same offscreen canvas sized image.
+ *
+ * @author Ryan Gilera <jalapaomaji-github@yahoo.com>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PixelTargetBenchmark {
+
+    @Param({"line", "circle", "ellipse", "arc"})
+    public String shape;
+
+    @Param({"1", "4", "9", "14"})
+    public int thickness;
+
+    private BufferedImage image;
+    private Graphics graphics;
+    private IntRasterTarget target;
+    private Drawable drawable;
+
+    @Setup
+    public void setUp() {
+        this.image = new BufferedImage(1100, 611,
+                BufferedImage.TYPE_INT_ARGB);
+        this.graphics = this.image.getGraphics();
+        this.target = new IntRasterTarget(this.image);
+
+        switch (this.shape) {
+            case "line":
+                this.drawable = new DrawableLine(50, 60, 700, 400,
+                        this.thickness, Color.BLACK, false);
+                break;
+            case "circle":
+                this.drawable = new DrawableCircle(300, 100, 700, 500,
+                        this.thickness, Color.BLACK, false);
+                break;
+            case "ellipse":
+                this.drawable = new DrawableEllipse(100, 100, 900, 500,
+                        this.thickness, Color.BLACK, false);
+                break;
+            default:
+                this.drawable = new DrawableArc(100, 100, 900, 500,
+                        this.thickness, Color.BLACK, false);
+                break;
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.graphics.dispose();
+    }
+
+    @Benchmark
+    public void graphicsTarget() {
+        this.drawable.drawShape(this.graphics);
+    }
+
+    @Benchmark
+    public void intRasterTarget() {
+        this.drawable.drawShape(this.target);
+    }
+
+}
@@ -0,0 +1,131 @@
+package com.gilera.jpainter.benchmark;
+
+
+/**
+ * File: RasterizerBenchmark.java
+ *
+ * Description: JMH benchmark of drawShape for every Drawable.
+ */
+import com.gilera.jpainter.drawables.Drawable;
+import com.gilera.jpainter.drawables.DrawableArc;
+import com.gilera.jpainter.drawables.DrawableCircle;
+import com.gilera.jpainter.drawables.DrawableEllipse;
+import com.gilera.jpainter.drawables.DrawableImage;
+import com.gilera.jpainter.drawables.DrawableLine;
+import com.gilera.jpainter.drawables.DrawableSquare;
+import com.gilera.jpainter.drawables.DrawableTriangle;
+import com.gilera.jpainter.raster.IntRasterTarget;
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * RasterizerBenchmark class
+ *
+ * Purpose: Draws one Drawable of every kind onto an offscreen image, for
+ * every thickness of the thickness menu (see DrawCanvas.getThickness) and
+ * sizes from 10 to 2000 pixels. The rasterize benchmark changes the
+ * endpoints first, so the span list is compiled again as while dragging;
+ * the replay benchmark draws the cached span list, as a finished Drawable
+ * is redrawn. Images have no outline, their thickness is ignored.
+ *
+ * @author Ryan Gilera <jalapaomaji-github@yahoo.com>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(1)
+@State(Scope.Thread)
+public class RasterizerBenchmark {
+
+    // Top left corner of every Drawable, and room around the largest.
+    private static final int ORIGIN = 50;
+    private static final int IMAGE_SIZE = 2100;
+
+    @Param({"line", "circle", "square", "ellipse", "triangle", "arc",
+        "image"})
+    public String shape;
+
+    @Param({"1", "4", "6", "9", "14"})
+    public int thickness;
+
+    @Param({"10", "100", "500", "2000"})
+    public int size;
+
+    @Param({"false", "true"})
+    public boolean footprint;
+
+    private IntRasterTarget target;
+    private Drawable drawable;
+
+    @Setup
+    public void setUp() {
+        BufferedImage image = new BufferedImage(IMAGE_SIZE, IMAGE_SIZE,
+                BufferedImage.TYPE_INT_ARGB);
+        this.target = new IntRasterTarget(image);
+        this.target.clear(Color.WHITE);
+
+        int xo = ORIGIN + this.size;
+        int yo = ORIGIN + this.size * 3 / 4;
+        switch (this.shape) {
+            case "line":
+                this.drawable = new DrawableLine(ORIGIN, ORIGIN, xo, yo,
+                        this.thickness, Color.BLACK, this.footprint);
+                break;
+            case "circle":
+                this.drawable = new DrawableCircle(ORIGIN, ORIGIN, xo,
+                        ORIGIN + this.size, this.thickness, Color.BLACK,
+                        this.footprint);
+                break;
+            case "square":
+                this.drawable = new DrawableSquare(ORIGIN, ORIGIN, xo, yo,
+                        this.thickness, Color.BLACK, this.footprint);
+                break;
+            case "ellipse":
+                this.drawable = new DrawableEllipse(ORIGIN, ORIGIN, xo, yo,
+                        this.thickness, Color.BLACK, this.footprint);
+                break;
+            case "triangle":
+                this.drawable = new DrawableTriangle(ORIGIN, ORIGIN, xo, yo,
+                        this.thickness, Color.BLACK, this.footprint);
+                break;
+            case "arc":
+                this.drawable = new DrawableArc(ORIGIN, ORIGIN, xo, yo,
+                        this.thickness, Color.BLACK, this.footprint);
+                break;
+            default:
+                BufferedImage picture = new BufferedImage(64, 64,
+                        BufferedImage.TYPE_INT_ARGB);
+                this.drawable = new DrawableImage(ORIGIN, ORIGIN, xo, yo,
+                        this.thickness, Color.BLACK, this.footprint,
+                        picture);
+                break;
+        }
+        this.drawable.drawShape(this.target);
+    }
+
+    @Benchmark
+    public void rasterize() {
+        // Same endpoints, but the span list is dropped.
+        this.drawable.setNewEndpoints(this.drawable.getXo(),
+                this.drawable.getYo());
+        this.drawable.drawShape(this.target);
+    }
+
+    @Benchmark
+    public void replay() {
+        this.drawable.drawShape(this.target);
+    }
+}
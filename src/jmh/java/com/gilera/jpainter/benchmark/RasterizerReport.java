@@ -0,0 +1,72 @@
+package com.gilera.jpainter.benchmark;
+
+
+/**
+ * File: RasterizerReport.java
+ *
+ * Description: Runs the rasterizer benchmarks and writes the results as
+ * JSON.
+ */
+import java.util.Arrays;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * RasterizerReport class
+ *
+ * Purpose: Runs RasterizerBenchmark and FootprintBenchmark and writes the
+ * results to a JSON file, one per release, to compare the rendering cost
+ * between releases. The file is attached to the release, and summarised
+ * in benchmarks/README.md. Run with:
+ * java -cp target/benchmarks.jar
+ * com.gilera.jpainter.benchmark.RasterizerReport [result.json] [options]
+ * <p>
+ * The options are JMH command line options overriding the annotations,
+ * for a shorter sweep, e.g. -p size=100,2000 -wi 2 -i 3.
+ *
+ * @author Ryan Gilera <jalapaomaji-github@yahoo.com>
+ */
+public class RasterizerReport {
+
+    // Written when no file is given.
+    private static final String DEFAULT_RESULT = "target/rasterizers.json";
+
+    // Class constructor.
+    // Stops from instantiating this class.
+    private RasterizerReport() {
+    }
+
+    /**
+     * Runs the benchmarks.
+     *
+     * @param args the JSON file to write, target/rasterizers.json if none,
+     * then JMH options
+     * @throws RunnerException if the benchmarks cannot run
+     * @throws CommandLineOptionException if the JMH options are not valid
+     */
+    public static void main(String[] args) throws RunnerException,
+            CommandLineOptionException {
+        String result = DEFAULT_RESULT;
+        int first = 0;
+        if (args.length > 0 && !args[0].startsWith("-")) {
+            result = args[0];
+            first = 1;
+        }
+        CommandLineOptions overrides = new CommandLineOptions(
+                Arrays.copyOfRange(args, first, args.length));
+
+        Options options = new OptionsBuilder()
+                .parent(overrides)
+                .include(RasterizerBenchmark.class.getSimpleName())
+                .include(FootprintBenchmark.class.getSimpleName())
+                .resultFormat(ResultFormatType.JSON)
+                .result(result)
+                .build();
+        new Runner(options).run();
+    }
+}
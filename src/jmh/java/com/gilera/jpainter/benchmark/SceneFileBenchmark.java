@@ -0,0 +1,93 @@
+package com.gilera.jpainter.benchmark;
+
+
+/**
+ * File: SceneFileBenchmark.java
+ *
+ * Description: JMH benchmark of saving and opening scene files.
+ */
+import com.gilera.jpainter.data.SceneFile;
+import com.gilera.jpainter.drawables.CompactSceneStore;
+import com.gilera.jpainter.drawables.StyleTable;
+import java.awt.Color;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * SceneFileBenchmark class
+ *
+ * Purpose: Times writing a random scene to a SceneFile and reading it back
+ * into a CompactSceneStore. The file read is written once in the setup, so
+ * after the first iteration it is read from the page cache: the figure is
+ * the cost of mapping and copying the records, not of the disk.
+ *
+ * @author Ryan Gilera <jalapaomaji-github@yahoo.com>
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Thread)
+public class SceneFileBenchmark {
+
+    // A small palette, like a real drawing.
+    private static final Color[] PALETTE = {Color.BLACK, Color.RED,
+        Color.BLUE, Color.GREEN};
+
+    @Param({"100000", "1000000", "4000000"})
+    public int shapes;
+
+    private CompactSceneStore store;
+    private File saved;
+    private File written;
+
+    @Setup
+    public void setUp() throws IOException {
+        Random random = new Random(42);
+        this.store = new CompactSceneStore(this.shapes);
+        for (int i = 0; i < this.shapes; i++) {
+            byte kind = (byte) (CompactSceneStore.LINE + random.nextInt(6));
+            int x = random.nextInt(1100);
+            int y = random.nextInt(611);
+            Color color = PALETTE[random.nextInt(PALETTE.length)];
+            this.store.add(kind, x, y, x + random.nextInt(60),
+                    y + random.nextInt(60), StyleTable.shared().intern(color,
+                            1 + random.nextInt(9), random.nextBoolean()));
+        }
+
+        this.saved = File.createTempFile("scene", ".jps");
+        this.written = File.createTempFile("scene", ".jps");
+        SceneFile.write(this.saved, this.store);
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.saved.delete();
+        this.written.delete();
+    }
+
+    @Benchmark
+    public void save() throws IOException {
+        SceneFile.write(this.written, this.store);
+    }
+
+    @Benchmark
+    public CompactSceneStore load() throws IOException {
+        return SceneFile.read(this.saved);
+    }
+}
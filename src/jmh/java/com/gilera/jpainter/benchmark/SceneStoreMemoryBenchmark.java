@@ -0,0 +1,181 @@
+package com.gilera.jpainter.benchmark;
+
+
+/**
+ * File: SceneStoreMemoryBenchmark.java
+ * 
+ * Description: JMH comparison of Drawable objects and the CompactSceneStore.
+ */
+import com.gilera.jpainter.drawables.CompactSceneStore;
+import com.gilera.jpainter.drawables.Drawable;
+import com.gilera.jpainter.drawables.DrawableArc;
+import com.gilera.jpainter.drawables.DrawableCircle;
+import com.gilera.jpainter.drawables.DrawableEllipse;
+import com.gilera.jpainter.drawables.DrawableLine;
+import com.gilera.jpainter.drawables.DrawableSquare;
+import com.gilera.jpainter.drawables.DrawableTriangle;
+import com.gilera.jpainter.drawables.StyleTable;
+import com.gilera.jpainter.raster.IntRasterTarget;
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * SceneStoreMemoryBenchmark class
+ * 
+ * Purpose: Builds the same random scene as a list of Drawable objects and
+ * as a CompactSceneStore, reports the heap each one retains and times a
+ * full render of it. The retained heap is the used heap after a full GC,
+ * taken before and after the scene is built, so it is an estimate. The
+ * Drawables compile their span lists on the first render, which is not
+ * part of the figure.
+ *
+ * @author Ryan Gilera <jalapaomaji-github@yahoo.com>
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Thread)
+public class SceneStoreMemoryBenchmark {
+
+    // A small palette, like a real drawing.
+    private static final Color[] PALETTE = {Color.BLACK, Color.RED,
+        Color.BLUE, Color.GREEN};
+
+    /**
+     * The retained heap of the scene, reported next to the timings.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Heap {
+
+        public long retainedBytes;
+    }
+
+    @Param({"10000", "100000", "1000000"})
+    public int shapes;
+
+    @Param({"objects", "store"})
+    public String layout;
+
+    private IntRasterTarget target;
+    private List<Drawable> list;
+    private CompactSceneStore store;
+    private long retained;
+
+    @Setup
+    public void setUp() {
+        BufferedImage image = new BufferedImage(1100, 611,
+                BufferedImage.TYPE_INT_ARGB);
+        this.target = new IntRasterTarget(image);
+
+        long before = usedHeap();
+        Random random = new Random(42);
+        if (this.layout.equals("store")) {
+            this.store = new CompactSceneStore();
+        } else {
+            this.list = new ArrayList<>();
+        }
+
+        for (int i = 0; i < this.shapes; i++) {
+            byte kind = (byte) (CompactSceneStore.LINE + random.nextInt(6));
+            int x = random.nextInt(1100);
+            int y = random.nextInt(611);
+            int xo = x + random.nextInt(60);
+            int yo = y + random.nextInt(60);
+            Color color = PALETTE[random.nextInt(PALETTE.length)];
+            int thick = 1 + random.nextInt(9);
+            boolean footprint = random.nextBoolean();
+
+            if (this.store != null) {
+                this.store.add(kind, x, y, xo, yo,
+                        StyleTable.shared().intern(color, thick, footprint));
+            } else {
+                this.list.add(newShape(kind, x, y, xo, yo, color, thick,
+                        footprint));
+            }
+        }
+        this.retained = usedHeap() - before;
+    }
+
+    @Benchmark
+    public void render(Heap heap) {
+        heap.retainedBytes = this.retained;
+        this.target.clear(Color.WHITE);
+
+        if (this.store != null) {
+            this.store.render(this.target);
+        } else {
+            for (Drawable aShape : this.list) {
+                aShape.drawShape(this.target);
+            }
+        }
+    }
+
+    /**
+     * Creates a Drawable of a kind, as MouseClickListener would.
+     *
+     * @param kind the kind, see CompactSceneStore
+     * @param xi initial x position
+     * @param yi initial y position
+     * @param xo other end x position
+     * @param yo other end y position
+     * @param color the colour, shared like the colour picker does
+     * @param thick thickness in pixels
+     * @param footprint footprint type
+     * @return a new Drawable
+     */
+    private static Drawable newShape(byte kind, int xi, int yi, int xo,
+            int yo, Color color, int thick, boolean footprint) {
+        switch (kind) {
+            case CompactSceneStore.CIRCLE:
+                return new DrawableCircle(xi, yi, xo, yo, thick, color,
+                        footprint);
+            case CompactSceneStore.SQUARE:
+                return new DrawableSquare(xi, yi, xo, yo, thick, color,
+                        footprint);
+            case CompactSceneStore.ELLIPSE:
+                return new DrawableEllipse(xi, yi, xo, yo, thick, color,
+                        footprint);
+            case CompactSceneStore.TRIANGLE:
+                return new DrawableTriangle(xi, yi, xo, yo, thick, color,
+                        footprint);
+            case CompactSceneStore.ARC:
+                return new DrawableArc(xi, yi, xo, yo, thick, color,
+                        footprint);
+            default:
+                return new DrawableLine(xi, yi, xo, yo, thick, color,
+                        footprint);
+        }
+    }
+
+    /**
+     * Returns the used heap after collecting garbage.
+     *
+     * @return used heap in bytes
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,185 @@
+package com.gilera.jpainter;
+
+
+/**
+ * File: BatchRenderer.java
+ *
+ * Description: Renders scene files to PNG images without opening a window.
+ */
+import com.gilera.jpainter.data.GlobalSettingsManager;
+import com.gilera.jpainter.data.SceneFile;
+import com.gilera.jpainter.drawables.CompactSceneStore;
+import com.gilera.jpainter.raster.IntRasterTarget;
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.imageio.ImageIO;
+
+/**
+ * BatchRenderer class
+ *
+ * Purpose: Second entry point of the application, for rendering many
+ * drawings at once, e.g. on a build server. Each scene file given on the
+ * command line is read with SceneFile into a CompactSceneStore, drawn onto
+ * a canvas sized image through an IntRasterTarget and written next to it,
+ * or into the output folder, as a PNG. The files are spread over a fixed
+ * number of worker threads, one file per worker at a time, each drawing
+ * with its own ScanlineCoverage. A line is printed per file, then the
+ * totals in shapes and files per second. Usage:
+ * java -cp JPainter-1.0.1-jar-with-dependencies.jar
+ * com.gilera.jpainter.BatchRenderer [-workers n] [-out folder] scene...
+ *
+ * @author Ryan Gilera <jalapaomaji-github@yahoo.com>
+ */
+public final class BatchRenderer {
+
+    /**
+     * Result of rendering one scene file.
+     */
+    private static final class Result {
+
+        private final File output;
+        private final int shapes;
+        private final long time;
+
+        private Result(File output, int shapes, long time) {
+            this.output = output;
+            this.shapes = shapes;
+            this.time = time;
+        }
+    }
+
+    /**
+     * Class constructor.
+     * Stops from instantiating this class.
+     */
+    private BatchRenderer() {
+    }
+
+    // Main method
+    public static void main(String[] args) throws InterruptedException {
+        System.setProperty("java.awt.headless", "true");
+
+        int workers = Runtime.getRuntime().availableProcessors();
+        File folder = null;
+        List<File> inputs = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            if ("-workers".equals(args[i]) && i + 1 < args.length) {
+                workers = Math.max(1, Integer.parseInt(args[++i]));
+            } else if ("-out".equals(args[i]) && i + 1 < args.length) {
+                folder = new File(args[++i]);
+            } else {
+                inputs.add(new File(args[i]));
+            }
+        }
+
+        if (inputs.isEmpty()) {
+            System.err.println("Usage: BatchRenderer [-workers n]"
+                    + " [-out folder] scene...");
+            System.exit(2);
+        }
+        if (folder != null && !folder.isDirectory() && !folder.mkdirs()) {
+            System.err.println("Cannot create " + folder);
+            System.exit(2);
+        }
+
+        System.exit(renderAll(inputs, folder, workers) ? 0 : 1);
+    }
+
+    /**
+     * Renders every scene file on a pool of worker threads and prints the
+     * throughput.
+     *
+     * @param inputs the scene files
+     * @param folder the folder the images go to, null for next to the
+     * scene files
+     * @param workers the number of worker threads
+     * @return true if every file was rendered
+     * @throws InterruptedException if interrupted while waiting
+     */
+    static boolean renderAll(List<File> inputs, final File folder,
+            int workers) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(
+                Math.min(workers, inputs.size()));
+        List<Future<Result>> results = new ArrayList<>(inputs.size());
+
+        long start = System.nanoTime();
+        for (final File input : inputs) {
+            results.add(pool.submit(new Callable<Result>() {
+                @Override
+                public Result call() throws IOException {
+                    return render(input, folder);
+                }
+            }));
+        }
+
+        // Reports in the order of the command line.
+        long shapes = 0;
+        int files = 0;
+        for (int i = 0; i < inputs.size(); i++) {
+            try {
+                Result result = results.get(i).get();
+                shapes += result.shapes;
+                files++;
+                System.out.printf("%s: %d shapes in %d ms%n",
+                        result.output, result.shapes,
+                        result.time / 1000000);
+            } catch (ExecutionException e) {
+                System.err.println(inputs.get(i) + ": "
+                        + e.getCause().getMessage());
+            }
+        }
+        long elapsed = Math.max(1, System.nanoTime() - start);
+        pool.shutdown();
+
+        System.out.printf("%d of %d files, %d shapes in %d ms on %d workers:"
+                + " %.0f shapes/s, %.1f files/s%n", files, inputs.size(),
+                shapes, elapsed / 1000000, Math.min(workers, inputs.size()),
+                shapes * 1e9 / elapsed, files * 1e9 / elapsed);
+        return files == inputs.size();
+    }
+
+    /**
+     * Renders one scene file on a white canvas and writes it as a PNG.
+     *
+     * @param input the scene file
+     * @param folder the folder the image goes to, null for next to the
+     * scene file
+     * @return the result
+     * @throws IOException if the file cannot be read or written
+     */
+    private static Result render(File input, File folder) throws IOException {
+        long start = System.nanoTime();
+        CompactSceneStore store = SceneFile.read(input);
+
+        BufferedImage image = new BufferedImage(
+                GlobalSettingsManager.CANVAS_WIDTH,
+                GlobalSettingsManager.CANVAS_HEIGHT,
+                BufferedImage.TYPE_INT_ARGB);
+        IntRasterTarget target = new IntRasterTarget(image);
+        target.clear(Color.WHITE);
+        store.render(target);
+
+        String name = input.getName();
+        int dot = name.lastIndexOf('.');
+        if (dot > 0) {
+            name = name.substring(0, dot);
+        }
+        File output = new File(folder != null ? folder
+                : input.getAbsoluteFile().getParentFile(), name + ".png");
+        if (!ImageIO.write(image, "png", output)) {
+            throw new IOException("No PNG writer");
+        }
+
+        return new Result(output, store.size(), System.nanoTime() - start);
+    }
+}
@@ -0,0 +1,42 @@
+package com.gilera.jpainter.canvas;
+
+
+/**
+ * File: AddCommand.java
+ *
+ * Description: Adds one or more Drawables on top of the canvas.
+ */
+import com.gilera.jpainter.drawables.Drawable;
+
+/**
+ * AddCommand class
+ *
+ * Purpose: Adds a single Drawable, or a whole batch of them, on top of the
+ * canvas. A batch is undone and redone in one step.
+ *
+ * @author Ryan Gilera <jalapaomaji-github@yahoo.com>
+ */
+final class AddCommand extends CanvasCommand {
+
+    // The Drawables added, bottom first.
+    private final Drawable[] shapes;
+
+    /**
+     * Class constructor.
+     *
+     * @param shapes the Drawables to add, bottom first
+     */
+    AddCommand(Drawable... shapes) {
+        this.shapes = shapes;
+    }
+
+    @Override
+    void redo(SceneModel scene) {
+        scene.appendShapes(this.shapes);
+    }
+
+    @Override
+    void undo(SceneModel scene) {
+        scene.removeShapes(this.shapes.length);
+    }
+}
@@ -0,0 +1,314 @@
+package com.gilera.jpainter.canvas;
+
+
+/**
+ * File: BackgroundRenderer.java
+ *
+ * Description: Rasterizes the canvas on a dedicated render thread.
+ */
+import com.gilera.jpainter.drawables.Drawable;
+import com.gilera.jpainter.raster.IntRasterTarget;
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * BackgroundRenderer class
+ *
+ * Purpose: Renders frames of the canvas away from the Swing event thread.
+ * The canvas submits an immutable snapshot of its Drawables, the render
+ * thread rasterizes it into a back buffer and swaps it atomically with the
+ * front buffer, which is all paintComponent has to copy. Only the latest
+ * snapshot is kept, a frame is dropped as soon as a newer one is waiting.
+ *
+ * @author Ryan Gilera <jalapaomaji-github@yahoo.com>
+ */
+final class BackgroundRenderer implements Runnable {
+
+    /**
+     * An immutable snapshot of the canvas to render.
+     * <ul>
+     * <li>version - changes whenever Drawables were removed from the
+     * canvas, so the finished Drawables have to be drawn again</li>
+     * <li>shapes - the finished Drawables in z-order</li>
+     * <li>active - a copy of the Drawable being dragged, null if none</li>
+     * <li>dirty - the area of the canvas that changed</li>
+     * </ul>
+     */
+    private static final class Snapshot {
+
+        private final int version;
+        private final List<Drawable> shapes;
+        private final Drawable active;
+        private final Rectangle dirty;
+
+        private Snapshot(int version, List<Drawable> shapes, Drawable active,
+                Rectangle dirty) {
+            this.version = version;
+            this.shapes = shapes;
+            this.active = active;
+            this.dirty = dirty;
+        }
+    }
+
+    /**
+     * A complete frame of the canvas. Its monitor is held while it is
+     * being drawn into or copied to the screen.
+     */
+    private static final class Frame {
+
+        private final BufferedImage image;
+        private final IntRasterTarget target;
+
+        private Frame(int width, int height) {
+            this.image = new BufferedImage(width, height,
+                    BufferedImage.TYPE_INT_ARGB);
+            this.target = new IntRasterTarget(this.image);
+            this.target.clear(Color.WHITE);
+        }
+    }
+
+    /**
+     * Object variables declarations
+     * <ul>
+     * <li>canvas - the canvas to repaint once a frame is swapped in.</li>
+     * <li>pending - the latest snapshot not rendered yet, null if none.</li>
+     * <li>front - the last complete frame, shown by paintComponent.</li>
+     * <li>back - the frame the render thread draws into.</li>
+     * <li>committedImage, committedTarget - the render thread's own raster
+     * of the finished Drawables.</li>
+     * <li>renderedVersion, renderedCount - which finished Drawables are
+     * already on the committedTarget.</li>
+     * <li>carriedDirty - the dirty area of dropped frames, repainted with
+     * the next frame.</li>
+     * <li>idle - set while the render thread waits for a snapshot, guarded
+     * by the monitor of pending.</li>
+     * <li>thread - the render thread, null when stopped.</li>
+     * </ul>
+     */
+    private final DrawCanvas canvas;
+    private final AtomicReference<Snapshot> pending;
+    private final AtomicReference<Frame> front;
+    private Frame back;
+    private final BufferedImage committedImage;
+    private final IntRasterTarget committedTarget;
+    private int renderedVersion;
+    private int renderedCount;
+    private Rectangle carriedDirty;
+    private boolean idle;
+    private volatile Thread thread;
+
+    /**
+     * Class constructor, the render thread is not started yet.
+     *
+     * @param canvas the canvas to render
+     * @param width width of the canvas
+     * @param height height of the canvas
+     */
+    BackgroundRenderer(DrawCanvas canvas, int width, int height) {
+        this.canvas = canvas;
+        this.pending = new AtomicReference<>();
+        this.front = new AtomicReference<>(new Frame(width, height));
+        this.back = new Frame(width, height);
+        this.committedImage = new BufferedImage(width, height,
+                BufferedImage.TYPE_INT_ARGB);
+        this.committedTarget = new IntRasterTarget(this.committedImage);
+        this.committedTarget.clear(Color.WHITE);
+        this.renderedVersion = 0;
+        this.renderedCount = 0;
+    }
+
+    /**
+     * Starts the render thread, if it is not running.
+     */
+    synchronized void start() {
+        if (this.thread == null) {
+            this.thread = new Thread(this, "JPainter Render");
+            this.thread.setDaemon(true);
+            this.thread.start();
+        }
+    }
+
+    /**
+     * Stops the render thread and waits for the frame it is working on.
+     */
+    synchronized void stop() {
+        Thread running = this.thread;
+        if (running != null) {
+            this.thread = null;
+            running.interrupt();
+            try {
+                running.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Hands a new snapshot to the render thread, replacing any snapshot
+     * that was not rendered yet. The dirty area of the replaced snapshot
+     * is kept.
+     *
+     * @param version the version of the finished Drawables
+     * @param shapes the finished Drawables in z-order, not modified later
+     * @param active a copy of the Drawable being dragged, null if none
+     * @param dirty the area of the canvas that changed
+     */
+    void submit(int version, List<Drawable> shapes, Drawable active,
+            Rectangle dirty) {
+        Snapshot replaced;
+        Snapshot next;
+        do {
+            replaced = this.pending.get();
+            Rectangle area = dirty;
+            if (replaced != null) {
+                area = replaced.dirty.union(dirty);
+            }
+            next = new Snapshot(version, shapes, active, area);
+        } while (!this.pending.compareAndSet(replaced, next));
+
+        synchronized (this.pending) {
+            this.pending.notifyAll();
+        }
+    }
+
+    /**
+     * Waits until the render thread has rendered every snapshot submitted
+     * so far and waits for the next one.
+     *
+     * @param timeout the most milliseconds to wait
+     * @return true if the render thread is idle, false on timeout
+     * @throws InterruptedException if interrupted while waiting
+     */
+    boolean awaitIdle(long timeout) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeout;
+        synchronized (this.pending) {
+            while (!this.idle || this.pending.get() != null) {
+                long left = deadline - System.currentTimeMillis();
+                if (left <= 0) {
+                    return false;
+                }
+                this.pending.wait(left);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Copies an area of the front buffer onto the screen.
+     *
+     * @param graphics the Graphics object of the canvas
+     * @param clip the area to copy
+     */
+    void paint(Graphics graphics, Rectangle clip) {
+        int x1 = clip.x + clip.width;
+        int y1 = clip.y + clip.height;
+        Frame frame = this.front.get();
+
+        synchronized (frame) {
+            graphics.drawImage(frame.image, clip.x, clip.y, x1, y1,
+                    clip.x, clip.y, x1, y1, null);
+        }
+    }
+
+    /**
+     * The render loop, waits for a snapshot and renders it.
+     */
+    @Override
+    public void run() {
+        while (this.thread == Thread.currentThread()) {
+            Snapshot snapshot = this.pending.getAndSet(null);
+
+            if (snapshot == null) {
+                synchronized (this.pending) {
+                    this.idle = true;
+                    this.pending.notifyAll();
+                    try {
+                        while (this.pending.get() == null
+                                && this.thread == Thread.currentThread()) {
+                            this.pending.wait();
+                        }
+                    } catch (InterruptedException e) {
+                        return;
+                    } finally {
+                        this.idle = false;
+                    }
+                }
+            } else {
+                this.render(snapshot);
+            }
+        }
+    }
+
+    /**
+     * Renders a snapshot into the back buffer and swaps it in. The frame is
+     * dropped if a newer snapshot arrives before the Drawable being dragged
+     * is drawn.
+     *
+     * @param snapshot the snapshot to render
+     */
+    private void render(Snapshot snapshot) {
+        Rectangle dirty = snapshot.dirty;
+        if (this.carriedDirty != null) {
+            dirty = this.carriedDirty.union(dirty);
+        }
+
+        this.updateCommitted(snapshot);
+
+        if (this.pending.get() != null) {
+            this.carriedDirty = dirty;
+            return;
+        }
+
+        Frame frame = this.back;
+        synchronized (frame) {
+            frame.target.setClip(null);
+            frame.target.copyFrom(this.committedTarget);
+            if (snapshot.active != null) {
+                snapshot.active.drawShapeOnce(frame.target);
+            }
+        }
+
+        this.back = this.front.getAndSet(frame);
+        this.carriedDirty = null;
+        this.canvas.repaint(dirty);
+    }
+
+    /**
+     * Brings the committedTarget up to date with the finished Drawables of
+     * a snapshot. Drawables added since the last frame are drawn on top,
+     * anything else redraws the whole raster. Only the span lists of the
+     * Drawables drawn here are released, the committedTarget keeps their
+     * pixels (see Drawable.releaseSpans); the others were released when
+     * they were drawn.
+     *
+     * @param snapshot the snapshot to render
+     */
+    private void updateCommitted(Snapshot snapshot) {
+        if (snapshot.version != this.renderedVersion
+                || snapshot.shapes.size() < this.renderedCount) {
+            // Drawn tile by tile on all cores, see TiledRenderer.
+            TiledRenderer.render(this.committedImage, snapshot.shapes, null,
+                    new Rectangle(0, 0, this.committedImage.getWidth(),
+                            this.committedImage.getHeight()), Color.WHITE);
+            for (Drawable shape : snapshot.shapes) {
+                shape.releaseSpans();
+            }
+        } else {
+            this.committedTarget.setClip(null);
+            for (int i = this.renderedCount; i < snapshot.shapes.size();
+                    i++) {
+                Drawable shape = snapshot.shapes.get(i);
+                shape.drawShape(this.committedTarget);
+                shape.releaseSpans();
+            }
+        }
+
+        this.renderedVersion = snapshot.version;
+        this.renderedCount = snapshot.shapes.size();
+    }
+}
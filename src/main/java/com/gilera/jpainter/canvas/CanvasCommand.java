@@ -0,0 +1,35 @@
+package com.gilera.jpainter.canvas;
+
+
+/**
+ * File: CanvasCommand.java
+ *
+ * Description: The superclass of every undoable change of the canvas.
+ */
+
+/**
+ * CanvasCommand class
+ *
+ * Purpose: A change of the Drawables on the canvas that can be undone and
+ * redone as a whole. Commands only hold references to the Drawables they
+ * change, so the history grows with the number of operations, not with
+ * the number of Drawables.
+ *
+ * @author Ryan Gilera <jalapaomaji-github@yahoo.com>
+ */
+abstract class CanvasCommand {
+
+    /**
+     * Applies the change to the canvas, the first time or after an undo.
+     *
+     * @param scene the scene to change
+     */
+    abstract void redo(SceneModel scene);
+
+    /**
+     * Reverts the change. The canvas is in the state redo left it in.
+     *
+     * @param scene the scene to change
+     */
+    abstract void undo(SceneModel scene);
+}
@@ -0,0 +1,48 @@
+package com.gilera.jpainter.canvas;
+
+
+/**
+ * File: ClearCommand.java
+ *
+ * Description: Removes every Drawable from the canvas at once.
+ */
+import com.gilera.jpainter.drawables.Drawable;
+
+/**
+ * ClearCommand class
+ *
+ * Purpose: Empties the canvas, used by both Clear Canvas and File New.
+ * Clear Canvas executes it through the CommandHistory so it can be undone,
+ * File New (SceneModel.reset) runs it once and drops the history. The
+ * list of Drawables and its SpatialIndex are set aside as they are instead
+ * of being copied, so clearing and its undo take the same time whatever
+ * the number of Drawables.
+ *
+ * @author Ryan Gilera <jalapaomaji-github@yahoo.com>
+ */
+final class ClearCommand extends CanvasCommand {
+
+    /**
+     * Object variables declarations
+     * <ul>
+     * <li>previous - the Drawables set aside by the last redo.</li>
+     * <li>previousIndex - their SpatialIndex.</li>
+     * </ul>
+     */
+    private PersistentVector<Drawable> previous;
+    private SpatialIndex previousIndex;
+
+    @Override
+    void redo(SceneModel scene) {
+        this.previous = scene.getScene();
+        this.previousIndex = scene.getSceneIndex();
+        scene.replaceScene(null, null);
+    }
+
+    @Override
+    void undo(SceneModel scene) {
+        scene.replaceScene(this.previous, this.previousIndex);
+        this.previous = null;
+        this.previousIndex = null;
+    }
+}
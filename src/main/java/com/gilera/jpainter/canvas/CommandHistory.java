@@ -0,0 +1,96 @@
+package com.gilera.jpainter.canvas;
+
+
+/**
+ * File: CommandHistory.java
+ *
+ * Description: The undo and redo stacks of the canvas.
+ */
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * CommandHistory class
+ *
+ * Purpose: Keeps the CanvasCommands applied to the canvas, so they can be
+ * undone and redone in order. Executing a new command drops everything
+ * that could have been redone.
+ *
+ * @author Ryan Gilera <jalapaomaji-github@yahoo.com>
+ */
+final class CommandHistory {
+
+    /**
+     * Object variables declarations
+     * <ul>
+     * <li>done - the commands that can be undone, latest first.</li>
+     * <li>undone - the commands that can be redone, latest first.</li>
+     * </ul>
+     */
+    private final Deque<CanvasCommand> done;
+    private final Deque<CanvasCommand> undone;
+
+    /**
+     * Class constructor, the history starts empty.
+     */
+    CommandHistory() {
+        this.done = new ArrayDeque<>();
+        this.undone = new ArrayDeque<>();
+    }
+
+    /**
+     * Applies a new command and records it.
+     *
+     * @param command the command to apply
+     * @param scene the scene to apply it to
+     */
+    void execute(CanvasCommand command, SceneModel scene) {
+        command.redo(scene);
+        this.done.push(command);
+        this.undone.clear();
+    }
+
+    /**
+     * Undoes the latest command, if there is one.
+     *
+     * @param scene the scene
+     * @return true if a command was undone
+     */
+    boolean undo(SceneModel scene) {
+        CanvasCommand command = this.done.poll();
+        if (command == null) {
+            return false;
+        }
+        command.undo(scene);
+        this.undone.push(command);
+        return true;
+    }
+
+    /**
+     * Undoes the latest command and forgets it, it cannot be redone.
+     *
+     * @param scene the scene
+     */
+    void discard(SceneModel scene) {
+        CanvasCommand command = this.done.poll();
+        if (command != null) {
+            command.undo(scene);
+        }
+    }
+
+    /**
+     * Redoes the latest undone command, if there is one.
+     *
+     * @param scene the scene
+     * @return true if a command was redone
+     */
+    boolean redo(SceneModel scene) {
+        CanvasCommand command = this.undone.poll();
+        if (command == null) {
+            return false;
+        }
+        command.redo(scene);
+        this.done.push(command);
+        return true;
+    }
+}
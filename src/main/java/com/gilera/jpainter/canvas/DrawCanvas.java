@@ -9,20 +9,29 @@ package com.gilera.jpainter.canvas;
  */
 import com.gilera.jpainter.data.GlobalSettingsManager;
 import com.gilera.jpainter.drawables.Drawable;
+import com.gilera.jpainter.raster.IntRasterTarget;
 import java.awt.Color;
 import java.awt.Graphics;
-import java.awt.Image;
+import java.awt.Rectangle;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 
 /**
  * DrawCanvas class
  * 
  * Purpose: Provides the canvas and its drawing mechanism. Updates status bar
- * for all canvas activities. Manage Drawable objects drawn on the canvas.
+ * for all canvas activities. The Drawables, their history and the retained
+ * raster belong to a SceneModel, the canvas is a view over it: it shows
+ * the scene and repaints whatever the SceneModel reports as changed.
  *
  * @author Ryan Gilera <jalapaomaji-github@yahoo.com>
  */
@@ -31,9 +40,8 @@ public class DrawCanvas extends JPanel{
     /**
      * Object variables declarations
      * <ul>
-     * <li>listOfDrawables - list of Drawable objects to draw on the canvas.</li>
-     * <li>listOfClearedDrawables - list of "erased" Drawables that can be 
-     * redrawn using redo</li>
+     * <li>scene - the Drawables, history and retained raster shown by the
+     * canvas.</li>
      * <li>startDraw - flag for determining weather to draw or not. keeps from
      * drawing early with assigning any endpoints.</li>
      * <li>statusBar - a JLabel object for the status bar information. Made as
@@ -43,14 +51,45 @@ public class DrawCanvas extends JPanel{
      * on the canvas.</li>
      * <li>bufferImage - an Image object used to buffer all drawing process
      * before drawing it on the canvas.</li>
+     * <li>bufferTarget - PixelTarget writing directly into the pixels of
+     * bufferImage.</li>
+     * <li>activeBounds - the area covered by the active Drawable when it was
+     * last repainted, cleared again on the next drag repaint.</li>
+     * <li>statusTimer - ticks once per frame while the status bar has
+     * pending changes, so the labels are updated at most once a frame.</li>
+     * <li>pendingStatus - the latest status text not displayed yet, null if
+     * there is none.</li>
+     * <li>posX, posY, posPending - the latest mouse position not displayed
+     * yet.</li>
+     * <li>renderer - renders the canvas on a render thread while
+     * backgroundRendering is on.</li>
+     * <li>backgroundRendering - flag for the render mode, if on 
+     * paintComponent only copies the latest frame of the renderer.</li>
+     * <li>ingest - Drawables handed in by other threads, waiting to be
+     * added.</li>
+     * <li>ingestTimer - ticks once per frame while the ingest queue is not
+     * empty, adding a bounded batch on every tick.</li>
+     * <li>ingestScheduled - set while the ingestTimer runs or is about to,
+     * so producers only start it once.</li>
      * </ul>
      */
-    private List<Drawable> listOfDrawables;
-    private List<Drawable> listOfClearedDrawables;
+    private final SceneModel scene;
     private boolean startDraw;
     private final JLabel statusBar;
     private final JLabel mousePosBar;
-    private final Image bufferImage;
+    private final BufferedImage bufferImage;
+    private final IntRasterTarget bufferTarget;
+    private Rectangle activeBounds;
+    private final Timer statusTimer;
+    private String pendingStatus;
+    private int posX;
+    private int posY;
+    private boolean posPending;
+    private final BackgroundRenderer renderer;
+    private boolean backgroundRendering;
+    private final IngestQueue ingest;
+    private final Timer ingestTimer;
+    private final AtomicBoolean ingestScheduled;
 
     /**
      * Class constructor with no arguments. Initialise all object variables.
@@ -58,14 +97,150 @@ public class DrawCanvas extends JPanel{
     public DrawCanvas() {
         this.startDraw = false;
         this.setBackground(Color.WHITE);
-        this.listOfDrawables = new ArrayList<>();
-        this.listOfClearedDrawables = new ArrayList<>();
+        this.scene = new SceneModel(GlobalSettingsManager.CANVAS_WIDTH,
+                GlobalSettingsManager.CANVAS_HEIGHT);
+        this.scene.setListener(new SceneListener() {
+            @Override
+            public void sceneChanged(Rectangle area) {
+                if (DrawCanvas.this.scene.getActiveShape() == null) {
+                    DrawCanvas.this.activeBounds = null;
+                }
+                DrawCanvas.this.refresh(area);
+            }
+        });
         this.statusBar = new JLabel("  Ready to draw..");
         this.mousePosBar = new JLabel(" ");
         this.bufferImage = new BufferedImage(
                 GlobalSettingsManager.CANVAS_WIDTH,
                 GlobalSettingsManager.CANVAS_HEIGHT,
                 BufferedImage.TYPE_INT_ARGB);
+        this.bufferTarget = new IntRasterTarget(this.bufferImage);
+        this.statusTimer = new Timer(GlobalSettingsManager.FRAME_DELAY,
+                new ActionListener() {
+                    @Override
+                    public void actionPerformed(ActionEvent e) {
+                        DrawCanvas.this.flushStatus();
+                    }
+                });
+        this.statusTimer.setCoalesce(true);
+        this.renderer = new BackgroundRenderer(this,
+                GlobalSettingsManager.CANVAS_WIDTH,
+                GlobalSettingsManager.CANVAS_HEIGHT);
+        this.ingest = new IngestQueue(GlobalSettingsManager.INGEST_CAPACITY);
+        this.ingestTimer = new Timer(GlobalSettingsManager.FRAME_DELAY,
+                new ActionListener() {
+                    @Override
+                    public void actionPerformed(ActionEvent e) {
+                        DrawCanvas.this.drainIngest();
+                    }
+                });
+        this.ingestTimer.setCoalesce(true);
+        this.ingestScheduled = new AtomicBoolean(false);
+        this.setBackgroundRendering(
+                GlobalSettingsManager.BACKGROUND_RENDERING);
+    }
+
+    /**
+     * Returns the SceneModel shown by the canvas.
+     *
+     * @return SceneModel object
+     */
+    public SceneModel getScene() {
+        return this.scene;
+    }
+
+    /**
+     * Turns the background render mode on or off. While it is on, every 
+     * change of the canvas is handed to the render thread as a snapshot,
+     * and paintComponent only copies the latest finished frame. The event
+     * thread stays free for menus and buttons, however heavy the scene.
+     *
+     * @param on true to render on the render thread
+     */
+    public final void setBackgroundRendering(boolean on) {
+        if (on == this.backgroundRendering) {
+            return;
+        }
+
+        this.backgroundRendering = on;
+        this.scene.setRasterRetained(!on);
+        if (on) {
+            this.renderer.start();
+            this.submitFrame(null);
+        } else {
+            this.renderer.stop();
+            this.repaint();
+        }
+    }
+
+    /**
+     * Returns true if the canvas is rendered by the render thread.
+     *
+     * @return true if background rendering is on
+     */
+    public boolean isBackgroundRendering() {
+        return this.backgroundRendering;
+    }
+
+    /**
+     * Hands a snapshot of the Drawables to the render thread. The finished
+     * Drawables are a snapshot of the SceneModel, which is never 
+     * modified, so nothing is copied. The active one is copied as a whole
+     * since it keeps changing while it is dragged.
+     *
+     * @param dirty the area that changed, null for the whole canvas.
+     */
+    private void submitFrame(Rectangle dirty) {
+        if (dirty == null) {
+            dirty = new Rectangle(0, 0, GlobalSettingsManager.CANVAS_WIDTH,
+                    GlobalSettingsManager.CANVAS_HEIGHT);
+        }
+
+        Drawable active = this.scene.getActiveShape();
+        if (active != null) {
+            active = active.copy();
+        }
+
+        this.renderer.submit(this.scene.getVersion(),
+                this.scene.getSnapshot(), active, dirty);
+    }
+
+    /**
+     * Waits until the render thread has shown every change so far. Only
+     * meaningful while background rendering is on.
+     *
+     * @param timeout the most milliseconds to wait
+     * @return true if every change is rendered, false on timeout
+     * @throws InterruptedException if interrupted while waiting
+     */
+    boolean awaitRendered(long timeout) throws InterruptedException {
+        return this.renderer.awaitIdle(timeout);
+    }
+
+    /**
+     * Returns a snapshot of the finished Drawables, bottom first. Can be
+     * called from any thread, see SceneModel.getSnapshot.
+     *
+     * @return the finished Drawables in z-order
+     */
+    public PersistentVector<Drawable> getSnapshot() {
+        return this.scene.getSnapshot();
+    }
+
+    /**
+     * Repaints an area of the canvas, through the render thread if 
+     * background rendering is on.
+     *
+     * @param area the area that changed, null for the whole canvas.
+     */
+    private void refresh(Rectangle area) {
+        if (this.backgroundRendering) {
+            this.submitFrame(area);
+        } else if (area == null) {
+            this.repaint();
+        } else {
+            this.repaint(area);
+        }
     }
 
     /**
@@ -89,49 +264,85 @@ public class DrawCanvas extends JPanel{
     }
 
     /**
-     * Displays the status of the JLabel object.
+     * Displays the status of the JLabel object. The text is shown on the
+     * next frame tick, only the latest text of a frame is displayed.
      *
      * @param s a String object to display as the status.
      */
     public void setStatus(String s) {
-        this.statusBar.setText(s);
+        this.pendingStatus = s;
+        this.startStatusTimer();
     }
 
     /**
-     * Displays the current position of the mouse on the canvas.
+     * Displays the current position of the mouse on the canvas. Only the
+     * position is recorded here, the text is built on the next frame tick.
      *
      * @param x X-coordinate
      * @param y Y-coordinate
      */
     public void setPosStatus(int x, int y) {
-        this.mousePosBar.setText(x + "," + y + "  ");
+        this.posX = x;
+        this.posY = y;
+        this.posPending = true;
+        this.startStatusTimer();
     }
 
     /**
-     * Allows to easily remove the last Drawable drawn. The line is removed 
-     * from the listOfDrawables and then added to listOfClearedDrawables.
+     * Starts the status timer if it is not ticking already.
      */
-    public void undo() {
-        if (!this.listOfDrawables.isEmpty()) {
-            this.listOfClearedDrawables.add(
-                    this.listOfDrawables.remove(this.listOfDrawables.size() - 1));
+    private void startStatusTimer() {
+        if (!this.statusTimer.isRunning()) {
+            this.statusTimer.start();
         }
     }
 
     /**
-     * Allows to easily redraw the last deleted or cleared Drawable. 
-     * The Drawable is remove from the listOfClearedDrawables and then added 
-     * to the listOfDrawables.
+     * Displays the pending status and mouse position. Stops the status 
+     * timer when there was nothing left to display.
      */
-    public void redo() {
-        if (!this.listOfClearedDrawables.isEmpty()) {
-            this.listOfDrawables.add(
-                    this.listOfClearedDrawables.remove(this.listOfClearedDrawables.size() - 1));
+    public void flushStatus() {
+        boolean changed = false;
+
+        if (this.pendingStatus != null) {
+            this.statusBar.setText(this.pendingStatus);
+            this.pendingStatus = null;
+            changed = true;
+        }
+
+        if (this.posPending) {
+            this.mousePosBar.setText(this.posX + "," + this.posY + "  ");
+            this.posPending = false;
+            changed = true;
+        }
+
+        if (!changed) {
+            this.statusTimer.stop();
         }
     }
 
     /**
-     * Allows the generated Drawables to be drawn on the canvas.
+     * Undoes the latest command of the history: a single Drawable, a batch
+     * of Drawables or a clear. Only the area that changed is rebuilt and
+     * repainted. A Drawable waiting for its second click is cancelled
+     * instead.
+     */
+    public void undo() {
+        this.activeBounds = null;
+        this.scene.undo();
+    }
+
+    /**
+     * Redoes the latest undone command of the history.
+     */
+    public void redo() {
+        this.activeBounds = null;
+        this.scene.redo();
+    }
+
+    /**
+     * Allows the generated Drawables to be drawn on the canvas. Only the 
+     * area requested by the repaint (the clip) is composed and copied.
      *
      * @param graphics Graphics object created by the system.
      */
@@ -142,65 +353,209 @@ public class DrawCanvas extends JPanel{
             // Get the reference of graphics ovject and pass it to screengc.
             Graphics screengc = graphics;
 
-            // Get the graphics instead from the bufferImage.
-            graphics = this.bufferImage.getGraphics();
-            // Sets the drawing area of the bufferImage.
-            graphics.fillRect(0, 0, GlobalSettingsManager.CANVAS_WIDTH, 
-                    GlobalSettingsManager.CANVAS_HEIGHT);
+            // The area to update, the whole canvas if no clip is set.
+            Rectangle clip = screengc.getClipBounds();
+            if (clip == null) {
+                clip = new Rectangle(0, 0, GlobalSettingsManager.CANVAS_WIDTH,
+                        GlobalSettingsManager.CANVAS_HEIGHT);
+            }
 
-            // Iterates the list of Drawables then draw it on the bufferImage.
-            for (Drawable aShape : this.listOfDrawables) {
-                aShape.drawShape(graphics);
+            // The render thread has done all the drawing already.
+            if (this.backgroundRendering) {
+                this.renderer.paint(screengc, clip);
+                return;
             }
 
-            // Draws the buffer image onto the JPanel.
-            screengc.drawImage(this.bufferImage, 0, 0, null);
+            int x1 = clip.x + clip.width;
+            int y1 = clip.y + clip.height;
+
+            // Copies the finished Drawables within the clip onto 
+            //      the bufferImage, with the Drawable being dragged.
+            this.scene.render(this.bufferTarget, clip);
 
-            // Afterwards dispose all graphic contents to save memory.
-            graphics.dispose();
+            // Draws the buffer image onto the JPanel.
+            screengc.drawImage(this.bufferImage, clip.x, clip.y, x1, y1,
+                    clip.x, clip.y, x1, y1, null);
         }
     }
 
     /**
-     * Adds new Drawables to the listOfDrawables ArrayList. New Drawable 
-     * object is created inside the MouseClickListener class.
+     * Adds new Drawables on top of the canvas. New Drawable 
+     * object is created inside the MouseClickListener class. The new 
+     * Drawable becomes the active one until commitShape is called.
      *
      * @param shape A Bresenham shape object.
      */
     public void addShape(Drawable shape) {
-        this.listOfDrawables.add(shape);
+        this.activeBounds = null;
+        this.scene.addShape(shape);
+    }
+
+    /**
+     * Adds a batch of finished Drawables on top of the canvas, undone and
+     * redone in one step.
+     *
+     * @param shapes the Drawables to add, bottom first
+     */
+    public void addShapes(List<Drawable> shapes) {
+        this.activeBounds = null;
+        this.scene.addShapes(shapes);
+    }
+
+    /**
+     * Hands a finished Drawable to the canvas from any thread, without
+     * locking and without waiting for the event thread. It is added on
+     * top of the canvas on one of the next frames, see drainIngest.
+     *
+     * @param shape the Drawable to add
+     * @return true if it was queued, false if the queue is full and the
+     * caller should back off
+     */
+    public boolean submitShape(Drawable shape) {
+        boolean queued = this.ingest.offer(shape);
+        if (queued) {
+            this.scheduleIngest();
+        }
+        return queued;
+    }
+
+    /**
+     * Hands finished Drawables to the canvas from any thread, in order. 
+     * Stops at the first one that does not fit in the queue.
+     *
+     * @param shapes the Drawables to add, bottom first
+     * @return the number of Drawables queued
+     */
+    public int submitShapes(Collection<? extends Drawable> shapes) {
+        int queued = 0;
+        for (Drawable shape : shapes) {
+            if (!this.ingest.offer(shape)) {
+                break;
+            }
+            queued++;
+        }
+        if (queued > 0) {
+            this.scheduleIngest();
+        }
+        return queued;
+    }
+
+    /**
+     * Returns the ingest queue, for its depth and drain rate.
+     *
+     * @return the IngestQueue object
+     */
+    public IngestQueue getIngestQueue() {
+        return this.ingest;
+    }
+
+    /**
+     * Starts the ingestTimer on the event thread, unless it is running
+     * already. Only the first producer after the queue ran empty posts an
+     * event.
+     */
+    private void scheduleIngest() {
+        if (this.ingestScheduled.compareAndSet(false, true)) {
+            SwingUtilities.invokeLater(new Runnable() {
+                @Override
+                public void run() {
+                    DrawCanvas.this.ingestTimer.start();
+                }
+            });
+        }
+    }
+
+    /**
+     * Adds the next batch of queued Drawables on top of the canvas, as one
+     * command. Nothing is added while the user is drawing a Drawable, which
+     * has to stay on top until it is committed. Stops the ingestTimer once
+     * the queue is empty.
+     */
+    private void drainIngest() {
+        if (this.scene.getActiveShape() == null) {
+            List<Drawable> batch = new ArrayList<>();
+            this.ingest.drainTo(batch, GlobalSettingsManager.INGEST_BATCH);
+            if (!batch.isEmpty()) {
+                this.addShapes(batch);
+            }
+        }
+
+        if (this.ingest.getDepth() == 0) {
+            this.ingestTimer.stop();
+            this.ingestScheduled.set(false);
+
+            // A producer may have queued more after the check.
+            if (this.ingest.getDepth() > 0
+                    && this.ingestScheduled.compareAndSet(false, true)) {
+                this.ingestTimer.start();
+            }
+        }
+    }
+
+    /**
+     * Finalises the active Drawable, once both of its endpoints are known.
+     * It is drawn once onto the retained raster and no longer redrawn on
+     * every frame.
+     */
+    public void commitShape() {
+        this.activeBounds = null;
+        this.scene.commitShape();
     }
 
     /**
      * Triggers the canvas to start drawing any Drawable added to 
-     * the listOfDrawables.
+     * the listOfDrawables. While a Drawable is being dragged, only the
+     * union of its previous and current bounds is repainted.
      */
     public void activateDraw() {
-        this.startDraw = true;
-        this.repaint();
+        Drawable active = this.scene.getActiveShape();
+        if (!this.startDraw || active == null) {
+            this.startDraw = true;
+            this.refresh(null);
+            return;
+        }
+
+        this.scene.updateActiveShape();
+
+        Rectangle newBounds = active.getBounds();
+        Rectangle dirty = newBounds;
+        if (this.activeBounds != null) {
+            dirty = this.activeBounds.union(newBounds);
+        }
+
+        this.activeBounds = newBounds;
+        this.refresh(dirty);
     }
 
     
     
     /**
-     * Simply clears the ArrayList object to clear the drawings. The Drawable
-     * objects listOfDrawables are simply added to the listOfClearedDrawables. 
-     * This allows to undo the changes later on. To completely delete all 
-     * Drawables, the user must trigger the File > New menu.
+     * Clears the drawings as a single command, setting the Drawables
+     * aside as they are. This allows to undo the changes later on. To 
+     * completely delete all Drawables, the user must trigger the 
+     * File > New menu.
      */
     public void clearCanvas() {
-        this.listOfClearedDrawables.addAll(this.listOfDrawables);
-        this.listOfDrawables = new ArrayList<>();
+        this.activeBounds = null;
+        this.scene.clear();
     }
 
     /**
-     * Simply deletes all Drawable objects from the two ArrayList objects by
-     * creating a new ArrayList objects. This is triggered when user 
-     * clicks File-New menu.
+     * Simply deletes all Drawable objects, together with the history of 
+     * commands. This is triggered when user clicks File-New menu.
      */
     public void startANew() {
-        this.listOfDrawables = new ArrayList<>();
-        this.listOfClearedDrawables = new ArrayList<>();
+        this.scene.reset();
+    }
+
+    /**
+     * Returns the memory taken by the undo history of the raster, the
+     * compressed deltas and the checkpoints, to watch on long sessions.
+     *
+     * @return memory used in bytes
+     */
+    public long getHistoryMemoryUsed() {
+        return this.scene.getHistoryMemoryUsed();
     }
 
     /**
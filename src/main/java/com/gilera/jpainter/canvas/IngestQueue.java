@@ -0,0 +1,189 @@
+package com.gilera.jpainter.canvas;
+
+
+/**
+ * File: IngestQueue.java
+ *
+ * Description: A lock-free queue of Drawables handed in by other threads.
+ */
+import com.gilera.jpainter.drawables.Drawable;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * IngestQueue class
+ *
+ * Purpose: Collects Drawables from any number of producer threads without
+ * locking, for the canvas to add on the event thread in bounded batches.
+ * The queue holds at most a fixed number of Drawables, offers beyond that
+ * are refused so a producer faster than the canvas can back off instead
+ * of filling the memory. The depth, totals and drain rate can be read
+ * from any thread.
+ *
+ * @author Ryan Gilera <jalapaomaji-github@yahoo.com>
+ */
+public final class IngestQueue {
+
+    // The drain rate is measured over windows of at least this long.
+    private static final long RATE_WINDOW = 1000000000L;
+
+    /**
+     * Object variables declarations
+     * <ul>
+     * <li>queue - the Drawables waiting, oldest first</li>
+     * <li>depth - the number of Drawables waiting, or about to be</li>
+     * <li>capacity - the most Drawables that may wait</li>
+     * <li>offered, rejected, drained - totals since the queue was
+     * created</li>
+     * <li>windowStart, windowCount - start and count of the current drain
+     * rate window, only written by the draining thread</li>
+     * <li>drainRate - Drawables drained per second in the last window</li>
+     * </ul>
+     */
+    private final ConcurrentLinkedQueue<Drawable> queue;
+    private final AtomicInteger depth;
+    private final int capacity;
+    private final AtomicLong offered;
+    private final AtomicLong rejected;
+    private final AtomicLong drained;
+    private volatile long windowStart;
+    private volatile long windowCount;
+    private volatile double drainRate;
+
+    /**
+     * Class constructor.
+     *
+     * @param capacity the most Drawables that may wait
+     */
+    public IngestQueue(int capacity) {
+        this.queue = new ConcurrentLinkedQueue<>();
+        this.depth = new AtomicInteger();
+        this.capacity = capacity;
+        this.offered = new AtomicLong();
+        this.rejected = new AtomicLong();
+        this.drained = new AtomicLong();
+        this.windowStart = System.nanoTime();
+        this.windowCount = 0;
+        this.drainRate = 0;
+    }
+
+    /**
+     * Adds a Drawable at the end of the queue, unless it is full. Can be
+     * called from any thread.
+     *
+     * @param shape the Drawable
+     * @return true if it was added, false if the queue is full
+     */
+    public boolean offer(Drawable shape) {
+        if (shape == null) {
+            throw new NullPointerException();
+        }
+
+        // Reserves a place first, so the capacity is never exceeded.
+        if (this.depth.incrementAndGet() > this.capacity) {
+            this.depth.decrementAndGet();
+            this.rejected.incrementAndGet();
+            return false;
+        }
+
+        this.queue.offer(shape);
+        this.offered.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Removes up to a number of Drawables from the head of the queue. Must
+     * only be called by one thread at a time.
+     *
+     * @param batch the list the Drawables are added to, oldest first
+     * @param max the most Drawables to remove
+     * @return the number of Drawables removed
+     */
+    int drainTo(List<Drawable> batch, int max) {
+        int count = 0;
+        Drawable shape;
+        while (count < max && (shape = this.queue.poll()) != null) {
+            batch.add(shape);
+            count++;
+        }
+
+        if (count > 0) {
+            this.depth.addAndGet(-count);
+            this.drained.addAndGet(count);
+        }
+
+        long now = System.nanoTime();
+        this.windowCount += count;
+        if (now - this.windowStart >= RATE_WINDOW) {
+            this.drainRate = this.windowCount * 1e9 / (now - this.windowStart);
+            this.windowStart = now;
+            this.windowCount = 0;
+        }
+
+        return count;
+    }
+
+    /**
+     * Returns the number of Drawables waiting.
+     *
+     * @return queue depth
+     */
+    public int getDepth() {
+        return Math.max(0, this.depth.get());
+    }
+
+    /**
+     * Returns the most Drawables that may wait.
+     *
+     * @return capacity
+     */
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    /**
+     * Returns the number of Drawables accepted so far.
+     *
+     * @return Drawables offered and accepted
+     */
+    public long getOffered() {
+        return this.offered.get();
+    }
+
+    /**
+     * Returns the number of Drawables refused because the queue was full.
+     *
+     * @return Drawables rejected
+     */
+    public long getRejected() {
+        return this.rejected.get();
+    }
+
+    /**
+     * Returns the number of Drawables handed to the canvas so far.
+     *
+     * @return Drawables drained
+     */
+    public long getDrained() {
+        return this.drained.get();
+    }
+
+    /**
+     * Returns the Drawables drained per second, measured over the last
+     * full second of draining. The queue is only drained while it has
+     * Drawables, so once the current window runs longer than a second
+     * nobody closes it: the rate is then taken over the window so far,
+     * and falls towards 0 while nothing is drained.
+     *
+     * @return drain rate in Drawables per second
+     */
+    public double getDrainRate() {
+        long elapsed = System.nanoTime() - this.windowStart;
+        if (elapsed > RATE_WINDOW) {
+            return this.windowCount * 1e9 / elapsed;
+        }
+        return this.drainRate;
+    }
+}
@@ -0,0 +1,333 @@
+package com.gilera.jpainter.canvas;
+
+
+/**
+ * File: PersistentVector.java
+ *
+ * Description: An immutable list that is cheap to copy with one change.
+ */
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * PersistentVector class
+ *
+ * Purpose: Holds the Drawables of the canvas so that every version of the
+ * list stays valid. The elements are kept in chunks of 32, the chunks in
+ * a tree of 32-way nodes, and the last chunk (the tail) apart. Appending
+ * or removing the last element copies the tail and at most one node per
+ * level, every other chunk is shared with the previous version. A version
+ * is never modified, so keeping it is a snapshot that any thread can read
+ * without locking, while the canvas moves on to newer versions.
+ * <p>
+ * It is a read-only java.util.List, the list methods that would modify it
+ * throw UnsupportedOperationException. Use append and removeLast instead.
+ *
+ * @param <E> the type of the elements
+ * @author Ryan Gilera <jalapaomaji-github@yahoo.com>
+ */
+public final class PersistentVector<E> extends AbstractList<E>
+        implements RandomAccess {
+
+    // Bits of the index per tree level, 32 children per node.
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+
+    // The root of every vector that fits in its tail.
+    private static final Object[] EMPTY_NODE = new Object[WIDTH];
+
+    private static final PersistentVector<Object> EMPTY
+            = new PersistentVector<>(0, BITS, EMPTY_NODE, new Object[0]);
+
+    /**
+     * Object variables declarations
+     * <ul>
+     * <li>size - number of elements</li>
+     * <li>shift - bits of the index below the root level</li>
+     * <li>root - the root node of the tree, all full chunks but the
+     * tail</li>
+     * <li>tail - the last chunk, 1 to 32 elements unless empty</li>
+     * </ul>
+     */
+    private final int size;
+    private final int shift;
+    private final Object[] root;
+    private final Object[] tail;
+
+    /**
+     * Class constructor, use empty and append instead.
+     *
+     * @param size number of elements
+     * @param shift bits of the index below the root level
+     * @param root the root node
+     * @param tail the last chunk
+     */
+    private PersistentVector(int size, int shift, Object[] root,
+            Object[] tail) {
+        this.size = size;
+        this.shift = shift;
+        this.root = root;
+        this.tail = tail;
+    }
+
+    /**
+     * Returns the empty vector.
+     *
+     * @param <E> the type of the elements
+     * @return the empty vector
+     */
+    @SuppressWarnings("unchecked")
+    public static <E> PersistentVector<E> empty() {
+        return (PersistentVector<E>) EMPTY;
+    }
+
+    /**
+     * Returns a vector of the elements of an Iterable, in order.
+     *
+     * @param <E> the type of the elements
+     * @param elements the elements
+     * @return a new vector
+     */
+    public static <E> PersistentVector<E> of(Iterable<? extends E> elements) {
+        PersistentVector<E> vector = empty();
+        for (E element : elements) {
+            vector = vector.append(element);
+        }
+        return vector;
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E get(int index) {
+        if (index < 0 || index >= this.size) {
+            throw new IndexOutOfBoundsException("Index: " + index
+                    + ", Size: " + this.size);
+        }
+        return (E) this.chunkFor(index)[index & MASK];
+    }
+
+    /**
+     * Returns the last element.
+     *
+     * @return the last element
+     */
+    public E getLast() {
+        if (this.size == 0) {
+            throw new NoSuchElementException();
+        }
+        return this.get(this.size - 1);
+    }
+
+    /**
+     * Iterates the elements chunk by chunk, without walking the tree for
+     * every element.
+     *
+     * @return an iterator over the elements, in order
+     */
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<E>() {
+            private int index = 0;
+            private Object[] chunk = null;
+
+            @Override
+            public boolean hasNext() {
+                return this.index < PersistentVector.this.size;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public E next() {
+                if (this.index >= PersistentVector.this.size) {
+                    throw new NoSuchElementException();
+                }
+                if ((this.index & MASK) == 0 || this.chunk == null) {
+                    this.chunk = PersistentVector.this.chunkFor(this.index);
+                }
+                return (E) this.chunk[this.index++ & MASK];
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /**
+     * Returns a new vector with an element added at the end. This vector
+     * is not changed.
+     *
+     * @param element the element to add
+     * @return the new vector
+     */
+    public PersistentVector<E> append(E element) {
+        // Room left in the tail.
+        if (this.size - this.tailOffset() < WIDTH) {
+            Object[] newTail = Arrays.copyOf(this.tail,
+                    this.tail.length + 1);
+            newTail[this.tail.length] = element;
+            return new PersistentVector<>(this.size + 1, this.shift,
+                    this.root, newTail);
+        }
+
+        // The full tail moves into the tree, growing a level if the tree
+        //      is full.
+        Object[] newRoot;
+        int newShift = this.shift;
+        if ((this.size >>> BITS) > (1 << this.shift)) {
+            newRoot = new Object[WIDTH];
+            newRoot[0] = this.root;
+            newRoot[1] = newPath(this.shift, this.tail);
+            newShift += BITS;
+        } else {
+            newRoot = this.pushTail(this.shift, this.root, this.tail);
+        }
+
+        return new PersistentVector<>(this.size + 1, newShift, newRoot,
+                new Object[]{element});
+    }
+
+    /**
+     * Returns a new vector without the last element. This vector is not
+     * changed.
+     *
+     * @return the new vector
+     */
+    public PersistentVector<E> removeLast() {
+        if (this.size == 0) {
+            throw new IllegalStateException("Vector is empty");
+        }
+        if (this.size == 1) {
+            return empty();
+        }
+
+        if (this.size - this.tailOffset() > 1) {
+            return new PersistentVector<>(this.size - 1, this.shift,
+                    this.root, Arrays.copyOf(this.tail,
+                            this.tail.length - 1));
+        }
+
+        // The tail empties, the last chunk of the tree becomes the tail.
+        Object[] newTail = this.chunkFor(this.size - 2);
+        Object[] newRoot = this.popTail(this.shift, this.root);
+        int newShift = this.shift;
+        if (newRoot == null) {
+            newRoot = EMPTY_NODE;
+        }
+        if (this.shift > BITS && newRoot[1] == null) {
+            newRoot = (Object[]) newRoot[0];
+            newShift -= BITS;
+        }
+
+        return new PersistentVector<>(this.size - 1, newShift, newRoot,
+                newTail);
+    }
+
+    /**
+     * Returns the index of the first element in the tail.
+     *
+     * @return index of the tail
+     */
+    private int tailOffset() {
+        if (this.size < WIDTH) {
+            return 0;
+        }
+        return ((this.size - 1) >>> BITS) << BITS;
+    }
+
+    /**
+     * Returns the chunk holding an element.
+     *
+     * @param index index of the element, within the vector
+     * @return the chunk
+     */
+    private Object[] chunkFor(int index) {
+        if (index >= this.tailOffset()) {
+            return this.tail;
+        }
+
+        Object[] node = this.root;
+        for (int level = this.shift; level > 0; level -= BITS) {
+            node = (Object[]) node[(index >>> level) & MASK];
+        }
+        return node;
+    }
+
+    /**
+     * Copies the path to the last chunk of the tree, adding a full tail
+     * after it.
+     *
+     * @param level bits of the index below this node
+     * @param parent the node
+     * @param tailNode the full tail
+     * @return the copied node
+     */
+    private Object[] pushTail(int level, Object[] parent, Object[] tailNode) {
+        int child = ((this.size - 1) >>> level) & MASK;
+        Object[] copy = parent.clone();
+
+        if (level == BITS) {
+            copy[child] = tailNode;
+        } else if (parent[child] != null) {
+            copy[child] = this.pushTail(level - BITS,
+                    (Object[]) parent[child], tailNode);
+        } else {
+            copy[child] = newPath(level - BITS, tailNode);
+        }
+        return copy;
+    }
+
+    /**
+     * Copies the path to the last chunk of the tree, without that chunk.
+     *
+     * @param level bits of the index below this node
+     * @param node the node
+     * @return the copied node, null if it would be empty
+     */
+    private Object[] popTail(int level, Object[] node) {
+        int child = ((this.size - 2) >>> level) & MASK;
+
+        if (level > BITS) {
+            Object[] newChild = this.popTail(level - BITS,
+                    (Object[]) node[child]);
+            if (newChild == null && child == 0) {
+                return null;
+            }
+            Object[] copy = node.clone();
+            copy[child] = newChild;
+            return copy;
+        } else if (child == 0) {
+            return null;
+        }
+
+        Object[] copy = node.clone();
+        copy[child] = null;
+        return copy;
+    }
+
+    /**
+     * Builds a chain of nodes down to a chunk.
+     *
+     * @param level bits of the index below the top node
+     * @param chunk the chunk at the bottom
+     * @return the top node
+     */
+    private static Object[] newPath(int level, Object[] chunk) {
+        if (level == 0) {
+            return chunk;
+        }
+        Object[] node = new Object[WIDTH];
+        node[0] = newPath(level - BITS, chunk);
+        return node;
+    }
+}
@@ -0,0 +1,179 @@
+package com.gilera.jpainter.canvas;
+
+
+/**
+ * File: RasterCheckpoints.java
+ *
+ * Description: Keeps copies of the committed raster for undo and redo.
+ */
+import com.gilera.jpainter.raster.IntRasterTarget;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * RasterCheckpoints class
+ *
+ * Purpose: Stores copies of the committed raster, each taken when the first
+ * count Drawables of the canvas were drawn. Undo and redo restore the
+ * nearest checkpoint below the Drawables they keep and only draw the
+ * Drawables added after it, instead of every Drawable under the area.
+ * <p>
+ * A checkpoint is only valid for the epoch it was taken in, the canvas
+ * starts a new epoch whenever the order of its Drawables changes other
+ * than at the top. The copies are kept within a memory ceiling, the least
+ * recently used one is evicted first.
+ *
+ * @author Ryan Gilera <jalapaomaji-github@yahoo.com>
+ */
+final class RasterCheckpoints {
+
+    /**
+     * A copy of the committed raster.
+     * <ul>
+     * <li>epoch - the epoch of the canvas it was taken in</li>
+     * <li>count - how many Drawables it holds</li>
+     * <li>pixels - the pixels of the committed raster</li>
+     * </ul>
+     */
+    private static final class Checkpoint {
+
+        private final int epoch;
+        private final int count;
+        private final int[] pixels;
+
+        private Checkpoint(int epoch, int count, int[] pixels) {
+            this.epoch = epoch;
+            this.count = count;
+            this.pixels = pixels;
+        }
+    }
+
+    /**
+     * Object variables declarations
+     * <ul>
+     * <li>memoryLimit - the most bytes the copies may take</li>
+     * <li>memoryUsed - the bytes the copies take now</li>
+     * <li>checkpoints - the copies keyed by epoch and count, in least
+     * recently used order</li>
+     * </ul>
+     */
+    private final long memoryLimit;
+    private long memoryUsed;
+    private final LinkedHashMap<Long, Checkpoint> checkpoints;
+
+    /**
+     * Class constructor.
+     *
+     * @param memoryLimit the most bytes the copies may take
+     */
+    RasterCheckpoints(long memoryLimit) {
+        this.memoryLimit = memoryLimit;
+        this.memoryUsed = 0;
+        this.checkpoints = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Stores a copy of the committed raster, evicting the least recently
+     * used copies to stay within the memory ceiling.
+     *
+     * @param epoch the current epoch of the canvas
+     * @param count how many Drawables the raster holds
+     * @param raster the committed raster
+     */
+    void take(int epoch, int count, IntRasterTarget raster) {
+        Long key = key(epoch, count);
+        if (this.checkpoints.containsKey(key)) {
+            this.checkpoints.get(key);
+            return;
+        }
+
+        int[] pixels = raster.copyPixels();
+        long size = 4L * pixels.length;
+        if (size > this.memoryLimit) {
+            return;
+        }
+
+        this.checkpoints.put(key, new Checkpoint(epoch, count, pixels));
+        this.memoryUsed += size;
+
+        Iterator<Checkpoint> eldest = this.checkpoints.values().iterator();
+        while (this.memoryUsed > this.memoryLimit) {
+            this.memoryUsed -= 4L * eldest.next().pixels.length;
+            eldest.remove();
+        }
+    }
+
+    /**
+     * Finds the checkpoint holding the most Drawables, but no more than a
+     * number, and marks it as used.
+     *
+     * @param epoch the current epoch of the canvas
+     * @param maxCount the most Drawables it may hold
+     * @return the count of the checkpoint found, or -1 if there is none
+     */
+    int find(int epoch, int maxCount) {
+        int best = -1;
+        for (Checkpoint checkpoint : this.checkpoints.values()) {
+            if (checkpoint.epoch == epoch && checkpoint.count <= maxCount
+                    && checkpoint.count > best) {
+                best = checkpoint.count;
+            }
+        }
+
+        if (best >= 0) {
+            this.checkpoints.get(key(epoch, best));
+        }
+        return best;
+    }
+
+    /**
+     * Copies the clip area of a checkpoint onto the committed raster.
+     *
+     * @param epoch the epoch of the checkpoint
+     * @param count the count of the checkpoint, see find
+     * @param raster the committed raster, clipped to the area to restore
+     */
+    void restore(int epoch, int count, IntRasterTarget raster) {
+        raster.copyFrom(this.checkpoints.get(key(epoch, count)).pixels);
+    }
+
+    /**
+     * Drops the checkpoints of other epochs, and the ones holding more
+     * Drawables than the canvas has now.
+     *
+     * @param epoch the current epoch of the canvas
+     * @param maxCount the number of Drawables on the canvas
+     */
+    void discard(int epoch, int maxCount) {
+        Iterator<Map.Entry<Long, Checkpoint>> all
+                = this.checkpoints.entrySet().iterator();
+        while (all.hasNext()) {
+            Checkpoint checkpoint = all.next().getValue();
+            if (checkpoint.epoch != epoch || checkpoint.count > maxCount) {
+                this.memoryUsed -= 4L * checkpoint.pixels.length;
+                all.remove();
+            }
+        }
+    }
+
+    /**
+     * Returns the bytes taken by all copies.
+     *
+     * @return memory used in bytes
+     */
+    long getMemoryUsed() {
+        return this.memoryUsed;
+    }
+
+    /**
+     * Combines epoch and count into one key.
+     *
+     * @param epoch the epoch
+     * @param count the count
+     * @return the key
+     */
+    private static Long key(int epoch, int count) {
+        return ((long) epoch << 32) | (count & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,175 @@
+package com.gilera.jpainter.canvas;
+
+
+/**
+ * File: RasterDeltaHistory.java
+ *
+ * Description: Compressed pixels under every Drawable drawn, for undo.
+ */
+import com.gilera.jpainter.drawables.Drawable;
+import com.gilera.jpainter.raster.IntRasterTarget;
+import java.awt.Rectangle;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * RasterDeltaHistory class
+ *
+ * Purpose: Before a Drawable is drawn on top of the committed raster, the
+ * pixels under its bounds are deflated and kept. Undoing the top Drawable
+ * then only has to inflate them and write them back, no Drawable is drawn
+ * at all. The deltas are kept within a byte budget, the oldest ones are
+ * evicted first, so undo falls back to the checkpoints once it reaches
+ * past them.
+ *
+ * @author Ryan Gilera <jalapaomaji-github@yahoo.com>
+ */
+final class RasterDeltaHistory {
+
+    /**
+     * The pixels under a Drawable before it was drawn.
+     * <ul>
+     * <li>shape - the Drawable drawn over them</li>
+     * <li>area - the area they cover</li>
+     * <li>data - the pixels, deflated</li>
+     * </ul>
+     */
+    private static final class Delta {
+
+        private final Drawable shape;
+        private final Rectangle area;
+        private final byte[] data;
+
+        private Delta(Drawable shape, Rectangle area, byte[] data) {
+            this.shape = shape;
+            this.area = area;
+            this.data = data;
+        }
+    }
+
+    /**
+     * Object variables declarations
+     * <ul>
+     * <li>budget - the most bytes the deltas may take</li>
+     * <li>bytesUsed - the bytes the deltas take now</li>
+     * <li>deltas - the deltas, newest last</li>
+     * <li>deflater, inflater - reused for every delta</li>
+     * <li>buffer - reused for deflating</li>
+     * </ul>
+     */
+    private final long budget;
+    private long bytesUsed;
+    private final Deque<Delta> deltas;
+    private final Deflater deflater;
+    private final Inflater inflater;
+    private byte[] buffer;
+
+    /**
+     * Class constructor.
+     *
+     * @param budget the most bytes the deltas may take
+     */
+    RasterDeltaHistory(long budget) {
+        this.budget = budget;
+        this.bytesUsed = 0;
+        this.deltas = new ArrayDeque<>();
+        this.deflater = new Deflater(Deflater.BEST_SPEED);
+        this.inflater = new Inflater();
+        this.buffer = new byte[4096];
+    }
+
+    /**
+     * Keeps the pixels a Drawable is about to be drawn over.
+     *
+     * @param shape the Drawable about to be drawn on top
+     * @param area its bounds, within the raster
+     * @param raster the committed raster
+     */
+    void record(Drawable shape, Rectangle area, IntRasterTarget raster) {
+        if (area.isEmpty()) {
+            return;
+        }
+
+        int[] pixels = raster.copyPixels(area);
+        ByteBuffer bytes = ByteBuffer.allocate(4 * pixels.length);
+        bytes.asIntBuffer().put(pixels);
+
+        this.deflater.reset();
+        this.deflater.setInput(bytes.array());
+        this.deflater.finish();
+        int length = 0;
+        while (!this.deflater.finished()) {
+            if (length == this.buffer.length) {
+                this.buffer = Arrays.copyOf(this.buffer, 2 * length);
+            }
+            length += this.deflater.deflate(this.buffer, length,
+                    this.buffer.length - length);
+        }
+
+        Delta delta = new Delta(shape, new Rectangle(area),
+                Arrays.copyOf(this.buffer, length));
+        this.deltas.addLast(delta);
+        this.bytesUsed += length;
+
+        while (this.bytesUsed > this.budget) {
+            this.bytesUsed -= this.deltas.removeFirst().data.length;
+        }
+    }
+
+    /**
+     * Writes back the pixels under a Drawable, if it was the last one
+     * recorded.
+     *
+     * @param shape the Drawable removed from the top
+     * @param raster the committed raster
+     * @return the area restored, or null if there is no delta for it
+     */
+    Rectangle undo(Drawable shape, IntRasterTarget raster) {
+        Delta delta = this.deltas.peekLast();
+        if (delta == null || delta.shape != shape) {
+            return null;
+        }
+        this.deltas.removeLast();
+        this.bytesUsed -= delta.data.length;
+
+        byte[] bytes = new byte[4 * delta.area.width * delta.area.height];
+        this.inflater.reset();
+        this.inflater.setInput(delta.data);
+        try {
+            int length = 0;
+            while (length < bytes.length && !this.inflater.finished()) {
+                length += this.inflater.inflate(bytes, length,
+                        bytes.length - length);
+            }
+        } catch (DataFormatException e) {
+            throw new IllegalStateException(e);
+        }
+
+        int[] pixels = new int[bytes.length / 4];
+        ByteBuffer.wrap(bytes).asIntBuffer().get(pixels);
+        raster.setPixels(delta.area, pixels);
+        return delta.area;
+    }
+
+    /**
+     * Drops every delta, once the raster no longer matches them.
+     */
+    void clear() {
+        this.deltas.clear();
+        this.bytesUsed = 0;
+    }
+
+    /**
+     * Returns the bytes taken by all deltas.
+     *
+     * @return memory used in bytes
+     */
+    long getMemoryUsed() {
+        return this.bytesUsed;
+    }
+}
@@ -0,0 +1,471 @@
+package com.gilera.jpainter.canvas;
+
+
+/**
+ * File: ReplayEngine.java
+ *
+ * Description: Seeks to any point of a recorded history of a drawing.
+ */
+import com.gilera.jpainter.data.GlobalSettingsManager;
+import com.gilera.jpainter.data.SceneFile;
+import com.gilera.jpainter.drawables.CompactSceneStore;
+import com.gilera.jpainter.drawables.Drawable;
+import com.gilera.jpainter.raster.IntRasterTarget;
+import java.awt.Color;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ReplayEngine class
+ *
+ * Purpose: Replays the operations of a SceneJournal, or the Drawables of a
+ * SceneFile one by one, for scrubbing through the history of a drawing.
+ * Loading fast-forwards through every operation without drawing, only
+ * following which Drawables are visible, and keeps a keyframe every
+ * KEYFRAME_INTERVAL operations: that state together with a copy of the
+ * raster. Seeking to a position restores the nearest keyframe before it,
+ * replays the few operations after it and draws only the Drawables added
+ * since.
+ * <p>
+ * The visible Drawables and the undo and redo stacks are kept as
+ * PersistentVector versions, which are never modified, so a keyframe
+ * holds its state without copying it. The keyframes are kept within
+ * KEYFRAME_MEMORY; when they would take more, every other one is dropped
+ * and the interval doubles.
+ *
+ * @author Ryan Gilera <jalapaomaji-github@yahoo.com>
+ */
+public final class ReplayEngine {
+
+    /**
+     * One recorded operation.
+     * <ul>
+     * <li>type - the type of the operation, see SceneJournal.ADD</li>
+     * <li>shapes - the Drawables added by an ADD or OPEN, bottom
+     * first</li>
+     * </ul>
+     */
+    private static final class Step {
+
+        private final byte type;
+        private final Drawable[] shapes;
+
+        private Step(byte type, Drawable[] shapes) {
+            this.type = type;
+            this.shapes = shapes;
+        }
+    }
+
+    /**
+     * An immutable stack of scene versions, for undo and redo.
+     * <ul>
+     * <li>top - the version on top</li>
+     * <li>next - the rest of the stack, null at the bottom</li>
+     * </ul>
+     */
+    private static final class Versions {
+
+        private final PersistentVector<Drawable> top;
+        private final Versions next;
+
+        private Versions(PersistentVector<Drawable> top, Versions next) {
+            this.top = top;
+            this.next = next;
+        }
+    }
+
+    /**
+     * The state of the drawing after a number of operations.
+     * <ul>
+     * <li>position - the number of operations applied</li>
+     * <li>shapes - the visible Drawables</li>
+     * <li>undone, redone - the versions restored by undo and by redo,
+     * null when empty</li>
+     * </ul>
+     */
+    private static final class State {
+
+        private final int position;
+        private final PersistentVector<Drawable> shapes;
+        private final Versions undone;
+        private final Versions redone;
+
+        private State(int position, PersistentVector<Drawable> shapes,
+                Versions undone, Versions redone) {
+            this.position = position;
+            this.shapes = shapes;
+            this.undone = undone;
+            this.redone = redone;
+        }
+    }
+
+    /**
+     * A state with a copy of its raster.
+     * <ul>
+     * <li>state - the state</li>
+     * <li>pixels - the raster of the visible Drawables</li>
+     * </ul>
+     */
+    private static final class Keyframe {
+
+        private final State state;
+        private final int[] pixels;
+
+        private Keyframe(State state, int[] pixels) {
+            this.state = state;
+            this.pixels = pixels;
+        }
+    }
+
+    /**
+     * Object variables declarations
+     * <ul>
+     * <li>width, height - size of the raster in pixels.</li>
+     * <li>background - colour of the raster under the Drawables.</li>
+     * <li>steps - every operation, in order.</li>
+     * <li>keyframes - the keyframes, by position.</li>
+     * <li>interval - operations between two keyframes.</li>
+     * <li>memoryLimit - the most bytes the keyframes may take.</li>
+     * <li>image, target - the raster of the current state.</li>
+     * <li>current - the state the raster shows.</li>
+     * </ul>
+     */
+    private final int width;
+    private final int height;
+    private final Color background;
+    private final List<Step> steps;
+    private final List<Keyframe> keyframes;
+    private int interval;
+    private final long memoryLimit;
+    private final BufferedImage image;
+    private final IntRasterTarget target;
+    private State current;
+
+    /**
+     * Class constructor, starts with no operations.
+     *
+     * @param width width of the raster in pixels
+     * @param height height of the raster in pixels
+     * @param interval operations between two keyframes
+     * @param memoryLimit the most bytes the keyframes may take
+     */
+    public ReplayEngine(int width, int height, int interval,
+            long memoryLimit) {
+        this.width = width;
+        this.height = height;
+        this.background = Color.WHITE;
+        this.steps = new ArrayList<>();
+        this.keyframes = new ArrayList<>();
+        this.interval = Math.max(1, interval);
+        this.memoryLimit = memoryLimit;
+        this.image = new BufferedImage(width, height,
+                BufferedImage.TYPE_INT_ARGB);
+        this.target = new IntRasterTarget(this.image);
+        this.target.clear(this.background);
+        this.current = new State(0, PersistentVector.<Drawable>empty(),
+                null, null);
+        this.keyframes.add(new Keyframe(this.current,
+                this.target.copyPixels()));
+    }
+
+    /**
+     * Loads every operation of a journal file, see SceneJournal, with the
+     * canvas size and keyframe settings of GlobalSettingsManager.
+     *
+     * @param file the journal file
+     * @return the engine, at position 0
+     * @throws IOException if the file cannot be read
+     */
+    public static ReplayEngine fromJournal(File file) throws IOException {
+        final ReplayEngine engine = newEngine();
+        SceneJournal.read(file, new SceneJournal.Handler() {
+            @Override
+            public void apply(byte type, List<Drawable> shapes) {
+                engine.append(type, shapes);
+            }
+        });
+        engine.seek(0);
+        return engine;
+    }
+
+    /**
+     * Loads a scene file as one operation per Drawable, bottom first, with
+     * the canvas size and keyframe settings of GlobalSettingsManager.
+     *
+     * @param file the scene file, see SceneFile
+     * @return the engine, at position 0
+     * @throws IOException if the file cannot be read
+     */
+    public static ReplayEngine fromSceneFile(File file) throws IOException {
+        CompactSceneStore store = SceneFile.read(file);
+        ReplayEngine engine = newEngine();
+        List<Drawable> one = new ArrayList<>(1);
+        for (int i = 0; i < store.size(); i++) {
+            one.clear();
+            one.add(store.get(i));
+            engine.append(SceneJournal.ADD, one);
+        }
+        engine.seek(0);
+        return engine;
+    }
+
+    /**
+     * Adds an operation at the end, fast-forwarding to it without drawing
+     * unless a keyframe is due.
+     *
+     * @param type the type of the operation, see SceneJournal.ADD
+     * @param shapes the Drawables of an ADD or OPEN, bottom first
+     */
+    void append(byte type, List<Drawable> shapes) {
+        Step step = new Step(type, shapes.toArray(new Drawable[shapes.size()]));
+        this.steps.add(step);
+
+        // Keyframes are taken in order, following the last one.
+        State last = this.keyframes.get(this.keyframes.size() - 1).state;
+        if (this.steps.size() - last.position >= this.interval) {
+            this.seek(this.steps.size());
+            this.keyframes.add(new Keyframe(this.current,
+                    this.target.copyPixels()));
+            this.trimKeyframes();
+        }
+    }
+
+    /**
+     * Returns the number of operations.
+     *
+     * @return the length of the history
+     */
+    public int getLength() {
+        return this.steps.size();
+    }
+
+    /**
+     * Returns the position the raster shows.
+     *
+     * @return the number of operations applied
+     */
+    public int getPosition() {
+        return this.current.position;
+    }
+
+    /**
+     * Returns the number of keyframes kept.
+     *
+     * @return number of keyframes
+     */
+    public int getKeyframeCount() {
+        return this.keyframes.size();
+    }
+
+    /**
+     * Returns the bytes taken by the rasters of the keyframes.
+     *
+     * @return memory used in bytes
+     */
+    public long getMemoryUsed() {
+        return 4L * this.width * this.height * this.keyframes.size();
+    }
+
+    /**
+     * Returns the visible Drawables at the current position, for example
+     * to open them in a SceneModel.
+     *
+     * @return the visible Drawables, bottom first
+     */
+    public PersistentVector<Drawable> getShapes() {
+        return this.current.shapes;
+    }
+
+    /**
+     * Returns the raster of the current position. The image is reused, it
+     * changes on the next seek.
+     *
+     * @return the raster
+     */
+    public BufferedImage getImage() {
+        return this.image;
+    }
+
+    /**
+     * Moves to a position of the history and brings the raster up to date.
+     * Moving forward from the current position continues from it, any
+     * other move restores the nearest keyframe before the position first.
+     *
+     * @param position the number of operations to apply, 0 to getLength
+     * @return the raster at that position, see getImage
+     */
+    public BufferedImage seek(int position) {
+        if (position < 0 || position > this.steps.size()) {
+            throw new IndexOutOfBoundsException("Position: " + position
+                    + ", Length: " + this.steps.size());
+        }
+
+        Keyframe keyframe = this.keyframeBefore(position);
+        State state = this.current;
+        PersistentVector<Drawable> drawn = this.current.shapes;
+        if (position < state.position
+                || keyframe.state.position > state.position) {
+            state = keyframe.state;
+            drawn = null;
+        }
+
+        // Fast-forwards without drawing.
+        while (state.position < position) {
+            state = apply(state, this.steps.get(state.position));
+        }
+
+        // Draws the Drawables added on top of what the raster shows, or
+        //      restores the latest keyframe the state builds on.
+        if (drawn == null || !isPrefix(drawn, state.shapes)) {
+            Keyframe base = null;
+            for (int i = this.keyframes.indexOf(keyframe); i >= 0; i--) {
+                if (isPrefix(this.keyframes.get(i).state.shapes,
+                        state.shapes)) {
+                    base = this.keyframes.get(i);
+                    break;
+                }
+            }
+
+            if (base != null) {
+                this.target.setClip(null);
+                this.target.copyFrom(base.pixels);
+                drawn = base.state.shapes;
+            } else {
+                TiledRenderer.render(this.image, state.shapes, null,
+                        new Rectangle(0, 0, this.width, this.height),
+                        this.background);
+                for (Drawable shape : state.shapes) {
+                    shape.releaseSpans();
+                }
+                drawn = state.shapes;
+            }
+        }
+
+        this.target.setClip(null);
+        for (int i = drawn.size(); i < state.shapes.size(); i++) {
+            state.shapes.get(i).drawShape(this.target);
+            // The image keeps the pixels, see Drawable.releaseSpans.
+            state.shapes.get(i).releaseSpans();
+        }
+
+        this.current = state;
+        return this.image;
+    }
+
+    /**
+     * Returns the latest keyframe at or before a position.
+     *
+     * @param position the position
+     * @return the keyframe
+     */
+    private Keyframe keyframeBefore(int position) {
+        int low = 0;
+        int high = this.keyframes.size() - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (this.keyframes.get(middle).state.position <= position) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return this.keyframes.get(low);
+    }
+
+    /**
+     * Drops every other keyframe while they take more than the memory
+     * ceiling, doubling the interval. The first keyframe is always kept.
+     */
+    private void trimKeyframes() {
+        while (this.keyframes.size() > 2
+                && this.getMemoryUsed() > this.memoryLimit) {
+            for (int i = this.keyframes.size() - 1; i > 0; i--) {
+                if (i % 2 == 1) {
+                    this.keyframes.remove(i);
+                }
+            }
+            this.interval *= 2;
+        }
+    }
+
+    /**
+     * Applies one operation to a state, the same way the CommandHistory of
+     * a SceneModel would.
+     *
+     * @param state the state before the operation
+     * @param step the operation
+     * @return the state after it
+     */
+    private static State apply(State state, Step step) {
+        int position = state.position + 1;
+        PersistentVector<Drawable> shapes = state.shapes;
+
+        switch (step.type) {
+            case SceneJournal.ADD:
+                for (Drawable shape : step.shapes) {
+                    shapes = shapes.append(shape);
+                }
+                return new State(position, shapes,
+                        new Versions(state.shapes, state.undone), null);
+            case SceneJournal.CLEAR:
+                return new State(position, PersistentVector.<Drawable>empty(),
+                        new Versions(state.shapes, state.undone), null);
+            case SceneJournal.UNDO:
+                if (state.undone == null) {
+                    return new State(position, shapes, null, state.redone);
+                }
+                return new State(position, state.undone.top,
+                        state.undone.next,
+                        new Versions(shapes, state.redone));
+            case SceneJournal.REDO:
+                if (state.redone == null) {
+                    return new State(position, shapes, state.undone, null);
+                }
+                return new State(position, state.redone.top,
+                        new Versions(shapes, state.undone),
+                        state.redone.next);
+            case SceneJournal.OPEN:
+                shapes = PersistentVector.empty();
+                for (Drawable shape : step.shapes) {
+                    shapes = shapes.append(shape);
+                }
+                return new State(position, shapes, null, null);
+            default:
+                return new State(position, PersistentVector.<Drawable>empty(),
+                        null, null);
+        }
+    }
+
+    /**
+     * Checks whether one version of the Drawables is the bottom of
+     * another. Drawables are only added and removed at the top and every
+     * Drawable is added at one place only, so it is enough to compare the
+     * top Drawable of the shorter version.
+     *
+     * @param bottom the shorter version
+     * @param shapes the other version
+     * @return true if shapes starts with every Drawable of bottom
+     */
+    private static boolean isPrefix(PersistentVector<Drawable> bottom,
+            PersistentVector<Drawable> shapes) {
+        int size = bottom.size();
+        return size <= shapes.size()
+                && (size == 0 || bottom.get(size - 1) == shapes.get(size - 1));
+    }
+
+    /**
+     * Creates an engine with the canvas size and keyframe settings.
+     *
+     * @return a new engine
+     */
+    private static ReplayEngine newEngine() {
+        return new ReplayEngine(GlobalSettingsManager.CANVAS_WIDTH,
+                GlobalSettingsManager.CANVAS_HEIGHT,
+                GlobalSettingsManager.KEYFRAME_INTERVAL,
+                GlobalSettingsManager.KEYFRAME_MEMORY);
+    }
+}
@@ -0,0 +1,936 @@
+package com.gilera.jpainter.canvas;
+
+
+/**
+ * File: SceneJournal.java
+ *
+ * Description: An append-only journal of the changes to a SceneModel.
+ */
+import com.gilera.jpainter.data.SceneFile;
+import com.gilera.jpainter.drawables.CompactSceneStore;
+import com.gilera.jpainter.drawables.Drawable;
+import com.gilera.jpainter.drawables.DrawableImage;
+import com.gilera.jpainter.drawables.StyleTable;
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * SceneJournal class
+ *
+ * Purpose: Keeps a drawing safe across crashes without saving the whole
+ * drawing. Every change of the SceneModel (Drawables added, undo, redo,
+ * clear, new and open) is appended to a file as a small binary record,
+ * and the file is replayed into the SceneModel at the next start up. The
+ * thread changing the scene only queues the type and the Drawables of a
+ * record, which never change afterwards; a writer thread encodes, writes
+ * and syncs them to the disk in batches, so a change never waits for the
+ * encoding, not even of the pixels of an image, nor for the disk.
+ * <p>
+ * A record is its payload length, a CRC32 of its type and payload, its
+ * type and its payload, little-endian. Replay stops at the first record
+ * that is cut short or does not match its CRC, the tail a crash left
+ * behind, and the file is truncated there. New and open start the file
+ * over, since nothing before them can be undone.
+ * <p>
+ * An opened or saved drawing is not copied into the journal. The writer
+ * thread journals the path, length and CRC32 of the scene file instead,
+ * and the file is read again on replay. If the file changed after it was
+ * read or written, the writer journals the Drawables themselves, as a
+ * full snapshot. If the file changed after it was journaled, the changes
+ * after it have nothing to apply to: replay stops, the journal is set
+ * aside as unrecoverable and a new one is started, see
+ * getRecoveryError.
+ *
+ * @author Ryan Gilera <jalapaomaji-github@yahoo.com>
+ */
+public final class SceneJournal implements Runnable {
+
+    // Types of records.
+    static final byte ADD = 1;
+    static final byte UNDO = 2;
+    static final byte REDO = 3;
+    static final byte CLEAR = 4;
+    static final byte NEW = 5;
+    static final byte OPEN = 6;
+    static final byte OPEN_FILE = 7;
+
+    // Bytes before the type: payload length and CRC32.
+    private static final int HEADER_SIZE = 8;
+
+    // Ints per Drawable in an ADD or OPEN payload: kind, four endpoints,
+    //      colour, thickness and footprint.
+    private static final int SHAPE_INTS = 8;
+
+    // Pending bytes that wake the writer before the sync delay is over.
+    private static final int BATCH_BYTES = 1 << 20;
+
+    // Capacity of the encoding buffer, given back after a bigger batch.
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    // Bytes read at once when computing the CRC32 of a scene file.
+    private static final int CHECKSUM_CHUNK = 64 * 1024;
+
+    // Added to the name of a journal that cannot be replayed.
+    private static final String UNRECOVERABLE_SUFFIX = ".unrecoverable";
+
+    /**
+     * Thrown by read when an OPEN_FILE record refers to a scene file that
+     * is gone or changed since it was journaled.
+     */
+    private static final class StaleFileException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        private StaleFileException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * A record waiting to be encoded by the writer thread.
+     */
+    private static final class Record {
+
+        private final byte type;
+        private final List<Drawable> shapes;
+        private final File file;
+        private final long length;
+        private final long modified;
+
+        private Record(byte type, List<Drawable> shapes, File file,
+                long length, long modified) {
+            this.type = type;
+            this.shapes = shapes;
+            this.file = file;
+            this.length = length;
+            this.modified = modified;
+        }
+    }
+
+    /**
+     * Object variables declarations
+     * <ul>
+     * <li>channel - the journal file, open for appending.</li>
+     * <li>syncDelay - the most milliseconds a record waits to be
+     * synced.</li>
+     * <li>lock - guards pending, the flags and the counters.</li>
+     * <li>pending - records not handed to the writer yet.</li>
+     * <li>pendingBytes - about the bytes the pending records take once
+     * encoded.</li>
+     * <li>spare - the list the writer hands back after writing it.</li>
+     * <li>restart - set when the file must be emptied before pending is
+     * written.</li>
+     * <li>hurry - set when sync waits, so the batch is written without
+     * waiting for more records.</li>
+     * <li>closed - set once no more records are accepted.</li>
+     * <li>appended, synced - records appended, and records on the disk.</li>
+     * <li>written - bytes written since the journal was opened.</li>
+     * <li>syncs - number of batches synced.</li>
+     * <li>failure - the error that stopped the writer, null if none.</li>
+     * <li>recoveryError - why the journal of the last session could not
+     * be replayed, null if it was.</li>
+     * <li>buffer - the records of a batch once encoded, used by the
+     * writer only.</li>
+     * <li>crc - computes the CRC32 of each record, used by the writer
+     * only.</li>
+     * <li>thread - the writer thread.</li>
+     * </ul>
+     */
+    private final FileChannel channel;
+    private final long syncDelay;
+    private final Object lock;
+    private List<Record> pending;
+    private long pendingBytes;
+    private List<Record> spare;
+    private boolean restart;
+    private boolean hurry;
+    private boolean closed;
+    private long appended;
+    private long synced;
+    private long written;
+    private long syncs;
+    private volatile IOException failure;
+    private IOException recoveryError;
+    private ByteBuffer buffer;
+    private final CRC32 crc;
+    private final Thread thread;
+
+    /**
+     * Class constructor, use open instead.
+     *
+     * @param channel the journal file
+     * @param syncDelay the most milliseconds a record waits to be synced
+     */
+    private SceneJournal(FileChannel channel, long syncDelay) {
+        this.channel = channel;
+        this.syncDelay = syncDelay;
+        this.lock = new Object();
+        this.pending = new ArrayList<>();
+        this.spare = new ArrayList<>();
+        this.buffer = newBuffer(BUFFER_BYTES);
+        this.crc = new CRC32();
+        this.thread = new Thread(this, "JPainter Journal");
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Opens a journal file, replays it into a SceneModel and records every
+     * change of the SceneModel from then on. The file is created if it
+     * does not exist. A journal that refers to a scene file changed since
+     * is not replayed; it is renamed with an .unrecoverable suffix and an
+     * empty one is started, see getRecoveryError. The journal is closed,
+     * and its last records synced, when the JVM exits normally.
+     *
+     * @param file the journal file
+     * @param scene the SceneModel, empty
+     * @param syncDelay the most milliseconds a record waits to be synced
+     * @return the journal, attached to the scene
+     * @throws IOException if the file cannot be opened
+     */
+    public static SceneJournal open(File file, SceneModel scene,
+            long syncDelay) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            Files.createDirectories(parent.toPath());
+        }
+
+        FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        StaleFileException stale = null;
+        try {
+            long end = replay(channel, scene);
+            channel.truncate(end);
+            channel.position(end);
+        } catch (StaleFileException e) {
+            // Kept for the user, the drawing is not lost with it yet.
+            channel.close();
+            stale = e;
+            scene.reset();
+            Files.move(file.toPath(), new File(file.getPath()
+                    + UNRECOVERABLE_SUFFIX).toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+            channel = FileChannel.open(file.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+
+        final SceneJournal journal = new SceneJournal(channel, syncDelay);
+        journal.recoveryError = stale;
+        journal.thread.start();
+        scene.setJournal(journal);
+
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                journal.close();
+            }
+        }, "JPainter Journal Close"));
+        return journal;
+    }
+
+    /**
+     * Records Drawables added on top of the scene, in one step of the
+     * history.
+     *
+     * @param shapes the Drawables, bottom first, must not change
+     * afterwards
+     */
+    void recordAdd(List<Drawable> shapes) {
+        this.append(new Record(ADD, shapes, null, 0, 0), false);
+    }
+
+    /**
+     * Records an undo.
+     */
+    void recordUndo() {
+        this.append(new Record(UNDO, Collections.<Drawable>emptyList(),
+                null, 0, 0), false);
+    }
+
+    /**
+     * Records a redo.
+     */
+    void recordRedo() {
+        this.append(new Record(REDO, Collections.<Drawable>emptyList(),
+                null, 0, 0), false);
+    }
+
+    /**
+     * Records a clear.
+     */
+    void recordClear() {
+        this.append(new Record(CLEAR, Collections.<Drawable>emptyList(),
+                null, 0, 0), false);
+    }
+
+    /**
+     * Records a new drawing, emptying the journal.
+     */
+    void recordNew() {
+        this.append(new Record(NEW, Collections.<Drawable>emptyList(),
+                null, 0, 0), true);
+    }
+
+    /**
+     * Records an opened or saved drawing, emptying the journal first. Only
+     * the file is kept here; the writer thread checks that it is unchanged
+     * and journals a reference to it, or the Drawables if it changed.
+     *
+     * @param file the scene file the drawing was read from or written to,
+     * null if none
+     * @param length the length of the file when it was read or written
+     * @param modified the last modified time of the file when it was read
+     * or written
+     * @param shapes the Drawables of the drawing, bottom first, must not
+     * change afterwards
+     */
+    void recordOpen(File file, long length, long modified,
+            List<Drawable> shapes) {
+        this.append(new Record(OPEN, shapes, file, length, modified), true);
+    }
+
+    /**
+     * Waits until every record appended so far is synced to the disk.
+     *
+     * @throws IOException if the writer failed
+     */
+    public void sync() throws IOException {
+        synchronized (this.lock) {
+            long target = this.appended;
+            this.hurry = true;
+            this.lock.notifyAll();
+            try {
+                while (this.synced < target && this.failure == null
+                        && this.thread.isAlive()) {
+                    this.lock.wait(this.syncDelay);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (this.failure != null) {
+            throw this.failure;
+        }
+    }
+
+    /**
+     * Syncs the pending records, stops the writer and closes the file.
+     * Records appended later are dropped.
+     */
+    public void close() {
+        synchronized (this.lock) {
+            this.closed = true;
+            this.lock.notifyAll();
+        }
+        try {
+            this.thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            this.channel.close();
+        } catch (IOException e) {
+            this.failure = e;
+        }
+    }
+
+    /**
+     * Returns why the journal of the last session could not be replayed:
+     * it refers to a scene file that is gone or changed since. The scene
+     * was left empty and the journal was renamed with an .unrecoverable
+     * suffix.
+     *
+     * @return the error, null if the journal was replayed
+     */
+    public IOException getRecoveryError() {
+        return this.recoveryError;
+    }
+
+    /**
+     * Returns the bytes written to the journal since it was opened.
+     *
+     * @return bytes written
+     */
+    public long getBytesWritten() {
+        synchronized (this.lock) {
+            return this.written;
+        }
+    }
+
+    /**
+     * Returns the number of batches synced to the disk.
+     *
+     * @return number of syncs
+     */
+    public long getSyncCount() {
+        synchronized (this.lock) {
+            return this.syncs;
+        }
+    }
+
+    /**
+     * Returns the error that stopped the writer. No more records are
+     * written after an error.
+     *
+     * @return the error, null if there was none
+     */
+    public IOException getFailure() {
+        return this.failure;
+    }
+
+    /**
+     * The writer loop, waits for records and writes them in batches.
+     */
+    @Override
+    public void run() {
+        while (true) {
+            List<Record> batch;
+            boolean empty;
+            long target;
+            synchronized (this.lock) {
+                try {
+                    while (this.pending.isEmpty() && !this.restart
+                            && !this.closed) {
+                        this.lock.wait();
+                    }
+
+                    // Gives more records the chance to join the batch.
+                    long deadline = System.currentTimeMillis()
+                            + this.syncDelay;
+                    long left = this.syncDelay;
+                    while (!this.closed && !this.hurry && left > 0
+                            && this.pendingBytes < BATCH_BYTES) {
+                        this.lock.wait(left);
+                        left = deadline - System.currentTimeMillis();
+                    }
+                } catch (InterruptedException e) {
+                    this.closed = true;
+                }
+
+                if (this.pending.isEmpty() && !this.restart) {
+                    if (this.closed) {
+                        return;
+                    }
+                    continue;
+                }
+
+                batch = this.pending;
+                this.pending = this.spare;
+                this.spare = null;
+                this.pendingBytes = 0;
+                empty = this.restart;
+                this.restart = false;
+                this.hurry = false;
+                target = this.appended;
+            }
+
+            try {
+                ByteBuffer out = this.buffer;
+                out.clear();
+                for (Record record : batch) {
+                    if (record.type == OPEN) {
+                        out = encodeOpen(out, this.crc, record);
+                    } else {
+                        out = encode(out, this.crc, record.type,
+                                record.shapes);
+                    }
+                }
+                // A big batch, e.g. a snapshot, does not keep its memory.
+                this.buffer = out.capacity() > BATCH_BYTES
+                        ? newBuffer(BUFFER_BYTES) : out;
+
+                out.flip();
+                int bytes = out.remaining();
+                if (empty) {
+                    this.channel.truncate(0);
+                    this.channel.position(0);
+                }
+                while (out.hasRemaining()) {
+                    this.channel.write(out);
+                }
+                this.channel.force(false);
+
+                synchronized (this.lock) {
+                    batch.clear();
+                    this.spare = batch;
+                    this.synced = target;
+                    this.written += bytes;
+                    this.syncs++;
+                    this.lock.notifyAll();
+                }
+            } catch (IOException e) {
+                synchronized (this.lock) {
+                    this.failure = e;
+                    this.closed = true;
+                    this.lock.notifyAll();
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Queues a record for the writer and wakes it.
+     *
+     * @param record the record
+     * @param startOver true to empty the journal before the record
+     */
+    private void append(Record record, boolean startOver) {
+        synchronized (this.lock) {
+            if (this.closed) {
+                return;
+            }
+            if (startOver) {
+                this.pending.clear();
+                this.pendingBytes = 0;
+                this.restart = true;
+            }
+
+            this.pending.add(record);
+            this.pendingBytes += HEADER_SIZE + 1
+                    + 4L * SHAPE_INTS * record.shapes.size();
+            this.appended++;
+            this.lock.notifyAll();
+        }
+    }
+
+    /**
+     * Encodes the record of an opened or saved drawing: a reference to
+     * the file if it is unchanged since it was read or written, the
+     * Drawables otherwise.
+     *
+     * @param buffer the buffer
+     * @param crc computes the CRC32 of the record
+     * @param open the record
+     * @return the buffer, or a bigger copy if it was too small
+     */
+    private static ByteBuffer encodeOpen(ByteBuffer buffer, CRC32 crc,
+            Record open) {
+        if (open.file != null) {
+            try {
+                long value = checksum(open.file, open.length, open.modified);
+                if (value >= 0) {
+                    byte[] path = open.file.getAbsolutePath()
+                            .getBytes(StandardCharsets.UTF_8);
+                    int start = buffer.position();
+                    buffer = ensureRoom(buffer, HEADER_SIZE + 13
+                            + path.length);
+                    buffer.position(start + HEADER_SIZE);
+                    buffer.put(OPEN_FILE);
+                    buffer.putLong(open.length);
+                    buffer.putInt((int) value);
+                    buffer.put(path);
+                    seal(buffer, crc, start);
+                    return buffer;
+                }
+            } catch (IOException e) {
+                // Not readable any more, journaled as a snapshot.
+            }
+        }
+
+        return encode(buffer, crc, OPEN, open.shapes);
+    }
+
+    /**
+     * Computes the CRC32 of a scene file, if its length and last modified
+     * time are still the expected ones before and after.
+     *
+     * @param file the scene file
+     * @param length the expected length
+     * @param modified the expected last modified time
+     * @return the CRC32, -1 if the file changed
+     * @throws IOException if the file cannot be read
+     */
+    private static long checksum(File file, long length, long modified)
+            throws IOException {
+        if (file.length() != length || file.lastModified() != modified) {
+            return -1;
+        }
+
+        CRC32 check = new CRC32();
+        byte[] chunk = new byte[CHECKSUM_CHUNK];
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            int read;
+            while ((read = in.read(chunk)) > 0) {
+                check.update(chunk, 0, read);
+            }
+        }
+
+        if (file.length() != length || file.lastModified() != modified) {
+            return -1;
+        }
+        return check.getValue();
+    }
+
+    /**
+     * Writes a record at the end of a buffer.
+     *
+     * @param buffer the buffer
+     * @param crc computes the CRC32 of the record
+     * @param type the type of the record
+     * @param shapes the Drawables of the record
+     * @return the buffer, or a bigger copy if it was too small
+     */
+    private static ByteBuffer encode(ByteBuffer buffer, CRC32 crc,
+            byte type, List<Drawable> shapes) {
+        boolean withShapes = type == ADD || type == OPEN;
+        int start = buffer.position();
+        int size = withShapes ? 4 + 4 * SHAPE_INTS * shapes.size() : 0;
+        buffer = ensureRoom(buffer, HEADER_SIZE + 1 + size);
+
+        buffer.position(start + HEADER_SIZE);
+        buffer.put(type);
+        if (withShapes) {
+            buffer.putInt(shapes.size());
+            for (Drawable shape : shapes) {
+                byte kind = CompactSceneStore.kindOf(shape);
+                buffer.putInt(kind);
+                buffer.putInt(shape.getXi());
+                buffer.putInt(shape.getYi());
+                buffer.putInt(shape.getXo());
+                buffer.putInt(shape.getYo());
+
+                if (kind == CompactSceneStore.IMAGE) {
+                    // Images carry their pixels after the Drawable.
+                    BufferedImage image = SceneFile.toBufferedImage(
+                            ((DrawableImage) shape).getImage());
+                    int width = image.getWidth();
+                    int height = image.getHeight();
+                    buffer.putInt(width);
+                    buffer.putInt(height);
+                    buffer.putInt(0);
+
+                    int[] pixels = image.getRGB(0, 0, width, height, null,
+                            0, width);
+                    buffer = ensureRoom(buffer, 4 * pixels.length
+                            + 4 * SHAPE_INTS * shapes.size());
+                    for (int pixel : pixels) {
+                        buffer.putInt(pixel);
+                    }
+                } else {
+                    buffer.putInt(shape.getColor().getRGB());
+                    buffer.putInt(shape.getThick());
+                    buffer.putInt(shape.getFootprint() ? 1 : 0);
+                }
+            }
+        }
+
+        seal(buffer, crc, start);
+        return buffer;
+    }
+
+    /**
+     * Fills in the payload length and the CRC32 of the record ending at
+     * the position of a buffer.
+     *
+     * @param buffer the buffer
+     * @param crc computes the CRC32
+     * @param start where the record starts
+     */
+    private static void seal(ByteBuffer buffer, CRC32 crc, int start) {
+        int end = buffer.position();
+        crc.reset();
+        crc.update(buffer.array(), start + HEADER_SIZE,
+                end - start - HEADER_SIZE);
+        buffer.putInt(start, end - start - HEADER_SIZE - 1);
+        buffer.putInt(start + 4, (int) crc.getValue());
+    }
+
+    /**
+     * Grows a buffer, if it has less room left than needed.
+     *
+     * @param buffer the buffer
+     * @param needed bytes about to be put
+     * @return the buffer, or a bigger copy of it
+     */
+    private static ByteBuffer ensureRoom(ByteBuffer buffer, int needed) {
+        if (buffer.remaining() < needed) {
+            int capacity = Math.max(2 * buffer.capacity(),
+                    buffer.position() + needed);
+            ByteBuffer bigger = newBuffer(capacity);
+            buffer.flip();
+            bigger.put(buffer);
+            return bigger;
+        }
+        return buffer;
+    }
+
+    /**
+     * Receives the records of a journal as it is read.
+     */
+    interface Handler {
+
+        /**
+         * Called for every valid record, in order.
+         *
+         * @param type the type of the record, ADD to OPEN; a reference
+         * to a scene file comes as an OPEN with the Drawables of the file
+         * @param shapes the Drawables of an ADD or OPEN record, bottom
+         * first, empty for the other types
+         */
+        void apply(byte type, List<Drawable> shapes);
+    }
+
+    /**
+     * Reads the records of a journal file, up to the first one that is cut
+     * short or not valid.
+     *
+     * @param file the journal file
+     * @param handler receives the records
+     * @throws IOException if the file cannot be read, or refers to a
+     * scene file that changed since
+     */
+    static void read(File file, Handler handler) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.READ)) {
+            read(channel, handler);
+        }
+    }
+
+    /**
+     * Reads the records of a journal file, up to the first one that is cut
+     * short or not valid.
+     *
+     * @param channel the journal file
+     * @param handler receives the records
+     * @return the end of the last valid record
+     * @throws IOException if the file cannot be read, or refers to a
+     * scene file that changed since
+     */
+    private static long read(FileChannel channel, Handler handler)
+            throws IOException {
+        long length = channel.size();
+        ByteBuffer header = newBuffer(HEADER_SIZE);
+        CRC32 check = new CRC32();
+        long position = 0;
+
+        while (position + HEADER_SIZE + 1 <= length) {
+            header.clear();
+            readFully(channel, header, position);
+            int size = header.getInt(0);
+            if (size < 0 || position + HEADER_SIZE + 1 + size > length) {
+                break;
+            }
+
+            ByteBuffer record = newBuffer(1 + size);
+            readFully(channel, record, position + HEADER_SIZE);
+            check.reset();
+            check.update(record.array(), 0, 1 + size);
+            if ((int) check.getValue() != header.getInt(4)) {
+                break;
+            }
+
+            record.flip();
+            byte type = record.get();
+            List<Drawable> shapes = Collections.emptyList();
+            if (type == ADD || type == OPEN) {
+                shapes = decode(record);
+                if (shapes == null) {
+                    break;
+                }
+            } else if (type == OPEN_FILE) {
+                shapes = openFile(record);
+                if (shapes == null) {
+                    break;
+                }
+                type = OPEN;
+            } else if (type < ADD || type > OPEN) {
+                break;
+            }
+
+            handler.apply(type, shapes);
+            position += HEADER_SIZE + 1 + size;
+        }
+        return position;
+    }
+
+    /**
+     * Replays the records of a journal file into a SceneModel.
+     *
+     * @param channel the journal file
+     * @param scene the SceneModel
+     * @return the end of the last valid record
+     * @throws IOException if the file cannot be read
+     */
+    private static long replay(FileChannel channel, final SceneModel scene)
+            throws IOException {
+        // Drawn once at the end rather than record by record.
+        boolean retained = scene.isRasterRetained();
+        scene.setRasterRetained(false);
+        try {
+            return read(channel, new Handler() {
+                @Override
+                public void apply(byte type, List<Drawable> shapes) {
+                    switch (type) {
+                        case ADD:
+                            scene.addShapes(shapes);
+                            break;
+                        case OPEN:
+                            CompactSceneStore store
+                                    = new CompactSceneStore(shapes.size());
+                            for (Drawable shape : shapes) {
+                                store.add(shape);
+                            }
+                            scene.open(store);
+                            break;
+                        case UNDO:
+                            scene.undo();
+                            break;
+                        case REDO:
+                            scene.redo();
+                            break;
+                        case CLEAR:
+                            scene.clear();
+                            break;
+                        default:
+                            scene.reset();
+                            break;
+                    }
+                }
+            });
+        } finally {
+            scene.setRasterRetained(retained);
+        }
+    }
+
+    /**
+     * Reads the scene file an OPEN_FILE payload refers to.
+     *
+     * @param record the payload
+     * @return the Drawables of the file, null if the payload is not valid
+     * @throws StaleFileException if the file is gone or changed since it
+     * was journaled
+     */
+    private static List<Drawable> openFile(ByteBuffer record)
+            throws StaleFileException {
+        if (record.remaining() < 13) {
+            return null;
+        }
+        long length = record.getLong();
+        int value = record.getInt();
+        byte[] path = new byte[record.remaining()];
+        record.get(path);
+        File file = new File(new String(path, StandardCharsets.UTF_8));
+
+        try {
+            long modified = file.lastModified();
+            if (checksum(file, length, modified) == (value & 0xFFFFFFFFL)) {
+                CompactSceneStore store = SceneFile.read(file);
+                List<Drawable> shapes = new ArrayList<>(store.size());
+                for (int i = 0; i < store.size(); i++) {
+                    shapes.add(store.get(i));
+                }
+                return shapes;
+            }
+        } catch (IOException e) {
+            // Gone or not readable, as stale as a changed file.
+        }
+        throw new StaleFileException("The drawing of the last session"
+                + " refers to " + file + ", which was changed or removed"
+                + " since");
+    }
+
+    /**
+     * Reads the Drawables of an ADD or OPEN payload.
+     *
+     * @param record the payload
+     * @return the Drawables, null if the payload is not valid
+     */
+    private static List<Drawable> decode(ByteBuffer record) {
+        if (record.remaining() < 4) {
+            return null;
+        }
+        int count = record.getInt();
+        if (count < 0 || count > record.remaining() / (4 * SHAPE_INTS)) {
+            return null;
+        }
+
+        CompactSceneStore store = new CompactSceneStore(count);
+        StyleTable table = StyleTable.shared();
+        for (int i = 0; i < count; i++) {
+            if (record.remaining() < 4 * SHAPE_INTS) {
+                return null;
+            }
+            int kind = record.getInt();
+            int xi = record.getInt();
+            int yi = record.getInt();
+            int xo = record.getInt();
+            int yo = record.getInt();
+            int a = record.getInt();
+            int b = record.getInt();
+            int c = record.getInt();
+
+            if (kind == CompactSceneStore.IMAGE) {
+                if (a <= 0 || b <= 0 || (long) a * b
+                        > record.remaining() / 4) {
+                    return null;
+                }
+                BufferedImage image = new BufferedImage(a, b,
+                        BufferedImage.TYPE_INT_ARGB);
+                int[] pixels = new int[a * b];
+                record.asIntBuffer().get(pixels);
+                record.position(record.position() + 4 * pixels.length);
+                image.setRGB(0, 0, a, b, pixels, 0, a);
+                store.add(new DrawableImage(xi, yi, xo, yo, 1, Color.BLACK,
+                        false, image));
+            } else if (kind >= CompactSceneStore.LINE
+                    && kind <= CompactSceneStore.ARC && b > 0) {
+                store.add((byte) kind, xi, yi, xo, yo,
+                        table.intern(new Color(a, true), b, c != 0));
+            } else {
+                return null;
+            }
+        }
+
+        List<Drawable> shapes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            shapes.add(store.get(i));
+        }
+        return shapes;
+    }
+
+    /**
+     * Fills a buffer from a position of a file.
+     *
+     * @param channel the file
+     * @param buffer the buffer to fill
+     * @param position where to read from
+     * @throws IOException if the file cannot be read
+     */
+    private static void readFully(FileChannel channel, ByteBuffer buffer,
+            long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of journal");
+            }
+        }
+    }
+
+    /**
+     * Creates a little-endian heap buffer.
+     *
+     * @param capacity size in bytes
+     * @return the buffer
+     */
+    private static ByteBuffer newBuffer(int capacity) {
+        return ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
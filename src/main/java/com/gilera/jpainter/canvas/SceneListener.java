@@ -0,0 +1,27 @@
+package com.gilera.jpainter.canvas;
+
+
+/**
+ * File: SceneListener.java
+ *
+ * Description: Notified whenever the Drawables of a SceneModel change.
+ */
+import java.awt.Rectangle;
+
+/**
+ * SceneListener interface
+ *
+ * Purpose: Lets a view over a SceneModel, such as the DrawCanvas, repaint
+ * what changed. Called on the thread that changed the scene.
+ *
+ * @author Ryan Gilera <jalapaomaji-github@yahoo.com>
+ */
+public interface SceneListener {
+
+    /**
+     * Called after the Drawables of the scene changed.
+     *
+     * @param area the area that changed, null for the whole scene
+     */
+    void sceneChanged(Rectangle area);
+}
@@ -0,0 +1,801 @@
+package com.gilera.jpainter.canvas;
+
+
+/**
+ * File: SceneModel.java
+ *
+ * Description: The Drawables, history and raster of a drawing, without any
+ * Swing component.
+ */
+import com.gilera.jpainter.data.GlobalSettingsManager;
+import com.gilera.jpainter.drawables.CompactSceneStore;
+import com.gilera.jpainter.drawables.Drawable;
+import com.gilera.jpainter.raster.IntRasterTarget;
+import java.awt.Color;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * SceneModel class
+ *
+ * Purpose: Owns everything a drawing is made of: the Drawables, the
+ * history of commands that can be undone, and the retained raster of the
+ * finished Drawables with its undo checkpoints and deltas. It needs no
+ * display, so it can be used by batch jobs and benchmarks with
+ * java.awt.headless=true. The DrawCanvas is a view over a SceneModel, it
+ * is told what to repaint through a SceneListener.
+ * <p>
+ * A SceneModel is not thread-safe, it is changed by one thread (the event
+ * thread for the DrawCanvas). Snapshots of its Drawables can be read from
+ * any thread, see getSnapshot.
+ *
+ * @author Ryan Gilera <jalapaomaji-github@yahoo.com>
+ */
+public class SceneModel {
+
+    /**
+     * Object variables declarations
+     * <ul>
+     * <li>width, height - size of the scene in pixels.</li>
+     * <li>background - colour of the scene under the Drawables.</li>
+     * <li>listOfDrawables - list of Drawable objects of the scene.
+     * A PersistentVector, every change creates a new version.</li>
+     * <li>finishedShapes - the version of the listOfDrawables without the
+     * activeShape, published for any other reader.</li>
+     * <li>history - the commands applied to the listOfDrawables, that can be
+     * undone and redone</li>
+     * <li>committedImage - a retained raster holding every finished
+     * Drawable.</li>
+     * <li>committedTarget - PixelTarget writing directly into the pixels of
+     * committedImage.</li>
+     * <li>activeShape - the Drawable currently being dragged or waiting for
+     * its second endpoint, null if there is none.</li>
+     * <li>committedDirty - flag for rebuilding the committedImage from
+     * listOfDrawables on the next render (after clear or new).</li>
+     * <li>rasterRetained - flag for keeping the committedImage up to date
+     * with every change, off while another renderer draws the scene.</li>
+     * <li>listener - told about every change, null if none.</li>
+     * <li>sceneVersion - changes whenever finished Drawables are removed or
+     * reordered, telling a renderer to draw all of them again.</li>
+     * <li>index - a SpatialIndex of the listOfDrawables, kept up to date
+     * with every change, for finding the Drawables within an area.</li>
+     * <li>checkpoints - copies of the committedImage, restored by undo so
+     * only the Drawables after the copy are drawn again.</li>
+     * <li>checkpointInterval - the finished Drawables drawn between two
+     * checkpoints.</li>
+     * <li>checkpointEpoch - changes whenever the listOfDrawables changes
+     * other than on top, invalidating every checkpoint.</li>
+     * <li>checkpointCost, checkpointCommits - pixels and Drawables added
+     * to the committedImage since the last checkpoint.</li>
+     * <li>deltas - the compressed pixels under the latest Drawables drawn
+     * onto the committedImage, written back when they are undone.</li>
+     * <li>journal - records every change, null if none.</li>
+     * <li>journaledUndos, journaledRedos - the undos and redos a replay of
+     * the journal can make, its history starts empty whenever the journal
+     * starts over.</li>
+     * </ul>
+     */
+    private final int width;
+    private final int height;
+    private final Color background;
+    private PersistentVector<Drawable> listOfDrawables;
+    private volatile PersistentVector<Drawable> finishedShapes;
+    private CommandHistory history;
+    private final BufferedImage committedImage;
+    private final IntRasterTarget committedTarget;
+    private Drawable activeShape;
+    private boolean committedDirty;
+    private boolean rasterRetained;
+    private SceneListener listener;
+    private int sceneVersion;
+    private SpatialIndex index;
+    private final RasterCheckpoints checkpoints;
+    private final int checkpointInterval;
+    private int checkpointEpoch;
+    private long checkpointCost;
+    private int checkpointCommits;
+    private final RasterDeltaHistory deltas;
+    private SceneJournal journal;
+    private int journaledUndos;
+    private int journaledRedos;
+
+    /**
+     * Class constructor, creates an empty scene on a white background.
+     *
+     * @param width width of the scene in pixels
+     * @param height height of the scene in pixels
+     */
+    public SceneModel(int width, int height) {
+        this(width, height, GlobalSettingsManager.CHECKPOINT_INTERVAL,
+                GlobalSettingsManager.CHECKPOINT_MEMORY,
+                GlobalSettingsManager.HISTORY_MEMORY);
+    }
+
+    /**
+     * Class constructor, creates an empty scene on a white background with
+     * its own undo budgets instead of the ones of GlobalSettingsManager.
+     *
+     * @param width width of the scene in pixels
+     * @param height height of the scene in pixels
+     * @param checkpointInterval the finished Drawables drawn between two
+     * checkpoints
+     * @param checkpointMemory the most bytes the checkpoints may take
+     * @param historyMemory the most bytes the deltas may take
+     */
+    SceneModel(int width, int height, int checkpointInterval,
+            long checkpointMemory, long historyMemory) {
+        this.width = width;
+        this.height = height;
+        this.background = Color.WHITE;
+        this.listOfDrawables = PersistentVector.empty();
+        this.finishedShapes = this.listOfDrawables;
+        this.history = new CommandHistory();
+        this.committedImage = new BufferedImage(width, height,
+                BufferedImage.TYPE_INT_ARGB);
+        this.committedTarget = new IntRasterTarget(this.committedImage);
+        this.activeShape = null;
+        this.committedDirty = true;
+        this.rasterRetained = true;
+        this.sceneVersion = 0;
+        this.index = new SpatialIndex(width, height);
+        this.checkpoints = new RasterCheckpoints(checkpointMemory);
+        this.checkpointInterval = checkpointInterval;
+        this.checkpointEpoch = 0;
+        this.deltas = new RasterDeltaHistory(historyMemory);
+    }
+
+    /**
+     * Sets the listener told about every change.
+     *
+     * @param aListener the listener, null for none
+     */
+    public void setListener(SceneListener aListener) {
+        this.listener = aListener;
+    }
+
+    /**
+     * Returns the width of the scene.
+     *
+     * @return width in pixels
+     */
+    public int getWidth() {
+        return this.width;
+    }
+
+    /**
+     * Returns the height of the scene.
+     *
+     * @return height in pixels
+     */
+    public int getHeight() {
+        return this.height;
+    }
+
+    /**
+     * Turns keeping the retained raster up to date on or off. It is turned
+     * off while another renderer (see BackgroundRenderer) draws the scene,
+     * and rebuilt on the next render once it is turned on again.
+     *
+     * @param on true to keep the raster up to date
+     */
+    public void setRasterRetained(boolean on) {
+        if (on == this.rasterRetained) {
+            return;
+        }
+
+        this.rasterRetained = on;
+        this.deltas.clear();
+        if (on) {
+            this.committedDirty = true;
+        }
+    }
+
+    /**
+     * Returns whether the retained raster is kept up to date.
+     *
+     * @return true if the raster is retained
+     */
+    public boolean isRasterRetained() {
+        return this.rasterRetained;
+    }
+
+    /**
+     * Sets the journal recording every change, see SceneJournal.open.
+     *
+     * @param aJournal the journal, null for none
+     */
+    void setJournal(SceneJournal aJournal) {
+        this.journal = aJournal;
+        this.journaledUndos = 0;
+        this.journaledRedos = 0;
+    }
+
+    /**
+     * Returns the version of the finished Drawables, which changes
+     * whenever they are removed or reordered. Used by the
+     * BackgroundRenderer.
+     *
+     * @return the scene version
+     */
+    int getVersion() {
+        return this.sceneVersion;
+    }
+
+    /**
+     * Returns the Drawable currently being drawn, which is not part of
+     * the finished Drawables yet.
+     *
+     * @return the active Drawable, null if none
+     */
+    public Drawable getActiveShape() {
+        return this.activeShape;
+    }
+
+    /**
+     * Tells the listener about a change.
+     *
+     * @param area the area that changed, null for the whole scene.
+     */
+    private void changed(Rectangle area) {
+        if (this.listener != null) {
+            this.listener.sceneChanged(area);
+        }
+    }
+
+    /**
+     * Publishes the current version of the listOfDrawables without the
+     * activeShape, as the finishedShapes. The activeShape is always on top
+     * while it exists, since nothing else is added before it is committed.
+     */
+    private void publishScene() {
+        PersistentVector<Drawable> finished = this.listOfDrawables;
+        if (this.activeShape != null && !finished.isEmpty()
+                && finished.getLast() == this.activeShape) {
+            finished = finished.removeLast();
+        }
+        this.finishedShapes = finished;
+    }
+
+    /**
+     * Returns a snapshot of the finished Drawables, bottom first. Can be
+     * called from any thread without locking: the snapshot is never
+     * modified, it stays the same while the scene keeps changing. The
+     * Drawable being dragged is not part of it.
+     *
+     * @return the finished Drawables in z-order
+     */
+    public PersistentVector<Drawable> getSnapshot() {
+        return this.finishedShapes;
+    }
+
+    /**
+     * Undoes the latest command of the history: a single Drawable, a batch
+     * of Drawables or a clear. Only the area that changed is rebuilt.
+     *
+     * @return true if a command was undone
+     */
+    public boolean undo() {
+        // A Drawable still waiting for its second click is what the user
+        //      sees as the latest change, so it is all that is undone.
+        if (this.cancelShape()) {
+            return true;
+        }
+
+        boolean undone = this.history.undo(this);
+        if (undone && this.journal != null) {
+            if (this.journaledUndos > 0) {
+                this.journaledUndos--;
+                this.journaledRedos++;
+                this.journal.recordUndo();
+            } else {
+                // Undoes past the start of the journal, e.g. a save.
+                this.journalSnapshot();
+            }
+        }
+        return undone;
+    }
+
+    /**
+     * Redoes the latest undone command of the history.
+     *
+     * @return true if a command was redone
+     */
+    public boolean redo() {
+        this.cancelShape();
+
+        boolean redone = this.history.redo(this);
+        if (redone && this.journal != null) {
+            if (this.journaledRedos > 0) {
+                this.journaledRedos--;
+                this.journaledUndos++;
+                this.journal.recordRedo();
+            } else {
+                this.journalSnapshot();
+            }
+        }
+        return redone;
+    }
+
+    /**
+     * Adds Drawables on top of the scene. Used by AddCommand. Since they
+     * land on top of every other Drawable, they are simply drawn onto the
+     * committedImage. The activeShape is not drawn until it is committed.
+     *
+     * @param shapes the Drawables to add, bottom first
+     */
+    void appendShapes(Drawable[] shapes) {
+        Rectangle area = null;
+        for (Drawable shape : shapes) {
+            this.listOfDrawables = this.listOfDrawables.append(shape);
+            this.index.add(shape);
+
+            if (shape != this.activeShape) {
+                this.drawOnCommittedImage(shape);
+                this.noteCommitted(shape);
+                shape.releaseSpans();
+                area = area == null ? shape.getBounds()
+                        : area.union(shape.getBounds());
+            }
+        }
+        this.publishScene();
+
+        if (area != null) {
+            this.changed(area);
+        }
+    }
+
+    /**
+     * Removes Drawables from the top of the scene. Used by AddCommand.
+     * The area of every Drawable is restored from its delta, the nearest
+     * checkpoint or by drawing the Drawables under it again.
+     *
+     * @param count the number of Drawables to remove
+     */
+    void removeShapes(int count) {
+        Rectangle area = null;
+        for (int i = 0; i < count; i++) {
+            Drawable removed = this.listOfDrawables.getLast();
+            this.listOfDrawables = this.listOfDrawables.removeLast();
+            this.index.remove(removed);
+            this.checkpoints.discard(this.checkpointEpoch,
+                    this.listOfDrawables.size());
+
+            Rectangle bounds = removed.getBounds();
+            if (removed == this.activeShape) {
+                // Never drawn onto the committedImage.
+                this.activeShape = null;
+            } else if (!this.committedDirty && this.rasterRetained
+                    && this.deltas.undo(removed, this.committedTarget)
+                    == null) {
+                this.restoreCommittedImage(bounds);
+            }
+            area = area == null ? bounds : area.union(bounds);
+        }
+        this.publishScene();
+
+        this.sceneVersion++;
+        if (area != null) {
+            this.changed(area);
+        }
+    }
+
+    /**
+     * Returns the current version of the list of Drawables. Used by
+     * ClearCommand.
+     *
+     * @return the listOfDrawables
+     */
+    PersistentVector<Drawable> getScene() {
+        return this.listOfDrawables;
+    }
+
+    /**
+     * Returns the SpatialIndex of the listOfDrawables. Used by
+     * ClearCommand.
+     *
+     * @return the index
+     */
+    SpatialIndex getSceneIndex() {
+        return this.index;
+    }
+
+    /**
+     * Replaces every Drawable of the scene at once, without copying
+     * anything. Used by ClearCommand. The whole raster is rebuilt on the
+     * next render.
+     *
+     * @param shapes the new listOfDrawables, null for an empty one
+     * @param shapesIndex the SpatialIndex of shapes, null for an empty one
+     */
+    void replaceScene(PersistentVector<Drawable> shapes,
+            SpatialIndex shapesIndex) {
+        if (shapes == null) {
+            shapes = PersistentVector.empty();
+            shapesIndex = new SpatialIndex(this.width, this.height);
+        }
+
+        this.listOfDrawables = shapes;
+        this.index = shapesIndex;
+        this.activeShape = null;
+        this.publishScene();
+        this.committedDirty = true;
+        this.sceneVersion++;
+        this.discardRasterHistory();
+        this.changed(null);
+    }
+
+    /**
+     * Copies an area of the scene onto a target: the finished Drawables
+     * from the retained raster, which is rebuilt first if needed, and the
+     * active Drawable on top. While the raster is not retained, it is
+     * rebuilt on every call.
+     *
+     * @param target the target to draw on, the size of the scene
+     * @param clip the area to copy
+     */
+    public void render(IntRasterTarget target, Rectangle clip) {
+        // Replays the finished Drawables only when the retained raster
+        //      was invalidated by clear or new, or is not kept up to date.
+        if (this.committedDirty || !this.rasterRetained) {
+            this.rebuildCommittedImage(null);
+        }
+
+        target.setClip(clip);
+        target.copyFrom(this.committedTarget);
+
+        // Only the Drawable being dragged is drawn on every frame.
+        if (this.activeShape != null
+                && clip.intersects(this.activeShape.getBounds())) {
+            this.activeShape.drawShapeOnce(target);
+        }
+    }
+
+    /**
+     * Renders the whole scene into a new image.
+     *
+     * @return an image of the scene
+     */
+    public BufferedImage toImage() {
+        BufferedImage image = new BufferedImage(this.width, this.height,
+                BufferedImage.TYPE_INT_ARGB);
+        this.render(new IntRasterTarget(image),
+                new Rectangle(0, 0, this.width, this.height));
+        return image;
+    }
+
+    /**
+     * Clears an area of the committedImage and draws every finished
+     * Drawable from the listOfDrawables that overlaps it, in parallel.
+     *
+     * @param area The area to rebuild, null for the whole scene.
+     */
+    private void rebuildCommittedImage(Rectangle area) {
+        // Only the Drawables overlapping a partial area are looked up.
+        List<Drawable> shapes = this.listOfDrawables;
+        if (area == null) {
+            area = new Rectangle(0, 0, this.width, this.height);
+            this.committedDirty = false;
+        } else {
+            shapes = this.index.query(area);
+        }
+
+        // Drawn tile by tile on all cores, see TiledRenderer.
+        TiledRenderer.render(this.committedImage, shapes, this.activeShape,
+                area, this.background);
+
+        // The span lists were shared by the tiles, the raster keeps the
+        //      pixels now.
+        for (Drawable aShape : shapes) {
+            aShape.releaseSpans();
+        }
+    }
+
+    /**
+     * Rebuilds an area of the committedImage after the top Drawable was
+     * removed. The nearest checkpoint is copied back and only the
+     * Drawables after it are drawn again. Without a checkpoint, every
+     * Drawable under the area is drawn (see rebuildCommittedImage).
+     *
+     * @param area The area to rebuild.
+     */
+    private void restoreCommittedImage(Rectangle area) {
+        int size = this.listOfDrawables.size();
+        int count = this.checkpoints.find(this.checkpointEpoch, size);
+        if (count < 0) {
+            this.rebuildCommittedImage(area);
+            return;
+        }
+
+        this.committedTarget.setClip(area);
+        this.checkpoints.restore(this.checkpointEpoch, count,
+                this.committedTarget);
+        for (int i = count; i < size; i++) {
+            Drawable aShape = this.listOfDrawables.get(i);
+            if (aShape != this.activeShape
+                    && area.intersects(aShape.getBounds())) {
+                aShape.drawShape(this.committedTarget);
+                aShape.releaseSpans();
+            }
+        }
+    }
+
+    /**
+     * Counts a Drawable just drawn on top of the committedImage, and takes
+     * a checkpoint once enough were drawn since the last one. Checkpoints
+     * are only taken while the committedImage holds exactly the
+     * listOfDrawables.
+     *
+     * @param shape The Drawable drawn.
+     */
+    private void noteCommitted(Drawable shape) {
+        if (this.committedDirty || !this.rasterRetained
+                || this.activeShape != null) {
+            return;
+        }
+
+        this.checkpointCost += shape.getPixelCount();
+        this.checkpointCommits++;
+        if (this.checkpointCommits >= this.checkpointInterval
+                || this.checkpointCost
+                >= GlobalSettingsManager.CHECKPOINT_COST) {
+            this.checkpoints.take(this.checkpointEpoch,
+                    this.listOfDrawables.size(), this.committedTarget);
+            this.checkpointCost = 0;
+            this.checkpointCommits = 0;
+        }
+    }
+
+    /**
+     * Drops every delta and starts a new checkpoint epoch, dropping every
+     * checkpoint. Called once the committedImage can no longer be undone
+     * Drawable by Drawable.
+     */
+    private void discardRasterHistory() {
+        this.deltas.clear();
+        this.checkpointEpoch++;
+        this.checkpoints.discard(this.checkpointEpoch, 0);
+        this.checkpointCost = 0;
+        this.checkpointCommits = 0;
+    }
+
+    /**
+     * Draws a single Drawable on top of the committedImage. Skipped if the
+     * committedImage is going to be rebuilt anyway.
+     *
+     * @param shape The Drawable to add to the retained raster.
+     */
+    private void drawOnCommittedImage(Drawable shape) {
+        if (!this.committedDirty && this.rasterRetained) {
+            // Keeps the pixels it covers for undo.
+            this.deltas.record(shape, shape.getBounds().intersection(
+                    new Rectangle(0, 0, this.width, this.height)),
+                    this.committedTarget);
+            this.committedTarget.setClip(null);
+            shape.drawShape(this.committedTarget);
+        }
+    }
+
+    /**
+     * Adds a new Drawable on top of the scene. It becomes the active one,
+     * whose endpoints may still change, until commitShape is called.
+     *
+     * @param shape the Drawable to add
+     */
+    public void addShape(Drawable shape) {
+        // A previous Drawable that was never finalised is kept as is.
+        this.commitShape();
+
+        this.activeShape = shape;
+        this.history.execute(new AddCommand(shape), this);
+    }
+
+    /**
+     * Adds a batch of finished Drawables on top of the scene, undone and
+     * redone in one step.
+     *
+     * @param shapes the Drawables to add, bottom first
+     */
+    public void addShapes(List<Drawable> shapes) {
+        this.commitShape();
+
+        if (!shapes.isEmpty()) {
+            Drawable[] added = shapes.toArray(new Drawable[shapes.size()]);
+            this.history.execute(new AddCommand(added), this);
+            if (this.journal != null) {
+                // The copy, the caller may reuse its list.
+                this.journaledCommand();
+                this.journal.recordAdd(Arrays.asList(added));
+            }
+        }
+    }
+
+    /**
+     * Finalises the active Drawable, once both of its endpoints are known.
+     * It is drawn once onto the committedImage and no longer redrawn on
+     * every frame.
+     */
+    public void commitShape() {
+        if (this.activeShape != null) {
+            Drawable shape = this.activeShape;
+            this.activeShape = null;
+            this.publishScene();
+
+            this.drawOnCommittedImage(shape);
+            this.noteCommitted(shape);
+            shape.releaseSpans();
+
+            // Journaled once its endpoints are final.
+            if (this.journal != null) {
+                this.journaledCommand();
+                this.journal.recordAdd(Collections.singletonList(shape));
+            }
+        }
+    }
+
+    /**
+     * Drops the active Drawable as if it had never been added. A Drawable
+     * drawn with two clicks is active between the clicks, so undo, redo
+     * and clear in between cancel it rather than keep it half placed. It
+     * was never journaled, and it cannot be redone.
+     *
+     * @return true if a Drawable was cancelled
+     */
+    public boolean cancelShape() {
+        if (this.activeShape == null) {
+            return false;
+        }
+
+        // Its AddCommand is the latest, nothing is executed until it is
+        //      committed or cancelled.
+        this.history.discard(this);
+        return true;
+    }
+
+    /**
+     * Moves the active Drawable in the SpatialIndex, after its endpoints
+     * changed.
+     */
+    public void updateActiveShape() {
+        if (this.activeShape != null) {
+            this.index.update(this.activeShape);
+        }
+    }
+
+    /**
+     * Clears the scene as a single command, setting the listOfDrawables
+     * aside as it is, so it can be undone.
+     */
+    public void clear() {
+        this.cancelShape();
+        this.history.execute(new ClearCommand(), this);
+        if (this.journal != null) {
+            this.journaledCommand();
+            this.journal.recordClear();
+        }
+    }
+
+    /**
+     * Deletes all Drawables, together with the history of commands. The
+     * scene is emptied by a ClearCommand that is never recorded, so it
+     * cannot be undone.
+     */
+    public void reset() {
+        this.history = new CommandHistory();
+        new ClearCommand().redo(this);
+        if (this.journal != null) {
+            this.journaledUndos = 0;
+            this.journaledRedos = 0;
+            this.journal.recordNew();
+        }
+    }
+
+    /**
+     * Replaces the scene by the Drawables of a store. The history of
+     * commands is deleted.
+     *
+     * @param store the Drawables to show, bottom first
+     */
+    public void open(CompactSceneStore store) {
+        this.open(store, null, 0, 0);
+    }
+
+    /**
+     * Replaces the scene by the Drawables of a drawing read from a
+     * SceneFile. The history of commands is deleted. The journal only
+     * refers to the file, see SceneJournal.recordOpen.
+     *
+     * @param store the Drawables to show, bottom first
+     * @param source the file the store was read from, null if none
+     * @param length the length of the file before it was read
+     * @param modified the last modified time of the file before it was
+     * read
+     */
+    public void open(CompactSceneStore store, File source, long length,
+            long modified) {
+        PersistentVector<Drawable> shapes = PersistentVector.empty();
+        SpatialIndex shapesIndex = new SpatialIndex(this.width, this.height);
+        for (int i = 0; i < store.size(); i++) {
+            Drawable shape = store.get(i);
+            shapes = shapes.append(shape);
+            shapesIndex.add(shape);
+        }
+
+        this.history = new CommandHistory();
+        this.replaceScene(shapes, shapesIndex);
+        if (this.journal != null) {
+            this.journaledUndos = 0;
+            this.journaledRedos = 0;
+            this.journal.recordOpen(source, length, modified, shapes);
+        }
+    }
+
+    /**
+     * Tells the journal that the finished Drawables were just written to a
+     * SceneFile. The journal starts over from a reference to that file,
+     * like after an open, so it never refers to a file the drawing was
+     * saved over since. The history of commands is kept.
+     *
+     * @param file the file written
+     * @param length the length of the file after it was written
+     * @param modified the last modified time of the file after it was
+     * written
+     */
+    public void saved(File file, long length, long modified) {
+        if (this.journal != null) {
+            this.journaledUndos = 0;
+            this.journaledRedos = 0;
+            this.journal.recordOpen(file, length, modified,
+                    this.finishedShapes);
+        }
+    }
+
+    /**
+     * Counts a command just journaled, which a replay can undo and which
+     * drops whatever it could redo.
+     */
+    private void journaledCommand() {
+        this.journaledUndos++;
+        this.journaledRedos = 0;
+    }
+
+    /**
+     * Starts the journal over from a snapshot of the finished Drawables.
+     * Used when an undo or redo goes past the start of the journal, which
+     * a replay could not repeat.
+     */
+    private void journalSnapshot() {
+        this.journaledUndos = 0;
+        this.journaledRedos = 0;
+        this.journal.recordOpen(null, 0, 0, this.finishedShapes);
+    }
+
+    /**
+     * Copies the finished Drawables into a new store, to write them to a
+     * SceneFile.
+     *
+     * @return a store of the finished Drawables, bottom first
+     */
+    public CompactSceneStore toStore() {
+        PersistentVector<Drawable> shapes = this.finishedShapes;
+        CompactSceneStore store = new CompactSceneStore(shapes.size());
+        for (Drawable shape : shapes) {
+            store.add(shape);
+        }
+        return store;
+    }
+
+    /**
+     * Returns the memory taken by the undo history of the raster, the
+     * compressed deltas and the checkpoints, to watch on long sessions.
+     *
+     * @return memory used in bytes
+     */
+    public long getHistoryMemoryUsed() {
+        return this.deltas.getMemoryUsed()
+                + this.checkpoints.getMemoryUsed();
+    }
+}
@@ -0,0 +1,310 @@
+package com.gilera.jpainter.canvas;
+
+
+/**
+ * File: SpatialIndex.java
+ *
+ * Description: A uniform grid over the canvas for finding Drawables by area.
+ */
+import com.gilera.jpainter.drawables.Drawable;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * SpatialIndex class
+ *
+ * Purpose: Answers "which Drawables intersect this rectangle, in z-order"
+ * without scanning every Drawable. The canvas is divided into square
+ * cells, and every cell lists the Drawables whose bounds overlap it,
+ * sorted by the order they were added in. Bounds reaching past the
+ * canvas are clamped to the border cells. A query only visits the cells
+ * under the rectangle.
+ *
+ * @author Ryan Gilera <jalapaomaji-github@yahoo.com>
+ */
+public final class SpatialIndex {
+
+    // Width and height of a cell in pixels.
+    public static final int CELL_SIZE = 64;
+
+    // Sorts entries bottom first.
+    private static final Comparator<Entry> BY_ORDER
+            = new Comparator<Entry>() {
+                @Override
+                public int compare(Entry a, Entry b) {
+                    return Long.compare(a.order, b.order);
+                }
+            };
+
+    /**
+     * A Drawable in the index.
+     * <ul>
+     * <li>shape - the Drawable</li>
+     * <li>order - its position in z-order, higher is on top</li>
+     * <li>bounds - its bounds when it was last indexed</li>
+     * <li>column0, row0, column1, row1 - the cells it is listed in</li>
+     * <li>mark - the last query that has seen it, so it is reported once
+     * even if it spans several cells</li>
+     * </ul>
+     */
+    private static final class Entry {
+
+        private final Drawable shape;
+        private final long order;
+        private Rectangle bounds;
+        private int column0, row0, column1, row1;
+        private int mark;
+
+        private Entry(Drawable shape, long order) {
+            this.shape = shape;
+            this.order = order;
+        }
+    }
+
+    /**
+     * Object variables declarations
+     * <ul>
+     * <li>columns, rows - size of the grid in cells</li>
+     * <li>cells - the entries of every cell, sorted by order</li>
+     * <li>entries - the entry of every indexed Drawable</li>
+     * <li>nextOrder - the order given to the next Drawable added</li>
+     * <li>queryMark - increases with every query</li>
+     * </ul>
+     */
+    private final int columns;
+    private final int rows;
+    private final List<List<Entry>> cells;
+    private final Map<Drawable, Entry> entries;
+    private long nextOrder;
+    private int queryMark;
+
+    /**
+     * Class constructor, creates an empty index over a canvas.
+     *
+     * @param width width of the canvas
+     * @param height height of the canvas
+     */
+    public SpatialIndex(int width, int height) {
+        this.columns = Math.max(1, (width + CELL_SIZE - 1) / CELL_SIZE);
+        this.rows = Math.max(1, (height + CELL_SIZE - 1) / CELL_SIZE);
+        this.cells = new ArrayList<>(this.columns * this.rows);
+        for (int i = 0; i < this.columns * this.rows; i++) {
+            this.cells.add(new ArrayList<Entry>());
+        }
+        this.entries = new IdentityHashMap<>();
+        this.nextOrder = 0;
+        this.queryMark = 0;
+    }
+
+    /**
+     * Adds a Drawable on top of all the others. Adding a Drawable that is
+     * already indexed only updates its bounds.
+     *
+     * @param shape the Drawable to add
+     */
+    public void add(Drawable shape) {
+        if (this.entries.containsKey(shape)) {
+            this.update(shape);
+            return;
+        }
+
+        Entry entry = new Entry(shape, this.nextOrder++);
+        this.entries.put(shape, entry);
+        this.place(entry, shape.getBounds());
+    }
+
+    /**
+     * Removes a Drawable from the index, if it is indexed.
+     *
+     * @param shape the Drawable to remove
+     */
+    public void remove(Drawable shape) {
+        Entry entry = this.entries.remove(shape);
+        if (entry != null) {
+            this.unplace(entry);
+        }
+    }
+
+    /**
+     * Moves a Drawable to its current bounds, after its endpoints changed.
+     * It keeps its place in z-order. Does nothing if it is not indexed.
+     *
+     * @param shape the Drawable that changed
+     */
+    public void update(Drawable shape) {
+        Entry entry = this.entries.get(shape);
+        if (entry == null) {
+            return;
+        }
+
+        Rectangle bounds = shape.getBounds();
+        if (this.column(bounds.x) == entry.column0
+                && this.row(bounds.y) == entry.row0
+                && this.column(bounds.x + bounds.width - 1) == entry.column1
+                && this.row(bounds.y + bounds.height - 1) == entry.row1) {
+            // Still in the same cells, only the bounds changed.
+            entry.bounds = bounds;
+            return;
+        }
+
+        this.unplace(entry);
+        this.place(entry, bounds);
+    }
+
+    /**
+     * Removes every Drawable from the index.
+     */
+    public void clear() {
+        for (List<Entry> cell : this.cells) {
+            cell.clear();
+        }
+        this.entries.clear();
+    }
+
+    /**
+     * Returns the number of Drawables in the index.
+     *
+     * @return number of Drawables
+     */
+    public int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * Finds every Drawable whose bounds intersect an area.
+     *
+     * @param area the area to search
+     * @return the Drawables found, bottom first
+     */
+    public List<Drawable> query(Rectangle area) {
+        List<Drawable> found = new ArrayList<>();
+        if (area.isEmpty() || this.entries.isEmpty()) {
+            return found;
+        }
+
+        int mark = ++this.queryMark;
+        List<Entry> hits = new ArrayList<>();
+        int column0 = this.column(area.x);
+        int row0 = this.row(area.y);
+        int column1 = this.column(area.x + area.width - 1);
+        int row1 = this.row(area.y + area.height - 1);
+
+        for (int row = row0; row <= row1; row++) {
+            for (int column = column0; column <= column1; column++) {
+                for (Entry entry : this.cells.get(row * this.columns
+                        + column)) {
+                    if (entry.mark != mark) {
+                        entry.mark = mark;
+                        if (area.intersects(entry.bounds)) {
+                            hits.add(entry);
+                        }
+                    }
+                }
+            }
+        }
+
+        // Puts the hits of all cells back into z-order.
+        Collections.sort(hits, BY_ORDER);
+        for (Entry entry : hits) {
+            found.add(entry.shape);
+        }
+
+        return found;
+    }
+
+    /**
+     * Lists an entry in every cell its bounds overlap.
+     *
+     * @param entry the entry
+     * @param bounds its current bounds
+     */
+    private void place(Entry entry, Rectangle bounds) {
+        entry.bounds = bounds;
+        entry.column0 = this.column(bounds.x);
+        entry.row0 = this.row(bounds.y);
+        entry.column1 = this.column(bounds.x + bounds.width - 1);
+        entry.row1 = this.row(bounds.y + bounds.height - 1);
+
+        for (int row = entry.row0; row <= entry.row1; row++) {
+            for (int column = entry.column0; column <= entry.column1;
+                    column++) {
+                List<Entry> cell = this.cells.get(row * this.columns
+                        + column);
+                cell.add(-1 - this.search(cell, entry.order), entry);
+            }
+        }
+    }
+
+    /**
+     * Removes an entry from all of its cells.
+     *
+     * @param entry the entry
+     */
+    private void unplace(Entry entry) {
+        for (int row = entry.row0; row <= entry.row1; row++) {
+            for (int column = entry.column0; column <= entry.column1;
+                    column++) {
+                List<Entry> cell = this.cells.get(row * this.columns
+                        + column);
+                cell.remove(this.search(cell, entry.order));
+            }
+        }
+    }
+
+    /**
+     * Binary search for an order within a cell. Drawables are mostly added
+     * and removed on top, so the top of the cell is checked first.
+     *
+     * @param cell the entries of a cell
+     * @param order the order to find
+     * @return its index, or (-(insertion point) - 1) if it is not listed
+     */
+    private int search(List<Entry> cell, long order) {
+        int high = cell.size() - 1;
+        if (high < 0 || cell.get(high).order < order) {
+            return -1 - (high + 1);
+        }
+        if (cell.get(high).order == order) {
+            return high;
+        }
+
+        int low = 0;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long value = cell.get(middle).order;
+            if (value < order) {
+                low = middle + 1;
+            } else if (value > order) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1 - low;
+    }
+
+    /**
+     * Returns the grid column of an x-coordinate, clamped to the grid.
+     *
+     * @param x x-coordinate
+     * @return column
+     */
+    private int column(int x) {
+        return Math.min(this.columns - 1, Math.max(0, x / CELL_SIZE));
+    }
+
+    /**
+     * Returns the grid row of a y-coordinate, clamped to the grid.
+     *
+     * @param y y-coordinate
+     * @return row
+     */
+    private int row(int y) {
+        return Math.min(this.rows - 1, Math.max(0, y / CELL_SIZE));
+    }
+}
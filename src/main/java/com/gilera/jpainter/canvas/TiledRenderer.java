@@ -0,0 +1,214 @@
+package com.gilera.jpainter.canvas;
+
+
+/**
+ * File: TiledRenderer.java
+ *
+ * Description: Redraws an area of a raster in parallel, tile by tile.
+ */
+import com.gilera.jpainter.drawables.Drawable;
+import com.gilera.jpainter.raster.IntRasterTarget;
+import java.awt.Color;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * TiledRenderer class
+ *
+ * Purpose: Splits an area of the canvas into fixed tiles and draws them in
+ * parallel on a ForkJoinPool. The Drawables are first sorted into the
+ * tiles their bounds intersect, keeping their order, then every tile is
+ * cleared and draws only its own Drawables through a target clipped to the
+ * tile. Each pixel belongs to exactly one tile and sees the same Drawables
+ * in the same order, so the result is identical to drawing serially.
+ *
+ * @author Ryan Gilera <jalapaomaji-github@yahoo.com>
+ */
+final class TiledRenderer {
+
+    // Width and height of a tile in pixels.
+    static final int TILE_SIZE = 128;
+
+    // Below this many Drawables the area is simply drawn serially.
+    private static final int PARALLEL_THRESHOLD = 64;
+
+    // Shared by every canvas, one worker per core.
+    private static final ForkJoinPool POOL = new ForkJoinPool();
+
+    /**
+     * Draws the tiles from first to last (exclusive), splitting the range
+     * in halves until a single tile is left.
+     */
+    private static final class TileTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final BufferedImage image;
+        private final Drawable[] shapes;
+        private final Rectangle[] tiles;
+        private final int[] tileStart;
+        private final int[] tileShapes;
+        private final Color background;
+        private final int first;
+        private final int last;
+
+        private TileTask(BufferedImage image, Drawable[] shapes,
+                Rectangle[] tiles, int[] tileStart, int[] tileShapes,
+                Color background, int first, int last) {
+            this.image = image;
+            this.shapes = shapes;
+            this.tiles = tiles;
+            this.tileStart = tileStart;
+            this.tileShapes = tileShapes;
+            this.background = background;
+            this.first = first;
+            this.last = last;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.last - this.first > 1) {
+                int middle = (this.first + this.last) >>> 1;
+                invokeAll(
+                        new TileTask(this.image, this.shapes, this.tiles,
+                                this.tileStart, this.tileShapes,
+                                this.background, this.first, middle),
+                        new TileTask(this.image, this.shapes, this.tiles,
+                                this.tileStart, this.tileShapes,
+                                this.background, middle, this.last));
+                return;
+            }
+
+            // Each tile gets its own target, sharing the same pixels.
+            IntRasterTarget target = new IntRasterTarget(this.image);
+            target.setClip(this.tiles[this.first]);
+            target.clear(this.background);
+
+            for (int i = this.tileStart[this.first];
+                    i < this.tileStart[this.first + 1]; i++) {
+                this.shapes[this.tileShapes[i]].drawShape(target);
+            }
+        }
+    }
+
+    /**
+     * Class constructor.
+     * Stops from instantiating this class.
+     */
+    private TiledRenderer() {
+    }
+
+    /**
+     * Clears an area of the image and draws every Drawable overlapping it,
+     * in list order.
+     *
+     * @param image image with an int[] raster, see IntRasterTarget
+     * @param list the Drawables in z-order
+     * @param skip a Drawable of the list not to draw, null if none
+     * @param area the area to redraw
+     * @param background colour the area is cleared with
+     */
+    static void render(BufferedImage image, List<Drawable> list,
+            Drawable skip, Rectangle area, Color background) {
+        area = area.intersection(new Rectangle(0, 0, image.getWidth(),
+                image.getHeight()));
+        if (area.isEmpty()) {
+            return;
+        }
+
+        // Keeps only the Drawables that overlap the area at all.
+        Drawable[] shapes = new Drawable[list.size()];
+        Rectangle[] bounds = new Rectangle[shapes.length];
+        int count = 0;
+        for (Drawable aShape : list) {
+            Rectangle box = aShape.getBounds();
+            if (aShape != skip && area.intersects(box)) {
+                shapes[count] = aShape;
+                bounds[count] = box;
+                count++;
+            }
+        }
+
+        int columns = (area.width + TILE_SIZE - 1) / TILE_SIZE;
+        int rows = (area.height + TILE_SIZE - 1) / TILE_SIZE;
+
+        if (count < PARALLEL_THRESHOLD || columns * rows == 1) {
+            IntRasterTarget target = new IntRasterTarget(image);
+            target.setClip(area);
+            target.clear(background);
+            for (int i = 0; i < count; i++) {
+                shapes[i].drawShape(target);
+            }
+            return;
+        }
+
+        Rectangle[] tiles = new Rectangle[columns * rows];
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                int x = area.x + column * TILE_SIZE;
+                int y = area.y + row * TILE_SIZE;
+                tiles[row * columns + column] = new Rectangle(x, y,
+                        Math.min(TILE_SIZE, area.x + area.width - x),
+                        Math.min(TILE_SIZE, area.y + area.height - y));
+            }
+        }
+
+        // Counts the Drawables of every tile, then lists their indices
+        //      tile after tile (tileStart[t] to tileStart[t + 1]).
+        int[] tileStart = new int[tiles.length + 1];
+        for (int i = 0; i < count; i++) {
+            forEachTile(bounds[i], area, columns, rows, tileStart, null, i);
+        }
+        for (int t = 0; t < tiles.length; t++) {
+            tileStart[t + 1] += tileStart[t];
+        }
+
+        int[] tileShapes = new int[tileStart[tiles.length]];
+        int[] next = new int[tiles.length + 1];
+        System.arraycopy(tileStart, 0, next, 0, tiles.length);
+        for (int i = 0; i < count; i++) {
+            forEachTile(bounds[i], area, columns, rows, next, tileShapes, i);
+        }
+
+        POOL.invoke(new TileTask(image, shapes, tiles, tileStart,
+                tileShapes, background, 0, tiles.length));
+    }
+
+    /**
+     * Visits every tile overlapped by a bounding rectangle. Without
+     * tileShapes it counts the Drawable in slot t + 1 of the counters, with
+     * it the index is stored at the tile's next free slot.
+     *
+     * @param box bounds of the Drawable
+     * @param area the area split into tiles
+     * @param columns number of tile columns
+     * @param rows number of tile rows
+     * @param counters per tile counters or next free slots
+     * @param tileShapes the indices of every tile, null when counting
+     * @param index index of the Drawable
+     */
+    private static void forEachTile(Rectangle box, Rectangle area,
+            int columns, int rows, int[] counters, int[] tileShapes,
+            int index) {
+        int column0 = Math.max(0, (box.x - area.x) / TILE_SIZE);
+        int row0 = Math.max(0, (box.y - area.y) / TILE_SIZE);
+        int column1 = Math.min(columns - 1,
+                (box.x + box.width - 1 - area.x) / TILE_SIZE);
+        int row1 = Math.min(rows - 1,
+                (box.y + box.height - 1 - area.y) / TILE_SIZE);
+
+        for (int row = row0; row <= row1; row++) {
+            for (int column = column0; column <= column1; column++) {
+                int tile = row * columns + column;
+                if (tileShapes == null) {
+                    counters[tile + 1]++;
+                } else {
+                    tileShapes[counters[tile]++] = index;
+                }
+            }
+        }
+    }
+}
@@ -30,6 +30,74 @@ public final class GlobalSettingsManager {
     public static final int CANVAS_WIDTH = 1100;
     public static final int CANVAS_HEIGHT = 611;
 
+    // FRAME RATE
+    // Drag rendering and status bar updates happen at most once per frame.
+    // Can be changed at start up with -Djpainter.frameRate=120.
+    public static final int FRAME_RATE
+            = Math.max(1, Integer.getInteger("jpainter.frameRate", 60));
+    public static final int FRAME_DELAY = Math.max(1, 1000 / FRAME_RATE);
+
+    // BACKGROUND RENDERING
+    // Rasterizes the canvas on a render thread instead of the event thread.
+    // Can be turned on at start up with -Djpainter.backgroundRender=true.
+    public static final boolean BACKGROUND_RENDERING
+            = Boolean.getBoolean("jpainter.backgroundRender");
+
+    // UNDO CHECKPOINTS
+    // The committed raster is copied after this many finished Drawables,
+    // or earlier once they cover this many pixels. The copies are kept
+    // within a memory ceiling in megabytes, which can be changed at start
+    // up with -Djpainter.checkpointMemory=256.
+    public static final int CHECKPOINT_INTERVAL = 256;
+    public static final long CHECKPOINT_COST = 4000000L;
+    public static final long CHECKPOINT_MEMORY
+            = Long.getLong("jpainter.checkpointMemory", 64L) * 1024 * 1024;
+
+    // UNDO DELTAS
+    // Budget in megabytes for the compressed pixels kept for undo, can be
+    // changed at start up with -Djpainter.historyMemory=128.
+    public static final long HISTORY_MEMORY
+            = Long.getLong("jpainter.historyMemory", 32L) * 1024 * 1024;
+
+    // INGESTION
+    // Drawables handed in by other threads are added at most this many
+    // per frame, and at most this many may wait. Can be changed at start
+    // up with -Djpainter.ingestBatch=8192 and
+    // -Djpainter.ingestCapacity=100000.
+    public static final int INGEST_BATCH
+            = Math.max(1, Integer.getInteger("jpainter.ingestBatch", 2048));
+    public static final int INGEST_CAPACITY = Math.max(1,
+            Integer.getInteger("jpainter.ingestCapacity", 1 << 20));
+
+    // JOURNAL
+    // Every change of the drawing is appended to this file and replayed
+    // at the next start up. Appends are written and synced to the disk in
+    // batches, at most this many milliseconds after the change. Can be
+    // changed at start up with -Djpainter.journal=/path/to/file (none
+    // turns it off) and -Djpainter.journalSync=50.
+    public static final String JOURNAL_FILE = System.getProperty(
+            "jpainter.journal", System.getProperty("user.home")
+            + "/.jpainter/session.jpj");
+    public static final int JOURNAL_SYNC_DELAY = Math.max(1,
+            Integer.getInteger("jpainter.journalSync", 200));
+
+    // REPLAY KEYFRAMES
+    // A replay keeps a copy of the raster every this many operations,
+    // within a memory ceiling in megabytes, above which every other copy
+    // is dropped. Can be changed at start up with
+    // -Djpainter.keyframeInterval=64 and -Djpainter.keyframeMemory=512.
+    public static final int KEYFRAME_INTERVAL = Math.max(1,
+            Integer.getInteger("jpainter.keyframeInterval", 256));
+    public static final long KEYFRAME_MEMORY
+            = Long.getLong("jpainter.keyframeMemory", 256L) * 1024 * 1024;
+
+    // INPUT TRACE
+    // The mouse input on the canvas and the commands are recorded to this
+    // file, to be replayed headless for latency measurements. Off unless
+    // set at start up with -Djpainter.inputTrace=/path/to/trace.jpt.
+    public static final String INPUT_TRACE_FILE
+            = System.getProperty("jpainter.inputTrace");
+
     // APPLICATION ICON
     public static final Image APP_ICON
             = ResourceLoader.getImage("appIcon.png");
@@ -0,0 +1,432 @@
+package com.gilera.jpainter.data;
+
+
+/**
+ * File: SceneFile.java
+ *
+ * Description: Saves and opens drawings in the J-Painter scene file format.
+ */
+import com.gilera.jpainter.drawables.CompactSceneStore;
+import com.gilera.jpainter.drawables.DrawableImage;
+import com.gilera.jpainter.drawables.StyleTable;
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import javax.swing.ImageIcon;
+
+/**
+ * SceneFile class
+ *
+ * Purpose: Writes a CompactSceneStore to a file and reads it back. The
+ * file is little-endian and made of fixed-width sections, so that it can
+ * be read through a memory-mapped FileChannel straight into the columns
+ * of the store, without parsing and without an object per Drawable:
+ * <ul>
+ * <li>header - magic, version, the number of styles, Drawables and
+ * images, and the offsets of the records and of the image table.</li>
+ * <li>styles - 12 bytes per style: ARGB colour, thickness and flags (bit
+ * 0 is the footprint).</li>
+ * <li>records - 24 bytes per Drawable, bottom first: kind, the four
+ * endpoints and the index of its style in the file, or of its image for
+ * image Drawables.</li>
+ * <li>image table - 16 bytes per image: width, height and the offset of
+ * its pixels.</li>
+ * <li>pixels - the ARGB pixels of every image, row by row.</li>
+ * </ul>
+ * Style ids are only valid within a run of the application, so the file
+ * has its own style table, interned again into the shared StyleTable when
+ * the file is read.
+ *
+ * @author Ryan Gilera <jalapaomaji-github@yahoo.com>
+ */
+public final class SceneFile {
+
+    // "JPSF", first bytes of every scene file.
+    public static final int MAGIC = 0x4A505346;
+    public static final int VERSION = 1;
+
+    // Sizes of the sections, in bytes.
+    private static final int HEADER_SIZE = 40;
+    private static final int STYLE_SIZE = 12;
+    private static final int RECORD_SIZE = 24;
+    private static final int IMAGE_ENTRY_SIZE = 16;
+
+    // Records mapped at once, far below the 2 GB limit of a mapping.
+    private static final int RECORDS_PER_WINDOW = 1 << 22;
+
+    // Records copied out of the mapping at once.
+    private static final int RECORDS_PER_CHUNK = 4096;
+
+    // Size of the buffer the file is written through.
+    private static final int WRITE_BUFFER = 1 << 20;
+
+    /**
+     * Class constructor, only static methods.
+     */
+    private SceneFile() {
+    }
+
+    /**
+     * Writes every Drawable of a store to a file, replacing it. The file
+     * is first written next to it and then moved in place, so a failed
+     * write leaves the previous file as it was.
+     *
+     * @param file the file to write
+     * @param store the Drawables to save
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(File file, CompactSceneStore store)
+            throws IOException {
+        int count = store.size();
+        StyleTable table = StyleTable.shared();
+
+        // Numbers the styles used, in the order they first appear.
+        int[] fileStyles = new int[table.size()];
+        Arrays.fill(fileStyles, -1);
+        int[] usedStyles = new int[16];
+        int styleCount = 0;
+        for (int i = 0; i < count; i++) {
+            int style = store.getStyle(i);
+            if (store.getKind(i) != CompactSceneStore.IMAGE
+                    && fileStyles[style] < 0) {
+                if (styleCount == usedStyles.length) {
+                    usedStyles = Arrays.copyOf(usedStyles, 2 * styleCount);
+                }
+                fileStyles[style] = styleCount;
+                usedStyles[styleCount++] = style;
+            }
+        }
+
+        int imageCount = store.getImageCount();
+        long recordOffset = align(HEADER_SIZE
+                + (long) STYLE_SIZE * styleCount);
+        long imageOffset = recordOffset + (long) RECORD_SIZE * count;
+
+        Path path = file.toPath();
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+
+            buffer.putInt(MAGIC);
+            buffer.putInt(VERSION);
+            buffer.putInt(styleCount);
+            buffer.putInt(count);
+            buffer.putInt(imageCount);
+            buffer.putInt(0);
+            buffer.putLong(recordOffset);
+            buffer.putLong(imageOffset);
+
+            for (int i = 0; i < styleCount; i++) {
+                StyleTable.Style style = table.get(usedStyles[i]);
+                ensureRoom(channel, buffer, STYLE_SIZE);
+                buffer.putInt(style.getColor().getRGB());
+                buffer.putInt(style.getThickness());
+                buffer.putInt(style.getFootprint() ? 1 : 0);
+            }
+            // Pads the records up to a multiple of 8 bytes.
+            long padding = recordOffset - HEADER_SIZE
+                    - (long) STYLE_SIZE * styleCount;
+            ensureRoom(channel, buffer, 8);
+            for (int i = 0; i < padding; i++) {
+                buffer.put((byte) 0);
+            }
+
+            for (int i = 0; i < count; i++) {
+                byte kind = store.getKind(i);
+                ensureRoom(channel, buffer, RECORD_SIZE);
+                buffer.putInt(kind);
+                buffer.putInt(store.getXi(i));
+                buffer.putInt(store.getYi(i));
+                buffer.putInt(store.getXo(i));
+                buffer.putInt(store.getYo(i));
+                buffer.putInt(kind == CompactSceneStore.IMAGE
+                        ? store.getStyle(i) : fileStyles[store.getStyle(i)]);
+            }
+
+            // The image table comes first, the pixels after it.
+            BufferedImage[] images = new BufferedImage[imageCount];
+            long pixelOffset = imageOffset
+                    + (long) IMAGE_ENTRY_SIZE * imageCount;
+            for (int i = 0; i < imageCount; i++) {
+                images[i] = toBufferedImage(store.getImage(i));
+                ensureRoom(channel, buffer, IMAGE_ENTRY_SIZE);
+                buffer.putInt(images[i].getWidth());
+                buffer.putInt(images[i].getHeight());
+                buffer.putLong(pixelOffset);
+                pixelOffset += 4L * images[i].getWidth()
+                        * images[i].getHeight();
+            }
+
+            for (BufferedImage image : images) {
+                int width = image.getWidth();
+                int[] row = new int[width];
+                for (int y = 0; y < image.getHeight(); y++) {
+                    image.getRGB(0, y, width, 1, row, 0, width);
+                    for (int pixel : row) {
+                        ensureRoom(channel, buffer, 4);
+                        buffer.putInt(pixel);
+                    }
+                }
+            }
+
+            flush(channel, buffer);
+            channel.force(false);
+        }
+
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Reads every Drawable of a file into a new store. The file is mapped
+     * into memory and its records are copied straight into the columns of
+     * the store.
+     *
+     * @param file the file to read
+     * @return a new store with the Drawables of the file
+     * @throws IOException if the file cannot be read or is not a valid
+     * scene file
+     */
+    public static CompactSceneStore read(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length < HEADER_SIZE) {
+                throw new IOException("Not a scene file: " + file);
+            }
+
+            ByteBuffer header = map(channel, 0, HEADER_SIZE);
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not a scene file: " + file);
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported scene file version "
+                        + version + ": " + file);
+            }
+            int styleCount = header.getInt();
+            int count = header.getInt();
+            int imageCount = header.getInt();
+            header.getInt();
+            long recordOffset = header.getLong();
+            long imageOffset = header.getLong();
+
+            if (styleCount < 0 || count < 0 || imageCount < 0
+                    || recordOffset < HEADER_SIZE + (long) STYLE_SIZE
+                    * styleCount
+                    || imageOffset != recordOffset
+                    + (long) RECORD_SIZE * count
+                    || imageOffset + (long) IMAGE_ENTRY_SIZE * imageCount
+                    > length) {
+                throw new IOException("Corrupt scene file: " + file);
+            }
+
+            // Interns the styles of the file, once each.
+            int[] styles = new int[styleCount];
+            if (styleCount > 0) {
+                IntBuffer styleBuffer = map(channel, HEADER_SIZE,
+                        (long) STYLE_SIZE * styleCount).asIntBuffer();
+                StyleTable table = StyleTable.shared();
+                for (int i = 0; i < styleCount; i++) {
+                    Color color = new Color(styleBuffer.get(), true);
+                    int thick = styleBuffer.get();
+                    boolean footprint = (styleBuffer.get() & 1) != 0;
+                    styles[i] = table.intern(color, thick, footprint);
+                }
+            }
+
+            Image[] images = readImages(channel, imageOffset, imageCount,
+                    length, file);
+
+            CompactSceneStore store = new CompactSceneStore(count);
+            int[] chunk = new int[RECORDS_PER_CHUNK * RECORD_SIZE / 4];
+            for (int first = 0; first < count; first += RECORDS_PER_WINDOW) {
+                int records = Math.min(RECORDS_PER_WINDOW, count - first);
+                IntBuffer window = map(channel,
+                        recordOffset + (long) RECORD_SIZE * first,
+                        (long) RECORD_SIZE * records).asIntBuffer();
+
+                while (window.hasRemaining()) {
+                    int ints = Math.min(chunk.length, window.remaining());
+                    window.get(chunk, 0, ints);
+                    for (int k = 0; k < ints; k += RECORD_SIZE / 4) {
+                        addRecord(store, chunk, k, styles, images, file);
+                    }
+                }
+            }
+
+            return store;
+        }
+    }
+
+    /**
+     * Adds one record of the file to a store.
+     *
+     * @param store the store to add to
+     * @param chunk the records copied out of the file
+     * @param k the index of the record in chunk
+     * @param styles the style ids of the styles of the file
+     * @param images the images of the file
+     * @param file the file read, for the error message
+     * @throws IOException if the record is not valid
+     */
+    private static void addRecord(CompactSceneStore store, int[] chunk,
+            int k, int[] styles, Image[] images, File file)
+            throws IOException {
+        int kind = chunk[k];
+        int style = chunk[k + 5];
+
+        if (kind == CompactSceneStore.IMAGE) {
+            if (style < 0 || style >= images.length) {
+                throw new IOException("Corrupt scene file: " + file);
+            }
+            store.add(new DrawableImage(chunk[k + 1], chunk[k + 2],
+                    chunk[k + 3], chunk[k + 4], 1, Color.BLACK, false,
+                    images[style]));
+        } else if (kind >= CompactSceneStore.LINE
+                && kind <= CompactSceneStore.ARC
+                && style >= 0 && style < styles.length) {
+            store.add((byte) kind, chunk[k + 1], chunk[k + 2], chunk[k + 3],
+                    chunk[k + 4], styles[style]);
+        } else {
+            throw new IOException("Corrupt scene file: " + file);
+        }
+    }
+
+    /**
+     * Reads the images of a file, copying their pixels out of the mapping
+     * into new images.
+     *
+     * @param channel the file
+     * @param imageOffset offset of the image table
+     * @param imageCount number of images
+     * @param length size of the file
+     * @param file the file read, for the error message
+     * @return the images
+     * @throws IOException if the images cannot be read
+     */
+    private static Image[] readImages(FileChannel channel, long imageOffset,
+            int imageCount, long length, File file) throws IOException {
+        Image[] images = new Image[imageCount];
+        if (imageCount == 0) {
+            return images;
+        }
+
+        ByteBuffer table = map(channel, imageOffset,
+                (long) IMAGE_ENTRY_SIZE * imageCount);
+        for (int i = 0; i < imageCount; i++) {
+            int width = table.getInt();
+            int height = table.getInt();
+            long offset = table.getLong();
+            long bytes = 4L * width * height;
+            if (width <= 0 || height <= 0 || offset < 0
+                    || bytes > Integer.MAX_VALUE || offset + bytes > length) {
+                throw new IOException("Corrupt scene file: " + file);
+            }
+
+            BufferedImage image = new BufferedImage(width, height,
+                    BufferedImage.TYPE_INT_ARGB);
+            int[] pixels = ((DataBufferInt) image.getRaster()
+                    .getDataBuffer()).getData();
+            map(channel, offset, bytes).asIntBuffer().get(pixels);
+            images[i] = image;
+        }
+        return images;
+    }
+
+    /**
+     * Maps a part of a file into memory, read-only and little-endian.
+     *
+     * @param channel the file
+     * @param offset where the part starts
+     * @param size size of the part, less than 2 GB
+     * @return the mapped part
+     * @throws IOException if it cannot be mapped
+     */
+    private static ByteBuffer map(FileChannel channel, long offset,
+            long size) throws IOException {
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+                offset, size);
+        return buffer.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Writes the buffer out if it has less room left than needed.
+     *
+     * @param channel the file
+     * @param buffer the buffer
+     * @param needed bytes about to be put
+     * @throws IOException if the file cannot be written
+     */
+    private static void ensureRoom(FileChannel channel, ByteBuffer buffer,
+            int needed) throws IOException {
+        if (buffer.remaining() < needed) {
+            flush(channel, buffer);
+        }
+    }
+
+    /**
+     * Writes out and empties the buffer.
+     *
+     * @param channel the file
+     * @param buffer the buffer
+     * @throws IOException if the file cannot be written
+     */
+    private static void flush(FileChannel channel, ByteBuffer buffer)
+            throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Rounds an offset up to a multiple of 8.
+     *
+     * @param offset the offset
+     * @return the aligned offset
+     */
+    private static long align(long offset) {
+        return (offset + 7) & ~7L;
+    }
+
+    /**
+     * Returns an image as a BufferedImage, drawing it into one if needed.
+     * Images loaded through the Toolkit are waited for first.
+     *
+     * @param image the image
+     * @return a BufferedImage with the same pixels
+     */
+    public static BufferedImage toBufferedImage(Image image) {
+        if (image instanceof BufferedImage) {
+            return (BufferedImage) image;
+        }
+
+        image = new ImageIcon(image).getImage();
+        BufferedImage copy = new BufferedImage(
+                Math.max(image.getWidth(null), 1),
+                Math.max(image.getHeight(null), 1),
+                BufferedImage.TYPE_INT_ARGB);
+        Graphics g = copy.getGraphics();
+        g.drawImage(image, 0, 0, null);
+        g.dispose();
+        return copy;
+    }
+}
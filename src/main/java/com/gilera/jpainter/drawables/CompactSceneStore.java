@@ -0,0 +1,495 @@
+package com.gilera.jpainter.drawables;
+
+
+/**
+ * File: CompactSceneStore.java
+ *
+ * Description: Stores Drawables as parallel primitive arrays.
+ */
+import com.gilera.jpainter.raster.PixelTarget;
+import com.gilera.jpainter.raster.ScanlineCoverage;
+import java.awt.Color;
+import java.awt.Image;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * CompactSceneStore class
+ *
+ * Purpose: Keeps a large number of Drawables without one object per
+ * Drawable. Every field of a Drawable is a column (kind, endpoints and
+ * style id, see StyleTable) and the Drawable at index i is row i of every
+ * column, so the rows stay in z-order whatever their kind. Rendering walks
+ * the columns and calls the static rasterizers of the Drawable classes
+ * directly. A Drawable object is only created when one is asked for, see
+ * get.
+ * <p>
+ * An image Drawable keeps its Image in a side list, its style column holds
+ * the index into that list instead.
+ *
+ * @author Ryan Gilera <jalapaomaji-github@yahoo.com>
+ */
+public final class CompactSceneStore {
+
+    // Kinds of Drawables, the same numbers as the drawableSelector of
+    //      MouseClickListener.
+    public static final byte LINE = 1;
+    public static final byte CIRCLE = 2;
+    public static final byte SQUARE = 3;
+    public static final byte ELLIPSE = 4;
+    public static final byte TRIANGLE = 5;
+    public static final byte ARC = 6;
+    public static final byte IMAGE = 7;
+
+    // Bytes per Drawable taken by the columns.
+    private static final int BYTES_PER_SHAPE = 1 + 4 * 4 + 4;
+
+    /**
+     * Object variables declarations
+     * <ul>
+     * <li>count - the number of Drawables stored</li>
+     * <li>kinds - the kind of each Drawable, see LINE to IMAGE</li>
+     * <li>xi, yi, xo, yo - the endpoints of each Drawable</li>
+     * <li>styles - the style id of each Drawable in the shared
+     * StyleTable, or the index of its image for images</li>
+     * <li>images - the images of the image Drawables</li>
+     * </ul>
+     */
+    private int count;
+    private byte[] kinds;
+    private int[] xi, yi, xo, yo;
+    private int[] styles;
+    private final List<Image> images;
+
+    /**
+     * Class constructor, creates an empty store.
+     */
+    public CompactSceneStore() {
+        this(16);
+    }
+
+    /**
+     * Class constructor, creates an empty store with room for a number of
+     * Drawables.
+     *
+     * @param capacity the number of Drawables to make room for
+     */
+    public CompactSceneStore(int capacity) {
+        this.count = 0;
+        this.allocate(Math.max(capacity, 1));
+        this.images = new ArrayList<>();
+    }
+
+    /**
+     * Adds a Drawable on top of the others, copying its fields.
+     *
+     * @param shape the Drawable to add
+     */
+    public void add(Drawable shape) {
+        byte kind = kindOf(shape);
+        int style = shape.getStyle();
+
+        if (kind == IMAGE) {
+            style = this.images.size();
+            this.images.add(((DrawableImage) shape).getImage());
+        }
+
+        this.append(kind, shape.getXi(), shape.getYi(), shape.getXo(),
+                shape.getYo(), style);
+    }
+
+    /**
+     * Returns the kind of a Drawable, as stored in the kind column.
+     *
+     * @param shape the Drawable
+     * @return kind of the Drawable, LINE to IMAGE
+     */
+    public static byte kindOf(Drawable shape) {
+        if (shape instanceof DrawableImage) {
+            return IMAGE;
+        } else if (shape instanceof DrawableCircle) {
+            return CIRCLE;
+        } else if (shape instanceof DrawableSquare) {
+            return SQUARE;
+        } else if (shape instanceof DrawableEllipse) {
+            return ELLIPSE;
+        } else if (shape instanceof DrawableTriangle) {
+            return TRIANGLE;
+        } else if (shape instanceof DrawableArc) {
+            return ARC;
+        } else if (shape instanceof DrawableLine) {
+            return LINE;
+        }
+        throw new IllegalArgumentException("Unknown Drawable: "
+                + shape.getClass().getName());
+    }
+
+    /**
+     * Adds a Drawable on top of the others from its fields, without
+     * creating a Drawable object. Use add(Drawable) for images.
+     *
+     * @param kind the kind of the Drawable, LINE to ARC
+     * @param xi initial x position
+     * @param yi initial y position
+     * @param xo other end x position
+     * @param yo other end y position
+     * @param style the style id in the shared StyleTable
+     */
+    public void add(byte kind, int xi, int yi, int xo, int yo, int style) {
+        if (kind < LINE || kind > ARC) {
+            throw new IllegalArgumentException("Invalid kind: " + kind);
+        }
+        if (style < 0 || style >= StyleTable.shared().size()) {
+            throw new IllegalArgumentException("Invalid style: " + style);
+        }
+        this.append(kind, xi, yi, xo, yo, style);
+    }
+
+    /**
+     * Returns the number of Drawables stored.
+     *
+     * @return number of Drawables
+     */
+    public int size() {
+        return this.count;
+    }
+
+    /**
+     * Makes room for a number of Drawables in total, so that adding them
+     * does not grow the columns again.
+     *
+     * @param capacity the number of Drawables to make room for
+     */
+    public void ensureCapacity(int capacity) {
+        if (capacity > this.kinds.length) {
+            this.allocate(capacity);
+        }
+    }
+
+    /**
+     * Returns the kind of a Drawable, LINE to IMAGE.
+     *
+     * @param i the index of the Drawable, 0 is the bottom
+     * @return kind of the Drawable
+     */
+    public byte getKind(int i) {
+        this.check(i);
+        return this.kinds[i];
+    }
+
+    /**
+     * Returns the initial x position of a Drawable.
+     *
+     * @param i the index of the Drawable, 0 is the bottom
+     * @return initial x position
+     */
+    public int getXi(int i) {
+        this.check(i);
+        return this.xi[i];
+    }
+
+    /**
+     * Returns the initial y position of a Drawable.
+     *
+     * @param i the index of the Drawable, 0 is the bottom
+     * @return initial y position
+     */
+    public int getYi(int i) {
+        this.check(i);
+        return this.yi[i];
+    }
+
+    /**
+     * Returns the other end x position of a Drawable.
+     *
+     * @param i the index of the Drawable, 0 is the bottom
+     * @return other end x position
+     */
+    public int getXo(int i) {
+        this.check(i);
+        return this.xo[i];
+    }
+
+    /**
+     * Returns the other end y position of a Drawable.
+     *
+     * @param i the index of the Drawable, 0 is the bottom
+     * @return other end y position
+     */
+    public int getYo(int i) {
+        this.check(i);
+        return this.yo[i];
+    }
+
+    /**
+     * Returns the style id of a Drawable in the shared StyleTable. For an
+     * image Drawable it is the index of its image instead, see getImage.
+     *
+     * @param i the index of the Drawable, 0 is the bottom
+     * @return style id, or image index
+     */
+    public int getStyle(int i) {
+        this.check(i);
+        return this.styles[i];
+    }
+
+    /**
+     * Returns the number of images stored.
+     *
+     * @return number of images
+     */
+    public int getImageCount() {
+        return this.images.size();
+    }
+
+    /**
+     * Returns an image of the image Drawables.
+     *
+     * @param index the image index, the style of its Drawable
+     * @return the image
+     */
+    public Image getImage(int index) {
+        return this.images.get(index);
+    }
+
+    /**
+     * Removes every Drawable, keeping the arrays for reuse.
+     */
+    public void clear() {
+        this.count = 0;
+        this.images.clear();
+    }
+
+    /**
+     * Creates a Drawable object from a row of the store. The object is a
+     * copy, changing it does not change the store.
+     *
+     * @param i the index of the Drawable, 0 is the bottom
+     * @return a new Drawable
+     */
+    public Drawable get(int i) {
+        this.check(i);
+
+        if (this.kinds[i] == IMAGE) {
+            // Images have no colour, thickness or footprint of their own.
+            return new DrawableImage(this.xi[i], this.yi[i], this.xo[i],
+                    this.yo[i], 1, Color.BLACK, false,
+                    this.images.get(this.styles[i]));
+        }
+
+        StyleTable.Style style = StyleTable.shared().get(this.styles[i]);
+        Color color = style.getColor();
+        int thick = style.getThickness();
+        boolean footprint = style.getFootprint();
+
+        switch (this.kinds[i]) {
+            case CIRCLE:
+                return new DrawableCircle(this.xi[i], this.yi[i], this.xo[i],
+                        this.yo[i], thick, color, footprint);
+            case SQUARE:
+                return new DrawableSquare(this.xi[i], this.yi[i], this.xo[i],
+                        this.yo[i], thick, color, footprint);
+            case ELLIPSE:
+                return new DrawableEllipse(this.xi[i], this.yi[i],
+                        this.xo[i], this.yo[i], thick, color, footprint);
+            case TRIANGLE:
+                return new DrawableTriangle(this.xi[i], this.yi[i],
+                        this.xo[i], this.yo[i], thick, color, footprint);
+            case ARC:
+                return new DrawableArc(this.xi[i], this.yi[i], this.xo[i],
+                        this.yo[i], thick, color, footprint);
+            default:
+                return new DrawableLine(this.xi[i], this.yi[i], this.xo[i],
+                        this.yo[i], thick, color, footprint);
+        }
+    }
+
+    /**
+     * Draws every Drawable onto a PixelTarget, bottom first.
+     *
+     * @param target PixelTarget to draw on
+     */
+    public void render(PixelTarget target) {
+        this.render(target, 0, this.count);
+    }
+
+    /**
+     * Draws the Drawables from first to last (exclusive) onto a
+     * PixelTarget. The pixels are the same as drawing each Drawable with
+     * drawShape: opaque outlines are merged per scanline through the
+     * ScanlineCoverage of the thread, translucent ones are drawn directly.
+     * The colour is only set on the target when the style changes.
+     *
+     * @param target PixelTarget to draw on
+     * @param first index of the first Drawable
+     * @param last index after the last Drawable
+     */
+    public void render(PixelTarget target, int first, int last) {
+        if (first < 0 || last > this.count || first > last) {
+            throw new IndexOutOfBoundsException("Range: " + first + " to "
+                    + last + ", Size: " + this.count);
+        }
+
+        ScanlineCoverage coverage = ScanlineCoverage.forCurrentThread();
+        StyleTable table = StyleTable.shared();
+        StyleTable.Style style = null;
+
+        for (int i = first; i < last; i++) {
+            byte kind = this.kinds[i];
+
+            if (kind == IMAGE) {
+                target.drawImage(this.images.get(this.styles[i]),
+                        Math.min(this.xi[i], this.xo[i]),
+                        Math.min(this.yi[i], this.yo[i]),
+                        Math.max(this.xi[i], this.xo[i]),
+                        Math.max(this.yi[i], this.yo[i]));
+                continue;
+            }
+
+            // Most neighbouring Drawables share a style.
+            if (style == null || style.getId() != this.styles[i]) {
+                style = table.get(this.styles[i]);
+                target.setColor(style.getColor());
+            }
+
+            if (style.getColor().getAlpha() < 255) {
+                this.rasterize(target, i, style);
+                continue;
+            }
+
+            int pad = Footprint.getPadding(style.getThickness()) + 1;
+            int top, bottom;
+            if (kind == CIRCLE) {
+                Rectangle bounds = DrawableCircle.circleBounds(this.xi[i],
+                        this.yi[i], this.xo[i], this.yo[i],
+                        style.getThickness());
+                top = bounds.y - 1;
+                bottom = bounds.y + bounds.height;
+            } else {
+                top = Math.min(this.yi[i], this.yo[i]) - pad;
+                bottom = Math.max(this.yi[i], this.yo[i]) + pad;
+            }
+
+            coverage.begin(target, top, bottom);
+            try {
+                this.rasterize(coverage, i, style);
+            } finally {
+                coverage.flush();
+            }
+        }
+    }
+
+    /**
+     * Returns an estimate of the bytes taken by the columns, not counting
+     * the images themselves.
+     *
+     * @return memory used in bytes
+     */
+    public long getMemoryUsed() {
+        return (long) BYTES_PER_SHAPE * this.kinds.length
+                + 4L * this.images.size();
+    }
+
+    /**
+     * Draws one Drawable of the store with its static rasterizer.
+     *
+     * @param target PixelTarget to draw on, its colour already set
+     * @param i the index of the Drawable
+     * @param style the style of the Drawable
+     */
+    private void rasterize(PixelTarget target, int i,
+            StyleTable.Style style) {
+        int thick = style.getThickness();
+        boolean footprint = style.getFootprint();
+
+        switch (this.kinds[i]) {
+            case CIRCLE:
+                DrawableCircle.rasterizeCircle(target, this.xi[i],
+                        this.yi[i], this.xo[i], this.yo[i], thick, footprint);
+                break;
+            case SQUARE:
+                DrawableSquare.rasterizeSquare(target, this.xi[i],
+                        this.yi[i], this.xo[i], this.yo[i], thick, footprint);
+                break;
+            case ELLIPSE:
+                DrawableEllipse.rasterizeEllipse(target, this.xi[i],
+                        this.yi[i], this.xo[i], this.yo[i], thick, footprint);
+                break;
+            case TRIANGLE:
+                DrawableTriangle.rasterizeTriangle(target, this.xi[i],
+                        this.yi[i], this.xo[i], this.yo[i], thick, footprint);
+                break;
+            case ARC:
+                DrawableArc.rasterizeArc(target, this.xi[i], this.yi[i],
+                        this.xo[i], this.yo[i], thick, footprint);
+                break;
+            default:
+                DrawableLine.rasterizeLine(target, this.xi[i], this.yi[i],
+                        this.xo[i], this.yo[i], thick, footprint);
+                break;
+        }
+    }
+
+    /**
+     * Checks the index of a Drawable.
+     *
+     * @param i the index of the Drawable
+     */
+    private void check(int i) {
+        if (i < 0 || i >= this.count) {
+            throw new IndexOutOfBoundsException("Index: " + i + ", Size: "
+                    + this.count);
+        }
+    }
+
+    /**
+     * Writes a new row at the top, growing the columns if they are full.
+     *
+     * @param kind the kind of the Drawable
+     * @param x0 initial x position
+     * @param y0 initial y position
+     * @param x1 other end x position
+     * @param y1 other end y position
+     * @param style the style id, or the image index
+     */
+    private void append(byte kind, int x0, int y0, int x1, int y1,
+            int style) {
+        if (this.count == this.kinds.length) {
+            this.allocate(2 * this.count);
+        }
+
+        int i = this.count++;
+        this.kinds[i] = kind;
+        this.xi[i] = x0;
+        this.yi[i] = y0;
+        this.xo[i] = x1;
+        this.yo[i] = y1;
+        this.styles[i] = style;
+    }
+
+    /**
+     * Resizes every column, keeping the rows stored.
+     *
+     * @param capacity the new number of rows
+     */
+    private void allocate(int capacity) {
+        if (this.kinds == null) {
+            this.kinds = new byte[capacity];
+            this.xi = new int[capacity];
+            this.yi = new int[capacity];
+            this.xo = new int[capacity];
+            this.yo = new int[capacity];
+            this.styles = new int[capacity];
+            return;
+        }
+
+        this.kinds = Arrays.copyOf(this.kinds, capacity);
+        this.xi = Arrays.copyOf(this.xi, capacity);
+        this.yi = Arrays.copyOf(this.yi, capacity);
+        this.xo = Arrays.copyOf(this.xo, capacity);
+        this.yo = Arrays.copyOf(this.yo, capacity);
+        this.styles = Arrays.copyOf(this.styles, capacity);
+    }
+}
@@ -6,8 +6,13 @@ package com.gilera.jpainter.drawables;
  * 
  * Description: The superclass for all Drawable subclasses.
  */
+import com.gilera.jpainter.raster.GraphicsPixelTarget;
+import com.gilera.jpainter.raster.PixelTarget;
+import com.gilera.jpainter.raster.ScanlineCoverage;
+import com.gilera.jpainter.raster.SpanListBuilder;
 import java.awt.Color;
 import java.awt.Graphics;
+import java.awt.Rectangle;
 
 /**
  * Drawable class
@@ -17,7 +22,7 @@ import java.awt.Graphics;
  *
  * @author Ryan Gilera <jalapaomaji-github@yahoo.com>
  */
-public abstract class Drawable {
+public abstract class Drawable implements Cloneable {
     /**
      * Object variables declarations
      * <ul>
@@ -25,17 +30,21 @@ public abstract class Drawable {
      * <li>yi - initial y position</li>
      * <li>xo - other end x position</li>
      * <li>yo - other end y position</li>
-     * <li>sColor - Drawables color</li>
-     * <li>sThick - Drawables thickness</li>
-     * <li>footprint - Drawables footprint</li>
+     * <li>style - id of the Drawables color, thickness and footprint in
+     * the shared StyleTable</li>
+     * <li>bounds - cached bounding rectangle, null until computed or
+     * after the endpoints have changed</li>
+     * <li>spans - cached display list of the Drawable (y, x0, x1 for each
+     * span), null until compiled, after the endpoints have changed or
+     * once the Drawable is baked into a retained raster</li>
      * </ul>
      * 
      */
     private final int xi, yi;
     private int xo, yo;
-    private final Color sColor;
-    private final int sThick;
-    private final boolean footprint;
+    private final int style;
+    private volatile Rectangle bounds;
+    private volatile int[] spans;
 
     /**
      * Constructor initialising object variables.
@@ -53,17 +62,207 @@ public abstract class Drawable {
         this.yi = yi;
         this.xo = xo;
         this.yo = yo;
-        this.sThick = sThick;
-        this.sColor = sColor;
-        this.footprint = footprint;
+        this.style = StyleTable.shared().intern(sColor, sThick, footprint);
+    }
+
+    /**
+     * Returns a copy of the Drawable, sharing its colour, image and cached
+     * span list. Changing the endpoints of one does not affect the other,
+     * so the copy can be drawn on another thread while this one is still
+     * being dragged.
+     * @return a copy of the Drawable
+     */
+    public Drawable copy() {
+        try {
+            return (Drawable) super.clone();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Draws the Drawable onto a PixelTarget, by replaying its span list.
+     * The span list is compiled on the first draw and kept until the
+     * endpoints change or it is released. Translucent colours are drawn by
+     * rasterize every time, since every overlapping footprint blends again.
+     * @param target PixelTarget to draw on
+     */
+    public void drawShape(PixelTarget target) {
+        // Applies the color initially.
+        Color color = this.getColor();
+        target.setColor(color);
+
+        if (color.getAlpha() < 255) {
+            this.rasterize(target);
+            return;
+        }
+
+        SpanListBuilder.replay(this.getSpans(), target);
+    }
+
+    /**
+     * Draws the Drawable onto a PixelTarget like drawShape, without
+     * compiling a span list if there is none yet. The merged spans of the
+     * thread's ScanlineCoverage go straight onto the target. Meant for the
+     * Drawable being dragged: its endpoints change on every frame, so a
+     * compiled span list would only be used once.
+     * @param target PixelTarget to draw on
+     */
+    public void drawShapeOnce(PixelTarget target) {
+        Color color = this.getColor();
+        int[] list = this.spans;
+
+        if (color.getAlpha() < 255 || list != null) {
+            this.drawShape(target);
+            return;
+        }
+
+        target.setColor(color);
+        Rectangle area = this.getCachedBounds();
+        ScanlineCoverage coverage = ScanlineCoverage.forCurrentThread();
+        coverage.begin(target, area.y, area.y + area.height - 1);
+        try {
+            this.rasterize(coverage);
+        } finally {
+            coverage.flush();
+        }
+    }
+
+    /**
+     * Returns the span list of the Drawable, compiling it if needed.
+     * <p>
+     * A thick outline stamps its footprint at every step, and circles and
+     * ellipses stamp it 4 to 8 times per step, so the same pixels would be
+     * written over and over. The stamps are collected by the thread's
+     * ScanlineCoverage first, which keeps the outer and inner boundary of
+     * the outline on every scanline. The merged spans are recorded once, so
+     * each covered pixel is written once per replay.
+     * @return y, x0 and x1 of each span, must not be modified
+     */
+    protected int[] getSpans() {
+        int[] list = this.spans;
+
+        if (list == null) {
+            Rectangle area = this.getCachedBounds();
+            SpanListBuilder builder = SpanListBuilder.forCurrentThread();
+            ScanlineCoverage coverage = ScanlineCoverage.forCurrentThread();
+
+            coverage.begin(builder, area.y, area.y + area.height - 1);
+            try {
+                this.rasterize(coverage);
+            } finally {
+                coverage.flush();
+            }
+
+            list = builder.toArray();
+            this.spans = list;
+        }
+
+        return list;
+    }
+
+    /**
+     * Drops the compiled span list. Called once the Drawable is baked
+     * into a raster that is kept, such as the committed raster of the
+     * canvas, which is not redrawn Drawable by Drawable. Keeping the list
+     * of every finished Drawable would grow with the whole drawing. The
+     * list is compiled again the next time it is needed.
+     */
+    public void releaseSpans() {
+        this.spans = null;
+    }
+
+    /**
+     * Returns the exact number of pixels the Drawable covers.
+     * @return number of pixels
+     */
+    public long getPixelCount() {
+        return SpanListBuilder.countPixels(this.getSpans());
     }
 
     /**
      * Abstract method to be define by the Drawable subclasses. This is the
-     * method for drawing the Drawable using the Graphics object.
+     * method for generating the pixels of the Drawable, in the colour
+     * already set on the PixelTarget.
+     * @param target PixelTarget to draw on
+     */
+    protected abstract void rasterize(PixelTarget target);
+
+    /**
+     * Draws the Drawable using the Graphics object. This is the slow
+     * fallback path, every pixel goes through the Graphics object.
      * @param graphics Graphics object
      */
-    public abstract void drawShape(Graphics graphics);
+    public void drawShape(Graphics graphics) {
+        this.drawShape(new GraphicsPixelTarget(graphics));
+    }
+
+    /**
+     * Returns the smallest rectangle that contains every pixel this Drawable
+     * draws, including the footprint thickness. The rectangle is cached
+     * until the endpoints change.
+     * @return a copy of the bounding rectangle
+     */
+    public Rectangle getBounds() {
+        return new Rectangle(this.getCachedBounds());
+    }
+
+    /**
+     * Returns the cached bounding rectangle itself, computing it if needed.
+     * @return the bounding rectangle, must not be modified
+     */
+    private Rectangle getCachedBounds() {
+        Rectangle area = this.bounds;
+        if (area == null) {
+            area = this.computeBounds();
+            this.bounds = area;
+        }
+        return area;
+    }
+
+    /**
+     * Computes the bounding rectangle of the Drawable. The default covers
+     * the rectangular area between the two endpoints, padded by the
+     * footprint. Subclasses drawing outside this area must override it.
+     * @return the bounding rectangle
+     */
+    protected Rectangle computeBounds() {
+        return paddedBounds(Math.min(this.xi, this.xo),
+                Math.min(this.yi, this.yo),
+                Math.max(this.xi, this.xo),
+                Math.max(this.yi, this.yo));
+    }
+
+    /**
+     * Builds a bounding rectangle from the given inclusive pixel limits,
+     * padded by the footprint of this Drawable.
+     * @param xmin leftmost x position
+     * @param ymin topmost y position
+     * @param xmax rightmost x position
+     * @param ymax bottommost y position
+     * @return the padded rectangle
+     */
+    protected final Rectangle paddedBounds(int xmin, int ymin, int xmax,
+            int ymax) {
+        return paddedBounds(xmin, ymin, xmax, ymax, this.getThick());
+    }
+
+    /**
+     * Builds a bounding rectangle from the given inclusive pixel limits,
+     * padded by the footprint of a thickness.
+     * @param xmin leftmost x position
+     * @param ymin topmost y position
+     * @param xmax rightmost x position
+     * @param ymax bottommost y position
+     * @param thickness the thickness of the footprint
+     * @return the padded rectangle
+     */
+    static Rectangle paddedBounds(int xmin, int ymin, int xmax, int ymax,
+            int thickness) {
+        int pad = Footprint.getPadding(thickness);
+        return new Rectangle(xmin - pad, ymin - pad,
+                xmax - xmin + 1 + 2 * pad, ymax - ymin + 1 + 2 * pad);
+    }
 
     /**
      * Getter method for xi.
@@ -98,27 +297,35 @@ public abstract class Drawable {
     }
 
     /**
-     * Getter method for sColor.
+     * Getter method for style.
+     * @return style id in the shared StyleTable
+     */
+    public int getStyle() {
+        return style;
+    }
+
+    /**
+     * Returns the color, interned in the shared StyleTable.
      * @return sColor
      */
     public Color getColor() {
-        return sColor;
+        return StyleTable.shared().get(style).getColor();
     }
 
     /**
-     * Getter method for sThick.
+     * Returns the thickness, from the shared StyleTable.
      * @return sThick 
      */
     public int getThick() {
-        return sThick;
+        return StyleTable.shared().get(style).getThickness();
     }
 
     /**
-     * Getter method for footprint.
+     * Returns the footprint, from the shared StyleTable.
      * @return footprint 
      */
     public boolean getFootprint() {
-        return footprint;
+        return StyleTable.shared().get(style).getFootprint();
     }
 
     /**
@@ -127,6 +334,7 @@ public abstract class Drawable {
      */
     public void setXo(int xo) {
         this.xo = xo;
+        this.invalidate();
     }
 
     /**
@@ -135,6 +343,7 @@ public abstract class Drawable {
      */
     public void setYo(int yo) {
         this.yo = yo;
+        this.invalidate();
     }
 
     /**
@@ -145,6 +354,15 @@ public abstract class Drawable {
     public void setNewEndpoints(int x, int y){
         this.xo = x;
         this.yo = y;
+        this.invalidate();
+    }
+
+    /**
+     * Drops the cached bounds and span list after the geometry changed.
+     */
+    private void invalidate() {
+        this.bounds = null;
+        this.spans = null;
     }
     
 }
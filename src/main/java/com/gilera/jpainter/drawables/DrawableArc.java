@@ -6,8 +6,9 @@ package com.gilera.jpainter.drawables;
  * 
  * Description: The subclass drawing Arc.
  */
+import com.gilera.jpainter.raster.PixelTarget;
 import java.awt.Color;
-import java.awt.Graphics;
+import java.awt.Rectangle;
 
 /**
  * DrawableArc class
@@ -24,6 +25,30 @@ public class DrawableArc extends Drawable {
         super(xi, yi, xo, yo, sThick, sColor, footprint);
     }
 
+    /**
+     * Draws the arc, see rasterizeArc.
+     * @param target PixelTarget to draw on.
+     */
+    @Override
+    protected void rasterize(PixelTarget target) {
+        rasterizeArc(target, super.getXi(), super.getYi(), super.getXo(),
+                super.getYo(), super.getThick(), super.getFootprint());
+    }
+
+    /**
+     * The midpoint algorithm can step one pixel past a very short axis, 
+     * so the area between the endpoints is grown by one pixel.
+     * @return the bounding rectangle
+     */
+    @Override
+    protected Rectangle computeBounds() {
+        return super.paddedBounds(
+                Math.min(super.getXi(), super.getXo()) - 1,
+                Math.min(super.getYi(), super.getYo()) - 1,
+                Math.max(super.getXi(), super.getXo()) + 1,
+                Math.max(super.getYi(), super.getYo()) + 1);
+    }
+
     /**
      * Drawing method. The points resulted from clicking and dragging needs to
      * take into consideration. The idea is that the area covered by the two
@@ -32,10 +57,16 @@ public class DrawableArc extends Drawable {
      * points and slope has to be taken into account in order to draw this
      * object naturally.
      *
-     * @param graphics Graphics object.
+     * @param target PixelTarget to draw on.
+     * @param xi initial x position
+     * @param yi initial y position
+     * @param xo other end x position
+     * @param yo other end y position
+     * @param thickness thickness in pixels
+     * @param footprint footprint type
      */
-    @Override
-    public void drawShape(Graphics graphics) {
+    static void rasterizeArc(PixelTarget target, int xi, int yi, int xo,
+            int yo, int thickness, boolean footprint) {
         int p;
         int a, b, xc, yc;
         int semiMajor, semiMinor;
@@ -47,12 +78,11 @@ public class DrawableArc extends Drawable {
         // xn and yn is the first point the user clicked
         // xm and ym is the second point the user clicked
         int xn, yn, xm, ym;
-        xn = super.getXi();
-        yn = super.getYi();
-        xm = super.getXo();
-        ym = super.getYo();
+        xn = xi;
+        yn = yi;
+        xm = xo;
+        ym = yo;
 
-        graphics.setColor(super.getColor());
 
         int dx = xm - xn;
         int dy = ym - yn;
@@ -71,10 +101,10 @@ public class DrawableArc extends Drawable {
                 side = 2;
             } else {
                 side = 1;
-                xn = super.getXi();
-                yn = super.getYi();
-                xm = super.getXo();
-                ym = super.getYo();
+                xn = xi;
+                yn = yi;
+                xm = xo;
+                ym = yo;
             }
 
             // see notes for explanation (notebook)
@@ -112,10 +142,11 @@ public class DrawableArc extends Drawable {
                     y -= 1;
                 }
 
-                if (super.getThick() == 1) {
-                    this.drawEllipse(graphics, x, y, xc, yc, side);
+                if (thickness == 1) {
+                    drawEllipse(target, x, y, xc, yc, side);
                 } else {
-                    this.drawEllipseFootprint(graphics, x, y, xc, yc, side);
+                    drawEllipseFootprint(target, x, y, xc, yc, side,
+                            thickness, footprint);
                 }
             }
 
@@ -130,10 +161,11 @@ public class DrawableArc extends Drawable {
                     x -= 1;
                 }
 
-                if (super.getThick() == 1) {
-                    this.drawEllipse(graphics, x, y, xc, yc, side);
+                if (thickness == 1) {
+                    drawEllipse(target, x, y, xc, yc, side);
                 } else {
-                    this.drawEllipseFootprint(graphics, x, y, xc, yc, side);
+                    drawEllipseFootprint(target, x, y, xc, yc, side,
+                            thickness, footprint);
                 }
             }
 
@@ -151,10 +183,10 @@ public class DrawableArc extends Drawable {
                 yn = ym;
                 ym = tempY;
             } else {
-                xn = super.getXi();
-                yn = super.getYi();
-                xm = super.getXo();
-                ym = super.getYo();
+                xn = xi;
+                yn = yi;
+                xm = xo;
+                ym = yo;
             }
 
             // see notes for explanation (notebook)
@@ -194,10 +226,11 @@ public class DrawableArc extends Drawable {
                     x -= 1;
                 }
 
-                if (super.getThick() == 1) {
-                    this.drawEllipse(graphics, x, y, yc, xc, side);
+                if (thickness == 1) {
+                    drawEllipse(target, x, y, yc, xc, side);
                 } else {
-                    this.drawEllipseFootprint(graphics, x, y, yc, xc, side);
+                    drawEllipseFootprint(target, x, y, yc, xc, side,
+                            thickness, footprint);
                 }
             }
 
@@ -212,10 +245,11 @@ public class DrawableArc extends Drawable {
                     y -= 1;
                 }
 
-                if (super.getThick() == 1) {
-                    this.drawEllipse(graphics, x, y, yc, xc, side);
+                if (thickness == 1) {
+                    drawEllipse(target, x, y, yc, xc, side);
                 } else {
-                    this.drawEllipseFootprint(graphics, x, y, yc, xc, side);
+                    drawEllipseFootprint(target, x, y, yc, xc, side,
+                            thickness, footprint);
                 }
             }
         }
@@ -225,20 +259,20 @@ public class DrawableArc extends Drawable {
     /**
      * Method for mirroring the rest of the area of the arc
      *
-     * @param graphics Graphics object
+     * @param target PixelTarget to draw on
      * @param x calculated x coordinate
      * @param y calculated y coordinate
      * @param xc original x coordinate
      * @param yc original y coordinate
      */
-    private void drawEllipse(Graphics graphics, int x, int y, int xc, int yc,
-            int side) {
+    private static void drawEllipse(PixelTarget target, int x, int y,
+            int xc, int yc, int side) {
         if (side == 1) {
-            graphics.drawLine(-x + xc, y + yc, -x + xc, y + yc);
-            graphics.drawLine(-x + xc, -y + yc, -x + xc, -y + yc);
+            target.plot(-x + xc, y + yc);
+            target.plot(-x + xc, -y + yc);
         } else {
-            graphics.drawLine(x + xc, y + yc, x + xc, y + yc);
-            graphics.drawLine(x + xc, -y + yc, x + xc, -y + yc);
+            target.plot(x + xc, y + yc);
+            target.plot(x + xc, -y + yc);
         }
 
     }
@@ -246,24 +280,25 @@ public class DrawableArc extends Drawable {
     /**
      * Draws the footprint by calling the footprint utility static class.
      *
-     * @param graphics Graphics object
+     * @param target PixelTarget to draw on
      * @param x calculated x coordinate
      * @param y calculated y coordinate
      * @param xc original x coordinate
      * @param yc original y coordinate
      */
-    private void drawEllipseFootprint(Graphics graphics, int x, int y, int xc,
-            int yc, int side) {
+    private static void drawEllipseFootprint(PixelTarget target, int x,
+            int y, int xc, int yc, int side, int thickness,
+            boolean footprint) {
         if (side == 1) {
-            Footprint.drawFootprint(graphics, -x + xc, y + yc, super.getThick(),
-                    super.getFootprint());
-            Footprint.drawFootprint(graphics, -x + xc, -y + yc, super.getThick(),
-                    super.getFootprint());
+            Footprint.drawFootprint(target, -x + xc, y + yc, thickness,
+                    footprint);
+            Footprint.drawFootprint(target, -x + xc, -y + yc, thickness,
+                    footprint);
         } else {
-            Footprint.drawFootprint(graphics, x + xc, y + yc, super.getThick(),
-                super.getFootprint());
-            Footprint.drawFootprint(graphics, x + xc, -y + yc, super.getThick(),
-                super.getFootprint());
+            Footprint.drawFootprint(target, x + xc, y + yc, thickness,
+                footprint);
+            Footprint.drawFootprint(target, x + xc, -y + yc, thickness,
+                footprint);
         }
         
     }
@@ -6,8 +6,9 @@ package com.gilera.jpainter.drawables;
  * 
  * Description: The subclass drawing circle.
  */
+import com.gilera.jpainter.raster.PixelTarget;
 import java.awt.Color;
-import java.awt.Graphics;
+import java.awt.Rectangle;
 
 /**
  * DrawableCircle class
@@ -24,6 +25,56 @@ public class DrawableCircle extends Drawable {
         super(xi, yi, xo, yo, sThick, sColor, footprint);
     }
 
+    /**
+     * Draws the circle, see rasterizeCircle.
+     * @param target PixelTarget to draw on.
+     */
+    @Override
+    protected void rasterize(PixelTarget target) {
+        rasterizeCircle(target, super.getXi(), super.getYi(), super.getXo(),
+                super.getYo(), super.getThick(), super.getFootprint());
+    }
+
+    /**
+     * The circle takes its radius from the longer side of the area between
+     * the endpoints, so it can reach outside of that area.
+     * @return the bounding rectangle
+     */
+    @Override
+    protected Rectangle computeBounds() {
+        return circleBounds(super.getXi(), super.getYi(), super.getXo(),
+                super.getYo(), super.getThick());
+    }
+
+    /**
+     * Computes the bounding rectangle of a circle drawn by rasterizeCircle.
+     * Also used by CompactSceneStore, which draws circles without a
+     * DrawableCircle.
+     * @param xi initial x position
+     * @param yi initial y position
+     * @param xo final x position
+     * @param yo final y position
+     * @param thickness the thickness of the footprint
+     * @return the bounding rectangle
+     */
+    static Rectangle circleBounds(int xi, int yi, int xo, int yo,
+            int thickness) {
+        int dx = Math.abs(xo - xi);
+        int dy = Math.abs(yo - yi);
+        int xmin = Math.min(xi, xo);
+        int ymin = Math.min(yi, yo);
+
+        // Same centre and radius as computed in drawShape, the radius is
+        //      always half of the horizontal distance. A zero radius still
+        //      draws one pixel away from the centre.
+        int x = xmin + dx / 2;
+        int y = ymin + dy / 2;
+        int radius = Math.max(dx / 2, 1);
+
+        return paddedBounds(x - radius, y - radius, x + radius, y + radius,
+                thickness);
+    }
+
     /**
      * Drawing method. The points resulted from clicking and dragging needs to
      * take into consideration. The idea is that the area covered by the
@@ -31,11 +82,16 @@ public class DrawableCircle extends Drawable {
      * of the new Drawable object to be drawn. An imaginary line is created
      * between these points and slope has to be taken into account in order
      * to draw this object naturally.
-     * @param graphics Graphics object.
+     * @param target PixelTarget to draw on.
+     * @param xi initial x position
+     * @param yi initial y position
+     * @param xo other end x position
+     * @param yo other end y position
+     * @param thickness thickness in pixels
+     * @param footprint footprint type
      */
-    @Override
-    public void drawShape(Graphics graphics) {
-        int thick = super.getThick();
+    static void rasterizeCircle(PixelTarget target, int xi, int yi, int xo,
+            int yo, int thickness, boolean footprint) {
         int radius;
 
         // x and y are the coordinates for the centre of the circle
@@ -44,12 +100,11 @@ public class DrawableCircle extends Drawable {
         // xn and yn is the first point the user clicked
         // xm and ym is the second point the user clicked
         int xn, yn, xm, ym;
-        xn = super.getXi();
-        yn = super.getYi();
-        xm = super.getXo();
-        ym = super.getYo();
+        xn = xi;
+        yn = yi;
+        xm = xo;
+        ym = yo;
 
-        graphics.setColor(super.getColor());
 
         int dx = xm - xn;
         int dy = ym - yn;
@@ -65,10 +120,10 @@ public class DrawableCircle extends Drawable {
                 yn = ym;
                 ym = tempY;
             } else {
-                xn = super.getXi();
-                yn = super.getYi();
-                xm = super.getXo();
-                ym = super.getYo();
+                xn = xi;
+                yn = yi;
+                xm = xo;
+                ym = yo;
             }
 
             x = ((xm - xn) / 2) + xn;
@@ -92,10 +147,10 @@ public class DrawableCircle extends Drawable {
                 yn = ym;
                 ym = tempY;
             } else {
-                xn = super.getXi();
-                yn = super.getYi();
-                xm = super.getXo();
-                ym = super.getYo();
+                xn = xi;
+                yn = yi;
+                xm = xo;
+                ym = yo;
             }
 
             y = ((ym - yn) / 2) + yn;
@@ -110,7 +165,7 @@ public class DrawableCircle extends Drawable {
         }
 
         // Calls the drawCircle method to draw the circle in each loop.
-        this.drawCircle(x, y, radius, graphics);
+        drawCircle(x, y, radius, target, thickness, footprint);
     }
 
     /**
@@ -119,9 +174,10 @@ public class DrawableCircle extends Drawable {
      * @param xc The x-coordinate of the centre of the circle.
      * @param yc The y-coordinate of the centre of the circle.
      * @param r The radius of the circle.
-     * @param g The graphics object.
+     * @param target The PixelTarget to draw on.
      */
-    private void drawCircle(int xc, int yc, int r, Graphics g) {
+    private static void drawCircle(int xc, int yc, int r, PixelTarget target,
+            int thickness, boolean footprint) {
         /*
          * Declare and initialise local variables.
          * The origin is base on positive y-axis at (0,r)
@@ -137,7 +193,7 @@ public class DrawableCircle extends Drawable {
         y = r;
 
         // Initialises first points of the 8 arcs.
-        this.drawCircleArcs(g, x, y, xc, yc);
+        drawCircleArcs(target, x, y, xc, yc);
 
         // Initialise the value of P, base on the Bresenham's algorithm.      
         p = 3 - 2 * r;
@@ -161,10 +217,11 @@ public class DrawableCircle extends Drawable {
             // Draws the 8 pixels for each octant of the circle through symmetry;
             //      by calling the drawTheCircle method which takes
             //      circle parameters as method arguments.
-            if (super.getThick() == 1) {
-                this.drawCircleArcs(g, x, y, xc, yc);
+            if (thickness == 1) {
+                drawCircleArcs(target, x, y, xc, yc);
             } else {
-                this.drawCircleArcsFootprint(g, x, y, xc, yc);
+                drawCircleArcsFootprint(target, x, y, xc, yc, thickness,
+                        footprint);
             }
 
         }
@@ -173,51 +230,52 @@ public class DrawableCircle extends Drawable {
     /**
      * The method for mirroring the arc to complete the circle.
      *
-     * @param g The graphics object.
+     * @param target The PixelTarget to draw on.
      * @param x The x-coordinate to draw the arc.
      * @param y The y-coordinate to draw the arc.
      * @param xc The x-coordinate of the centre of the circle.
      * @param yc The y-coordinate of the centre of the circle.
      */
-    private void drawCircleArcs(Graphics g, int x, int y, int xc, int yc) {
-        g.drawLine(y + xc, x + yc, y + xc, x + yc);
-        g.drawLine(x + xc, y + yc, x + xc, y + yc);
-        g.drawLine(-x + xc, y + yc, -x + xc, y + yc);
-        g.drawLine(-y + xc, x + yc, -y + xc, x + yc);
-        g.drawLine(-y + xc, -x + yc, -y + xc, -x + yc);
-        g.drawLine(-x + xc, -y + yc, -x + xc, -y + yc);
-        g.drawLine(x + xc, -y + yc, x + xc, -y + yc);
-        g.drawLine(y + xc, -x + yc, y + xc, -x + yc);
+    private static void drawCircleArcs(PixelTarget target, int x, int y,
+            int xc, int yc) {
+        target.plot(y + xc, x + yc);
+        target.plot(x + xc, y + yc);
+        target.plot(-x + xc, y + yc);
+        target.plot(-y + xc, x + yc);
+        target.plot(-y + xc, -x + yc);
+        target.plot(-x + xc, -y + yc);
+        target.plot(x + xc, -y + yc);
+        target.plot(y + xc, -x + yc);
 
     }
 
     /**
      * The method for mirroring the arc to complete the circle.
      *
-     * @param g The graphics object.
+     * @param target The PixelTarget to draw on.
      * @param x The x-coordinate to draw the arc.
      * @param y The y-coordinate to draw the arc.
      * @param xc The x-coordinate of the centre of the circle.
      * @param yc The y-coordinate of the centre of the circle.
      */
-    private void drawCircleArcsFootprint(Graphics g, int x, int y, int xc,
-            int yc) {
-        Footprint.drawFootprint(g, y + xc, x + yc, super.getThick(),
-                super.getFootprint());
-        Footprint.drawFootprint(g, x + xc, y + yc, super.getThick(),
-                super.getFootprint());
-        Footprint.drawFootprint(g, -x + xc, y + yc, super.getThick(),
-                super.getFootprint());
-        Footprint.drawFootprint(g, -y + xc, x + yc, super.getThick(),
-                super.getFootprint());
-        Footprint.drawFootprint(g, -y + xc, -x + yc, super.getThick(),
-                super.getFootprint());
-        Footprint.drawFootprint(g, -x + xc, -y + yc, super.getThick(),
-                super.getFootprint());
-        Footprint.drawFootprint(g, x + xc, -y + yc, super.getThick(),
-                super.getFootprint());
-        Footprint.drawFootprint(g, y + xc, -x + yc, super.getThick(),
-                super.getFootprint());
+    private static void drawCircleArcsFootprint(PixelTarget target, int x,
+            int y, int xc, int yc, int thickness, boolean footprint) {
+        Footprint.drawFootprint(target, y + xc, x + yc, thickness,
+                footprint);
+        Footprint.drawFootprint(target, x + xc, y + yc, thickness,
+                footprint);
+        Footprint.drawFootprint(target, -x + xc, y + yc, thickness,
+                footprint);
+        Footprint.drawFootprint(target, -y + xc, x + yc, thickness,
+                footprint);
+        Footprint.drawFootprint(target, -y + xc, -x + yc, thickness,
+                footprint);
+        Footprint.drawFootprint(target, -x + xc, -y + yc, thickness,
+                footprint);
+        Footprint.drawFootprint(target, x + xc, -y + yc, thickness,
+                footprint);
+        Footprint.drawFootprint(target, y + xc, -x + yc, thickness,
+                footprint);
     }
 
 }
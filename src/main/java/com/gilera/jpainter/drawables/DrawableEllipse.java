@@ -6,8 +6,9 @@ package com.gilera.jpainter.drawables;
  * 
  * Description: The subclass drawing ellipse.
  */
+import com.gilera.jpainter.raster.PixelTarget;
 import java.awt.Color;
-import java.awt.Graphics;
+import java.awt.Rectangle;
 
 /**
  * DrawableEllipse class
@@ -24,6 +25,30 @@ public class DrawableEllipse extends Drawable {
         super(xi, yi, xo, yo, sThick, sColor, footprint);
     }
 
+    /**
+     * Draws the ellipse, see rasterizeEllipse.
+     * @param target PixelTarget to draw on.
+     */
+    @Override
+    protected void rasterize(PixelTarget target) {
+        rasterizeEllipse(target, super.getXi(), super.getYi(), super.getXo(),
+                super.getYo(), super.getThick(), super.getFootprint());
+    }
+
+    /**
+     * The midpoint algorithm can step one pixel past a very short axis, 
+     * so the area between the endpoints is grown by one pixel.
+     * @return the bounding rectangle
+     */
+    @Override
+    protected Rectangle computeBounds() {
+        return super.paddedBounds(
+                Math.min(super.getXi(), super.getXo()) - 1,
+                Math.min(super.getYi(), super.getYo()) - 1,
+                Math.max(super.getXi(), super.getXo()) + 1,
+                Math.max(super.getYi(), super.getYo()) + 1);
+    }
+
     /**
      * Drawing method. The points resulted from clicking and dragging needs to
      * take into consideration. The idea is that the area covered by the two
@@ -32,10 +57,16 @@ public class DrawableEllipse extends Drawable {
      * points and slope has to be taken into account in order to draw this
      * object naturally.
      *
-     * @param graphics Graphics object.
+     * @param target PixelTarget to draw on.
+     * @param xi initial x position
+     * @param yi initial y position
+     * @param xo other end x position
+     * @param yo other end y position
+     * @param thickness thickness in pixels
+     * @param footprint footprint type
      */
-    @Override
-    public void drawShape(Graphics graphics) {
+    static void rasterizeEllipse(PixelTarget target, int xi, int yi, int xo,
+            int yo, int thickness, boolean footprint) {
         int p;
         int a, b, xc, yc;
         int semiMajor, semiMinor;
@@ -43,12 +74,11 @@ public class DrawableEllipse extends Drawable {
         // xn and yn is the first point the user clicked
         // xm and ym is the second point the user clicked
         int xn, yn, xm, ym;
-        xn = super.getXi();
-        yn = super.getYi();
-        xm = super.getXo();
-        ym = super.getYo();
+        xn = xi;
+        yn = yi;
+        xm = xo;
+        ym = yo;
 
-        graphics.setColor(super.getColor());
 
         int dx = xm - xn;
         int dy = ym - yn;
@@ -64,10 +94,10 @@ public class DrawableEllipse extends Drawable {
                 yn = ym;
                 ym = tempY;
             } else {
-                xn = super.getXi();
-                yn = super.getYi();
-                xm = super.getXo();
-                ym = super.getYo();
+                xn = xi;
+                yn = yi;
+                xm = xo;
+                ym = yo;
             }
 
             // see notes for explanation (notebook)
@@ -105,10 +135,11 @@ public class DrawableEllipse extends Drawable {
                     y -= 1;
                 }
 
-                if (super.getThick() == 1) {
-                    this.drawEllipse(graphics, x, y, xc, yc);
+                if (thickness == 1) {
+                    drawEllipse(target, x, y, xc, yc);
                 } else {
-                    this.drawEllipseFootprint(graphics, x, y, xc, yc);
+                    drawEllipseFootprint(target, x, y, xc, yc,
+                            thickness, footprint);
                 }
             }
 
@@ -123,10 +154,11 @@ public class DrawableEllipse extends Drawable {
                     x -= 1;
                 }
 
-                if (super.getThick() == 1) {
-                    this.drawEllipse(graphics, x, y, xc, yc);
+                if (thickness == 1) {
+                    drawEllipse(target, x, y, xc, yc);
                 } else {
-                    this.drawEllipseFootprint(graphics, x, y, xc, yc);
+                    drawEllipseFootprint(target, x, y, xc, yc,
+                            thickness, footprint);
                 }
             }
 
@@ -144,10 +176,10 @@ public class DrawableEllipse extends Drawable {
                 yn = ym;
                 ym = tempY;
             } else {
-                xn = super.getXi();
-                yn = super.getYi();
-                xm = super.getXo();
-                ym = super.getYo();
+                xn = xi;
+                yn = yi;
+                xm = xo;
+                ym = yo;
             }
 
             // see notes for explanation (notebook)
@@ -185,10 +217,11 @@ public class DrawableEllipse extends Drawable {
                     x -= 1;
                 }
 
-                if (super.getThick() == 1) {
-                    this.drawEllipse(graphics, x, y, yc, xc);
+                if (thickness == 1) {
+                    drawEllipse(target, x, y, yc, xc);
                 } else {
-                    this.drawEllipseFootprint(graphics, x, y, yc, xc);
+                    drawEllipseFootprint(target, x, y, yc, xc,
+                            thickness, footprint);
                 }
             }
 
@@ -203,10 +236,11 @@ public class DrawableEllipse extends Drawable {
                     y -= 1;
                 }
 
-                if (super.getThick() == 1) {
-                    this.drawEllipse(graphics, x, y, yc, xc);
+                if (thickness == 1) {
+                    drawEllipse(target, x, y, yc, xc);
                 } else {
-                    this.drawEllipseFootprint(graphics, x, y, yc, xc);
+                    drawEllipseFootprint(target, x, y, yc, xc,
+                            thickness, footprint);
                 }
             }
         }
@@ -216,37 +250,39 @@ public class DrawableEllipse extends Drawable {
     /**
      * Method for mirroring the rest of the area of the ellipse
      *
-     * @param graphics Graphics object
+     * @param target PixelTarget to draw on
      * @param x calculated x coordinate
      * @param y calculated y coordinate
      * @param xc original x coordinate
      * @param yc original y coordinate
      */
-    private void drawEllipse(Graphics graphics, int x, int y, int xc, int yc) {
-        graphics.drawLine(x + xc, y + yc, x + xc, y + yc);
-        graphics.drawLine(-x + xc, y + yc, -x + xc, y + yc);
-        graphics.drawLine(-x + xc, -y + yc, -x + xc, -y + yc);
-        graphics.drawLine(x + xc, -y + yc, x + xc, -y + yc);
+    private static void drawEllipse(PixelTarget target, int x, int y,
+            int xc, int yc) {
+        target.plot(x + xc, y + yc);
+        target.plot(-x + xc, y + yc);
+        target.plot(-x + xc, -y + yc);
+        target.plot(x + xc, -y + yc);
     }
 
     /**
      * Draws the footprint by calling the footprint utility static class.
      *
-     * @param graphics Graphics object
+     * @param target PixelTarget to draw on
      * @param x calculated x coordinate
      * @param y calculated y coordinate
      * @param xc original x coordinate
      * @param yc original y coordinate
      */
-    private void drawEllipseFootprint(Graphics graphics, int x, int y, int xc, int yc) {
-        Footprint.drawFootprint(graphics, x + xc, y + yc, super.getThick(),
-                super.getFootprint());
-        Footprint.drawFootprint(graphics, -x + xc, y + yc, super.getThick(),
-                super.getFootprint());
-        Footprint.drawFootprint(graphics, -x + xc, -y + yc, super.getThick(),
-                super.getFootprint());
-        Footprint.drawFootprint(graphics, x + xc, -y + yc, super.getThick(),
-                super.getFootprint());
+    private static void drawEllipseFootprint(PixelTarget target, int x,
+            int y, int xc, int yc, int thickness, boolean footprint) {
+        Footprint.drawFootprint(target, x + xc, y + yc, thickness,
+                footprint);
+        Footprint.drawFootprint(target, -x + xc, y + yc, thickness,
+                footprint);
+        Footprint.drawFootprint(target, -x + xc, -y + yc, thickness,
+                footprint);
+        Footprint.drawFootprint(target, x + xc, -y + yc, thickness,
+                footprint);
     }
 
 }
@@ -6,9 +6,10 @@ package com.gilera.jpainter.drawables;
  * 
  * Description: The subclass drawing image.
  */
+import com.gilera.jpainter.raster.PixelTarget;
 import java.awt.Color;
-import java.awt.Graphics;
 import java.awt.Image;
+import java.awt.Rectangle;
 
 /**
  * DrawableImage class
@@ -18,6 +19,9 @@ import java.awt.Image;
  * @author Ryan Gilera <jalapaomaji-github@yahoo.com>
  */
 public class DrawableImage extends Drawable {
+    // The span list of every image, see getSpans.
+    private static final int[] NO_SPANS = new int[0];
+
     private final Image imageLoad;
 
     // Constructor - same setup as the Drawable class except for the
@@ -29,6 +33,21 @@ public class DrawableImage extends Drawable {
         this.imageLoad = loadedImage;
     }
 
+    /**
+     * An image has no outline to merge, so it is drawn straight onto the
+     * PixelTarget.
+     * @param target PixelTarget to draw on.
+     */
+    @Override
+    public void drawShape(PixelTarget target) {
+        this.rasterize(target);
+    }
+
+    @Override
+    public void drawShapeOnce(PixelTarget target) {
+        this.rasterize(target);
+    }
+
     /**
      * Drawing method. The points resulted from clicking and dragging needs to
      * take into consideration. The idea is that the area covered by the
@@ -36,10 +55,10 @@ public class DrawableImage extends Drawable {
      * of the new Drawable object to be drawn. An imaginary line is created
      * between these points and slope has to be taken into account in order
      * to draw this object naturally.
-     * @param graphics Graphics object.
+     * @param target PixelTarget to draw on.
      */
     @Override
-    public void drawShape(Graphics graphics) {
+    protected void rasterize(PixelTarget target) {
         int xn, yn, xm, ym;
         int xa, ya, xb, yb, xc, yc, xd, yd;
 
@@ -50,7 +69,6 @@ public class DrawableImage extends Drawable {
         xm = super.getXo();
         ym = super.getYo();
 
-        graphics.setColor(super.getColor());
 
         int dx = xm - xn;
         int dy = ym - yn;
@@ -124,12 +142,54 @@ public class DrawableImage extends Drawable {
                 xd = xm;
             }
         }
-        this.drawImageOnCanvas(graphics, xa, ya, xb, yb, xc, yc, xd, yd);
+        this.drawImageOnCanvas(target, xa, ya, xb, yb, xc, yc, xd, yd);
     }
     
+    /**
+     * Getter method for imageLoad.
+     * @return imageLoad
+     */
+    public Image getImage() {
+        return imageLoad;
+    }
+
+    /**
+     * An image is not made of spans, so it never compiles a span list and
+     * never reaches a SpanListBuilder. It is drawn by rasterize every
+     * time, see drawShape.
+     * @return an empty span list
+     */
+    @Override
+    protected int[] getSpans() {
+        return NO_SPANS;
+    }
+
+    /**
+     * An image is not made of spans, it covers its whole bounds.
+     * @return number of pixels
+     */
+    @Override
+    public long getPixelCount() {
+        Rectangle area = super.getBounds();
+        return (long) area.width * area.height;
+    }
+
+    /**
+     * The image is drawn at the top left point, using the lower right point
+     * as its width and height (see drawImageOnCanvas). No footprint.
+     * @return the bounding rectangle
+     */
+    @Override
+    protected Rectangle computeBounds() {
+        return new Rectangle(Math.min(super.getXi(), super.getXo()),
+                Math.min(super.getYi(), super.getYo()),
+                Math.max(super.getXi(), super.getXo()),
+                Math.max(super.getYi(), super.getYo()));
+    }
+
 /**
      * Draws image after the points limits are defined
-     * @param graphics Graphics object
+     * @param target PixelTarget to draw on
      * @param xa x coordinate of top left of the square area
      * @param ya y coordinate of top left of the square area
      * @param xb x coordinate of top right of the square area
@@ -139,10 +199,10 @@ public class DrawableImage extends Drawable {
      * @param xd x coordinate of lower right of the square area
      * @param yd y coordinate of lower right of the square area
      */
-    private void drawImageOnCanvas(Graphics graphics, int xa, int ya, int xb, int yb,
+    private void drawImageOnCanvas(PixelTarget target, int xa, int ya, int xb, int yb,
             int xc, int yc, int xd, int yd) {
         
-        graphics.drawImage(imageLoad, xa, ya, xd, yd, null);
+        target.drawImage(imageLoad, xa, ya, xd, yd);
         
     }
 }
@@ -6,8 +6,8 @@ package com.gilera.jpainter.drawables;
  * 
  * Description: The subclass drawing line.
  */
+import com.gilera.jpainter.raster.PixelTarget;
 import java.awt.Color;
-import java.awt.Graphics;
 
 /**
  * DrawableLine class
@@ -32,23 +32,32 @@ public class DrawableLine extends Drawable {
      * of the new Drawable object to be drawn. An imaginary line is created
      * between these points and slope has to be taken into account in order
      * to draw this object naturally.
-     * @param graphics Graphics object.
+     * @param target PixelTarget to draw on.
      */
     @Override
-    public void drawShape(Graphics graphics) {
-        // Applies the color initially.
-        graphics.setColor(super.getColor());
+    protected void rasterize(PixelTarget target) {
+        rasterizeLine(target, super.getXi(), super.getYi(), super.getXo(),
+                super.getYo(), super.getThick(), super.getFootprint());
+    }
 
+    /**
+     * Runs the Bresenham algorithm between two points, drawing a footprint
+     * at each step. Static so that the edges of other Drawables can be 
+     * drawn without creating a DrawableLine object for each of them.
+     * @param target PixelTarget to draw on.
+     * @param xi initial x position
+     * @param yi initial y position
+     * @param xn other end x position
+     * @param yn other end y position
+     * @param thickness thickness
+     * @param footprint footprint type
+     */
+    static void rasterizeLine(PixelTarget target, int xi, int yi, int xn,
+            int yn, int thickness, boolean footprint) {
         // Local variables declarations
-        int xi, yi, xn, yn, p;
+        int p;
         int dx, dy, x, y, slopeSign;
 
-        // Initialisations.
-        xi = super.getXi();
-        xn = super.getXo();
-        yi = super.getYi();
-        yn = super.getYo();
-
         dx = xn - xi;
         dy = yn - yi;
 
@@ -88,7 +97,7 @@ public class DrawableLine extends Drawable {
             y = yi;
 
             // Draw the first pixel of the line at (x,y).
-            graphics.drawLine(x, y, x, y);
+            target.plot(x, y);
 
             // Every loop a footprint is drawn for each new calculated
             //      values of x and y.
@@ -104,7 +113,7 @@ public class DrawableLine extends Drawable {
                     y += slopeSign;
                 }
                 // Draws the footprint at each location of x,y
-                this.drawBrushHead(x, y, graphics);
+                drawBrushHead(target, x, y, thickness, footprint);
             }
             // Otherwise y constantly increase by one
             //      while x depends on p value, depending
@@ -142,7 +151,7 @@ public class DrawableLine extends Drawable {
             y = yi;
 
             // Draw the first pixel of the line at (x,y).
-            graphics.drawLine(x, y, x, y);
+            target.plot(x, y);
 
             // Every loop a footprint is drawn for each new calculated
             //      values of x and y.
@@ -158,7 +167,7 @@ public class DrawableLine extends Drawable {
                     x += slopeSign;
                 }
                 // Draws the footprint at each location of x,y
-                this.drawBrushHead(x, y, graphics);
+                drawBrushHead(target, x, y, thickness, footprint);
             }
         }
     }
@@ -181,17 +190,19 @@ public class DrawableLine extends Drawable {
      * corresponding method. But if the thickness is 1 pixel, there is no need
      * to draw footprint, instead it just draw the line.
      *
+     * @param target The PixelTarget pass to the methods.
      * @param x The base x-coordinate of the footprint (centre).
      * @param y The base y-coordinate of the footprint (centre).
-     * @param g The graphics object pass to the methods.
+     * @param thickness thickness
+     * @param footprint footprint type
      */
-    private void drawBrushHead(int x, int y, Graphics g) {
-        if (super.getThick() == 1) {
-            g.drawLine(x, y, x, y);
+    private static void drawBrushHead(PixelTarget target, int x, int y,
+            int thickness, boolean footprint) {
+        if (thickness == 1) {
+            target.plot(x, y);
         } else {
             // Calls the static class for generating footprint.
-            Footprint.drawFootprint(g, x, y, super.getThick(), 
-                    super.getFootprint());
+            Footprint.drawFootprint(target, x, y, thickness, footprint);
         }
     }
 
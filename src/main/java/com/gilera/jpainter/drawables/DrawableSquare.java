@@ -6,10 +6,8 @@ package com.gilera.jpainter.drawables;
  * 
  * Description: The subclass drawing square.
  */
+import com.gilera.jpainter.raster.PixelTarget;
 import java.awt.Color;
-import java.awt.Graphics;
-import java.util.ArrayList;
-import java.util.HashMap;
 
 /**
  * DrawableSquare class
@@ -26,6 +24,16 @@ public class DrawableSquare extends Drawable {
         super(xi, yi, xo, yo, sThick, sColor, footprint);
     }
 
+    /**
+     * Draws the square, see rasterizeSquare.
+     * @param target PixelTarget to draw on.
+     */
+    @Override
+    protected void rasterize(PixelTarget target) {
+        rasterizeSquare(target, super.getXi(), super.getYi(), super.getXo(),
+                super.getYo(), super.getThick(), super.getFootprint());
+    }
+
     /**
      * Drawing method. The points resulted from clicking and dragging needs to
      * take into consideration. The idea is that the area covered by the
@@ -33,21 +41,26 @@ public class DrawableSquare extends Drawable {
      * of the new Drawable object to be drawn. An imaginary line is created
      * between these points and slope has to be taken into account in order
      * to draw this object naturally.
-     * @param graphics Graphics object.
+     * @param target PixelTarget to draw on.
+     * @param xi initial x position
+     * @param yi initial y position
+     * @param xo other end x position
+     * @param yo other end y position
+     * @param thickness thickness in pixels
+     * @param footprint footprint type
      */
-    @Override
-    public void drawShape(Graphics graphics) {
+    static void rasterizeSquare(PixelTarget target, int xi, int yi, int xo,
+            int yo, int thickness, boolean footprint) {
         int xn, yn, xm, ym;
         int xa, ya, xb, yb, xc, yc, xd, yd;
 
         // xn and yn is the first point the user clicked
         // xm and ym is the second point the user clicked
-        xn = super.getXi();
-        yn = super.getYi();
-        xm = super.getXo();
-        ym = super.getYo();
+        xn = xi;
+        yn = yi;
+        xm = xo;
+        ym = yo;
 
-        graphics.setColor(super.getColor());
 
         int dx = xm - xn;
         int dy = ym - yn;
@@ -63,10 +76,10 @@ public class DrawableSquare extends Drawable {
                 yn = ym;
                 ym = tempY;
             } else {
-                xn = super.getXi();
-                yn = super.getYi();
-                xm = super.getXo();
-                ym = super.getYo();
+                xn = xi;
+                yn = yi;
+                xm = xo;
+                ym = yo;
             }
 
             xa = xn;
@@ -98,10 +111,10 @@ public class DrawableSquare extends Drawable {
                 yn = ym;
                 ym = tempY;
             } else {
-                xn = super.getXi();
-                yn = super.getYi();
-                xm = super.getXo();
-                ym = super.getYo();
+                xn = xi;
+                yn = yi;
+                xm = xo;
+                ym = yo;
             }
 
             ya = yn;
@@ -122,13 +135,14 @@ public class DrawableSquare extends Drawable {
             }
         }
 
-        this.drawSquare(graphics, xa, ya, xb, yb, xc, yc, xd, yd);
+        drawSquare(target, xa, ya, xb, yb, xc, yc, xd, yd, thickness,
+                footprint);
 
     }
 
     /**
      * Draws square after the points limits are defined
-     * @param graphics Graphics object
+     * @param target PixelTarget to draw on
      * @param xa x coordinate of top left of the square area
      * @param ya y coordinate of top left of the square area
      * @param xb x coordinate of top right of the square area
@@ -137,29 +151,19 @@ public class DrawableSquare extends Drawable {
      * @param yc y coordinate of lower left of the square area
      * @param xd x coordinate of lower right of the square area
      * @param yd y coordinate of lower right of the square area
+     * @param thick thickness in pixels
+     * @param footprint footprint type
      */
-    private void drawSquare(Graphics graphics, int xa, int ya, int xb, int yb,
-            int xc, int yc, int xd, int yd) {
-
-        ArrayList<DrawableLine> square = new ArrayList<>();
-
-        // Form the square by drawing each line/side
-        square.add(new DrawableLine(xa, ya, xb, yb,
-                super.getThick(), super.getColor(), super.getFootprint()));
-
-        square.add(new DrawableLine(xb, yb, xd, yd,
-                super.getThick(), super.getColor(), super.getFootprint()));
-
-        square.add(new DrawableLine(xd, yd, xc, yc,
-                super.getThick(), super.getColor(), super.getFootprint()));
-
-        square.add(new DrawableLine(xc, yc, xa, ya,
-                super.getThick(), super.getColor(), super.getFootprint()));
-
-        // Draws square clockwise.
-        for (DrawableLine aLine : square) {
-            aLine.drawShape(graphics);
-        }
+    private static void drawSquare(PixelTarget target, int xa, int ya,
+            int xb, int yb, int xc, int yc, int xd, int yd, int thick,
+            boolean footprint) {
+
+        // Form the square by drawing each line/side, clockwise.
+        // The sides are drawn directly, no DrawableLine objects are created.
+        DrawableLine.rasterizeLine(target, xa, ya, xb, yb, thick, footprint);
+        DrawableLine.rasterizeLine(target, xb, yb, xd, yd, thick, footprint);
+        DrawableLine.rasterizeLine(target, xd, yd, xc, yc, thick, footprint);
+        DrawableLine.rasterizeLine(target, xc, yc, xa, ya, thick, footprint);
     }
 
 }
@@ -6,9 +6,8 @@ package com.gilera.jpainter.drawables;
  * 
  * Description: The subclass drawing triangle.
  */
+import com.gilera.jpainter.raster.PixelTarget;
 import java.awt.Color;
-import java.awt.Graphics;
-import java.util.ArrayList;
 
 /**
  * DrawableTriangle class
@@ -25,6 +24,16 @@ public class DrawableTriangle extends Drawable {
         super(xi, yi, xo, yo, sThick, sColor, footprint);
     }
 
+    /**
+     * Draws the triangle, see rasterizeTriangle.
+     * @param target PixelTarget to draw on.
+     */
+    @Override
+    protected void rasterize(PixelTarget target) {
+        rasterizeTriangle(target, super.getXi(), super.getYi(), super.getXo(),
+                super.getYo(), super.getThick(), super.getFootprint());
+    }
+
     /**
      * Drawing method. The points resulted from clicking and dragging needs to
      * take into consideration. The idea is that the area covered by the two
@@ -33,21 +42,26 @@ public class DrawableTriangle extends Drawable {
      * points and slope has to be taken into account in order to draw this
      * object naturally.
      *
-     * @param graphics Graphics object.
+     * @param target PixelTarget to draw on.
+     * @param xi initial x position
+     * @param yi initial y position
+     * @param xo other end x position
+     * @param yo other end y position
+     * @param thickness thickness in pixels
+     * @param footprint footprint type
      */
-    @Override
-    public void drawShape(Graphics graphics) {
+    static void rasterizeTriangle(PixelTarget target, int xi, int yi, int xo,
+            int yo, int thickness, boolean footprint) {
         int xn, yn, xm, ym;
         int xa, ya, xb, yb, xc, yc, xd, yd;
 
         // xn and yn is the first point the user clicked
         // xm and ym is the second point the user clicked
-        xn = super.getXi();
-        yn = super.getYi();
-        xm = super.getXo();
-        ym = super.getYo();
+        xn = xi;
+        yn = yi;
+        xm = xo;
+        ym = yo;
 
-        graphics.setColor(super.getColor());
 
         int dx = xm - xn;
         int dy = ym - yn;
@@ -63,10 +77,10 @@ public class DrawableTriangle extends Drawable {
                 yn = ym;
                 ym = tempY;
             } else {
-                xn = super.getXi();
-                yn = super.getYi();
-                xm = super.getXo();
-                ym = super.getYo();
+                xn = xi;
+                yn = yi;
+                xm = xo;
+                ym = yo;
             }
 
             xa = xn;
@@ -98,10 +112,10 @@ public class DrawableTriangle extends Drawable {
                 yn = ym;
                 ym = tempY;
             } else {
-                xn = super.getXi();
-                yn = super.getYi();
-                xm = super.getXo();
-                ym = super.getYo();
+                xn = xi;
+                yn = yi;
+                xm = xo;
+                ym = yo;
             }
 
             ya = yn;
@@ -122,13 +136,14 @@ public class DrawableTriangle extends Drawable {
             }
         }
 
-        this.drawTriangle(graphics, xa, ya, xb, yb, xc, yc, xd, yd);
+        drawTriangle(target, xa, ya, xb, yb, xc, yc, xd, yd, thickness,
+                footprint);
 
     }
     
     /**
      * Draws triangle after the points limits are defined
-     * @param graphics Graphics object
+     * @param target PixelTarget to draw on
      * @param xa x coordinate of top left of the square area
      * @param ya y coordinate of top left of the square area
      * @param xb x coordinate of top right of the square area
@@ -137,29 +152,23 @@ public class DrawableTriangle extends Drawable {
      * @param yc y coordinate of lower left of the square area
      * @param xd x coordinate of lower right of the square area
      * @param yd y coordinate of lower right of the square area
+     * @param thick thickness in pixels
+     * @param footprint footprint type
      */
-    private void drawTriangle(Graphics graphics, int xa, int ya, int xb, int yb,
-            int xc, int yc, int xd, int yd) {
-
-        ArrayList<DrawableLine> triangle = new ArrayList<>();
+    private static void drawTriangle(PixelTarget target, int xa, int ya,
+            int xb, int yb, int xc, int yc, int xd, int yd, int thick,
+            boolean footprint) {
 
         // computes the peak of the triangle
         int xmid = ((xb - xa) / 2) + xa;
         int ymid = ya;
 
-        // Draws the necessary lines to form a triangle
-        triangle.add(new DrawableLine(xmid, ymid, xc, yc,
-                super.getThick(), super.getColor(), super.getFootprint()));
-
-        triangle.add(new DrawableLine(xc, yc, xd, yd,
-                super.getThick(), super.getColor(), super.getFootprint()));
-
-        triangle.add(new DrawableLine(xmid, ymid, xd, yd,
-                super.getThick(), super.getColor(), super.getFootprint()));
-
-        // Draws clockwise.
-        for (DrawableLine aLine : triangle) {
-            aLine.drawShape(graphics);
-        }
+        // Draws the necessary lines to form a triangle, clockwise.
+        // The sides are drawn directly, no DrawableLine objects are created.
+        DrawableLine.rasterizeLine(target, xmid, ymid, xc, yc, thick,
+                footprint);
+        DrawableLine.rasterizeLine(target, xc, yc, xd, yd, thick, footprint);
+        DrawableLine.rasterizeLine(target, xmid, ymid, xd, yd, thick,
+                footprint);
     }
 }
@@ -7,7 +7,7 @@ package com.gilera.jpainter.drawables;
  * Description: The class responsible for drawing footprint. A utility for all
  * Drawable objects.
  */
-import java.awt.Graphics;
+import com.gilera.jpainter.raster.PixelTarget;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -16,25 +16,90 @@ import java.util.List;
  * 
  * Purpose: Provides the footprint mechanism for all Drawables. A utility 
  * static class that doesn't need to be instantiated, saves memory usage.
+ * Each footprint is drawn only once per thickness and type, into a 
+ * FootprintMask that is stamped from then on.
  *
  * @author Ryan Gilera <jalapaomaji-github@yahoo.com>
  */
 public final class Footprint {
 
+    /**
+     * Cached masks, indexed by footprint type (0 circle, 1 square) and
+     * thickness. Thicker footprints are not cached.
+     */
+    private static final int MAX_CACHED_THICKNESS = 64;
+    private static final FootprintMask[][] MASKS
+            = new FootprintMask[2][MAX_CACHED_THICKNESS + 1];
+
     // A static method for drawing the footprint, parent method for all
     //      sub methods called inside.
-    public static final void drawFootprint(Graphics graphics, int xc, int yc,
+    public static final void drawFootprint(PixelTarget target, int xc, int yc,
             int thickness, boolean footprintType) {
+        getMask(thickness, footprintType).stamp(target, xc, yc);
+    }
+
+    /**
+     * Returns the span mask of a footprint, building it on first use. The
+     * masks are immutable, so a mask built twice by two threads is harmless.
+     * @param thickness thickness
+     * @param footprintType true for the square footprint
+     * @return the mask
+     */
+    static final FootprintMask getMask(int thickness, boolean footprintType) {
+        int type = footprintType ? 1 : 0;
+
+        if (thickness < 0 || thickness > MAX_CACHED_THICKNESS) {
+            return buildMask(thickness, footprintType);
+        }
+
+        FootprintMask mask = MASKS[type][thickness];
+        if (mask == null) {
+            mask = buildMask(thickness, footprintType);
+            MASKS[type][thickness] = mask;
+        }
+        return mask;
+    }
+
+    /**
+     * Runs the footprint algorithms once around the centre (0,0) and 
+     * records the pixels as a mask.
+     * @param thickness thickness
+     * @param footprintType true for the square footprint
+     * @return the mask
+     */
+    private static FootprintMask buildMask(int thickness,
+            boolean footprintType) {
+        // The circle algorithm can step one pixel past its radius.
+        FootprintMask.Recorder recorder
+                = new FootprintMask.Recorder(Math.abs(thickness) / 2 + 2);
 
         // Determines which kind of footprint to draw
         if (footprintType) {
-            drawSquareFootprint(graphics, xc, yc, thickness);
+            drawSquareFootprint(recorder, 0, 0, thickness);
         } else {
-            drawCircleFootprint(graphics, xc, yc, thickness);
+            drawCircleFootprint(recorder, 0, 0, thickness);
         }
+
+        return FootprintMask.fromRecorder(recorder);
     }
 
-    private static final void drawSquareFootprint(Graphics graphics, int x,
+    /**
+     * Returns how many pixels a footprint reaches away from its centre, in
+     * any direction. Used for padding the bounds of the Drawables. A 
+     * thickness of 1 pixel draws no footprint at all.
+     * @param thickness thickness
+     * @return padding in pixels
+     */
+    public static final int getPadding(int thickness) {
+        if (thickness <= 1) {
+            return 0;
+        }
+        // The square footprint reaches thickness / 2 to the left and top,
+        //      the circle footprint has a radius of thickness / 2.
+        return thickness / 2;
+    }
+
+    private static final void drawSquareFootprint(PixelTarget target, int x,
             int y, int thickness) {
         /**
          * x and y are shifted by half of the thickness given. If the thickness
@@ -47,9 +112,7 @@ public final class Footprint {
         // Draw the lines from left to right first to fill horizontal space
         // Then move from top to bottom to fill vertical space.
         for (int i = 0; i < thickness; i++) {
-            for (int j = 0; j < thickness; j++) {
-                graphics.drawLine(x + j, y + i, x + j, y + i);
-            }
+            target.fillSpan(x, x + thickness - 1, y + i);
         }
 
     }
@@ -59,12 +122,12 @@ public final class Footprint {
      * along the circle for the 1st and 2nd octant. From there it fills
      * it by drawing pixel by pixel from y centre to the points as the limit.
      * Then mirror it to the other 3 quadrant areas of the circle.
-     * @param graphics Graphics object
+     * @param target PixelTarget to draw on
      * @param xc centre x position 
      * @param yc centre y position
      * @param thickness thickness
      */
-    private static final void drawCircleFootprint(Graphics graphics, int xc,
+    private static final void drawCircleFootprint(PixelTarget target, int xc,
             int yc, int thickness) {
 
         // Declares and intialise helper variables
@@ -76,7 +139,7 @@ public final class Footprint {
         final int radius = thickness / 2;
 
         // Capture or record all points along the 1st octant.
-        edges1stOctant = drawCircle(graphics, xc, yc, radius);
+        edges1stOctant = drawCircle(target, xc, yc, radius);
 
         // Add the first half of the points along the quadrant where 1st 
         //      octant lies.
@@ -143,8 +206,8 @@ public final class Footprint {
             for (Integer[] aPoint : newEdgeQuadrant) {
                 if (aPoint[1] == y) {
                     // Fills the circle horizantally from xmin to xmax
-                    for (int x = xmin; x < aPoint[0]; x++) {
-                        fillCircleQuadrant(graphics, x, y, xc, yc);
+                    if (aPoint[0] > xmin) {
+                        fillCircleQuadrant(target, aPoint[0] - 1, y, xc, yc);
                     }
                     break;
                 }
@@ -153,27 +216,29 @@ public final class Footprint {
 
         // Fills the middle horizontal x line gap from xmin to xmax and
         //      from xmin to negative xmax;
-        for (int x = xmin, y = 0; x <= radius; x++) {
-            graphics.drawLine(x + xc, y + yc, x + xc, y + yc);
-            graphics.drawLine(-x + xc, y + yc, -x + xc, y + yc);
-        }
+        // The centre is drawn by both halves, so twice.
+        target.fillSpan(-xmax + xc, xmax + xc, yc);
+        target.plot(xc, yc);
 
     }
 
     /**
-     * The method for mirroring the filling mechanism to the rest of quadrants
-     * @param graphics Graphics object
-     * @param x x position to fill
+     * The method for mirroring the filling mechanism to the rest of quadrants.
+     * Fills the row from the centre up to x, on both sides of the centre.
+     * The pixel on the centre column belongs to both sides and is drawn
+     * twice, as translucent colours are blended once per draw.
+     * @param target PixelTarget to draw on
+     * @param x x limit to fill
      * @param y y position to fill
      * @param xc Shifts back to original x position
      * @param yc Shifts back to original y position
      */
-    private static final void fillCircleQuadrant(Graphics graphics, int x,
+    private static final void fillCircleQuadrant(PixelTarget target, int x,
             int y, int xc, int yc) {
-        graphics.drawLine(x + xc, y + yc, x + xc, y + yc);
-        graphics.drawLine(-x + xc, y + yc, -x + xc, y + yc);
-        graphics.drawLine(-x + xc, -y + yc, -x + xc, -y + yc);
-        graphics.drawLine(x + xc, -y + yc, x + xc, -y + yc);
+        target.fillSpan(-x + xc, x + xc, y + yc);
+        target.plot(xc, y + yc);
+        target.fillSpan(-x + xc, x + xc, -y + yc);
+        target.plot(xc, -y + yc);
     }
 
     /**
@@ -182,9 +247,9 @@ public final class Footprint {
      * @param xc The x-coordinate of the centre of the circle.
      * @param yc The y-coordinate of the centre of the circle.
      * @param radius The radius of the circle.
-     * @param graphics The graphics object.
+     * @param target The PixelTarget to draw on.
      */
-    private static final List<Integer[]> drawCircle(Graphics graphics,
+    private static final List<Integer[]> drawCircle(PixelTarget target,
             int xc, int yc, int radius) {
 
         /*
@@ -205,7 +270,7 @@ public final class Footprint {
 
         // Initialises first points of the 8 arcs.
         for (int i = 1; i <= 8; i++) {
-            drawCircleArcs(graphics, x, y, xc, yc, i);
+            drawCircleArcs(target, x, y, xc, yc, i);
         }
 
         // Initialise the value of P, base on the Bresenham's algorithm.      
@@ -238,7 +303,7 @@ public final class Footprint {
             //      by calling the drawTheCircle method which takes
             //      circle parameters as method arguments.
             for (int i = 1; i <= 8; i++) {
-                drawCircleArcs(graphics, x, y, xc, yc, i);
+                drawCircleArcs(target, x, y, xc, yc, i);
             }
         }
 
@@ -249,56 +314,48 @@ public final class Footprint {
     /**
      * The method for mirroring the arc to complete the circle.
      *
-     * @param g The graphics object.
+     * @param target The PixelTarget to draw on.
      * @param x The x-coordinate to draw the arc.
      * @param y The y-coordinate to draw the arc.
      * @param xc The x-coordinate of the centre of the circle.
      * @param yc The y-coordinate of the centre of the circle.
      * @param octant The flag variable that determines the octant location.
      */
-    private static final void drawCircleArcs(Graphics g, int x, int y, int xc,
-            int yc, int octant) {
+    private static final void drawCircleArcs(PixelTarget target, int x,
+            int y, int xc, int yc, int octant) {
 
         switch (octant) {
             // 1st Octant
             case 1:
-                g.drawLine(y + xc, x + yc,
-                        y + xc, x + yc);
+                target.plot(y + xc, x + yc);
                 break;
             // 2nd Octant
             case 2:
-                g.drawLine(x + xc, y + yc,
-                        x + xc, y + yc);
+                target.plot(x + xc, y + yc);
                 break;
             // 3rd Octant
             case 3:
-                g.drawLine(-x + xc, y + yc,
-                        -x + xc, y + yc);
+                target.plot(-x + xc, y + yc);
                 break;
             // 4th Octant
             case 4:
-                g.drawLine(-y + xc, x + yc,
-                        -y + xc, x + yc);
+                target.plot(-y + xc, x + yc);
                 break;
             // 5th Octant
             case 5:
-                g.drawLine(-y + xc, -x + yc,
-                        -y + xc, -x + yc);
+                target.plot(-y + xc, -x + yc);
                 break;
             // 6th Octant
             case 6:
-                g.drawLine(-x + xc, -y + yc,
-                        -x + xc, -y + yc);
+                target.plot(-x + xc, -y + yc);
                 break;
             // 7th Octant
             case 7:
-                g.drawLine(x + xc, -y + yc,
-                        x + xc, -y + yc);
+                target.plot(x + xc, -y + yc);
                 break;
             // 8th Octant
             case 8:
-                g.drawLine(y + xc, -x + yc,
-                        y + xc, -x + yc);
+                target.plot(y + xc, -x + yc);
                 break;
         }
     }
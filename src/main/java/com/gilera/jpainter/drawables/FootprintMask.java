@@ -0,0 +1,181 @@
+package com.gilera.jpainter.drawables;
+
+
+/**
+ * File: FootprintMask.java
+ * 
+ * Description: The precomputed pixels of a single footprint.
+ */
+import com.gilera.jpainter.raster.PixelTarget;
+import com.gilera.jpainter.raster.SpanListBuilder;
+import java.awt.Color;
+import java.awt.Image;
+
+/**
+ * FootprintMask class
+ * 
+ * Purpose: Stores the pixels of a footprint, relative to its centre, as 
+ * horizontal spans packed in a primitive int[] (dy, dx0, dx1 per span). 
+ * Stamping a footprint is then a handful of span fills with no allocation.
+ * Instances are immutable and shared by every Drawable.
+ * 
+ * The footprint algorithms draw some pixels more than once, the centre
+ * column of the circle for one. A translucent colour blends again on every
+ * draw, so the mask keeps these as layers of overdraw spans: layer 2 holds
+ * the pixels drawn at least twice, layer 3 the ones drawn at least three
+ * times and so on. Stamping every layer blends each pixel exactly as often
+ * as the footprint algorithm would have.
+ *
+ * @author Ryan Gilera <jalapaomaji-github@yahoo.com>
+ */
+final class FootprintMask {
+
+    /**
+     * Object variables declarations
+     * <ul>
+     * <li>spans - dy, dx0 and dx1 for each span of the pixels drawn at
+     * least once, ordered by dy</li>
+     * <li>overdraw - the spans of the pixels drawn more than once, layer
+     * by layer, ordered by dy within a layer</li>
+     * </ul>
+     */
+    private final int[] spans;
+    private final int[] overdraw;
+
+    /**
+     * Class constructor.
+     * @param spans packed spans
+     * @param overdraw packed overdraw spans
+     */
+    private FootprintMask(int[] spans, int[] overdraw) {
+        this.spans = spans;
+        this.overdraw = overdraw;
+    }
+
+    /**
+     * Stamps the footprint with its centre at xc, yc, drawing every pixel
+     * as many times as the footprint algorithm does, unless the target
+     * only keeps which pixels are covered (see PixelTarget.fillMask).
+     * @param target PixelTarget to draw on
+     * @param xc centre x position
+     * @param yc centre y position
+     */
+    void stamp(PixelTarget target, int xc, int yc) {
+        target.fillMask(this.spans, this.overdraw, xc, yc);
+    }
+
+    /**
+     * Builds the mask from the pixels a Recorder has collected.
+     * @param recorder the recorded footprint
+     * @return the mask
+     */
+    static FootprintMask fromRecorder(Recorder recorder) {
+        int layers = 0;
+        for (int count : recorder.counts) {
+            layers = Math.max(layers, count);
+        }
+
+        int[] spans = collectLayer(recorder, 1);
+        int[] overdraw = new int[0];
+        for (int layer = 2; layer <= layers; layer++) {
+            int[] more = collectLayer(recorder, layer);
+            int[] joined = new int[overdraw.length + more.length];
+            System.arraycopy(overdraw, 0, joined, 0, overdraw.length);
+            System.arraycopy(more, 0, joined, overdraw.length, more.length);
+            overdraw = joined;
+        }
+
+        return new FootprintMask(spans, overdraw);
+    }
+
+    /**
+     * Collects the runs of pixels drawn at least a number of times.
+     * @param recorder the recorded footprint
+     * @param layer the minimum number of draws
+     * @return packed spans, ordered by dy
+     */
+    private static int[] collectLayer(Recorder recorder, int layer) {
+        int size = recorder.size;
+        int[] spans = new int[size * size * 3];
+        int count = 0;
+
+        for (int row = 0; row < size; row++) {
+            int col = 0;
+            while (col < size) {
+                if (recorder.counts[row * size + col] < layer) {
+                    col++;
+                    continue;
+                }
+
+                // Collects a run of recorded pixels on this row.
+                int start = col;
+                while (col < size
+                        && recorder.counts[row * size + col] >= layer) {
+                    col++;
+                }
+
+                spans[count * 3] = row - recorder.reach;
+                spans[count * 3 + 1] = start - recorder.reach;
+                spans[count * 3 + 2] = col - 1 - recorder.reach;
+                count++;
+            }
+        }
+
+        int[] packed = new int[count * 3];
+        System.arraycopy(spans, 0, packed, 0, packed.length);
+        return packed;
+    }
+
+    /**
+     * Recorder class
+     * 
+     * Purpose: A PixelTarget that only counts how many times each pixel
+     * around the centre (0,0) is drawn. Used once per footprint to build
+     * its mask.
+     */
+    static final class Recorder implements PixelTarget {
+
+        private final int reach;
+        private final int size;
+        private final int[] counts;
+
+        /**
+         * Class constructor.
+         * @param reach how far from the centre pixels can be recorded
+         */
+        Recorder(int reach) {
+            this.reach = reach;
+            this.size = 2 * reach + 1;
+            this.counts = new int[this.size * this.size];
+        }
+
+        @Override
+        public void setColor(Color color) {
+        }
+
+        @Override
+        public void plot(int x, int y) {
+            this.counts[(y + this.reach) * this.size + x + this.reach]++;
+        }
+
+        @Override
+        public void fillSpan(int x0, int x1, int y) {
+            for (int x = x0; x <= x1; x++) {
+                this.plot(x, y);
+            }
+        }
+
+        @Override
+        public void fillMask(int[] spans, int[] overdraw, int xc, int yc) {
+            SpanListBuilder.replay(spans, xc, yc, this);
+            SpanListBuilder.replay(overdraw, xc, yc, this);
+        }
+
+        // Records nothing, footprints are never images.
+        @Override
+        public void drawImage(Image image, int x, int y, int width,
+                int height) {
+        }
+    }
+
+}
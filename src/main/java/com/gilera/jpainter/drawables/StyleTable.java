@@ -0,0 +1,269 @@
+package com.gilera.jpainter.drawables;
+
+
+/**
+ * File: StyleTable.java
+ *
+ * Description: Interns the colour, thickness and footprint of Drawables.
+ */
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * StyleTable class
+ *
+ * Purpose: Gives every distinct combination of colour, thickness and
+ * footprint a small int id, so a Drawable only has to keep that id. The
+ * colours are interned into a palette as well, so all Drawables of the
+ * same colour share one Color object and a renderer only has to change
+ * colour when the style id changes.
+ * <p>
+ * The table only grows. Looking up a style never locks: styles are found
+ * by key in a ConcurrentHashMap and by id in an append-only array of
+ * chunks. Adding a style locks the table and takes constant time,
+ * however many styles there are, so a drawing read from a file with tens
+ * of thousands of colours is interned quickly.
+ *
+ * @author Ryan Gilera <jalapaomaji-github@yahoo.com>
+ */
+public final class StyleTable {
+
+    // The table used by every Drawable.
+    private static final StyleTable SHARED = new StyleTable();
+
+    /**
+     * A colour, thickness and footprint, interned.
+     * <ul>
+     * <li>id - its index in the table</li>
+     * <li>palette - the index of its colour in the palette</li>
+     * <li>color - the colour, shared by every style of that colour</li>
+     * <li>thickness - thickness in pixels</li>
+     * <li>footprint - footprint type</li>
+     * </ul>
+     */
+    public static final class Style {
+
+        private final int id;
+        private final int palette;
+        private final Color color;
+        private final int thickness;
+        private final boolean footprint;
+
+        private Style(int id, int palette, Color color, int thickness,
+                boolean footprint) {
+            this.id = id;
+            this.palette = palette;
+            this.color = color;
+            this.thickness = thickness;
+            this.footprint = footprint;
+        }
+
+        /**
+         * Getter method for id.
+         * @return id
+         */
+        public int getId() {
+            return id;
+        }
+
+        /**
+         * Getter method for palette.
+         * @return palette
+         */
+        public int getPalette() {
+            return palette;
+        }
+
+        /**
+         * Getter method for color.
+         * @return color
+         */
+        public Color getColor() {
+            return color;
+        }
+
+        /**
+         * Getter method for thickness.
+         * @return thickness
+         */
+        public int getThickness() {
+            return thickness;
+        }
+
+        /**
+         * Getter method for footprint.
+         * @return footprint
+         */
+        public boolean getFootprint() {
+            return footprint;
+        }
+    }
+
+    // Styles per chunk of the id table, a power of two.
+    private static final int CHUNK_BITS = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    /**
+     * Object variables declarations
+     * <ul>
+     * <li>keys - every style, by its colour, thickness and footprint, see
+     * key</li>
+     * <li>chunks - the styles by id, CHUNK_SIZE per chunk. Chunks are
+     * only appended, a full directory is copied into one twice as
+     * large</li>
+     * <li>count - the number of styles, written after the style
+     * itself</li>
+     * <li>colours - the palette index of every packed ARGB colour</li>
+     * <li>palette - the distinct colours, by palette index</li>
+     * </ul>
+     * Only keys, chunks and count are read without locking, colours and
+     * palette are only used while adding a style.
+     */
+    private final ConcurrentHashMap<Long, Style> keys;
+    private volatile Style[][] chunks;
+    private volatile int count;
+    private final Map<Integer, Integer> colours;
+    private final List<Color> palette;
+
+    /**
+     * Class constructor, creates an empty table.
+     */
+    public StyleTable() {
+        this.keys = new ConcurrentHashMap<>();
+        this.chunks = new Style[1][];
+        this.count = 0;
+        this.colours = new HashMap<>();
+        this.palette = new ArrayList<>();
+    }
+
+    /**
+     * Returns the table used by every Drawable.
+     *
+     * @return StyleTable object
+     */
+    public static StyleTable shared() {
+        return SHARED;
+    }
+
+    /**
+     * Returns the id of a style, adding it if it is new.
+     *
+     * @param color the colour
+     * @param thickness thickness in pixels
+     * @param footprint footprint type
+     * @return the style id
+     */
+    public int intern(Color color, int thickness, boolean footprint) {
+        return this.internStyle(color, thickness, footprint).id;
+    }
+
+    /**
+     * Returns the style of a colour, thickness and footprint, adding it if
+     * it is new.
+     *
+     * @param color the colour
+     * @param thickness thickness in pixels
+     * @param footprint footprint type
+     * @return the style
+     */
+    public Style internStyle(Color color, int thickness,
+            boolean footprint) {
+        Long key = key(color.getRGB(), thickness, footprint);
+        Style style = this.keys.get(key);
+        if (style != null) {
+            return style;
+        }
+
+        synchronized (this) {
+            return this.add(key, color, thickness, footprint);
+        }
+    }
+
+    /**
+     * Returns a style by its id, without locking.
+     *
+     * @param id the style id
+     * @return the style
+     */
+    public Style get(int id) {
+        if (id < 0 || id >= this.count) {
+            throw new ArrayIndexOutOfBoundsException(id);
+        }
+        return this.chunks[id >>> CHUNK_BITS][id & (CHUNK_SIZE - 1)];
+    }
+
+    /**
+     * Returns the number of styles in the table.
+     *
+     * @return number of styles
+     */
+    public int size() {
+        return this.count;
+    }
+
+    /**
+     * Adds a style, unless another thread has just added it. Called with
+     * the table locked. The style is stored by id first and only then
+     * counted and put into keys, so a reader that finds it can also get
+     * it by id.
+     *
+     * @param key the key of the style
+     * @param color the colour
+     * @param thickness thickness in pixels
+     * @param footprint footprint type
+     * @return the style
+     */
+    private Style add(Long key, Color color, int thickness,
+            boolean footprint) {
+        Style style = this.keys.get(key);
+        if (style != null) {
+            return style;
+        }
+
+        Integer index = this.colours.get(color.getRGB());
+        if (index == null) {
+            index = this.palette.size();
+            this.palette.add(color);
+            this.colours.put(color.getRGB(), index);
+        }
+
+        int id = this.count;
+        style = new Style(id, index, this.palette.get(index), thickness,
+                footprint);
+
+        // Appends a chunk when the last one is full, copying only the
+        //      directory of chunks.
+        Style[][] directory = this.chunks;
+        int chunk = id >>> CHUNK_BITS;
+        if (chunk == directory.length) {
+            directory = Arrays.copyOf(directory, directory.length * 2);
+        }
+        if (directory[chunk] == null) {
+            directory[chunk] = new Style[CHUNK_SIZE];
+        }
+        directory[chunk][id & (CHUNK_SIZE - 1)] = style;
+        this.chunks = directory;
+
+        this.count = id + 1;
+        this.keys.put(key, style);
+        return style;
+    }
+
+    /**
+     * Combines colour, thickness and footprint into one key.
+     *
+     * @param argb the packed ARGB colour
+     * @param thickness thickness in pixels
+     * @param footprint footprint type
+     * @return the key
+     */
+    private static Long key(int argb, int thickness, boolean footprint) {
+        return ((long) argb << 32) | ((thickness & 0x7FFFFFFFL) << 1)
+                | (footprint ? 1 : 0);
+    }
+}
@@ -59,6 +59,8 @@ public class ButtonListener implements ActionListener {
      * <li>drawableEllipse - Drawable object.</li>
      * <li>drawableTriangle - Drawable object.</li>
      * <li>imageButton - The button that triggers image/photo drawing</li>
+     * <li>recorder - Records the tool and command actions to an input
+     * trace, null if the input is not recorded.</li>
      * </ul>
      *
      */
@@ -78,6 +80,7 @@ public class ButtonListener implements ActionListener {
     private final WebToggleButton drawableEllipse;
     private final WebToggleButton drawableTriangle;
     private final JButton imageButton;
+    private InputRecorder recorder;
 
     // For image loader
     private WebFileChooser imageChooser;
@@ -132,6 +135,16 @@ public class ButtonListener implements ActionListener {
         this.imageButton = image;
         this.imageChooser = null;
         this.file = null;
+        this.recorder = null;
+    }
+
+    /**
+     * Records the tool and command actions to an input trace from now on.
+     *
+     * @param recorder the recorder of the trace, null to stop recording
+     */
+    public void setInputRecorder(InputRecorder recorder) {
+        this.recorder = recorder;
     }
 
     /**
@@ -185,6 +198,12 @@ public class ButtonListener implements ActionListener {
                             this.colorComboBox.getColor(),
                             this.lineComboBox.getSelectedIndex(),
                             footprintFlag, drawableSelector);
+            if (this.recorder != null) {
+                this.recorder.recordTool(drawableSelector,
+                        this.colorComboBox.getColor(),
+                        this.lineComboBox.getSelectedIndex(),
+                        footprintFlag, null);
+            }
             // Adds the two listeners to the canvas.
             // This is necessary because when MouseAdapter is being
             //      used instead of these, the MouseAdapter requires
@@ -196,22 +215,29 @@ public class ButtonListener implements ActionListener {
         }
 
         // For the undoToolButton
-        // Calls the canvas' undo() and repaint() method
+        // Calls the canvas' undo() method, which repaints the affected area.
         if (event.getSource() == this.undoToolButton) {
+            if (this.recorder != null) {
+                this.recorder.recordCommand(InputTrace.UNDO);
+            }
             this.aCanvas.undo();
-            this.aCanvas.repaint();
         }
 
         // For the redoToolButton
-        // Calls the canvas' redo() and repaint() method
+        // Calls the canvas' redo() method, which repaints the affected area.
         if (event.getSource() == this.redoToolButton) {
+            if (this.recorder != null) {
+                this.recorder.recordCommand(InputTrace.REDO);
+            }
             this.aCanvas.redo();
-            this.aCanvas.repaint();
         }
 
         // For the clearToolButton
         // Calls the canvas' clearCanvas(), repaint() and setStatus() method.
         if (event.getSource() == this.clearToolButton) {
+            if (this.recorder != null) {
+                this.recorder.recordCommand(InputTrace.CLEAR);
+            }
             this.aCanvas.clearCanvas();
             this.aCanvas.repaint();
             this.aCanvas.setStatus(
@@ -287,6 +313,12 @@ public class ButtonListener implements ActionListener {
                                 this.lineComboBox.getSelectedIndex(),
                                 true, 7);
                 aClickListener.setImage(newImage);
+                if (this.recorder != null) {
+                    this.recorder.recordTool(7,
+                            this.colorComboBox.getColor(),
+                            this.lineComboBox.getSelectedIndex(),
+                            true, newImage);
+                }
                 
                 // Adds the two listeners to the canvas.
                 // This is necessary because when MouseAdapter is being
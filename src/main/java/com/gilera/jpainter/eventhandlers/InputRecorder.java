@@ -0,0 +1,180 @@
+package com.gilera.jpainter.eventhandlers;
+
+
+/**
+ * File: InputRecorder.java
+ *
+ * Description: Records the mouse events and tool actions on the canvas to
+ * a trace file.
+ */
+import java.awt.Color;
+import java.awt.Image;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * InputRecorder class
+ *
+ * Purpose: Writes every mouse event on the canvas, with the tool and
+ * command actions, to a trace file (see InputTrace for the format). The
+ * trace is replayed headless to measure how long the canvas takes to
+ * handle the events and render the frames of a real session. It is
+ * added to the canvas before the MouseClickListeners, so events are
+ * recorded before they are handled.
+ *
+ * @author Ryan Gilera <jalapaomaji-github@yahoo.com>
+ */
+public final class InputRecorder extends MouseAdapter {
+
+    /**
+     * Object variables declarations.
+     * <ul>
+     * <li>out - the trace file, buffered, flushed on close.</li>
+     * <li>start - System.nanoTime when the recording started.</li>
+     * <li>closed - set once the file is closed or a write failed.</li>
+     * <li>failure - the first write error, the recording stops
+     * there.</li>
+     * </ul>
+     */
+    private final Writer out;
+    private final long start;
+    private boolean closed;
+    private IOException failure;
+
+    /**
+     * Class constructor, creates the trace file and closes it when the
+     * application exits.
+     *
+     * @param file the trace file, replaced if it exists
+     * @throws IOException if the file cannot be created
+     */
+    public InputRecorder(File file) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+
+        this.out = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(file), StandardCharsets.UTF_8));
+        this.start = System.nanoTime();
+        this.closed = false;
+        this.failure = null;
+        this.write(InputTrace.HEADER);
+
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                InputRecorder.this.close();
+            }
+        }, "Input trace close"));
+    }
+
+    /**
+     * Records the pencil or image button being pressed.
+     *
+     * @param drawableSelector the type of Drawable, see MouseClickListener
+     * @param color the colour of the Drawable
+     * @param thicknessIndex the index of the thickness combo box
+     * @param footprint the footprint type
+     * @param image the image to draw, null if the Drawable is no image
+     */
+    public void recordTool(int drawableSelector, Color color,
+            int thicknessIndex, boolean footprint, Image image) {
+        String line = InputTrace.TOOL + " " + drawableSelector + " "
+                + color.getRGB() + " " + thicknessIndex
+                + (footprint ? " 1" : " 0");
+        // Only the size of an image is kept, a replay draws a blank one.
+        if (image != null) {
+            line = line + " " + image.getWidth(null) + " "
+                    + image.getHeight(null);
+        }
+        this.record(line);
+    }
+
+    /**
+     * Records a command without arguments.
+     *
+     * @param type InputTrace.UNDO, REDO, CLEAR or NEW
+     */
+    public void recordCommand(String type) {
+        this.record(type);
+    }
+
+    @Override
+    public void mousePressed(MouseEvent e) {
+        this.record(InputTrace.PRESS + " " + e.getX() + " " + e.getY());
+    }
+
+    @Override
+    public void mouseReleased(MouseEvent e) {
+        this.record(InputTrace.RELEASE + " " + e.getX() + " " + e.getY());
+    }
+
+    @Override
+    public void mouseDragged(MouseEvent e) {
+        this.record(InputTrace.DRAG + " " + e.getX() + " " + e.getY());
+    }
+
+    @Override
+    public void mouseMoved(MouseEvent e) {
+        this.record(InputTrace.MOVE + " " + e.getX() + " " + e.getY());
+    }
+
+    /**
+     * Writes an event line, preceded by its time.
+     *
+     * @param event the event type and arguments
+     */
+    private void record(String event) {
+        this.write((System.nanoTime() - this.start) + " " + event);
+    }
+
+    /**
+     * Writes a line, unless the file is closed.
+     *
+     * @param line the line without the line separator
+     */
+    private synchronized void write(String line) {
+        if (this.closed) {
+            return;
+        }
+        try {
+            this.out.write(line);
+            this.out.write('\n');
+        } catch (IOException e) {
+            this.failure = e;
+            this.closed = true;
+        }
+    }
+
+    /**
+     * Returns the error that stopped the recording.
+     *
+     * @return the first write error, null if there was none
+     */
+    public synchronized IOException getFailure() {
+        return this.failure;
+    }
+
+    /**
+     * Flushes and closes the trace file. Events after this are dropped.
+     */
+    public synchronized void close() {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        try {
+            this.out.close();
+        } catch (IOException e) {
+            this.failure = e;
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package com.gilera.jpainter.eventhandlers;
+
+
+/**
+ * File: InputTrace.java
+ *
+ * Description: A recorded session of mouse events and tool actions on the
+ * canvas, read back from a trace file.
+ */
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * InputTrace class
+ *
+ * Purpose: Holds the events of a trace recorded by InputRecorder, in the
+ * order they happened. A trace is a text file, so it can be read and
+ * edited by hand: a header line, then one event per line made of the
+ * time in nanoseconds since the recording started, the event type and
+ * its arguments, separated by spaces:
+ * <ul>
+ * <li>TOOL selector argb thicknessIndex footprint [imageWidth
+ * imageHeight] - the pencil or image button, see ButtonListener.</li>
+ * <li>PRESS x y, RELEASE x y, DRAG x y, MOVE x y - mouse events on the
+ * canvas.</li>
+ * <li>UNDO, REDO, CLEAR, NEW - the commands of the toolbar and menus.</li>
+ * </ul>
+ *
+ * @author Ryan Gilera <jalapaomaji-github@yahoo.com>
+ */
+public final class InputTrace {
+
+    // First line of every trace file.
+    public static final String HEADER = "JPTRACE 1";
+
+    // Event types.
+    public static final String TOOL = "TOOL";
+    public static final String PRESS = "PRESS";
+    public static final String RELEASE = "RELEASE";
+    public static final String DRAG = "DRAG";
+    public static final String MOVE = "MOVE";
+    public static final String UNDO = "UNDO";
+    public static final String REDO = "REDO";
+    public static final String CLEAR = "CLEAR";
+    public static final String NEW = "NEW";
+
+    /**
+     * Event class
+     *
+     * Purpose: One line of a trace.
+     */
+    public static final class Event {
+
+        private final long time;
+        private final String type;
+        private final int[] args;
+
+        Event(long time, String type, int[] args) {
+            this.time = time;
+            this.type = type;
+            this.args = args;
+        }
+
+        /**
+         * Returns the time of the event.
+         *
+         * @return nanoseconds since the recording started
+         */
+        public long getTime() {
+            return this.time;
+        }
+
+        /**
+         * Returns the type of the event, one of the InputTrace constants.
+         *
+         * @return the event type
+         */
+        public String getType() {
+            return this.type;
+        }
+
+        /**
+         * Returns the number of arguments of the event.
+         *
+         * @return argument count
+         */
+        public int getArgCount() {
+            return this.args.length;
+        }
+
+        /**
+         * Returns an argument of the event, for mouse events 0 is x and 1
+         * is y.
+         *
+         * @param i the index of the argument
+         * @return the argument
+         */
+        public int getArg(int i) {
+            return this.args[i];
+        }
+    }
+
+    /**
+     * Object variables declarations.
+     * <ul>
+     * <li>events - the events of the trace, oldest first.</li>
+     * </ul>
+     */
+    private final List<Event> events;
+
+    // Class constructor.
+    private InputTrace(List<Event> events) {
+        this.events = Collections.unmodifiableList(events);
+    }
+
+    /**
+     * Reads a trace file.
+     *
+     * @param file the trace file
+     * @return the trace
+     * @throws IOException if the file cannot be read or is not a trace
+     */
+    public static InputTrace read(File file) throws IOException {
+        List<Event> events = new ArrayList<>();
+
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line = in.readLine();
+            if (line == null || !line.trim().equals(HEADER)) {
+                throw new IOException("Not an input trace: " + file);
+            }
+
+            int lineNumber = 1;
+            long previous = 0;
+            while ((line = in.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+
+                String[] words = line.split("\\s+");
+                try {
+                    long time = Long.parseLong(words[0]);
+                    String type = words.length > 1 ? words[1] : "";
+                    int[] args = new int[words.length - 2];
+                    for (int i = 0; i < args.length; i++) {
+                        args[i] = (int) Long.parseLong(words[i + 2]);
+                    }
+
+                    if (time < previous || args.length < argCount(type)) {
+                        throw new IOException("Corrupt input trace "
+                                + file + " at line " + lineNumber);
+                    }
+                    previous = time;
+                    events.add(new Event(time, type, args));
+                } catch (NumberFormatException e) {
+                    throw new IOException("Corrupt input trace " + file
+                            + " at line " + lineNumber, e);
+                }
+            }
+        }
+
+        return new InputTrace(events);
+    }
+
+    /**
+     * Returns the number of arguments an event type needs.
+     *
+     * @param type the event type
+     * @return the argument count
+     * @throws IOException if the type is unknown
+     */
+    private static int argCount(String type) throws IOException {
+        switch (type) {
+            case TOOL:
+                return 4;
+            case PRESS:
+            case RELEASE:
+            case DRAG:
+            case MOVE:
+                return 2;
+            case UNDO:
+            case REDO:
+            case CLEAR:
+            case NEW:
+                return 0;
+            default:
+                throw new IOException("Unknown input event " + type);
+        }
+    }
+
+    /**
+     * Returns the events of the trace.
+     *
+     * @return the events, oldest first
+     */
+    public List<Event> getEvents() {
+        return this.events;
+    }
+
+    /**
+     * Returns the time of the last event.
+     *
+     * @return nanoseconds since the recording started
+     */
+    public long getDuration() {
+        if (this.events.isEmpty()) {
+            return 0;
+        }
+        return this.events.get(this.events.size() - 1).getTime();
+    }
+}
@@ -7,25 +7,46 @@ package com.gilera.jpainter.eventhandlers;
  * Description: The class responsible for implementing the JMenu UI components.
  */
 import com.gilera.jpainter.canvas.DrawCanvas;
+import com.gilera.jpainter.canvas.ReplayEngine;
+import com.gilera.jpainter.data.GlobalSettingsManager;
+import com.gilera.jpainter.data.SceneFile;
+import com.gilera.jpainter.ui.ReplayDialog;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.io.File;
+import java.io.IOException;
+import javax.swing.JFileChooser;
 import javax.swing.JFrame;
 import javax.swing.JMenuItem;
 import javax.swing.JOptionPane;
+import javax.swing.filechooser.FileNameExtensionFilter;
 
 /**
  * MenuListener class
  * 
- * Purpose: Implements behaviour for File > New, Edit > Clear and About>about
- * menu items.
+ * Purpose: Implements behaviour for File > New, File > Open, File > Save,
+ * File > Replay, Edit > Clear and About>about menu items.
  *
  * @author Ryan Gilera <jalapaomaji-github@yahoo.com>
  */
 public class MenuListener implements ActionListener {
 
+    // Extension and chooser filter of scene files.
+    private static final String SCENE_EXTENSION = "jps";
+    private static final FileNameExtensionFilter SCENE_FILTER
+            = new FileNameExtensionFilter("J-Painter scene (*.jps)",
+                    SCENE_EXTENSION);
+
+    // Chooser filter of the session journal, see SceneJournal.
+    private static final FileNameExtensionFilter JOURNAL_FILTER
+            = new FileNameExtensionFilter("J-Painter session (*.jpj)",
+                    "jpj");
+
     // Object variables declarations.
+    // The recorder is null unless the input is recorded to a trace.
     private final JFrame frame;
     private final DrawCanvas theCanvas;
+    private InputRecorder recorder;
 
     /**
      * Method Constructor, initialising the object variables.
@@ -36,6 +57,16 @@ public class MenuListener implements ActionListener {
     public MenuListener(JFrame frame, DrawCanvas theCanvas) {
         this.frame = frame;
         this.theCanvas = theCanvas;
+        this.recorder = null;
+    }
+
+    /**
+     * Records Clear Canvas and New to an input trace from now on.
+     *
+     * @param recorder the recorder of the trace, null to stop recording
+     */
+    public void setInputRecorder(InputRecorder recorder) {
+        this.recorder = recorder;
     }
 
     /**
@@ -51,6 +82,9 @@ public class MenuListener implements ActionListener {
         // If menu is selected is the Clear Canvas, 
         //      this will clear the canvas and updates status bar.
         if (source.getText().equals("Clear Canvas")) {
+            if (this.recorder != null) {
+                this.recorder.recordCommand(InputTrace.CLEAR);
+            }
             this.theCanvas.clearCanvas();
             this.theCanvas.repaint();
             this.theCanvas.setStatus(
@@ -60,11 +94,100 @@ public class MenuListener implements ActionListener {
         // If menu is selected is New
         //      this will destroy all line objects created and clear canvas.
         if (source.getText().equals("New")) {
+            if (this.recorder != null) {
+                this.recorder.recordCommand(InputTrace.NEW);
+            }
             this.theCanvas.startANew();
             this.theCanvas.repaint();
             this.theCanvas.setStatus("  New Canvas created. Ready to draw..");
         }
 
+        // If menu is selected is Open...
+        //      this will replace the drawing by one read from a scene file.
+        if (source.getText().equals("Open...")) {
+            JFileChooser chooser = new JFileChooser();
+            chooser.setFileFilter(SCENE_FILTER);
+            if (chooser.showOpenDialog(this.frame)
+                    == JFileChooser.APPROVE_OPTION) {
+                File file = chooser.getSelectedFile();
+                try {
+                    // Taken first, the journal refers to the file as read.
+                    long length = file.length();
+                    long modified = file.lastModified();
+                    this.theCanvas.getScene().open(SceneFile.read(file),
+                            file, length, modified);
+                    this.theCanvas.repaint();
+                    this.theCanvas.setStatus("  Opened " + file.getName()
+                            + ". Ready to draw..");
+                } catch (IOException ex) {
+                    JOptionPane.showMessageDialog(this.frame,
+                            "Cannot open " + file + ": " + ex.getMessage(),
+                            "Open", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }
+
+        // If menu is selected is Save...
+        //      this will write the drawing to a scene file.
+        if (source.getText().equals("Save...")) {
+            JFileChooser chooser = new JFileChooser();
+            chooser.setFileFilter(SCENE_FILTER);
+            if (chooser.showSaveDialog(this.frame)
+                    == JFileChooser.APPROVE_OPTION) {
+                File file = chooser.getSelectedFile();
+                if (!file.getName().endsWith("." + SCENE_EXTENSION)) {
+                    file = new File(file.getPath() + "." + SCENE_EXTENSION);
+                }
+                try {
+                    SceneFile.write(file, this.theCanvas.getScene().toStore());
+                    // The journal refers to the file as written from now
+                    //      on, it may have been the one opened.
+                    this.theCanvas.getScene().saved(file, file.length(),
+                            file.lastModified());
+                    this.theCanvas.setStatus("  Saved " + file.getName()
+                            + ".");
+                } catch (IOException ex) {
+                    JOptionPane.showMessageDialog(this.frame,
+                            "Cannot save " + file + ": " + ex.getMessage(),
+                            "Save", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }
+
+        // If menu is selected is Replay...
+        //      this will show the history of a scene file or of the
+        //      session journal, with a slider to scrub through it.
+        if (source.getText().equals("Replay...")) {
+            JFileChooser chooser = new JFileChooser();
+            chooser.addChoosableFileFilter(JOURNAL_FILTER);
+            chooser.addChoosableFileFilter(SCENE_FILTER);
+            chooser.setFileFilter(SCENE_FILTER);
+            File journal = new File(GlobalSettingsManager.JOURNAL_FILE);
+            if (journal.isFile()) {
+                chooser.setFileFilter(JOURNAL_FILTER);
+                chooser.setSelectedFile(journal);
+            }
+
+            if (chooser.showOpenDialog(this.frame)
+                    == JFileChooser.APPROVE_OPTION) {
+                File file = chooser.getSelectedFile();
+                try {
+                    ReplayEngine engine;
+                    if (file.getName().endsWith("." + SCENE_EXTENSION)) {
+                        engine = ReplayEngine.fromSceneFile(file);
+                    } else {
+                        engine = ReplayEngine.fromJournal(file);
+                    }
+                    new ReplayDialog(this.frame, file.getName(), engine,
+                            this.theCanvas).setVisible(true);
+                } catch (IOException ex) {
+                    JOptionPane.showMessageDialog(this.frame,
+                            "Cannot replay " + file + ": " + ex.getMessage(),
+                            "Replay", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }
+
         // If menu is selected is About Application
         //      this will show a pane describing about the application. 
         if (source.getText().equals("About Application")) {
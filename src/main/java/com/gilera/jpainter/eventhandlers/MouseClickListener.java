@@ -8,6 +8,7 @@ package com.gilera.jpainter.eventhandlers;
  * mouseclick events.
  */
 import com.gilera.jpainter.canvas.DrawCanvas;
+import com.gilera.jpainter.data.GlobalSettingsManager;
 import com.gilera.jpainter.drawables.Drawable;
 import com.gilera.jpainter.drawables.DrawableTriangle;
 import com.gilera.jpainter.drawables.DrawableCircle;
@@ -19,27 +20,30 @@ import com.gilera.jpainter.drawables.DrawableImage;
 import java.awt.Color;
 import java.awt.Cursor;
 import java.awt.Image;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.util.HashMap;
-import java.util.Map;
+import javax.swing.Timer;
 
 /**
  * MouseClickListener class
  * 
  * Purpose: Provides implementation of all mouseclick events involve. The class
  * is a subclass of the MouseAdapter, a class that implements MouseListener,
- * MouseMotionListener and MouseWheelListener.
+ * MouseMotionListener and MouseWheelListener. Dragging is rendered on a
+ * fixed frame tick (see GlobalSettingsManager.FRAME_RATE).
  *
  * @author Ryan Gilera <jalapaomaji-github@yahoo.com>
  */
-public class MouseClickListener extends MouseAdapter {
+public class MouseClickListener extends MouseAdapter
+        implements ActionListener {
 
     /**
      * Object variables declarations.
      * <ul>aCanvas - The main canvas object.
-     * <li>aMap - A HashMap object for storing the first endpoint of the
-     * line.</li>
+     * <li>xi, yi - The first endpoint of the Drawable.</li>
+     * <li>xn, yn - The latest second endpoint of the Drawable.</li>
      * <li>currentColor - The colour to apply to the line.</li>
      * <li>lineThickness - The thickness to apply to the line.</li>
      * <li>isFootprintSquare - Helper variable for determining the
@@ -55,10 +59,19 @@ public class MouseClickListener extends MouseAdapter {
      * <li>drawableSelector - helper variable to distinguish which Drawable
      * object is to draw</li>
      * <li>imageLoader used to hold image to draw into the canvas</li>
+     * <li>frameTimer - ticks once per frame while the mouse is dragged, 
+     * applying only the latest dragged endpoint.</li>
+     * <li>dragPending - flag for a dragged endpoint that is not drawn 
+     * yet.</li>
+     * <li>dragStatus - the status shown while dragging, it only depends
+     * on the first endpoint so it is built once per press.</li>
      * </ul>
      */
     private final DrawCanvas aCanvas;
-    private final Map<String, Integer> aMap;
+    private int xi;
+    private int yi;
+    private int xn;
+    private int yn;
     private final Color currentColor;
     private final int lineThickness;
     private final boolean isFootprintSquare;
@@ -68,6 +81,9 @@ public class MouseClickListener extends MouseAdapter {
     private Drawable shape;
     private final int drawableSelector;
     private Image imageLoader;
+    private final Timer frameTimer;
+    private boolean dragPending;
+    private String dragStatus;
 
     /**
      * Class constructor, initialising all object variables.
@@ -81,13 +97,15 @@ public class MouseClickListener extends MouseAdapter {
     public MouseClickListener(DrawCanvas aCanvas, Color aColor,
             int thick, boolean footprint, int drawableSelector) {
         this.aCanvas = aCanvas;
-        this.aMap = new HashMap<>();
         this.counter = 0;
         this.currentColor = aColor;
         this.lineThickness = thick;
         this.isFootprintSquare = footprint;
         this.cursorDragOn = false;
         this.drawableSelector = drawableSelector;
+        this.dragPending = false;
+        this.frameTimer = new Timer(GlobalSettingsManager.FRAME_DELAY, this);
+        this.frameTimer.setCoalesce(true);
     }
 
     /**
@@ -95,7 +113,7 @@ public class MouseClickListener extends MouseAdapter {
      * Implements the necessary actions when the mouse is pressed on canvas. If
      * the mouse is pressed on canvas for the first time after the Draw button
      * is pressed, It initially records the first point of the Drawable object
-     * to a HashMap object. Then it sets the flag helper inDragMode to true,
+     * in xi and yi. Then it sets the flag helper inDragMode to true,
      * there is a possibility that the user will drag mouse instead of releasing
      * it on the same coordinate; to be use in mouseDragged method. Then it
      * creates a new Drawable object and add it to the ArrayList listOfDrawables
@@ -124,9 +142,9 @@ public class MouseClickListener extends MouseAdapter {
             // Sets helper variable to true for a potential drag movement.
             this.inDragMode = true;
 
-            // Records the position into a HashMap object.
-            this.aMap.put("xi", x);
-            this.aMap.put("yi", y);
+            // Records the first endpoint.
+            this.xi = x;
+            this.yi = y;
 
             // Computes the actual thickness from the index of the line
             //      combo box.
@@ -181,6 +199,8 @@ public class MouseClickListener extends MouseAdapter {
 
             // Updates the status - current position selected.
             this.aCanvas.setStatus("  [" + x + "," + y + "]");
+            this.dragStatus = "Endpoint: " + x + "," + y
+                    + "  Release the mouse to draw the shape..";
         }
 
         // If counter hits to 1, it means that the mouse has been clicked
@@ -189,17 +209,26 @@ public class MouseClickListener extends MouseAdapter {
         //      new position (x,y), by upating the endpoint of the 
         //      Drawables and repaint it by calling the 
 	//	updateEndpoints(x, y) method of the canvas.
+        if (this.counter == 1
+                && this.aCanvas.getScene().getActiveShape() != this.shape) {
+            // Undo, redo or clear cancelled the Drawable after the first
+            //      click, this click only stops listening.
+            this.counter = 2;
+        }
+
         if (this.counter == 1) {
             // Grabs the location at this mouseclick
             int x = e.getX();
             int y = e.getY();
 
-            // Records the position into a HashMap object.
-            this.aMap.put("xn", x);
-            this.aMap.put("yn", y);
+            // Records the second endpoint.
+            this.xn = x;
+            this.yn = y;
 
             // Calls the method for updating the endpoints and repaint it.
             this.updateEndpoints(x, y);
+            // The Drawable is now finalised, stores it in the canvas raster.
+            this.aCanvas.commitShape();
             // Calls the method for updating the status and the cursor.
             this.updateStatusAndCursor();
         }
@@ -242,6 +271,11 @@ public class MouseClickListener extends MouseAdapter {
 
         if (this.cursorDragOn) {
             this.counter = 9;
+            // Draws the last dragged endpoint if no frame has shown it yet.
+            this.frameTimer.stop();
+            this.tick();
+            // The drag is over, stores the Drawable in the canvas raster.
+            this.aCanvas.commitShape();
             this.updateStatusAndCursor();
         }
 
@@ -254,38 +288,59 @@ public class MouseClickListener extends MouseAdapter {
 
     /**
      * If the mouse is dragged after clicking the canvas for the first time
-     * after draw button is clicked, it updates the end points of the 
-     * new Drawables to the new position where the mouse is being dragged into.
-     * Then it updates the status for every drag movement, displaying the
-     * coordinates at that position.
+     * after draw button is clicked, it records the position where the mouse
+     * is being dragged into. Nothing is drawn here, mouse events can arrive 
+     * far more often than the screen refreshes. The frame timer draws the
+     * latest position once per frame instead (see tick).
      *
      * @param e The MouseEvent object.
      */
     @Override
     public void mouseDragged(MouseEvent e) {
         if (this.inDragMode) {
-            // Grabs the location at this mouseclick
-            int x = e.getX();
-            int y = e.getY();
-
             // Sets the a helper variable to true, to be used
             //      for mouseReleased event.
             this.cursorDragOn = true;
 
-            // Updates the new endpoints of the Drawable, calling this method.
-            this.updateEndpoints(x, y);
-
-            // Updates status
-            this.aCanvas.setStatus("Endpoint: "
-                    + this.aMap.get("xi") + "," + this.aMap.get("yi")
-                    + "  Release the mouse to draw the shape..");
-            this.aCanvas.setPosStatus(x, y);
-
             // Records the current position, it continuously overwrites
             //      with new position as long is the mouse is being dragged.
-            this.aMap.put("xn", x);
-            this.aMap.put("yn", y);
+            this.xn = e.getX();
+            this.yn = e.getY();
+            this.dragPending = true;
+
+            if (!this.frameTimer.isRunning()) {
+                this.frameTimer.start();
+            }
+        }
+    }
+
+    /**
+     * Called by the frame timer once per frame while dragging.
+     *
+     * @param e The ActionEvent object.
+     */
+    @Override
+    public void actionPerformed(ActionEvent e) {
+        this.tick();
+    }
+
+    /**
+     * Applies the latest dragged endpoint, if there is one: updates the 
+     * endpoints of the new Drawable and the status bar. Does nothing when
+     * the mouse has not moved since the last tick.
+     */
+    public void tick() {
+        if (!this.dragPending) {
+            return;
         }
+        this.dragPending = false;
+
+        // Updates the new endpoints of the Drawable, calling this method.
+        this.updateEndpoints(this.xn, this.yn);
+
+        // Updates status
+        this.aCanvas.setStatus(this.dragStatus);
+        this.aCanvas.setPosStatus(this.xn, this.yn);
     }
 
     /**
@@ -298,51 +353,51 @@ public class MouseClickListener extends MouseAdapter {
         switch (this.drawableSelector) {
             case 1:
                 this.aCanvas.setStatus("  Line is created at ["
-                        + this.aMap.get("xi") + "," + this.aMap.get("yi")
+                        + this.xi + "," + this.yi
                         + "] to ["
-                        + this.aMap.get("xn") + "," + this.aMap.get("yn")
+                        + this.xn + "," + this.yn
                         + "] with " + trueThickness + " px thickness. "
                         + "Ready to draw..");
                 break;
             case 2:
                 this.aCanvas.setStatus("  Circle is created within the range of"
-                        + " [" + this.aMap.get("xi") + "," + this.aMap.get("yi")
-                        + "] to [" + this.aMap.get("xn") + "," + this.aMap.get("yn")
+                        + " [" + this.xi + "," + this.yi
+                        + "] to [" + this.xn + "," + this.yn
                         + "] with " + trueThickness + " px thickness. "
                         + "Ready to draw..");
                 break;
             case 3:
                 this.aCanvas.setStatus("  Square is created within the range of"
-                        + " [" + this.aMap.get("xi") + "," + this.aMap.get("yi")
-                        + "] to [" + this.aMap.get("xn") + "," + this.aMap.get("yn")
+                        + " [" + this.xi + "," + this.yi
+                        + "] to [" + this.xn + "," + this.yn
                         + "] with " + trueThickness + " px thickness. "
                         + "Ready to draw..");
                 break;
             case 4:
                 this.aCanvas.setStatus("  Ellipse is created within the range of"
-                        + " [" + this.aMap.get("xi") + "," + this.aMap.get("yi")
-                        + "] to [" + this.aMap.get("xn") + "," + this.aMap.get("yn")
+                        + " [" + this.xi + "," + this.yi
+                        + "] to [" + this.xn + "," + this.yn
                         + "] with " + trueThickness + " px thickness. "
                         + "Ready to draw..");
                 break;
             case 5:
                 this.aCanvas.setStatus("  Triangle is created within the range of"
-                        + " [" + this.aMap.get("xi") + "," + this.aMap.get("yi")
-                        + "] to [" + this.aMap.get("xn") + "," + this.aMap.get("yn")
+                        + " [" + this.xi + "," + this.yi
+                        + "] to [" + this.xn + "," + this.yn
                         + "] with " + trueThickness + " px thickness. "
                         + "Ready to draw..");
                 break;
             case 6:
                 this.aCanvas.setStatus("  Arc is created within the range of"
-                        + " [" + this.aMap.get("xi") + "," + this.aMap.get("yi")
-                        + "] to [" + this.aMap.get("xn") + "," + this.aMap.get("yn")
+                        + " [" + this.xi + "," + this.yi
+                        + "] to [" + this.xn + "," + this.yn
                         + "] with " + trueThickness + " px thickness. "
                         + "Ready to draw..");
                 break;
             case 7:
                 this.aCanvas.setStatus("  Image is created within the range of"
-                        + " [" + this.aMap.get("xi") + "," + this.aMap.get("yi")
-                        + "] to [" + this.aMap.get("xn") + "," + this.aMap.get("yn")
+                        + " [" + this.xi + "," + this.yi
+                        + "] to [" + this.xn + "," + this.yn
                         + "] with " + trueThickness + " px thickness. "
                         + "Ready to draw..");
                 break;
@@ -0,0 +1,66 @@
+package com.gilera.jpainter.raster;
+
+
+/**
+ * File: GraphicsPixelTarget.java
+ * 
+ * Description: The PixelTarget drawing through a Graphics object.
+ */
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Image;
+
+/**
+ * GraphicsPixelTarget class
+ * 
+ * Purpose: The fallback PixelTarget for any Graphics object, for example
+ * the screen or an image that has no int[] raster. Every pixel goes through
+ * the Java2D pipeline, so it is much slower than the IntRasterTarget.
+ *
+ * @author Ryan Gilera <jalapaomaji-github@yahoo.com>
+ */
+public class GraphicsPixelTarget implements PixelTarget {
+
+    private final Graphics graphics;
+    private Color color;
+
+    /**
+     * Class constructor.
+     * @param graphics Graphics object to draw on
+     */
+    public GraphicsPixelTarget(Graphics graphics) {
+        this.graphics = graphics;
+    }
+
+    @Override
+    public void setColor(Color color) {
+        // Colours are interned by the StyleTable, so Drawables of the same
+        //      colour pass the same Color and the Graphics is left alone.
+        if (color != this.color) {
+            this.color = color;
+            this.graphics.setColor(color);
+        }
+    }
+
+    @Override
+    public void plot(int x, int y) {
+        this.graphics.drawLine(x, y, x, y);
+    }
+
+    @Override
+    public void fillSpan(int x0, int x1, int y) {
+        this.graphics.fillRect(x0, y, x1 - x0 + 1, 1);
+    }
+
+    @Override
+    public void fillMask(int[] spans, int[] overdraw, int xc, int yc) {
+        SpanListBuilder.replay(spans, xc, yc, this);
+        SpanListBuilder.replay(overdraw, xc, yc, this);
+    }
+
+    @Override
+    public void drawImage(Image image, int x, int y, int width, int height) {
+        this.graphics.drawImage(image, x, y, width, height, null);
+    }
+
+}
@@ -0,0 +1,339 @@
+package com.gilera.jpainter.raster;
+
+
+/**
+ * File: IntRasterTarget.java
+ * 
+ * Description: The PixelTarget writing straight into the int[] pixels of a
+ * BufferedImage.
+ */
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+/**
+ * IntRasterTarget class
+ * 
+ * Purpose: Draws pixels directly into the DataBufferInt of a TYPE_INT_ARGB
+ * or TYPE_INT_RGB BufferedImage, skipping the Java2D pipeline for every
+ * pixel. All writes are clipped against a clip rectangle, which is never
+ * larger than the image itself.
+ * 
+ * Opaque colours are simply stored. Translucent colours are blended over
+ * the existing pixel (SrcOver) with the same 8 bit arithmetic as the
+ * Java2D software loops, so every pixel ends up exactly as a Graphics
+ * object would have drawn it. Every plot and span blends once, pixels
+ * drawn twice are blended twice, as with Graphics.
+ *
+ * @author Ryan Gilera <jalapaomaji-github@yahoo.com>
+ */
+public class IntRasterTarget implements PixelTarget {
+
+    /**
+     * Object variables declarations
+     * <ul>
+     * <li>image - the image drawn on, used for drawing images only</li>
+     * <li>pixels - the pixels of the image, one int per pixel</li>
+     * <li>width, height - size of the image</li>
+     * <li>alphaMask - forces existing pixels opaque if the image has no
+     * alpha channel</li>
+     * <li>clipX0, clipY0 - top left of the clip, inclusive</li>
+     * <li>clipX1, clipY1 - lower right of the clip, exclusive</li>
+     * <li>argb - the current colour</li>
+     * <li>opaque - true if the current colour needs no blending</li>
+     * </ul>
+     */
+    private final BufferedImage image;
+    private final int[] pixels;
+    private final int width, height;
+    private final int alphaMask;
+    private int clipX0, clipY0, clipX1, clipY1;
+    private int argb;
+    private boolean opaque;
+
+    /**
+     * Per divisor increments of the Java2D division table (div8table in
+     * AlphaMath.c), the fixed point reciprocal of 1 to 255 in 8.24.
+     */
+    private static final int[] DIV8_INC = new int[256];
+
+    static {
+        for (int i = 1; i < 256; i++) {
+            DIV8_INC[i] = (int) ((0xFF000000L + i / 2) / i);
+        }
+    }
+
+    /**
+     * Class constructor. The clip is set to the whole image.
+     * @param image image with an int[] raster, see isSupported
+     */
+    public IntRasterTarget(BufferedImage image) {
+        if (!isSupported(image)) {
+            throw new IllegalArgumentException(
+                    "Image must be of TYPE_INT_ARGB or TYPE_INT_RGB");
+        }
+
+        this.image = image;
+        this.pixels = ((DataBufferInt) image.getRaster().getDataBuffer())
+                .getData();
+        this.width = image.getWidth();
+        this.height = image.getHeight();
+        this.alphaMask = image.getColorModel().hasAlpha() ? 0 : 0xFF000000;
+        this.argb = 0xFF000000;
+        this.opaque = true;
+        this.setClip(null);
+    }
+
+    /**
+     * Checks if the image can be drawn on by this class. Otherwise the
+     * GraphicsPixelTarget has to be used.
+     * @param image any BufferedImage
+     * @return true if the image stores one int per pixel
+     */
+    public static boolean isSupported(BufferedImage image) {
+        return (image.getType() == BufferedImage.TYPE_INT_ARGB
+                || image.getType() == BufferedImage.TYPE_INT_RGB)
+                && image.getRaster().getDataBuffer() instanceof DataBufferInt;
+    }
+
+    /**
+     * Limits all following writes to an area of the image.
+     * @param clip the area, null for the whole image
+     */
+    public final void setClip(Rectangle clip) {
+        if (clip == null) {
+            this.clipX0 = 0;
+            this.clipY0 = 0;
+            this.clipX1 = this.width;
+            this.clipY1 = this.height;
+        } else {
+            this.clipX0 = Math.max(clip.x, 0);
+            this.clipY0 = Math.max(clip.y, 0);
+            this.clipX1 = Math.min(clip.x + clip.width, this.width);
+            this.clipY1 = Math.min(clip.y + clip.height, this.height);
+        }
+    }
+
+    /**
+     * Fills the clip area with a single colour, ignoring its alpha.
+     * @param color the colour to fill with
+     */
+    public void clear(Color color) {
+        int value = color.getRGB();
+        for (int y = this.clipY0; y < this.clipY1; y++) {
+            int row = y * this.width;
+            Arrays.fill(this.pixels, row + this.clipX0, row + this.clipX1,
+                    value);
+        }
+    }
+
+    /**
+     * Copies the clip area from another target of the same size, row by
+     * row. Much cheaper than drawing one image onto the other.
+     * @param source the target to copy the pixels from
+     */
+    public void copyFrom(IntRasterTarget source) {
+        if (source.width != this.width || source.height != this.height) {
+            throw new IllegalArgumentException(
+                    "Source must have the same size");
+        }
+
+        this.copyFrom(source.pixels);
+    }
+
+    /**
+     * Copies the clip area from pixels laid out like this target's own,
+     * for example a copy made earlier with copyPixels.
+     * @param source the pixels to copy, one int per pixel, row by row
+     */
+    public void copyFrom(int[] source) {
+        if (source.length != this.pixels.length) {
+            throw new IllegalArgumentException(
+                    "Source must have the same size");
+        }
+
+        int length = this.clipX1 - this.clipX0;
+        for (int y = this.clipY0; y < this.clipY1 && length > 0; y++) {
+            int index = y * this.width + this.clipX0;
+            System.arraycopy(source, index, this.pixels, index, length);
+        }
+    }
+
+    /**
+     * Returns a copy of the pixels of an area, row by row. The area must
+     * lie within the image, the clip is ignored.
+     * @param area the area to copy
+     * @return the pixels, area.width * area.height ints
+     */
+    public int[] copyPixels(Rectangle area) {
+        int[] copy = new int[area.width * area.height];
+        for (int row = 0; row < area.height; row++) {
+            System.arraycopy(this.pixels, (area.y + row) * this.width
+                    + area.x, copy, row * area.width, area.width);
+        }
+        return copy;
+    }
+
+    /**
+     * Writes pixels copied with copyPixels back into an area. The clip is
+     * ignored.
+     * @param area the area to write
+     * @param source the pixels, area.width * area.height ints
+     */
+    public void setPixels(Rectangle area, int[] source) {
+        for (int row = 0; row < area.height; row++) {
+            System.arraycopy(source, row * area.width, this.pixels,
+                    (area.y + row) * this.width + area.x, area.width);
+        }
+    }
+
+    /**
+     * Returns a copy of all pixels of the image, ignoring the clip.
+     * @return the pixels, one int per pixel, row by row
+     */
+    public int[] copyPixels() {
+        return this.pixels.clone();
+    }
+
+    @Override
+    public void setColor(Color color) {
+        this.argb = color.getRGB();
+        this.opaque = (this.argb >>> 24) == 0xFF;
+    }
+
+    @Override
+    public void plot(int x, int y) {
+        if (x < this.clipX0 || x >= this.clipX1
+                || y < this.clipY0 || y >= this.clipY1) {
+            return;
+        }
+
+        int index = y * this.width + x;
+        if (this.opaque) {
+            this.pixels[index] = this.argb;
+        } else {
+            this.pixels[index] = blend(this.argb,
+                    this.pixels[index] | this.alphaMask);
+        }
+    }
+
+    @Override
+    public void fillSpan(int x0, int x1, int y) {
+        if (y < this.clipY0 || y >= this.clipY1) {
+            return;
+        }
+
+        // Clips both ends of the span, x1 becomes exclusive.
+        x0 = Math.max(x0, this.clipX0);
+        x1 = Math.min(x1 + 1, this.clipX1);
+        if (x0 >= x1) {
+            return;
+        }
+
+        int row = y * this.width;
+        if (this.opaque) {
+            Arrays.fill(this.pixels, row + x0, row + x1, this.argb);
+        } else {
+            for (int i = row + x0; i < row + x1; i++) {
+                this.pixels[i] = blend(this.argb,
+                        this.pixels[i] | this.alphaMask);
+            }
+        }
+    }
+
+    @Override
+    public void fillMask(int[] spans, int[] overdraw, int xc, int yc) {
+        SpanListBuilder.replay(spans, xc, yc, this);
+        SpanListBuilder.replay(overdraw, xc, yc, this);
+    }
+
+    @Override
+    public void drawImage(Image anImage, int x, int y, int w, int h) {
+        // Images are scaled by Java2D, limited to the same clip.
+        Graphics2D graphics = this.image.createGraphics();
+        graphics.setClip(this.clipX0, this.clipY0,
+                this.clipX1 - this.clipX0, this.clipY1 - this.clipY0);
+        graphics.drawImage(anImage, x, y, w, h, null);
+        graphics.dispose();
+    }
+
+    /**
+     * Blends a translucent colour over an existing pixel, step by step as
+     * the SrcOver MaskFill loop of Java2D does for non-premultiplied int
+     * pixels, rounding the same way.
+     * @param src the translucent colour
+     * @param dst the existing pixel
+     * @return the blended pixel
+     */
+    private static int blend(int src, int dst) {
+        int sa = src >>> 24;
+        if (sa == 0) {
+            // Java2D draws nothing at all.
+            return dst;
+        }
+
+        // Premultiplies the source.
+        int ra = sa;
+        int r = mul8(sa, (src >> 16) & 0xFF);
+        int g = mul8(sa, (src >> 8) & 0xFF);
+        int b = mul8(sa, src & 0xFF);
+
+        // Adds what shows through of the existing pixel.
+        int da = mul8(255 - sa, dst >>> 24);
+        ra += da;
+        if (da != 0) {
+            int dr = (dst >> 16) & 0xFF;
+            int dg = (dst >> 8) & 0xFF;
+            int db = dst & 0xFF;
+            if (da != 255) {
+                dr = mul8(da, dr);
+                dg = mul8(da, dg);
+                db = mul8(da, db);
+            }
+            r += dr;
+            g += dg;
+            b += db;
+        }
+
+        // Back to non-premultiplied.
+        if (ra != 0 && ra < 255) {
+            r = div8(r, ra);
+            g = div8(g, ra);
+            b = div8(b, ra);
+        }
+
+        return ra << 24 | r << 16 | g << 8 | b;
+    }
+
+    /**
+     * Multiplies two 8 bit values as fractions of 255, rounded as the
+     * mul8table of Java2D.
+     * @param a first value, 0 to 255
+     * @param b second value, 0 to 255
+     * @return a * b / 255, rounded
+     */
+    private static int mul8(int a, int b) {
+        // Overflows into the sign bit for large values, the unsigned shift
+        //      still gives the right result.
+        return (a * b * 0x10101 + 0x800000) >>> 24;
+    }
+
+    /**
+     * Divides an 8 bit value by an alpha as fractions of 255, rounded as
+     * the div8table of Java2D.
+     * @param v the value, 0 to 255
+     * @param a the alpha, 1 to 255
+     * @return v * 255 / a, rounded, at most 255
+     */
+    private static int div8(int v, int a) {
+        if (v >= a) {
+            return 255;
+        }
+        return (v * DIV8_INC[a] + 0x800000) >>> 24;
+    }
+
+}
@@ -0,0 +1,65 @@
+package com.gilera.jpainter.raster;
+
+
+/**
+ * File: PixelTarget.java
+ * 
+ * Description: The surface all Drawable rasterizers draw their pixels on.
+ */
+import java.awt.Color;
+import java.awt.Image;
+
+/**
+ * PixelTarget interface
+ * 
+ * Purpose: Decouples the Bresenham rasterizers from the Graphics object. A
+ * target only has to know how to plot a single pixel and how to fill a
+ * horizontal span of pixels in the current colour.
+ *
+ * @author Ryan Gilera <jalapaomaji-github@yahoo.com>
+ */
+public interface PixelTarget {
+
+    /**
+     * Sets the colour used by the following plot and fillSpan calls.
+     * @param color Drawables color
+     */
+    void setColor(Color color);
+
+    /**
+     * Draws a single pixel.
+     * @param x x position
+     * @param y y position
+     */
+    void plot(int x, int y);
+
+    /**
+     * Draws a horizontal span of pixels, both ends inclusive.
+     * @param x0 leftmost x position
+     * @param x1 rightmost x position
+     * @param y y position
+     */
+    void fillSpan(int x0, int x1, int y);
+
+    /**
+     * Stamps a footprint mask centred at xc, yc: its spans, then its
+     * overdraw spans, the pixels the footprint algorithm draws more than
+     * once, so a translucent colour blends them as often. A target that
+     * only keeps which pixels are covered may leave the overdraw out.
+     * @param spans dy, dx0 and dx1 of each span, relative to the centre
+     * @param overdraw dy, dx0 and dx1 of each overdraw span
+     * @param xc centre x position
+     * @param yc centre y position
+     */
+    void fillMask(int[] spans, int[] overdraw, int xc, int yc);
+
+    /**
+     * Draws an image scaled into the given area.
+     * @param image the image to draw
+     * @param x left x position
+     * @param y top y position
+     * @param width width of the area
+     * @param height height of the area
+     */
+    void drawImage(Image image, int x, int y, int width, int height);
+}
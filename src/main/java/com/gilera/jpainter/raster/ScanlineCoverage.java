@@ -0,0 +1,196 @@
+package com.gilera.jpainter.raster;
+
+
+/**
+ * File: ScanlineCoverage.java
+ * 
+ * Description: Merges overlapping spans per scanline before writing them.
+ */
+import java.awt.Color;
+import java.awt.Image;
+
+/**
+ * ScanlineCoverage class
+ * 
+ * Purpose: A PixelTarget that collects the pixels of a Drawable as a sorted
+ * list of disjoint spans per scanline, merging every span that overlaps or
+ * touches another one. Thick outlines stamp the same footprint pixels many
+ * times over; collecting them here first means every covered pixel is
+ * written to the real target exactly once, on flush.
+ * 
+ * Spans outside the row range given to begin, or beyond the span capacity
+ * of a row, are written to the target straight away. That is still correct
+ * for opaque colours, only slower.
+ *
+ * @author Ryan Gilera <jalapaomaji-github@yahoo.com>
+ */
+public final class ScanlineCoverage implements PixelTarget {
+
+    /**
+     * Maximum number of disjoint spans kept per row and the maximum number
+     * of rows. A thick outline needs 1 to 4 spans on most rows.
+     */
+    private static final int SPANS_PER_ROW = 8;
+    public static final int MAX_ROWS = 1 << 14;
+
+    // One instance per thread, reused by every Drawable drawn on it.
+    private static final ThreadLocal<ScanlineCoverage> LOCAL
+            = new ThreadLocal<ScanlineCoverage>() {
+                @Override
+                protected ScanlineCoverage initialValue() {
+                    return new ScanlineCoverage();
+                }
+            };
+
+    /**
+     * Object variables declarations
+     * <ul>
+     * <li>target - the PixelTarget the spans are flushed to, null if the
+     * coverage is not in use</li>
+     * <li>top - y position of the first row</li>
+     * <li>rows - number of rows in use</li>
+     * <li>counts - number of spans on each row</li>
+     * <li>starts, ends - inclusive x limits of the spans, SPANS_PER_ROW
+     * entries per row, sorted by x</li>
+     * </ul>
+     */
+    private PixelTarget target;
+    private int top;
+    private int rows;
+    private int[] counts;
+    private int[] starts;
+    private int[] ends;
+
+    /**
+     * Class constructor, use forCurrentThread instead.
+     */
+    private ScanlineCoverage() {
+        this.counts = new int[0];
+        this.starts = new int[0];
+        this.ends = new int[0];
+    }
+
+    /**
+     * Returns the coverage owned by the calling thread.
+     * @return ScanlineCoverage object
+     */
+    public static ScanlineCoverage forCurrentThread() {
+        return LOCAL.get();
+    }
+
+    /**
+     * Starts collecting spans for the rows top to bottom.
+     * @param aTarget the PixelTarget to flush to
+     * @param topRow first row, inclusive
+     * @param bottomRow last row, inclusive
+     */
+    public void begin(PixelTarget aTarget, int topRow, int bottomRow) {
+        if (this.target != null) {
+            throw new IllegalStateException("ScanlineCoverage is in use");
+        }
+
+        int needed = Math.max(Math.min(bottomRow - topRow + 1, MAX_ROWS), 0);
+        if (needed > this.counts.length) {
+            // Grows the arrays, never shrinks them.
+            int capacity = Math.max(needed, this.counts.length * 2);
+            this.counts = new int[capacity];
+            this.starts = new int[capacity * SPANS_PER_ROW];
+            this.ends = new int[capacity * SPANS_PER_ROW];
+        }
+
+        this.target = aTarget;
+        this.top = topRow;
+        this.rows = needed;
+    }
+
+    /**
+     * Writes every collected span to the target and ends the collection.
+     */
+    public void flush() {
+        PixelTarget aTarget = this.target;
+        this.target = null;
+
+        for (int row = 0; row < this.rows; row++) {
+            int base = row * SPANS_PER_ROW;
+            for (int i = 0; i < this.counts[row]; i++) {
+                aTarget.fillSpan(this.starts[base + i], this.ends[base + i],
+                        this.top + row);
+            }
+            this.counts[row] = 0;
+        }
+    }
+
+    @Override
+    public void setColor(Color color) {
+        this.target.setColor(color);
+    }
+
+    @Override
+    public void plot(int x, int y) {
+        this.fillSpan(x, x, y);
+    }
+
+    @Override
+    public void fillSpan(int x0, int x1, int y) {
+        int row = y - this.top;
+        if (row < 0 || row >= this.rows) {
+            this.target.fillSpan(x0, x1, y);
+            return;
+        }
+
+        int base = row * SPANS_PER_ROW;
+        int count = this.counts[row];
+
+        // Skips the spans ending before x0, not even touching it.
+        int first = 0;
+        while (first < count && this.ends[base + first] < x0 - 1) {
+            first++;
+        }
+
+        // Absorbs every following span overlapping or touching x0 to x1.
+        int last = first;
+        while (last < count && this.starts[base + last] <= x1 + 1) {
+            x0 = Math.min(x0, this.starts[base + last]);
+            x1 = Math.max(x1, this.ends[base + last]);
+            last++;
+        }
+
+        if (first == last) {
+            // Nothing to merge with, inserts a new span at first.
+            if (count == SPANS_PER_ROW) {
+                this.target.fillSpan(x0, x1, y);
+                return;
+            }
+            System.arraycopy(this.starts, base + first, this.starts,
+                    base + first + 1, count - first);
+            System.arraycopy(this.ends, base + first, this.ends,
+                    base + first + 1, count - first);
+            this.counts[row] = count + 1;
+        } else {
+            // Replaces the absorbed spans by the merged one.
+            System.arraycopy(this.starts, base + last, this.starts,
+                    base + first + 1, count - last);
+            System.arraycopy(this.ends, base + last, this.ends,
+                    base + first + 1, count - last);
+            this.counts[row] = count - (last - first - 1);
+        }
+
+        this.starts[base + first] = x0;
+        this.ends[base + first] = x1;
+    }
+
+    /**
+     * Collects the spans of the mask only, the coverage keeps which pixels
+     * are covered, not how many times they were drawn.
+     */
+    @Override
+    public void fillMask(int[] spans, int[] overdraw, int xc, int yc) {
+        SpanListBuilder.replay(spans, xc, yc, this);
+    }
+
+    @Override
+    public void drawImage(Image image, int x, int y, int width, int height) {
+        this.target.drawImage(image, x, y, width, height);
+    }
+
+}
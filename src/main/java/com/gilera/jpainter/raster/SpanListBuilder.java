@@ -0,0 +1,210 @@
+package com.gilera.jpainter.raster;
+
+
+/**
+ * File: SpanListBuilder.java
+ * 
+ * Description: Records spans into a compact primitive span list.
+ */
+import java.awt.Color;
+import java.awt.Image;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * SpanListBuilder class
+ * 
+ * Purpose: A PixelTarget that records every span it receives as three ints
+ * (y, x0, x1) instead of drawing it. The result is a compact display list
+ * that can be replayed onto any PixelTarget with replay. Spans overlapping
+ * on a row are merged, so every pixel is in the list once.
+ *
+ * @author Ryan Gilera <jalapaomaji-github@yahoo.com>
+ */
+public final class SpanListBuilder implements PixelTarget {
+
+    // One instance per thread, reused for every span list built on it.
+    private static final ThreadLocal<SpanListBuilder> LOCAL
+            = new ThreadLocal<SpanListBuilder>() {
+                @Override
+                protected SpanListBuilder initialValue() {
+                    return new SpanListBuilder();
+                }
+            };
+
+    private int[] spans;
+    private int size;
+
+    /**
+     * Class constructor, use forCurrentThread instead.
+     */
+    private SpanListBuilder() {
+        this.spans = new int[3 * 256];
+        this.size = 0;
+    }
+
+    /**
+     * Returns the empty builder owned by the calling thread.
+     * @return SpanListBuilder object
+     */
+    public static SpanListBuilder forCurrentThread() {
+        SpanListBuilder builder = LOCAL.get();
+        builder.size = 0;
+        return builder;
+    }
+
+    /**
+     * Returns the recorded spans as a new array sized to fit, sorted by row
+     * and x. Spans on the same row that overlap or touch are merged first.
+     * @return y, x0 and x1 of each span
+     */
+    public int[] toArray() {
+        if (!this.isDisjoint()) {
+            this.mergeSpans();
+        }
+
+        int[] list = new int[this.size];
+        System.arraycopy(this.spans, 0, list, 0, this.size);
+        return list;
+    }
+
+    /**
+     * Draws a span list onto a PixelTarget, in the colour already set.
+     * @param list y, x0 and x1 of each span
+     * @param target PixelTarget to draw on
+     */
+    public static void replay(int[] list, PixelTarget target) {
+        for (int i = 0; i < list.length; i += 3) {
+            target.fillSpan(list[i + 1], list[i + 2], list[i]);
+        }
+    }
+
+    /**
+     * Draws a span list moved by an offset, in the colour already set. A
+     * footprint mask is a span list around its centre, see fillMask.
+     * @param list y, x0 and x1 of each span
+     * @param dx added to every x
+     * @param dy added to every y
+     * @param target PixelTarget to draw on
+     */
+    public static void replay(int[] list, int dx, int dy,
+            PixelTarget target) {
+        for (int i = 0; i < list.length; i += 3) {
+            target.fillSpan(dx + list[i + 1], dx + list[i + 2], dy + list[i]);
+        }
+    }
+
+    /**
+     * Counts the pixels covered by a span list.
+     * @param list y, x0 and x1 of each span
+     * @return number of pixels
+     */
+    public static long countPixels(int[] list) {
+        long count = 0;
+        for (int i = 0; i < list.length; i += 3) {
+            count += list[i + 2] - list[i + 1] + 1;
+        }
+        return count;
+    }
+
+    /**
+     * Checks that the spans are sorted by row and x, and that none of them
+     * overlaps or touches the next one. ScanlineCoverage flushes them that
+     * way, unless a row ran out of room and some spans went straight
+     * through.
+     * @return true if the spans need no merging
+     */
+    private boolean isDisjoint() {
+        for (int i = 3; i < this.size; i += 3) {
+            int y = this.spans[i];
+            int previousY = this.spans[i - 3];
+            if (y < previousY
+                    || y == previousY && this.spans[i + 1]
+                    <= this.spans[i - 1] + 1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Sorts the spans by row and x, merging the ones on the same row that
+     * overlap or touch.
+     */
+    private void mergeSpans() {
+        final int[] list = this.spans;
+        Integer[] order = new Integer[this.size / 3];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = 3 * i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                int byRow = Integer.compare(list[a], list[b]);
+                return byRow != 0 ? byRow
+                        : Integer.compare(list[a + 1], list[b + 1]);
+            }
+        });
+
+        int[] merged = new int[list.length];
+        int length = 0;
+        for (int index : order) {
+            int y = list[index];
+            int x0 = list[index + 1];
+            int x1 = list[index + 2];
+            if (length > 0 && merged[length - 3] == y
+                    && x0 <= merged[length - 1] + 1) {
+                merged[length - 1] = Math.max(merged[length - 1], x1);
+            } else {
+                merged[length] = y;
+                merged[length + 1] = x0;
+                merged[length + 2] = x1;
+                length += 3;
+            }
+        }
+
+        this.spans = merged;
+        this.size = length;
+    }
+
+    @Override
+    public void setColor(Color color) {
+    }
+
+    @Override
+    public void plot(int x, int y) {
+        this.fillSpan(x, x, y);
+    }
+
+    @Override
+    public void fillSpan(int x0, int x1, int y) {
+        if (this.size + 3 > this.spans.length) {
+            int[] grown = new int[this.spans.length * 2];
+            System.arraycopy(this.spans, 0, grown, 0, this.size);
+            this.spans = grown;
+        }
+
+        this.spans[this.size] = y;
+        this.spans[this.size + 1] = x0;
+        this.spans[this.size + 2] = x1;
+        this.size += 3;
+    }
+
+    /**
+     * Records the covered pixels only, a span list is replayed in opaque
+     * colours (see Drawable.drawShape), so the overdraw changes nothing.
+     */
+    @Override
+    public void fillMask(int[] spans, int[] overdraw, int xc, int yc) {
+        replay(spans, xc, yc, this);
+    }
+
+    /**
+     * Records nothing, an image is not made of spans. DrawableImage has no
+     * span list for this reason, see DrawableImage.getSpans.
+     */
+    @Override
+    public void drawImage(Image image, int x, int y, int width, int height) {
+    }
+
+}
@@ -0,0 +1,168 @@
+package com.gilera.jpainter.ui;
+
+
+/**
+ * File: ReplayDialog.java
+ *
+ * Description: A window for scrubbing through the history of a drawing.
+ */
+import com.gilera.jpainter.canvas.DrawCanvas;
+import com.gilera.jpainter.canvas.ReplayEngine;
+import com.gilera.jpainter.drawables.CompactSceneStore;
+import com.gilera.jpainter.drawables.Drawable;
+import java.awt.BorderLayout;
+import java.awt.Dimension;
+import java.awt.FlowLayout;
+import java.awt.Graphics;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.image.BufferedImage;
+import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JComponent;
+import javax.swing.JDialog;
+import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JSlider;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+
+/**
+ * ReplayDialog class
+ *
+ * Purpose: Shows the raster of a ReplayEngine above a slider running over
+ * its operations, from the empty canvas to the last one. Moving the
+ * slider seeks the engine, which restores the nearest keyframe and draws
+ * only the few operations after it, so scrubbing stays smooth on long
+ * histories. The drawing at the chosen position can be opened in the
+ * canvas.
+ *
+ * @author Ryan Gilera <jalapaomaji-github@yahoo.com>
+ */
+public class ReplayDialog extends JDialog {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Object variables declarations
+     * <ul>
+     * <li>engine - the history being replayed.</li>
+     * <li>canvas - the canvas the chosen drawing is opened in.</li>
+     * <li>view - shows the raster of the engine.</li>
+     * <li>slider - the position in the history.</li>
+     * <li>positionLabel - the position as text.</li>
+     * </ul>
+     */
+    private final ReplayEngine engine;
+    private final DrawCanvas canvas;
+    private final JComponent view;
+    private final JSlider slider;
+    private final JLabel positionLabel;
+
+    /**
+     * Class constructor, builds the dialog at the last position of the
+     * history.
+     *
+     * @param frame the main frame of the UI
+     * @param title the name of the replayed file
+     * @param engine the loaded history
+     * @param canvas the main canvas of the UI
+     */
+    public ReplayDialog(JFrame frame, String title, ReplayEngine engine,
+            DrawCanvas canvas) {
+        super(frame, "Replay - " + title, true);
+        this.engine = engine;
+        this.canvas = canvas;
+
+        final BufferedImage image = engine.getImage();
+        this.view = new JComponent() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected void paintComponent(Graphics g) {
+                g.drawImage(image, 0, 0, null);
+            }
+        };
+        this.view.setPreferredSize(new Dimension(image.getWidth(),
+                image.getHeight()));
+
+        this.slider = new JSlider(0, engine.getLength(), engine.getLength());
+        this.slider.setBorder(BorderFactory.createEmptyBorder(5, 10, 0, 10));
+        this.slider.addChangeListener(new ChangeListener() {
+            @Override
+            public void stateChanged(ChangeEvent e) {
+                ReplayDialog.this.showPosition();
+            }
+        });
+
+        this.positionLabel = new JLabel();
+
+        JButton openButton = new JButton("Open in Canvas");
+        openButton.setToolTipText("Replace the drawing by this one");
+        openButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                ReplayDialog.this.openInCanvas();
+            }
+        });
+
+        JButton closeButton = new JButton("Close");
+        closeButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                ReplayDialog.this.dispose();
+            }
+        });
+
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        buttons.add(this.positionLabel);
+        buttons.add(openButton);
+        buttons.add(closeButton);
+
+        JPanel controls = new JPanel(new BorderLayout());
+        controls.add(this.slider, BorderLayout.CENTER);
+        controls.add(buttons, BorderLayout.SOUTH);
+
+        this.getContentPane().add(new JScrollPane(this.view),
+                BorderLayout.CENTER);
+        this.getContentPane().add(controls, BorderLayout.SOUTH);
+        this.setDefaultCloseOperation(DISPOSE_ON_CLOSE);
+
+        this.showPosition();
+        this.pack();
+        this.setLocationRelativeTo(frame);
+    }
+
+    /**
+     * Seeks the engine to the position of the slider and shows it.
+     */
+    private void showPosition() {
+        int position = this.slider.getValue();
+        this.engine.seek(position);
+        this.positionLabel.setText("Operation " + position + " of "
+                + this.engine.getLength() + ", "
+                + this.engine.getShapes().size() + " shapes  ");
+        this.view.repaint();
+    }
+
+    /**
+     * Opens the drawing at the current position in the canvas, replacing
+     * its drawing and history, and closes the dialog.
+     */
+    private void openInCanvas() {
+        CompactSceneStore store = new CompactSceneStore(
+                this.engine.getShapes().size());
+        for (Drawable shape : this.engine.getShapes()) {
+            store.add(shape);
+        }
+
+        this.canvas.getScene().open(store);
+        this.canvas.repaint();
+        this.canvas.setStatus("  Opened operation "
+                + this.engine.getPosition() + " of the replay."
+                + " Ready to draw..");
+        this.dispose();
+    }
+}
@@ -19,7 +19,9 @@ import com.alee.laf.radiobutton.WebRadioButton;
 import com.alee.laf.toolbar.WebToolBar;
 import com.gilera.jpainter.eventhandlers.ButtonListener;
 import com.gilera.jpainter.canvas.DrawCanvas;
+import com.gilera.jpainter.canvas.SceneJournal;
 import com.gilera.jpainter.data.GlobalSettingsManager;
+import com.gilera.jpainter.eventhandlers.InputRecorder;
 import com.gilera.jpainter.eventhandlers.MenuListener;
 import com.gilera.jpainter.eventhandlers.MousePositionListener;
 import java.awt.BorderLayout;
@@ -29,6 +31,8 @@ import java.awt.Image;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
+import java.io.File;
+import java.io.IOException;
 import javax.swing.BorderFactory;
 import javax.swing.Box;
 import javax.swing.BoxLayout;
@@ -60,6 +64,9 @@ public class UserInterface implements Runnable {
     // Object variable declaration of JFrame.
     private JFrame frame;
 
+    // Records the input on the canvas to a trace, null if it is not.
+    private InputRecorder recorder;
+
     /**
      * The override method for Runnable interface, run, creates a new instance
      * of JFrame for the GUI application and sets it parameters and settings.
@@ -106,6 +113,41 @@ public class UserInterface implements Runnable {
         // Create a new DrawCanvas object
         DrawCanvas aCanvas = new DrawCanvas();
 
+        // Recovers the drawing of the last session from the journal, and
+        //      journals every change from now on.
+        if (!GlobalSettingsManager.JOURNAL_FILE.equals("none")) {
+            File journalFile = new File(GlobalSettingsManager.JOURNAL_FILE);
+            try {
+                SceneJournal journal = SceneJournal.open(journalFile,
+                        aCanvas.getScene(),
+                        GlobalSettingsManager.JOURNAL_SYNC_DELAY);
+                if (journal.getRecoveryError() != null) {
+                    aCanvas.setStatus("  Cannot recover the last session: "
+                            + journal.getRecoveryError().getMessage()
+                            + ". Its journal was kept as " + journalFile
+                            + ".unrecoverable.");
+                }
+            } catch (IOException e) {
+                aCanvas.setStatus("  Cannot open the journal "
+                        + journalFile + ", changes are not autosaved.");
+            }
+        }
+
+        // Records the mouse input on the canvas and the commands to a trace
+        //      file, to replay and measure the latency of a real session.
+        // It must listen to the canvas before any MouseClickListener.
+        if (GlobalSettingsManager.INPUT_TRACE_FILE != null) {
+            File traceFile = new File(GlobalSettingsManager.INPUT_TRACE_FILE);
+            try {
+                this.recorder = new InputRecorder(traceFile);
+                aCanvas.addMouseListener(this.recorder);
+                aCanvas.addMouseMotionListener(this.recorder);
+            } catch (IOException e) {
+                aCanvas.setStatus("  Cannot record the input trace "
+                        + traceFile + ".");
+            }
+        }
+
         // Creates the Menu by calling the buildMenu() method
         this.buildMenu(frame, aCanvas);
 
@@ -151,6 +193,7 @@ public class UserInterface implements Runnable {
     private void buildMenu(JFrame frame, DrawCanvas aCanvas) {
         // Declares and initialise a MouseListener
         MenuListener aMenuListener = new MenuListener(frame, aCanvas);
+        aMenuListener.setInputRecorder(this.recorder);
         // Creates a JMenuBar object to hold all menu item objects.
         JMenuBar menubar = new JMenuBar();
 
@@ -172,6 +215,34 @@ public class UserInterface implements Runnable {
         // Adds the MenuListener for FileNew, for detecting user action.
         fileNew.addActionListener(aMenuListener);
 
+        // FileOpen menu item, for opening a drawing saved in a scene file.
+        JMenuItem fileOpen = new JMenuItem("Open...");
+        // Sets the tooltip text for FileOpen.
+        fileOpen.setToolTipText("Open a drawing");
+        // Sets the keyboard shorcut for FileOpen (ALT+O).
+        fileOpen.setMnemonic(KeyEvent.VK_O);
+        // Adds the MenuListener for FileOpen, for detecting user action.
+        fileOpen.addActionListener(aMenuListener);
+
+        // FileSave menu item, for saving the drawing to a scene file.
+        JMenuItem fileSave = new JMenuItem("Save...");
+        // Sets the tooltip text for FileSave.
+        fileSave.setToolTipText("Save the drawing");
+        // Sets the keyboard shorcut for FileSave (ALT+S).
+        fileSave.setMnemonic(KeyEvent.VK_S);
+        // Adds the MenuListener for FileSave, for detecting user action.
+        fileSave.addActionListener(aMenuListener);
+
+        // FileReplay menu item, for scrubbing through the history of a
+        //      drawing or of the session journal.
+        JMenuItem fileReplay = new JMenuItem("Replay...");
+        // Sets the tooltip text for FileReplay.
+        fileReplay.setToolTipText("Replay a drawing or the session");
+        // Sets the keyboard shorcut for FileReplay (ALT+R).
+        fileReplay.setMnemonic(KeyEvent.VK_R);
+        // Adds the MenuListener for FileReplay, for detecting user action.
+        fileReplay.addActionListener(aMenuListener);
+
         // FileExit menu item, that allows user to exit the application.
         JMenuItem fileExit = new JMenuItem(
                 "Exit", GlobalSettingsManager.FILE_EXIT_ICON);
@@ -196,6 +267,9 @@ public class UserInterface implements Runnable {
 
         // Adds all File menu items into the File menu object.
         file.add(fileNew);
+        file.add(fileOpen);
+        file.add(fileSave);
+        file.add(fileReplay);
         file.addSeparator();
         file.add(fileExit);
 
@@ -517,6 +591,7 @@ public class UserInterface implements Runnable {
                 lineComboBox, radioSquare, radioCircle, cursor,
                 drawableLineButton, drawableCircleButton, drawableSquareButton,
                 drawableEllipseButton, drawableTriangleButton, imageAddButton);
+        aButtonListener.setInputRecorder(this.recorder);
 
         // Apply the actionListener to the buttons.
         pencilButton.addActionListener(aButtonListener);
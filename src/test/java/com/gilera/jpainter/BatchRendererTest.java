@@ -0,0 +1,125 @@
+package com.gilera.jpainter;
+
+
+/**
+ * File: BatchRendererTest.java
+ *
+ * Description: Checks the images written by the batch renderer.
+ */
+import com.gilera.jpainter.data.GlobalSettingsManager;
+import com.gilera.jpainter.data.SceneFile;
+import com.gilera.jpainter.drawables.CompactSceneStore;
+import com.gilera.jpainter.drawables.Drawable;
+import com.gilera.jpainter.drawables.DrawableCircle;
+import com.gilera.jpainter.drawables.DrawableLine;
+import com.gilera.jpainter.drawables.DrawableSquare;
+import com.gilera.jpainter.raster.IntRasterTarget;
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import javax.imageio.ImageIO;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * BatchRendererTest class
+ *
+ * Purpose: Saves a few random scenes, renders them on several workers and
+ * expects every PNG to hold the same pixels as drawing the Drawables one
+ * by one on a white canvas. A missing scene file must fail the batch.
+ *
+ * @author Ryan Gilera <jalapaomaji-github@yahoo.com>
+ */
+public class BatchRendererTest {
+
+    private static final int SCENES = 4;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void writesTheSamePixelsAsTheCanvas() throws Exception {
+        List<File> inputs = new ArrayList<>();
+        List<int[]> expected = new ArrayList<>();
+        Random random = new Random(20);
+
+        for (int s = 0; s < SCENES; s++) {
+            CompactSceneStore store = new CompactSceneStore();
+            for (int i = 0; i < 300; i++) {
+                store.add(randomShape(random));
+            }
+            File input = this.folder.newFile("scene" + s + ".jps");
+            SceneFile.write(input, store);
+            inputs.add(input);
+
+            BufferedImage image = newCanvas();
+            IntRasterTarget target = new IntRasterTarget(image);
+            target.clear(Color.WHITE);
+            for (int i = 0; i < store.size(); i++) {
+                store.get(i).drawShape(target);
+            }
+            expected.add(pixels(image));
+        }
+
+        File out = this.folder.newFolder("out");
+        assertTrue(BatchRenderer.renderAll(inputs, out, 3));
+
+        for (int s = 0; s < SCENES; s++) {
+            BufferedImage written = ImageIO.read(new File(out,
+                    "scene" + s + ".png"));
+            assertArrayEquals("scene " + s, expected.get(s),
+                    pixels(written));
+        }
+    }
+
+    @Test
+    public void failsOnAMissingScene() throws Exception {
+        List<File> inputs = Arrays.asList(
+                new File(this.folder.getRoot(), "missing.jps"));
+        assertFalse(BatchRenderer.renderAll(inputs, this.folder.getRoot(),
+                2));
+    }
+
+    private static Drawable randomShape(Random random) {
+        int x = random.nextInt(GlobalSettingsManager.CANVAS_WIDTH);
+        int y = random.nextInt(GlobalSettingsManager.CANVAS_HEIGHT);
+        int xo = x + random.nextInt(201) - 100;
+        int yo = y + random.nextInt(201) - 100;
+        int thick = 1 + random.nextInt(5);
+        Color color = new Color(random.nextInt(256), random.nextInt(256),
+                random.nextInt(256), random.nextBoolean() ? 255 : 120);
+        boolean footprint = random.nextBoolean();
+
+        switch (random.nextInt(3)) {
+            case 0:
+                return new DrawableCircle(x, y, xo, yo, thick, color,
+                        footprint);
+            case 1:
+                return new DrawableSquare(x, y, xo, yo, thick, color,
+                        footprint);
+            default:
+                return new DrawableLine(x, y, xo, yo, thick, color,
+                        footprint);
+        }
+    }
+
+    private static BufferedImage newCanvas() {
+        return new BufferedImage(GlobalSettingsManager.CANVAS_WIDTH,
+                GlobalSettingsManager.CANVAS_HEIGHT,
+                BufferedImage.TYPE_INT_ARGB);
+    }
+
+    private static int[] pixels(BufferedImage image) {
+        return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null,
+                0, image.getWidth());
+    }
+}
@@ -0,0 +1,232 @@
+package com.gilera.jpainter.canvas;
+
+
+/**
+ * File: BackgroundRendererTest.java
+ *
+ * Description: Checks the frames of the render thread against the scene.
+ */
+import com.gilera.jpainter.data.GlobalSettingsManager;
+import com.gilera.jpainter.drawables.Drawable;
+import com.gilera.jpainter.drawables.DrawableCircle;
+import com.gilera.jpainter.drawables.DrawableLine;
+import com.gilera.jpainter.drawables.DrawableSquare;
+import com.gilera.jpainter.drawables.DrawableTriangle;
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * BackgroundRendererTest class
+ *
+ * Purpose: Drives a DrawCanvas with background rendering on through adds,
+ * batches, undos, redos, clears and drags, many changes in a row so the
+ * render thread drops frames and carries their dirty areas. Whenever the
+ * render thread goes idle, the frame the canvas paints must hold the same
+ * pixels as the SceneModel rendering the same state, the Drawable being
+ * dragged included. Snapshots submitted while the render thread is
+ * stopped are merged into one, which must still be drawn right when it
+ * holds as many Drawables as the last frame, but not the same ones.
+ *
+ * @author Ryan Gilera <jalapaomaji-github@yahoo.com>
+ */
+public class BackgroundRendererTest {
+
+    private static final int STEPS = 120;
+    private static final int DRAG_TICKS = 25;
+    private static final long IDLE_TIMEOUT = 30000;
+
+    private static final int WIDTH = GlobalSettingsManager.CANVAS_WIDTH;
+    private static final int HEIGHT = GlobalSettingsManager.CANVAS_HEIGHT;
+
+    @Test
+    public void showsTheSceneOnceIdle() throws Exception {
+        DrawCanvas canvas = new DrawCanvas();
+        canvas.setBackgroundRendering(true);
+        canvas.activateDraw();
+        Random random = new Random(11);
+
+        try {
+            for (int step = 0; step < STEPS; step++) {
+                int kind = random.nextInt(100);
+                if (kind < 35) {
+                    canvas.addShape(randomShape(random));
+                    canvas.activateDraw();
+                    canvas.commitShape();
+                } else if (kind < 50) {
+                    List<Drawable> batch = new ArrayList<>();
+                    for (int n = 1 + random.nextInt(20); n > 0; n--) {
+                        batch.add(randomShape(random));
+                    }
+                    canvas.addShapes(batch);
+                } else if (kind < 65) {
+                    canvas.undo();
+                } else if (kind < 75) {
+                    canvas.redo();
+                } else if (kind < 80) {
+                    canvas.clearCanvas();
+                } else {
+                    // Checked half way, while the Drawable is still active.
+                    drag(canvas, random);
+                    assertShowsScene(canvas, "drag at step " + step);
+                    canvas.commitShape();
+                }
+
+                // Only some steps wait, the others pile up snapshots.
+                if (random.nextInt(4) == 0) {
+                    assertShowsScene(canvas, "step " + step);
+                }
+            }
+            assertShowsScene(canvas, "end");
+        } finally {
+            canvas.setBackgroundRendering(false);
+        }
+    }
+
+    @Test
+    public void drawsMergedSnapshotsOfTheSameSize() throws Exception {
+        SceneModel scene = new SceneModel(WIDTH, HEIGHT);
+        scene.setRasterRetained(false);
+        BackgroundRenderer renderer = new BackgroundRenderer(
+                new DrawCanvas(), WIDTH, HEIGHT);
+        Random random = new Random(12);
+
+        renderer.start();
+        try {
+            for (int i = 0; i < 10; i++) {
+                scene.addShape(randomShape(random));
+                scene.commitShape();
+            }
+            submit(renderer, scene);
+            assertRenders(renderer, scene, "first frame");
+
+            // Undo then add, then clear then undo, merged while stopped.
+            renderer.stop();
+            scene.undo();
+            submit(renderer, scene);
+            scene.addShape(randomShape(random));
+            scene.commitShape();
+            submit(renderer, scene);
+            renderer.start();
+            assertRenders(renderer, scene, "undo and add");
+
+            renderer.stop();
+            scene.clear();
+            submit(renderer, scene);
+            scene.undo();
+            submit(renderer, scene);
+            renderer.start();
+            assertRenders(renderer, scene, "clear and undo");
+        } finally {
+            renderer.stop();
+        }
+    }
+
+    /**
+     * Submits the state of a SceneModel the way DrawCanvas.submitFrame
+     * does.
+     * @param renderer the renderer
+     * @param scene the scene
+     */
+    private static void submit(BackgroundRenderer renderer,
+            SceneModel scene) {
+        renderer.submit(scene.getVersion(), scene.getSnapshot(), null,
+                new Rectangle(0, 0, WIDTH, HEIGHT));
+    }
+
+    /**
+     * Waits for the render thread and compares its front frame with the
+     * SceneModel.
+     * @param renderer the renderer
+     * @param scene the scene
+     * @param message what was done last
+     */
+    private static void assertRenders(BackgroundRenderer renderer,
+            SceneModel scene, String message) throws InterruptedException {
+        assertTrue(message, renderer.awaitIdle(IDLE_TIMEOUT));
+
+        BufferedImage painted = new BufferedImage(WIDTH, HEIGHT,
+                BufferedImage.TYPE_INT_ARGB);
+        Graphics graphics = painted.createGraphics();
+        renderer.paint(graphics, new Rectangle(0, 0, WIDTH, HEIGHT));
+        graphics.dispose();
+
+        assertArrayEquals(message, pixels(scene.toImage()), pixels(painted));
+    }
+
+    /**
+     * Adds a Drawable and drags its second endpoint around, the way
+     * MouseClickListener does on every frame tick.
+     * @param canvas the canvas
+     * @param random the random numbers
+     */
+    private static void drag(DrawCanvas canvas, Random random) {
+        Drawable shape = randomShape(random);
+        canvas.addShape(shape);
+        canvas.activateDraw();
+        for (int i = 0; i < DRAG_TICKS; i++) {
+            shape.setNewEndpoints(random.nextInt(WIDTH),
+                    random.nextInt(HEIGHT));
+            canvas.activateDraw();
+        }
+    }
+
+    /**
+     * Waits for the render thread and compares the painted canvas with
+     * the SceneModel.
+     * @param canvas the canvas
+     * @param message what was done last
+     */
+    private static void assertShowsScene(DrawCanvas canvas, String message)
+            throws InterruptedException {
+        assertTrue(message, canvas.awaitRendered(IDLE_TIMEOUT));
+
+        BufferedImage painted = new BufferedImage(WIDTH, HEIGHT,
+                BufferedImage.TYPE_INT_ARGB);
+        Graphics graphics = painted.createGraphics();
+        canvas.paintComponent(graphics);
+        graphics.dispose();
+
+        assertArrayEquals(message, pixels(canvas.getScene().toImage()),
+                pixels(painted));
+    }
+
+    private static Drawable randomShape(Random random) {
+        int x = random.nextInt(WIDTH);
+        int y = random.nextInt(HEIGHT);
+        int xo = x + random.nextInt(301) - 150;
+        int yo = y + random.nextInt(301) - 150;
+        int thick = 1 + random.nextInt(9);
+        Color color = new Color(random.nextInt(256), random.nextInt(256),
+                random.nextInt(256), random.nextInt(4) == 0 ? 110 : 255);
+        boolean footprint = random.nextBoolean();
+
+        switch (random.nextInt(4)) {
+            case 0:
+                return new DrawableCircle(x, y, xo, yo, thick, color,
+                        footprint);
+            case 1:
+                return new DrawableSquare(x, y, xo, yo, thick, color,
+                        footprint);
+            case 2:
+                return new DrawableTriangle(x, y, xo, yo, thick, color,
+                        footprint);
+            default:
+                return new DrawableLine(x, y, xo, yo, thick, color,
+                        footprint);
+        }
+    }
+
+    private static int[] pixels(BufferedImage image) {
+        return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null,
+                0, image.getWidth());
+    }
+}
@@ -0,0 +1,79 @@
+package com.gilera.jpainter.canvas;
+
+
+/**
+ * File: IngestQueueTest.java
+ *
+ * Description: Checks the capacity and statistics of the IngestQueue.
+ */
+import com.gilera.jpainter.drawables.Drawable;
+import com.gilera.jpainter.drawables.DrawableLine;
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * IngestQueueTest class
+ *
+ * Purpose: Fills an IngestQueue past its capacity, drains it in batches
+ * and checks the totals, then checks that the drain rate falls to 0 once
+ * nothing is drained any more.
+ *
+ * @author Ryan Gilera <jalapaomaji-github@yahoo.com>
+ */
+public class IngestQueueTest {
+
+    private static Drawable line(int i) {
+        return new DrawableLine(i, 0, i + 10, 10, 1, Color.BLACK, false);
+    }
+
+    @Test
+    public void refusesDrawablesPastItsCapacity() {
+        IngestQueue queue = new IngestQueue(100);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(queue.offer(line(i)));
+        }
+        assertFalse(queue.offer(line(100)));
+        assertEquals(100, queue.getDepth());
+        assertEquals(100, queue.getOffered());
+        assertEquals(1, queue.getRejected());
+
+        List<Drawable> batch = new ArrayList<>();
+        assertEquals(60, queue.drainTo(batch, 60));
+        assertEquals(40, queue.drainTo(batch, 60));
+        assertEquals(0, queue.drainTo(batch, 60));
+        assertEquals(100, batch.size());
+        assertEquals(0, queue.getDepth());
+        assertEquals(100, queue.getDrained());
+
+        // Oldest first.
+        for (int i = 0; i < batch.size(); i++) {
+            assertEquals(i, batch.get(i).getXi());
+        }
+    }
+
+    @Test
+    public void drainRateFallsToZeroWhenIdle() throws InterruptedException {
+        IngestQueue queue = new IngestQueue(1000);
+        List<Drawable> batch = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            queue.offer(line(i));
+        }
+        queue.drainTo(batch, 500);
+
+        // The next drain after a second closes the window.
+        Thread.sleep(1100);
+        queue.drainTo(batch, 500);
+        double rate = queue.getDrainRate();
+        assertTrue("rate " + rate, rate > 0 && rate <= 500);
+
+        // Nothing was drained since, the queue is empty and not drained.
+        Thread.sleep(1100);
+        assertEquals(0, queue.getDrainRate(), 0);
+    }
+}
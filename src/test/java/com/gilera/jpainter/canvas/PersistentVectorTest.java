@@ -0,0 +1,161 @@
+package com.gilera.jpainter.canvas;
+
+
+/**
+ * File: PersistentVectorTest.java
+ *
+ * Description: Checks PersistentVector against an ArrayList.
+ */
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * PersistentVectorTest class
+ *
+ * Purpose: Grows and shrinks PersistentVectors across the sizes where the
+ * tail moves into the tree and the tree gains or loses a level (32, 1024
+ * and 32768 elements), comparing them with ArrayLists after every step.
+ * Versions kept along the way, and vectors branched off them, must never
+ * change.
+ *
+ * @author Ryan Gilera <jalapaomaji-github@yahoo.com>
+ */
+public class PersistentVectorTest {
+
+    // Sizes where the tail or a level of the tree fills up.
+    private static final int[] EDGES = {32, 1024, 32768};
+
+    @Test
+    public void appendsAndRemovesAcrossEveryEdge() {
+        PersistentVector<Integer> vector = PersistentVector.empty();
+        List<Integer> expected = new ArrayList<>();
+        int largest = EDGES[EDGES.length - 1] + 40;
+
+        for (int i = 0; i < largest; i++) {
+            vector = vector.append(i);
+            expected.add(i);
+            assertNearEdge(expected, vector);
+        }
+        assertEqualLists(expected, vector);
+
+        while (!vector.isEmpty()) {
+            vector = vector.removeLast();
+            expected.remove(expected.size() - 1);
+            assertNearEdge(expected, vector);
+        }
+        assertEqualLists(expected, vector);
+    }
+
+    @Test
+    public void keepsOldVersionsAcrossRandomChanges() {
+        Random random = new Random(41);
+        PersistentVector<Integer> vector = PersistentVector.empty();
+        List<Integer> expected = new ArrayList<>();
+        List<PersistentVector<Integer>> versions = new ArrayList<>();
+        List<List<Integer>> contents = new ArrayList<>();
+
+        for (int edge : EDGES) {
+            while (expected.size() < edge - 40) {
+                vector = vector.append(expected.size());
+                expected.add(expected.size());
+            }
+
+            // Wanders up and down across the edge.
+            for (int step = 0; step < 2000; step++) {
+                int size = expected.size();
+                if (size == 0 || size < edge - 40
+                        || size <= edge + 40 && random.nextBoolean()) {
+                    int value = random.nextInt();
+                    vector = vector.append(value);
+                    expected.add(value);
+                } else {
+                    vector = vector.removeLast();
+                    expected.remove(expected.size() - 1);
+                }
+                assertEquals(expected.size(), vector.size());
+                assertEquals(expected.isEmpty() ? null
+                        : expected.get(expected.size() - 1),
+                        vector.isEmpty() ? null : vector.getLast());
+
+                if (step % 50 == 0) {
+                    versions.add(vector);
+                    contents.add(new ArrayList<>(expected));
+                }
+            }
+            assertEqualLists(expected, vector);
+        }
+
+        // Branches off old versions do not change them or each other.
+        for (int i = 0; i < versions.size(); i++) {
+            PersistentVector<Integer> old = versions.get(i);
+            if (!old.isEmpty()) {
+                old.removeLast().append(-1).removeLast();
+            }
+            PersistentVector<Integer> branch = old;
+            for (int n = 0; n < 100; n++) {
+                branch = branch.append(-2);
+            }
+            assertEquals(old.size() + 100, branch.size());
+        }
+        for (int i = 0; i < versions.size(); i++) {
+            assertEqualLists(contents.get(i), versions.get(i));
+        }
+    }
+
+    @Test
+    public void buildsFromAnIterable() {
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 1100; i++) {
+            expected.add("s" + i);
+        }
+        assertEqualLists(expected, PersistentVector.of(expected));
+        assertTrue(PersistentVector.of(new ArrayList<String>()).isEmpty());
+    }
+
+    /**
+     * Compares the vector in full when its size is within a few elements
+     * of an edge, and only its last element otherwise.
+     * @param expected the expected elements
+     * @param vector the vector
+     */
+    private static void assertNearEdge(List<Integer> expected,
+            PersistentVector<Integer> vector) {
+        assertEquals(expected.size(), vector.size());
+        for (int edge : EDGES) {
+            if (Math.abs(expected.size() - edge) <= 2) {
+                assertEqualLists(expected, vector);
+                return;
+            }
+        }
+        if (!expected.isEmpty()) {
+            assertEquals(expected.get(expected.size() - 1),
+                    vector.getLast());
+        }
+    }
+
+    /**
+     * Compares every element, read by get and by the iterator.
+     * @param expected the expected elements
+     * @param vector the vector
+     */
+    private static <E> void assertEqualLists(List<E> expected,
+            PersistentVector<E> vector) {
+        assertEquals(expected.size(), vector.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals("index " + i, expected.get(i), vector.get(i));
+        }
+        Iterator<E> elements = vector.iterator();
+        for (E element : expected) {
+            assertTrue(elements.hasNext());
+            assertEquals(element, elements.next());
+        }
+        assertFalse(elements.hasNext());
+    }
+}
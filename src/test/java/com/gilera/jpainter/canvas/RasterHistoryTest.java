@@ -0,0 +1,245 @@
+package com.gilera.jpainter.canvas;
+
+
+/**
+ * File: RasterHistoryTest.java
+ *
+ * Description: Checks the rasters restored by undo and redo against a full
+ * rebuild.
+ */
+import com.gilera.jpainter.drawables.Drawable;
+import com.gilera.jpainter.drawables.DrawableCircle;
+import com.gilera.jpainter.drawables.DrawableLine;
+import com.gilera.jpainter.drawables.DrawableSquare;
+import com.gilera.jpainter.drawables.DrawableTriangle;
+import com.gilera.jpainter.raster.IntRasterTarget;
+import java.awt.Color;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * RasterHistoryTest class
+ *
+ * Purpose: Runs random adds, batches, drags, undos, redos and clears on a
+ * SceneModel whose checkpoints are taken every few Drawables and whose
+ * checkpoints and deltas only fit a handful of rasters, so undo keeps
+ * switching between deltas, checkpoints and redrawing while copies are
+ * evicted. After every step the retained raster must hold the same pixels
+ * as the Drawables of the scene drawn again from scratch, and the memory
+ * used must stay within the budgets. RasterCheckpoints and
+ * RasterDeltaHistory are checked on their own for eviction.
+ *
+ * @author Ryan Gilera <jalapaomaji-github@yahoo.com>
+ */
+public class RasterHistoryTest {
+
+    private static final int WIDTH = 160;
+    private static final int HEIGHT = 120;
+    private static final int STEPS = 600;
+    private static final long RASTER_BYTES = 4L * WIDTH * HEIGHT;
+
+    @Test
+    public void restoresFromDeltasAndCheckpoints() {
+        this.checkRandomHistory(3, 4 * RASTER_BYTES, 3000, 21);
+    }
+
+    @Test
+    public void restoresFromCheckpointsWithoutDeltas() {
+        this.checkRandomHistory(4, 3 * RASTER_BYTES, 0, 22);
+    }
+
+    @Test
+    public void restoresByRedrawingWithoutCheckpoints() {
+        this.checkRandomHistory(2, RASTER_BYTES - 1, 500, 23);
+    }
+
+    @Test
+    public void restoresWithinLargeBudgets() {
+        this.checkRandomHistory(5, 1000 * RASTER_BYTES, 1L << 30, 24);
+    }
+
+    @Test
+    public void checkpointsEvictTheLeastRecentlyUsed() {
+        IntRasterTarget raster = new IntRasterTarget(new BufferedImage(WIDTH,
+                HEIGHT, BufferedImage.TYPE_INT_ARGB));
+        RasterCheckpoints checkpoints = new RasterCheckpoints(
+                2 * RASTER_BYTES);
+
+        raster.clear(Color.RED);
+        checkpoints.take(0, 1, raster);
+        raster.clear(Color.GREEN);
+        checkpoints.take(0, 2, raster);
+        assertEquals(1, checkpoints.find(0, 1));
+        raster.clear(Color.BLUE);
+        checkpoints.take(0, 3, raster);
+        assertEquals(2 * RASTER_BYTES, checkpoints.getMemoryUsed());
+
+        // The one of count 2 was used least recently.
+        assertEquals(1, checkpoints.find(0, 2));
+        assertEquals(3, checkpoints.find(0, 3));
+        checkpoints.restore(0, 1, raster);
+        assertEquals(Color.RED.getRGB(), raster.copyPixels()[0]);
+
+        // Other epochs and larger counts are dropped.
+        checkpoints.discard(0, 2);
+        assertEquals(-1, checkpoints.find(0, 0));
+        assertEquals(1, checkpoints.find(0, 3));
+        assertEquals(RASTER_BYTES, checkpoints.getMemoryUsed());
+        checkpoints.discard(1, 3);
+        assertEquals(-1, checkpoints.find(0, 3));
+        assertEquals(0, checkpoints.getMemoryUsed());
+
+        // A raster larger than the budget is never kept.
+        RasterCheckpoints tiny = new RasterCheckpoints(RASTER_BYTES - 1);
+        tiny.take(0, 1, raster);
+        assertEquals(-1, tiny.find(0, 1));
+        assertEquals(0, tiny.getMemoryUsed());
+    }
+
+    @Test
+    public void deltasEvictTheOldest() {
+        IntRasterTarget raster = new IntRasterTarget(new BufferedImage(WIDTH,
+                HEIGHT, BufferedImage.TYPE_INT_ARGB));
+        raster.clear(Color.WHITE);
+        Random random = new Random(25);
+        long budget = 2000;
+        RasterDeltaHistory deltas = new RasterDeltaHistory(budget);
+
+        List<Drawable> shapes = new ArrayList<>();
+        List<int[]> before = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            Drawable shape = randomShape(random);
+            before.add(raster.copyPixels());
+            deltas.record(shape, shape.getBounds().intersection(
+                    new Rectangle(0, 0, WIDTH, HEIGHT)), raster);
+            raster.setClip(null);
+            shape.drawShape(raster);
+            shapes.add(shape);
+            assertTrue(deltas.getMemoryUsed() <= budget);
+        }
+
+        // Only the top Drawable can be undone, and only the newest ones.
+        assertNull(deltas.undo(shapes.get(0), raster));
+        int undone = 0;
+        for (int i = shapes.size() - 1; i >= 0; i--) {
+            Rectangle area = deltas.undo(shapes.get(i), raster);
+            if (area == null) {
+                break;
+            }
+            assertArrayEquals("undo " + i, before.get(i),
+                    raster.copyPixels());
+            undone++;
+        }
+        assertTrue(undone > 0 && undone < shapes.size());
+        assertEquals(0, deltas.getMemoryUsed());
+
+        deltas.record(shapes.get(0), new Rectangle(0, 0, 10, 10), raster);
+        assertTrue(deltas.getMemoryUsed() > 0);
+        deltas.clear();
+        assertEquals(0, deltas.getMemoryUsed());
+        assertNull(deltas.undo(shapes.get(0), raster));
+    }
+
+    /**
+     * Runs random steps on a SceneModel with tiny undo budgets and checks
+     * its raster and memory after each one.
+     * @param interval the Drawables between two checkpoints
+     * @param checkpointMemory the budget of the checkpoints
+     * @param historyMemory the budget of the deltas
+     * @param seed the seed of the random steps
+     */
+    private void checkRandomHistory(int interval, long checkpointMemory,
+            long historyMemory, long seed) {
+        SceneModel scene = new SceneModel(WIDTH, HEIGHT, interval,
+                checkpointMemory, historyMemory);
+        Random random = new Random(seed);
+
+        for (int step = 0; step < STEPS; step++) {
+            int kind = random.nextInt(100);
+            if (kind < 40) {
+                scene.addShape(randomShape(random));
+                scene.commitShape();
+            } else if (kind < 48) {
+                List<Drawable> batch = new ArrayList<>();
+                for (int n = 1 + random.nextInt(6); n > 0; n--) {
+                    batch.add(randomShape(random));
+                }
+                scene.addShapes(batch);
+            } else if (kind < 55) {
+                Drawable shape = randomShape(random);
+                scene.addShape(shape);
+                for (int i = 0; i < 5; i++) {
+                    shape.setNewEndpoints(random.nextInt(WIDTH),
+                            random.nextInt(HEIGHT));
+                    scene.updateActiveShape();
+                }
+                scene.commitShape();
+            } else if (kind < 80) {
+                scene.undo();
+            } else if (kind < 97) {
+                scene.redo();
+            } else {
+                scene.clear();
+            }
+
+            assertArrayEquals("step " + step, rebuild(scene),
+                    pixels(scene.toImage()));
+            assertTrue("memory at step " + step,
+                    scene.getHistoryMemoryUsed()
+                    <= checkpointMemory + historyMemory);
+        }
+    }
+
+    /**
+     * Draws the Drawables of a scene from scratch.
+     * @param scene the scene
+     * @return the pixels of the scene
+     */
+    private static int[] rebuild(SceneModel scene) {
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT,
+                BufferedImage.TYPE_INT_ARGB);
+        TiledRenderer.render(image, scene.getSnapshot(), null,
+                new Rectangle(0, 0, WIDTH, HEIGHT), Color.WHITE);
+        return pixels(image);
+    }
+
+    private static Drawable randomShape(Random random) {
+        int x = random.nextInt(WIDTH);
+        int y = random.nextInt(HEIGHT);
+        int xo = x + random.nextInt(81) - 40;
+        int yo = y + random.nextInt(81) - 40;
+        int thick = 1 + random.nextInt(6);
+        Color color = new Color(random.nextInt(256), random.nextInt(256),
+                random.nextInt(256), random.nextInt(3) == 0 ? 110 : 255);
+        boolean footprint = random.nextBoolean();
+
+        switch (random.nextInt(4)) {
+            case 0:
+                return new DrawableCircle(x, y, xo, yo, thick, color,
+                        footprint);
+            case 1:
+                return new DrawableSquare(x, y, xo, yo, thick, color,
+                        footprint);
+            case 2:
+                return new DrawableTriangle(x, y, xo, yo, thick, color,
+                        footprint);
+            default:
+                return new DrawableLine(x, y, xo, yo, thick, color,
+                        footprint);
+        }
+    }
+
+    private static int[] pixels(BufferedImage image) {
+        return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null,
+                0, image.getWidth());
+    }
+}
@@ -0,0 +1,199 @@
+package com.gilera.jpainter.canvas;
+
+
+/**
+ * File: ReplayEngineTest.java
+ *
+ * Description: Checks seeking through a history against replaying it.
+ */
+import com.gilera.jpainter.drawables.CompactSceneStore;
+import com.gilera.jpainter.drawables.Drawable;
+import com.gilera.jpainter.drawables.DrawableCircle;
+import com.gilera.jpainter.drawables.DrawableLine;
+import com.gilera.jpainter.drawables.DrawableSquare;
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * ReplayEngineTest class
+ *
+ * Purpose: Records a random history of adds, undos, redos, clears, opens
+ * and news, with opaque and translucent Drawables, into a ReplayEngine
+ * with keyframes every few operations. Seeking to positions in random
+ * order, backwards and forwards, must give the same Drawables and pixels
+ * as replaying every operation up to that position into a new SceneModel.
+ *
+ * @author Ryan Gilera <jalapaomaji-github@yahoo.com>
+ */
+public class ReplayEngineTest {
+
+    private static final int WIDTH = 400;
+    private static final int HEIGHT = 300;
+    private static final int OPERATIONS = 600;
+    private static final int SEEKS = 60;
+
+    /**
+     * One recorded operation, to replay it into a SceneModel.
+     */
+    private static final class Operation {
+
+        private final byte type;
+        private final List<Drawable> shapes;
+
+        private Operation(byte type, List<Drawable> shapes) {
+            this.type = type;
+            this.shapes = shapes;
+        }
+    }
+
+    @Test
+    public void seeksToTheSameDrawingAsAFullReplay() {
+        this.checkSeeks(new ReplayEngine(WIDTH, HEIGHT, 16, Long.MAX_VALUE),
+                1);
+    }
+
+    @Test
+    public void seeksTheSameWithTrimmedKeyframes() {
+        // Room for four keyframes, every other one is dropped as the
+        //      history grows.
+        ReplayEngine engine = new ReplayEngine(WIDTH, HEIGHT, 4,
+                4L * 4 * WIDTH * HEIGHT);
+        this.checkSeeks(engine, 2);
+        assertTrue(engine.getKeyframeCount() <= 4);
+    }
+
+    private void checkSeeks(ReplayEngine engine, int seed) {
+        Random random = new Random(seed);
+        List<Operation> history = randomHistory(random);
+        for (Operation operation : history) {
+            engine.append(operation.type, operation.shapes);
+        }
+        assertEquals(history.size(), engine.getLength());
+
+        for (int i = 0; i < SEEKS; i++) {
+            int position = i == 0 ? history.size()
+                    : random.nextInt(history.size() + 1);
+            // Small steps forward continue from the current position.
+            int[] positions = {position,
+                Math.min(history.size(), position + 1 + random.nextInt(3))};
+
+            for (int at : positions) {
+                BufferedImage sought = engine.seek(at);
+                SceneModel replayed = replay(history, at);
+
+                assertEquals("position " + at,
+                        replayed.getSnapshot().size(),
+                        engine.getShapes().size());
+                assertArrayEquals("position " + at,
+                        pixels(replayed.toImage()), pixels(sought));
+            }
+        }
+    }
+
+    /**
+     * Applies the first operations of a history to a new SceneModel, the
+     * way SceneJournal replays a journal.
+     * @param history the operations
+     * @param count the number of operations to apply
+     * @return the SceneModel
+     */
+    private static SceneModel replay(List<Operation> history, int count) {
+        SceneModel scene = new SceneModel(WIDTH, HEIGHT);
+        for (int i = 0; i < count; i++) {
+            Operation operation = history.get(i);
+            switch (operation.type) {
+                case SceneJournal.ADD:
+                    scene.addShapes(operation.shapes);
+                    break;
+                case SceneJournal.UNDO:
+                    scene.undo();
+                    break;
+                case SceneJournal.REDO:
+                    scene.redo();
+                    break;
+                case SceneJournal.CLEAR:
+                    scene.clear();
+                    break;
+                case SceneJournal.OPEN:
+                    CompactSceneStore store = new CompactSceneStore();
+                    for (Drawable shape : operation.shapes) {
+                        store.add(shape);
+                    }
+                    scene.open(store);
+                    break;
+                default:
+                    scene.reset();
+                    break;
+            }
+        }
+        return scene;
+    }
+
+    private static List<Operation> randomHistory(Random random) {
+        List<Operation> history = new ArrayList<>();
+        List<Drawable> none = Collections.emptyList();
+
+        for (int i = 0; i < OPERATIONS; i++) {
+            int kind = random.nextInt(100);
+            if (kind < 55) {
+                List<Drawable> shapes = new ArrayList<>();
+                for (int n = 1 + random.nextInt(4); n > 0; n--) {
+                    shapes.add(randomShape(random));
+                }
+                history.add(new Operation(SceneJournal.ADD, shapes));
+            } else if (kind < 75) {
+                history.add(new Operation(SceneJournal.UNDO, none));
+            } else if (kind < 90) {
+                history.add(new Operation(SceneJournal.REDO, none));
+            } else if (kind < 96) {
+                history.add(new Operation(SceneJournal.CLEAR, none));
+            } else if (kind < 99) {
+                List<Drawable> shapes = new ArrayList<>();
+                for (int n = random.nextInt(30); n > 0; n--) {
+                    shapes.add(randomShape(random));
+                }
+                history.add(new Operation(SceneJournal.OPEN, shapes));
+            } else {
+                history.add(new Operation(SceneJournal.NEW, none));
+            }
+        }
+        return history;
+    }
+
+    private static Drawable randomShape(Random random) {
+        int x = random.nextInt(WIDTH);
+        int y = random.nextInt(HEIGHT);
+        int xo = x + random.nextInt(121) - 60;
+        int yo = y + random.nextInt(121) - 60;
+        int thick = 1 + random.nextInt(4);
+        Color color = new Color(random.nextInt(256), random.nextInt(256),
+                random.nextInt(256), random.nextInt(4) == 0 ? 100 : 255);
+        boolean footprint = random.nextBoolean();
+
+        switch (random.nextInt(3)) {
+            case 0:
+                return new DrawableCircle(x, y, xo, yo, thick, color,
+                        footprint);
+            case 1:
+                return new DrawableSquare(x, y, xo, yo, thick, color,
+                        footprint);
+            default:
+                return new DrawableLine(x, y, xo, yo, thick, color,
+                        footprint);
+        }
+    }
+
+    private static int[] pixels(BufferedImage image) {
+        return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null,
+                0, image.getWidth());
+    }
+}
@@ -0,0 +1,292 @@
+package com.gilera.jpainter.canvas;
+
+
+/**
+ * File: SceneJournalTest.java
+ *
+ * Description: Checks what the journal records for opened drawings and
+ * for Drawables waiting for their second click.
+ */
+import com.gilera.jpainter.data.SceneFile;
+import com.gilera.jpainter.drawables.CompactSceneStore;
+import com.gilera.jpainter.drawables.Drawable;
+import com.gilera.jpainter.drawables.DrawableCircle;
+import com.gilera.jpainter.drawables.DrawableImage;
+import com.gilera.jpainter.drawables.DrawableLine;
+import com.gilera.jpainter.drawables.DrawableSquare;
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * SceneJournalTest class
+ *
+ * Purpose: Opens a scene file with a journal attached and replays the
+ * journal into a second SceneModel, the way the next start up after a
+ * crash does. An unchanged file must be journaled as a few bytes, a file
+ * that changed while it was opened as a full snapshot. Saving over the
+ * opened file must keep the drawing recoverable, and a journal of a file
+ * changed by someone else must be set aside, not replayed. Undo, redo and
+ * clear between the two clicks of a Drawable must cancel it, and the
+ * replay must agree.
+ *
+ * @author Ryan Gilera <jalapaomaji-github@yahoo.com>
+ */
+public class SceneJournalTest {
+
+    private static final int WIDTH = 1100;
+    private static final int HEIGHT = 611;
+    private static final int SHAPES = 5000;
+
+    // Far below the 32 bytes per Drawable of a snapshot.
+    private static final long MAX_REFERENCE_BYTES = 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void journalsAnOpenedFileAsAReference() throws Exception {
+        File scene = this.writeScene(1);
+        File log = new File(this.folder.getRoot(), "session.jpj");
+
+        SceneModel model = new SceneModel(WIDTH, HEIGHT);
+        SceneJournal journal = SceneJournal.open(log, model, 10);
+        model.open(SceneFile.read(scene), scene, scene.length(),
+                scene.lastModified());
+        model.addShape(randomShape(new Random(2)));
+        model.commitShape();
+        journal.sync();
+
+        assertTrue(journal.getBytesWritten() < MAX_REFERENCE_BYTES);
+        assertReplays(model, log);
+        journal.close();
+    }
+
+    @Test
+    public void journalsASnapshotIfTheFileChangedWhileOpened()
+            throws Exception {
+        File scene = this.writeScene(3);
+        File log = new File(this.folder.getRoot(), "session.jpj");
+
+        SceneModel model = new SceneModel(WIDTH, HEIGHT);
+        SceneJournal journal = SceneJournal.open(log, model, 10);
+        // As if the file was written again while it was read.
+        model.open(SceneFile.read(scene), scene, scene.length(),
+                scene.lastModified() - 1000);
+        journal.sync();
+        assertTrue(journal.getBytesWritten() > 4L * SHAPES);
+
+        // The snapshot does not need the file any more.
+        assertTrue(scene.delete());
+        assertReplays(model, log);
+        journal.close();
+    }
+
+    @Test
+    public void recoversADrawingSavedOverTheOpenedFile() throws Exception {
+        File scene = this.writeScene(4);
+        File log = new File(this.folder.getRoot(), "session.jpj");
+        Random random = new Random(5);
+
+        SceneModel model = new SceneModel(WIDTH, HEIGHT);
+        SceneJournal journal = SceneJournal.open(log, model, 10);
+        model.open(SceneFile.read(scene), scene, scene.length(),
+                scene.lastModified());
+        model.addShape(randomShape(random));
+        model.commitShape();
+
+        // Saved over the file the journal referred to.
+        SceneFile.write(scene, model.toStore());
+        model.saved(scene, scene.length(), scene.lastModified());
+        model.addShape(randomShape(random));
+        model.commitShape();
+        journal.sync();
+        assertTrue(journal.getBytesWritten() < 2 * MAX_REFERENCE_BYTES);
+        assertReplays(model, log);
+
+        // Undo and redo past the save, which the journal cannot replay
+        //      from the file, and back.
+        assertTrue(model.undo());
+        assertTrue(model.undo());
+        journal.sync();
+        assertReplays(model, log);
+        assertTrue(model.redo());
+        assertTrue(model.redo());
+        assertTrue(model.undo());
+        journal.sync();
+        assertReplays(model, log);
+        journal.close();
+    }
+
+    @Test
+    public void setsAsideAJournalOfAFileChangedSince() throws Exception {
+        File scene = this.writeScene(4);
+        File log = new File(this.folder.getRoot(), "session.jpj");
+
+        SceneModel model = new SceneModel(WIDTH, HEIGHT);
+        SceneJournal journal = SceneJournal.open(log, model, 10);
+        model.open(SceneFile.read(scene), scene, scene.length(),
+                scene.lastModified());
+        model.addShape(randomShape(new Random(5)));
+        model.commitShape();
+        journal.sync();
+        journal.close();
+        long length = log.length();
+
+        // Written by another program, the later changes have no base.
+        SceneFile.write(scene, new CompactSceneStore());
+
+        SceneModel replayed = new SceneModel(WIDTH, HEIGHT);
+        SceneJournal recovered = SceneJournal.open(log, replayed, 10);
+        assertNotNull(recovered.getRecoveryError());
+        assertEquals(0, replayed.getSnapshot().size());
+        assertEquals(length, new File(log.getPath() + ".unrecoverable")
+                .length());
+
+        // The new journal starts empty and works.
+        assertEquals(0, log.length());
+        replayed.addShape(randomShape(new Random(6)));
+        replayed.commitShape();
+        recovered.sync();
+        assertReplays(replayed, log);
+        recovered.close();
+    }
+
+    @Test
+    public void journalsAddedImagesFromTheWriterThread() throws Exception {
+        File log = new File(this.folder.getRoot(), "session.jpj");
+        Random random = new Random(7);
+        BufferedImage image = new BufferedImage(120, 80,
+                BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, 0xFF000000 | random.nextInt(0xFFFFFF));
+            }
+        }
+
+        SceneModel model = new SceneModel(WIDTH, HEIGHT);
+        SceneJournal journal = SceneJournal.open(log, model, 10);
+        // The list is reused by the caller once added.
+        List<Drawable> batch = new ArrayList<>();
+        batch.add(randomShape(random));
+        batch.add(new DrawableImage(30, 40, 150, 120, 1, Color.BLACK, false,
+                image));
+        model.addShapes(batch);
+        batch.clear();
+        batch.add(randomShape(random));
+        model.addShapes(batch);
+        journal.sync();
+
+        assertTrue(journal.getBytesWritten() > 4L * 120 * 80);
+        assertReplays(model, log);
+        journal.close();
+    }
+
+    @Test
+    public void cancelsTheDrawableWaitingForItsSecondClick()
+            throws Exception {
+        File log = new File(this.folder.getRoot(), "session.jpj");
+        Random random = new Random(6);
+
+        SceneModel model = new SceneModel(WIDTH, HEIGHT);
+        SceneJournal journal = SceneJournal.open(log, model, 10);
+        model.addShape(randomShape(random));
+        model.commitShape();
+
+        // Undo only drops the pending Drawable, which cannot be redone.
+        model.addShape(randomShape(random));
+        assertTrue(model.undo());
+        assertEquals(1, model.getSnapshot().size());
+        assertFalse(model.redo());
+        assertEquals(1, model.getSnapshot().size());
+
+        // Clear drops it too, undoing the clear brings the first back.
+        model.addShape(randomShape(random));
+        model.clear();
+        assertEquals(0, model.getSnapshot().size());
+        assertTrue(model.undo());
+        assertEquals(1, model.getSnapshot().size());
+
+        // Redo drops it as well.
+        model.addShape(randomShape(random));
+        model.redo();
+        assertEquals(1, model.getSnapshot().size());
+        journal.sync();
+
+        assertReplays(model, log);
+        journal.close();
+    }
+
+    /**
+     * Writes a scene file of random Drawables.
+     * @param seed the seed of the Drawables
+     * @return the file
+     */
+    private File writeScene(int seed) throws Exception {
+        Random random = new Random(seed);
+        CompactSceneStore store = new CompactSceneStore();
+        for (int i = 0; i < SHAPES; i++) {
+            store.add(randomShape(random));
+        }
+        File scene = this.folder.newFile("scene" + seed + ".jps");
+        SceneFile.write(scene, store);
+        return scene;
+    }
+
+    /**
+     * Replays a journal, without closing it first like after a crash, and
+     * expects the same Drawables and pixels as the model.
+     * @param model the model the journal was recorded from
+     * @param log the journal file
+     */
+    private static void assertReplays(SceneModel model, File log)
+            throws Exception {
+        // A copy, the journal of the model is still open.
+        File copy = new File(log.getPath() + ".replay");
+        Files.copy(log.toPath(), copy.toPath(),
+                StandardCopyOption.REPLACE_EXISTING);
+        SceneModel fromLog = new SceneModel(WIDTH, HEIGHT);
+        SceneJournal.open(copy, fromLog, 10).close();
+
+        assertEquals(model.getSnapshot().size(),
+                fromLog.getSnapshot().size());
+        assertArrayEquals(pixels(model.toImage()),
+                pixels(fromLog.toImage()));
+    }
+
+    private static Drawable randomShape(Random random) {
+        int x = random.nextInt(WIDTH);
+        int y = random.nextInt(HEIGHT);
+        int xo = x + random.nextInt(81) - 40;
+        int yo = y + random.nextInt(81) - 40;
+        Color color = new Color(random.nextInt(0xFFFFFF));
+
+        switch (random.nextInt(3)) {
+            case 0:
+                return new DrawableCircle(x, y, xo, yo, 2, color, false);
+            case 1:
+                return new DrawableSquare(x, y, xo, yo, 3, color, true);
+            default:
+                return new DrawableLine(x, y, xo, yo, 1, color, false);
+        }
+    }
+
+    private static int[] pixels(BufferedImage image) {
+        return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null,
+                0, image.getWidth());
+    }
+}
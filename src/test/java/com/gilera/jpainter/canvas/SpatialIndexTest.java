@@ -0,0 +1,193 @@
+package com.gilera.jpainter.canvas;
+
+
+/**
+ * File: SpatialIndexTest.java
+ *
+ * Description: Checks the queries of a SpatialIndex against a linear scan.
+ */
+import com.gilera.jpainter.drawables.Drawable;
+import com.gilera.jpainter.drawables.DrawableCircle;
+import com.gilera.jpainter.drawables.DrawableLine;
+import com.gilera.jpainter.drawables.DrawableSquare;
+import java.awt.Color;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * SpatialIndexTest class
+ *
+ * Purpose: Adds, removes, drags and clears random Drawables in a
+ * SpatialIndex, many of them partly or wholly off the canvas so their
+ * cells are clamped to the border, and checks every query against a scan
+ * of all the Drawables in the order they were added. The Drawables found
+ * in several cells must come back once each and in z-order.
+ *
+ * @author Ryan Gilera <jalapaomaji-github@yahoo.com>
+ */
+public class SpatialIndexTest {
+
+    // Not a multiple of the cell size, so the last cells are partial.
+    private static final int WIDTH = 5 * SpatialIndex.CELL_SIZE + 17;
+    private static final int HEIGHT = 3 * SpatialIndex.CELL_SIZE + 40;
+    private static final int STEPS = 3000;
+    private static final int MARGIN = 300;
+
+    @Test
+    public void findsTheSameAsALinearScan() {
+        SpatialIndex index = new SpatialIndex(WIDTH, HEIGHT);
+        List<Drawable> shapes = new ArrayList<>();
+        Random random = new Random(31);
+
+        for (int step = 0; step < STEPS; step++) {
+            int kind = random.nextInt(100);
+            if (kind < 35 || shapes.isEmpty()) {
+                Drawable shape = randomShape(random);
+                index.add(shape);
+                shapes.add(shape);
+            } else if (kind < 50) {
+                // Mostly from the top, the way undo removes them.
+                int i = random.nextBoolean() ? shapes.size() - 1
+                        : random.nextInt(shapes.size());
+                index.remove(shapes.remove(i));
+            } else if (kind < 80) {
+                // Dragged the way MouseClickListener does on every tick.
+                Drawable shape = shapes.get(shapes.size() - 1);
+                for (int tick = 0; tick < 5; tick++) {
+                    shape.setNewEndpoints(coordinate(random, WIDTH),
+                            coordinate(random, HEIGHT));
+                    index.update(shape);
+                }
+            } else if (kind < 90) {
+                // Adding again only moves it, it keeps its z-order.
+                Drawable shape = shapes.get(random.nextInt(shapes.size()));
+                shape.setNewEndpoints(coordinate(random, WIDTH),
+                        coordinate(random, HEIGHT));
+                index.add(shape);
+            } else if (kind < 91) {
+                index.clear();
+                shapes.clear();
+            }
+
+            assertEquals("size at step " + step, shapes.size(),
+                    index.size());
+            List<Rectangle> areas = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                areas.add(randomArea(random));
+            }
+            // The corner pixels of a Drawable are in its outermost cells.
+            if (!shapes.isEmpty()) {
+                Rectangle bounds = shapes.get(random.nextInt(
+                        shapes.size())).getBounds();
+                int x1 = bounds.x + bounds.width - 1;
+                int y1 = bounds.y + bounds.height - 1;
+                areas.add(new Rectangle(bounds.x, bounds.y, 1, 1));
+                areas.add(new Rectangle(x1, bounds.y, 1, 1));
+                areas.add(new Rectangle(bounds.x, y1, 1, 1));
+                areas.add(new Rectangle(x1, y1, 1, 1));
+            }
+            for (Rectangle area : areas) {
+                assertEquals("step " + step + " area " + area,
+                        scan(shapes, area), index.query(area));
+            }
+        }
+    }
+
+    @Test
+    public void findsShapesOffTheCanvasInTheBorderCells() {
+        SpatialIndex index = new SpatialIndex(WIDTH, HEIGHT);
+        Color color = Color.BLACK;
+        Drawable left = new DrawableSquare(-200, 50, -150, 90, 1, color,
+                false);
+        Drawable below = new DrawableCircle(100, HEIGHT + 100, 130,
+                HEIGHT + 150, 1, color, false);
+        Drawable across = new DrawableLine(-500, -500, WIDTH + 500,
+                HEIGHT + 500, 1, color, false);
+        index.add(left);
+        index.add(below);
+        index.add(across);
+
+        // Areas off the canvas only see what is really there, although
+        //      they all land in the border cells.
+        List<Drawable> found = index.query(new Rectangle(-210, 40, 30, 30));
+        assertEquals(2, found.size());
+        assertTrue(found.get(0) == left && found.get(1) == across);
+        found = index.query(new Rectangle(-100, 40, 30, 30));
+        assertEquals(1, found.size());
+        assertTrue(found.get(0) == across);
+        found = index.query(new Rectangle(90, HEIGHT + 90, 100, 100));
+        assertEquals(2, found.size());
+        assertTrue(found.get(0) == below && found.get(1) == across);
+
+        // A whole canvas query sees each of them once.
+        found = index.query(new Rectangle(0, 0, WIDTH, HEIGHT));
+        assertEquals(1, found.size());
+        assertTrue(found.get(0) == across);
+        found = index.query(new Rectangle(-1000, -1000, WIDTH + 2000,
+                HEIGHT + 2000));
+        assertEquals(3, found.size());
+        assertTrue(found.get(0) == left && found.get(2) == across);
+
+        assertTrue(index.query(new Rectangle(10, 10, 0, 5)).isEmpty());
+    }
+
+    /**
+     * Finds the Drawables intersecting an area by looking at all of them.
+     * @param shapes the Drawables, bottom first
+     * @param area the area
+     * @return the Drawables found, bottom first
+     */
+    private static List<Drawable> scan(List<Drawable> shapes,
+            Rectangle area) {
+        List<Drawable> found = new ArrayList<>();
+        if (area.isEmpty()) {
+            return found;
+        }
+        for (Drawable shape : shapes) {
+            if (area.intersects(shape.getBounds())) {
+                found.add(shape);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Returns a coordinate on the canvas or up to MARGIN pixels beyond it.
+     * @param random the random numbers
+     * @param size width or height of the canvas
+     * @return the coordinate
+     */
+    private static int coordinate(Random random, int size) {
+        return random.nextInt(size + 2 * MARGIN) - MARGIN;
+    }
+
+    private static Rectangle randomArea(Random random) {
+        return new Rectangle(coordinate(random, WIDTH),
+                coordinate(random, HEIGHT), random.nextInt(2 * WIDTH),
+                random.nextInt(2 * HEIGHT));
+    }
+
+    private static Drawable randomShape(Random random) {
+        int x = coordinate(random, WIDTH);
+        int y = coordinate(random, HEIGHT);
+        int xo = x + random.nextInt(401) - 200;
+        int yo = y + random.nextInt(401) - 200;
+        int thick = 1 + random.nextInt(9);
+        Color color = Color.BLACK;
+
+        switch (random.nextInt(3)) {
+            case 0:
+                return new DrawableCircle(x, y, xo, yo, thick, color, false);
+            case 1:
+                return new DrawableSquare(x, y, xo, yo, thick, color, false);
+            default:
+                return new DrawableLine(x, y, xo, yo, thick, color, false);
+        }
+    }
+}
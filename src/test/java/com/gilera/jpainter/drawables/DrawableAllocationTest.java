@@ -0,0 +1,122 @@
+package com.gilera.jpainter.drawables;
+
+
+/**
+ * File: DrawableAllocationTest.java
+ *
+ * Description: Checks that drawing a square or a triangle allocates
+ * nothing.
+ */
+import com.gilera.jpainter.raster.IntRasterTarget;
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * DrawableAllocationTest class
+ *
+ * Purpose: Draws squares and triangles onto an IntRasterTarget over and
+ * over, thin and thick, with both footprints, by replaying their span
+ * lists (drawShape with an opaque colour), by blending them (drawShape
+ * with a translucent colour) and by running their rasterizers directly.
+ * After a warm up, the bytes the thread allocates are counted with
+ * ThreadMXBean and must be exactly zero: a single object per edge or
+ * stamp would show. See MouseClickListenerTest for the whole drag tick.
+ *
+ * @author Ryan Gilera <jalapaomaji-github@yahoo.com>
+ */
+public class DrawableAllocationTest {
+
+    private static final int WIDTH = 320;
+    private static final int HEIGHT = 240;
+    private static final int WARMUP_DRAWS = 5000;
+    private static final int MEASURED_DRAWS = 500;
+
+    // How a Drawable is drawn.
+    private static final int REPLAY = 0;
+    private static final int BLEND = 1;
+    private static final int RASTERIZE = 2;
+
+    @Test
+    public void squareAllocatesNothing() {
+        this.checkAll(true);
+    }
+
+    @Test
+    public void triangleAllocatesNothing() {
+        this.checkAll(false);
+    }
+
+    /**
+     * Checks every way of drawing one shape type, for thin and thick
+     * outlines and both footprints.
+     * @param square true for squares, false for triangles
+     */
+    private void checkAll(boolean square) {
+        com.sun.management.ThreadMXBean threads
+                = (com.sun.management.ThreadMXBean) ManagementFactory
+                .getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        IntRasterTarget target = new IntRasterTarget(new BufferedImage(WIDTH,
+                HEIGHT, BufferedImage.TYPE_INT_ARGB));
+        for (int mode = REPLAY; mode <= RASTERIZE; mode++) {
+            for (int thick : new int[]{1, 7}) {
+                for (boolean footprint : new boolean[]{false, true}) {
+                    Color color = new Color(30, 90, 200,
+                            mode == BLEND ? 128 : 255);
+                    // Partly off the target, so clipping is exercised.
+                    Drawable drawable = square
+                            ? new DrawableSquare(-20, 40, 280, 260, thick,
+                                    color, footprint)
+                            : new DrawableTriangle(30, -30, 310, 230, thick,
+                                    color, footprint);
+
+                    assertEquals(drawable + " mode " + mode, 0,
+                            measure(threads, drawable, target, mode));
+                }
+            }
+        }
+    }
+
+    /**
+     * Draws a Drawable until warmed up and returns the bytes allocated by
+     * the measured draws.
+     * @param threads the ThreadMXBean
+     * @param drawable the Drawable
+     * @param target the target to draw on
+     * @param mode REPLAY, BLEND or RASTERIZE
+     * @return bytes allocated
+     */
+    private static long measure(com.sun.management.ThreadMXBean threads,
+            Drawable drawable, IntRasterTarget target, int mode) {
+        long thread = Thread.currentThread().getId();
+        for (int i = 0; i < WARMUP_DRAWS; i++) {
+            draw(drawable, target, mode);
+        }
+
+        // What reading the counter itself costs, if anything.
+        long empty = threads.getThreadAllocatedBytes(thread);
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < MEASURED_DRAWS; i++) {
+            draw(drawable, target, mode);
+        }
+        long after = threads.getThreadAllocatedBytes(thread);
+        return after - before - (before - empty);
+    }
+
+    private static void draw(Drawable drawable, IntRasterTarget target,
+            int mode) {
+        if (mode == RASTERIZE) {
+            target.setColor(drawable.getColor());
+            drawable.rasterize(target);
+        } else {
+            drawable.drawShape(target);
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package com.gilera.jpainter.drawables;
+
+
+/**
+ * File: DrawableTest.java
+ *
+ * Description: Checks the span lists of the Drawables against their
+ * rasterizers.
+ */
+import com.gilera.jpainter.raster.IntRasterTarget;
+import com.gilera.jpainter.raster.PixelTarget;
+import com.gilera.jpainter.raster.SpanListBuilder;
+import java.awt.Color;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * DrawableTest class
+ *
+ * Purpose: Draws every shape type, footprint type and thickness from 1 to
+ * 20 twice: once by replaying its compiled span list, the scanline path
+ * drawShape takes for opaque colours, and once by running its rasterizer
+ * pixel by pixel, stamping every footprint. Both must cover the same
+ * pixels, and getPixelCount must count each of them once. The endpoints
+ * are random, partly outside the image and partly close together.
+ *
+ * @author Ryan Gilera <jalapaomaji-github@yahoo.com>
+ */
+public class DrawableTest {
+
+    private static final int WIDTH = 160;
+    private static final int HEIGHT = 120;
+    private static final int SHAPES_PER_CASE = 6;
+    private static final Color COLOR = new Color(40, 120, 200);
+
+    @Test
+    public void lineSpansMatchPixels() {
+        this.compareAll(1);
+    }
+
+    @Test
+    public void circleSpansMatchPixels() {
+        this.compareAll(2);
+    }
+
+    @Test
+    public void squareSpansMatchPixels() {
+        this.compareAll(3);
+    }
+
+    @Test
+    public void ellipseSpansMatchPixels() {
+        this.compareAll(4);
+    }
+
+    @Test
+    public void triangleSpansMatchPixels() {
+        this.compareAll(5);
+    }
+
+    @Test
+    public void arcSpansMatchPixels() {
+        this.compareAll(6);
+    }
+
+    /**
+     * Compares random shapes of one type, for every footprint type and
+     * thickness.
+     * @param shape the shape type, as in create
+     */
+    private void compareAll(int shape) {
+        Random random = new Random(shape);
+        for (int thickness = 1; thickness <= 20; thickness++) {
+            for (int type = 0; type < 2; type++) {
+                for (int i = 0; i < SHAPES_PER_CASE; i++) {
+                    int xi = random.nextInt(WIDTH + 40) - 20;
+                    int yi = random.nextInt(HEIGHT + 40) - 20;
+                    int xo, yo;
+                    if (i == 0) {
+                        xo = xi + random.nextInt(7) - 3;
+                        yo = yi + random.nextInt(7) - 3;
+                    } else {
+                        xo = random.nextInt(WIDTH + 40) - 20;
+                        yo = random.nextInt(HEIGHT + 40) - 20;
+                    }
+
+                    Drawable drawable = create(shape, xi, yi, xo, yo,
+                            thickness, type == 1);
+                    assertArrayEquals(drawable.toString() + " footprint "
+                            + type, this.perPixel(drawable),
+                            this.spans(drawable));
+                    assertEquals(drawable.toString() + " footprint "
+                            + type, this.pixelCount(drawable),
+                            drawable.getPixelCount());
+                }
+            }
+        }
+    }
+
+    private static Drawable create(int shape, int xi, int yi, int xo,
+            int yo, int thickness, boolean footprint) {
+        switch (shape) {
+            case 1:
+                return new DrawableLine(xi, yi, xo, yo, thickness, COLOR,
+                        footprint);
+            case 2:
+                return new DrawableCircle(xi, yi, xo, yo, thickness, COLOR,
+                        footprint);
+            case 3:
+                return new DrawableSquare(xi, yi, xo, yo, thickness, COLOR,
+                        footprint);
+            case 4:
+                return new DrawableEllipse(xi, yi, xo, yo, thickness, COLOR,
+                        footprint);
+            case 5:
+                return new DrawableTriangle(xi, yi, xo, yo, thickness, COLOR,
+                        footprint);
+            default:
+                return new DrawableArc(xi, yi, xo, yo, thickness, COLOR,
+                        footprint);
+        }
+    }
+
+    /**
+     * Draws the Drawable the way it is drawn on the canvas, by its span
+     * list.
+     */
+    private int[] spans(Drawable drawable) {
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT,
+                BufferedImage.TYPE_INT_RGB);
+        drawable.drawShape(new IntRasterTarget(image));
+        return image.getRGB(0, 0, WIDTH, HEIGHT, null, 0, WIDTH);
+    }
+
+    /**
+     * Draws the Drawable with its rasterizer, one pixel at a time.
+     */
+    private int[] perPixel(Drawable drawable) {
+        BufferedImage image = new BufferedImage(WIDTH, HEIGHT,
+                BufferedImage.TYPE_INT_RGB);
+        PixelTarget target = new PlotTarget(new IntRasterTarget(image));
+        target.setColor(drawable.getColor());
+        drawable.rasterize(target);
+        return image.getRGB(0, 0, WIDTH, HEIGHT, null, 0, WIDTH);
+    }
+
+    /**
+     * Counts the pixels the rasterizer covers, on the image or not.
+     */
+    private long pixelCount(Drawable drawable) {
+        CountTarget target = new CountTarget();
+        drawable.rasterize(target);
+        return target.pixels.size();
+    }
+
+    /**
+     * PlotTarget class
+     *
+     * Purpose: Breaks every span into single plots.
+     */
+    private static final class PlotTarget implements PixelTarget {
+
+        private final PixelTarget target;
+
+        PlotTarget(PixelTarget target) {
+            this.target = target;
+        }
+
+        @Override
+        public void setColor(Color color) {
+            this.target.setColor(color);
+        }
+
+        @Override
+        public void plot(int x, int y) {
+            this.target.plot(x, y);
+        }
+
+        @Override
+        public void fillSpan(int x0, int x1, int y) {
+            for (int x = x0; x <= x1; x++) {
+                this.target.plot(x, y);
+            }
+        }
+
+        @Override
+        public void fillMask(int[] spans, int[] overdraw, int xc, int yc) {
+            SpanListBuilder.replay(spans, xc, yc, this);
+            SpanListBuilder.replay(overdraw, xc, yc, this);
+        }
+
+        @Override
+        public void drawImage(Image image, int x, int y, int width,
+                int height) {
+            this.target.drawImage(image, x, y, width, height);
+        }
+    }
+
+    /**
+     * CountTarget class
+     *
+     * Purpose: Collects the pixels it is given, once each.
+     */
+    private static final class CountTarget implements PixelTarget {
+
+        private final Set<Long> pixels = new HashSet<>();
+
+        @Override
+        public void setColor(Color color) {
+        }
+
+        @Override
+        public void plot(int x, int y) {
+            this.pixels.add(((long) y << 32) | (x & 0xFFFFFFFFL));
+        }
+
+        @Override
+        public void fillSpan(int x0, int x1, int y) {
+            for (int x = x0; x <= x1; x++) {
+                this.plot(x, y);
+            }
+        }
+
+        @Override
+        public void fillMask(int[] spans, int[] overdraw, int xc, int yc) {
+            SpanListBuilder.replay(spans, xc, yc, this);
+            SpanListBuilder.replay(overdraw, xc, yc, this);
+        }
+
+        @Override
+        public void drawImage(Image image, int x, int y, int width,
+                int height) {
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.gilera.jpainter.drawables;
+
+
+/**
+ * File: FootprintTest.java
+ *
+ * Description: Checks the stamped footprint masks against the original
+ * pixel by pixel footprint algorithms.
+ */
+import com.gilera.jpainter.raster.GraphicsPixelTarget;
+import com.gilera.jpainter.raster.IntRasterTarget;
+import com.gilera.jpainter.raster.PixelTarget;
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * FootprintTest class
+ *
+ * Purpose: Stamps every footprint once with a translucent colour and
+ * compares the pixels with the footprint drawn the way it was before the
+ * masks, one Graphics.drawLine per pixel. A translucent colour blends once
+ * per draw, so this also checks that the pixels drawn more than once are
+ * still drawn as often.
+ *
+ * @author Ryan Gilera <jalapaomaji-github@yahoo.com>
+ */
+public class FootprintTest {
+
+    private static final int SIZE = 48;
+    private static final int CENTRE = SIZE / 2;
+    private static final Color[] COLORS = {
+        new Color(200, 30, 90, 255),
+        new Color(200, 30, 90, 128),
+        new Color(10, 220, 180, 37),
+        new Color(255, 255, 255, 1)
+    };
+
+    @Test
+    public void circleMatchesPixelByPixelOnGraphics() {
+        this.compareAll(false, false);
+    }
+
+    @Test
+    public void squareMatchesPixelByPixelOnGraphics() {
+        this.compareAll(true, false);
+    }
+
+    @Test
+    public void circleMatchesPixelByPixelOnIntRaster() {
+        this.compareAll(false, true);
+    }
+
+    @Test
+    public void squareMatchesPixelByPixelOnIntRaster() {
+        this.compareAll(true, true);
+    }
+
+    /**
+     * Compares every thickness from 1 to 20 and every colour, on a white
+     * and on a clear background.
+     * @param square the footprint type
+     * @param intRaster true to stamp through an IntRasterTarget
+     */
+    private void compareAll(boolean square, boolean intRaster) {
+        for (int thickness = 1; thickness <= 20; thickness++) {
+            for (Color color : COLORS) {
+                this.compare(square, intRaster, thickness, color, 0xFFFFFFFF);
+                this.compare(square, intRaster, thickness, color, 0);
+            }
+        }
+    }
+
+    private void compare(boolean square, boolean intRaster, int thickness,
+            Color color, int background) {
+        BufferedImage expected = image(background);
+        Graphics graphics = expected.getGraphics();
+        graphics.setColor(color);
+        if (square) {
+            PixelByPixel.drawSquare(graphics, CENTRE, CENTRE, thickness);
+        } else {
+            PixelByPixel.drawCircle(graphics, CENTRE, CENTRE, thickness);
+        }
+        graphics.dispose();
+
+        BufferedImage actual = image(background);
+        graphics = actual.getGraphics();
+        PixelTarget target = intRaster
+                ? new IntRasterTarget(actual)
+                : new GraphicsPixelTarget(graphics);
+        target.setColor(color);
+        Footprint.drawFootprint(target, CENTRE, CENTRE, thickness, square);
+        graphics.dispose();
+
+        assertArrayEquals("thickness " + thickness + " colour " + color
+                + " background " + Integer.toHexString(background),
+                pixels(expected), pixels(actual));
+    }
+
+    private static BufferedImage image(int background) {
+        BufferedImage image = new BufferedImage(SIZE, SIZE,
+                BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                image.setRGB(x, y, background);
+            }
+        }
+        return image;
+    }
+
+    private static int[] pixels(BufferedImage image) {
+        return image.getRGB(0, 0, SIZE, SIZE, null, 0, SIZE);
+    }
+
+    /**
+     * PixelByPixel class
+     *
+     * Purpose: The footprint algorithms as they were before the masks,
+     * drawing every pixel with its own Graphics.drawLine.
+     */
+    private static final class PixelByPixel {
+
+        static void drawSquare(Graphics g, int x, int y, int thickness) {
+            x -= thickness / 2;
+            y -= thickness / 2;
+            for (int i = 0; i < thickness; i++) {
+                for (int j = 0; j < thickness; j++) {
+                    g.drawLine(x + j, y + i, x + j, y + i);
+                }
+            }
+        }
+
+        static void drawCircle(Graphics g, int xc, int yc, int thickness) {
+            int radius = thickness / 2;
+            List<int[]> octant = drawArcs(g, xc, yc, radius);
+
+            // The 1st octant, then the 2nd as its mirror, reversed.
+            List<int[]> quadrant = new ArrayList<>(octant);
+            for (int i = octant.size() - 1; i >= 0; i--) {
+                quadrant.add(new int[]{octant.get(i)[1], octant.get(i)[0]});
+            }
+
+            // Keeps the first edge point of every row.
+            List<int[]> edges = new ArrayList<>();
+            int yOld = -1;
+            for (int[] point : quadrant) {
+                if (point[1] != yOld) {
+                    edges.add(point);
+                    yOld = point[1];
+                }
+            }
+
+            for (int y = radius; y >= 0; y--) {
+                for (int[] point : edges) {
+                    if (point[1] == y) {
+                        for (int x = 0; x < point[0]; x++) {
+                            plot(g, x + xc, y + yc);
+                            plot(g, -x + xc, y + yc);
+                            plot(g, -x + xc, -y + yc);
+                            plot(g, x + xc, -y + yc);
+                        }
+                        break;
+                    }
+                }
+            }
+
+            for (int x = 0; x <= radius; x++) {
+                plot(g, x + xc, yc);
+                plot(g, -x + xc, yc);
+            }
+        }
+
+        private static List<int[]> drawArcs(Graphics g, int xc, int yc,
+                int radius) {
+            List<int[]> octant = new ArrayList<>();
+            int x = 0;
+            int y = radius;
+            plotOctants(g, x, y, xc, yc);
+
+            int p = 3 - 2 * radius;
+            while (x <= y) {
+                x++;
+                if (p < 0) {
+                    p += 4 * x + 6;
+                } else {
+                    y--;
+                    p += 4 * (x - y) + 10;
+                }
+                octant.add(new int[]{x, y});
+                plotOctants(g, x, y, xc, yc);
+            }
+            return octant;
+        }
+
+        private static void plotOctants(Graphics g, int x, int y, int xc,
+                int yc) {
+            plot(g, y + xc, x + yc);
+            plot(g, x + xc, y + yc);
+            plot(g, -x + xc, y + yc);
+            plot(g, -y + xc, x + yc);
+            plot(g, -y + xc, -x + yc);
+            plot(g, -x + xc, -y + yc);
+            plot(g, x + xc, -y + yc);
+            plot(g, y + xc, -x + yc);
+        }
+
+        private static void plot(Graphics g, int x, int y) {
+            g.drawLine(x, y, x, y);
+        }
+    }
+}
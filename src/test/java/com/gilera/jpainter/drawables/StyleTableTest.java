@@ -0,0 +1,105 @@
+package com.gilera.jpainter.drawables;
+
+
+/**
+ * File: StyleTableTest.java
+ *
+ * Description: Checks interning and looking up styles.
+ */
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * StyleTableTest class
+ *
+ * Purpose: Interns many colours, across several chunks of the id table,
+ * from one and from several threads, and expects every style to get one
+ * id and to be found again by that id.
+ *
+ * @author Ryan Gilera <jalapaomaji-github@yahoo.com>
+ */
+public class StyleTableTest {
+
+    private static final int COLOURS = 40000;
+
+    @Test
+    public void internsEveryStyleOnce() {
+        StyleTable table = new StyleTable();
+        for (int i = 0; i < COLOURS; i++) {
+            assertEquals(i, table.intern(new Color(i), 4, false));
+        }
+        assertEquals(COLOURS, table.size());
+
+        for (int i = 0; i < COLOURS; i++) {
+            StyleTable.Style style = table.get(i);
+            assertEquals(i, table.intern(new Color(i), 4, false));
+            assertEquals(i, style.getId());
+            assertEquals(new Color(i), style.getColor());
+            assertEquals(4, style.getThickness());
+        }
+    }
+
+    @Test
+    public void sharesColoursAcrossStyles() {
+        StyleTable table = new StyleTable();
+        StyleTable.Style thin = table.internStyle(Color.RED, 1, false);
+        StyleTable.Style thick = table.internStyle(new Color(255, 0, 0), 9,
+                true);
+
+        assertSame(thin.getColor(), thick.getColor());
+        assertEquals(thin.getPalette(), thick.getPalette());
+        assertEquals(2, table.size());
+        assertSame(thick, table.internStyle(Color.RED, 9, true));
+    }
+
+    @Test(expected = ArrayIndexOutOfBoundsException.class)
+    public void rejectsUnknownIds() {
+        StyleTable table = new StyleTable();
+        table.intern(Color.BLUE, 1, false);
+        table.get(1);
+    }
+
+    @Test
+    public void internsConcurrently() throws Exception {
+        final StyleTable table = new StyleTable();
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        List<Future<int[]>> results = new ArrayList<>();
+        try {
+            for (int t = 0; t < 4; t++) {
+                results.add(pool.submit(new Callable<int[]>() {
+                    @Override
+                    public int[] call() {
+                        int[] ids = new int[COLOURS / 4];
+                        for (int i = 0; i < ids.length; i++) {
+                            ids[i] = table.intern(new Color(i), 2, true);
+                            // Found by id as soon as it is interned.
+                            table.get(ids[i]);
+                        }
+                        return ids;
+                    }
+                }));
+            }
+
+            int[] first = results.get(0).get();
+            for (Future<int[]> result : results) {
+                int[] ids = result.get();
+                for (int i = 0; i < ids.length; i++) {
+                    assertEquals(first[i], ids[i]);
+                    assertEquals(new Color(i), table.get(ids[i]).getColor());
+                }
+            }
+            assertEquals(COLOURS / 4, table.size());
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.gilera.jpainter.eventhandlers;
+
+
+/**
+ * File: MouseClickListenerTest.java
+ *
+ * Description: Checks that dragging a Drawable allocates next to nothing.
+ */
+import com.gilera.jpainter.canvas.DrawCanvas;
+import com.gilera.jpainter.data.GlobalSettingsManager;
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+import javax.swing.SwingUtilities;
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * MouseClickListenerTest class
+ *
+ * Purpose: Runs the drag tick of every shape type the way the event
+ * thread does: a dragged mouse event, the frame tick moving the endpoint
+ * and painting the canvas. After a warm up, the bytes the thread allocates
+ * per tick are counted with ThreadMXBean. They must stay near zero, no
+ * matter how large the dragged shape is. DrawableAllocationTest holds the
+ * drawing itself to exactly zero.
+ *
+ * @author Ryan Gilera <jalapaomaji-github@yahoo.com>
+ */
+public class MouseClickListenerTest {
+
+    private static final int WARMUP_TICKS = 2000;
+    private static final int MEASURED_TICKS = 500;
+
+    // A few Rectangles for the bounds and the dirty area of the dragged
+    //      shape, before the JIT removes them. The span list of a large
+    //      shape alone used to take several KB per tick.
+    private static final long MAX_BYTES_PER_TICK = 512;
+
+    @Test
+    public void dragTickAllocatesNearlyNothing() throws Exception {
+        final com.sun.management.ThreadMXBean threads
+                = (com.sun.management.ThreadMXBean) ManagementFactory
+                .getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        final StringBuilder failures = new StringBuilder();
+        SwingUtilities.invokeAndWait(new Runnable() {
+            @Override
+            public void run() {
+                for (int selector = 1; selector <= 6; selector++) {
+                    for (int alpha : new int[]{255, 128}) {
+                        long bytes = measure(threads, selector, alpha);
+                        if (bytes > MAX_BYTES_PER_TICK) {
+                            failures.append(" shape ").append(selector)
+                                    .append(" alpha ").append(alpha)
+                                    .append(": ").append(bytes)
+                                    .append(" bytes per tick");
+                        }
+                    }
+                }
+            }
+        });
+
+        assertTrue(failures.toString(), failures.length() == 0);
+    }
+
+    /**
+     * Presses the mouse, then drags it around and returns the bytes
+     * allocated per tick once warmed up.
+     * @param threads the ThreadMXBean
+     * @param selector the shape type, see MouseClickListener
+     * @param alpha the alpha of the colour
+     * @return bytes per tick
+     */
+    private static long measure(com.sun.management.ThreadMXBean threads,
+            int selector, int alpha) {
+        DrawCanvas canvas = new DrawCanvas();
+        canvas.setBackgroundRendering(false);
+        canvas.setSize(GlobalSettingsManager.CANVAS_WIDTH,
+                GlobalSettingsManager.CANVAS_HEIGHT);
+        MouseClickListener listener = new MouseClickListener(canvas,
+                new Color(200, 20, 20, alpha), 3, selector % 2 == 0,
+                selector);
+        canvas.addMouseListener(listener);
+        canvas.addMouseMotionListener(listener);
+
+        listener.mousePressed(new MouseEvent(canvas,
+                MouseEvent.MOUSE_PRESSED, 0, MouseEvent.BUTTON1_DOWN_MASK,
+                100, 100, 1, false, MouseEvent.BUTTON1));
+
+        // The events come from AWT, they are not counted.
+        MouseEvent[] drags = new MouseEvent[64];
+        for (int i = 0; i < drags.length; i++) {
+            drags[i] = new MouseEvent(canvas, MouseEvent.MOUSE_DRAGGED, 0,
+                    MouseEvent.BUTTON1_DOWN_MASK, 300 + i * 5, 200 + i * 3,
+                    1, false, MouseEvent.NOBUTTON);
+        }
+
+        BufferedImage screen = new BufferedImage(
+                GlobalSettingsManager.CANVAS_WIDTH,
+                GlobalSettingsManager.CANVAS_HEIGHT,
+                BufferedImage.TYPE_INT_RGB);
+        // Only the area the shape is dragged over is painted.
+        Graphics graphics = screen.createGraphics();
+        graphics.setClip(80, 80, 600, 400);
+
+        long thread = Thread.currentThread().getId();
+        for (int i = 0; i < WARMUP_TICKS; i++) {
+            tick(listener, canvas, graphics, drags[i % drags.length]);
+        }
+
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < MEASURED_TICKS; i++) {
+            tick(listener, canvas, graphics, drags[i % drags.length]);
+        }
+        long after = threads.getThreadAllocatedBytes(thread);
+
+        graphics.dispose();
+        return (after - before) / MEASURED_TICKS;
+    }
+
+    private static void tick(MouseClickListener listener, DrawCanvas canvas,
+            Graphics graphics, MouseEvent drag) {
+        listener.mouseDragged(drag);
+        listener.tick();
+        canvas.paintComponent(graphics);
+    }
+}
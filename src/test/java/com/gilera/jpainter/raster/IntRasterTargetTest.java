@@ -0,0 +1,98 @@
+package com.gilera.jpainter.raster;
+
+
+/**
+ * File: IntRasterTargetTest.java
+ *
+ * Description: Checks the IntRasterTarget against Java2D.
+ */
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * IntRasterTargetTest class
+ *
+ * Purpose: Draws the same pixels through an IntRasterTarget and through a
+ * Graphics object and expects identical images, for opaque and
+ * translucent colours, on images with and without an alpha channel.
+ *
+ * @author Ryan Gilera <jalapaomaji-github@yahoo.com>
+ */
+public class IntRasterTargetTest {
+
+    private static final int SIZE = 64;
+
+    @Test
+    public void plotsLikeGraphicsWithAlpha() {
+        this.compare(BufferedImage.TYPE_INT_ARGB, false);
+    }
+
+    @Test
+    public void plotsLikeGraphicsWithoutAlpha() {
+        this.compare(BufferedImage.TYPE_INT_RGB, false);
+    }
+
+    @Test
+    public void fillsSpansLikeGraphicsWithAlpha() {
+        this.compare(BufferedImage.TYPE_INT_ARGB, true);
+    }
+
+    @Test
+    public void fillsSpansLikeGraphicsWithoutAlpha() {
+        this.compare(BufferedImage.TYPE_INT_RGB, true);
+    }
+
+    /**
+     * Fills two images with the same random pixels, then draws the same
+     * random colours over them, many times over the same pixels.
+     * @param type the image type
+     * @param spans true to fill spans, false to plot single pixels
+     */
+    private void compare(int type, boolean spans) {
+        Random random = new Random(type * 31 + (spans ? 1 : 0));
+        BufferedImage expected = new BufferedImage(SIZE, SIZE, type);
+        BufferedImage actual = new BufferedImage(SIZE, SIZE, type);
+        int[] background = new int[SIZE * SIZE];
+        for (int i = 0; i < background.length; i++) {
+            background[i] = random.nextInt();
+        }
+        expected.setRGB(0, 0, SIZE, SIZE, background, 0, SIZE);
+        actual.setRGB(0, 0, SIZE, SIZE, background, 0, SIZE);
+
+        Graphics graphics = expected.getGraphics();
+        IntRasterTarget target = new IntRasterTarget(actual);
+        for (int i = 0; i < 20000; i++) {
+            Color color = new Color(random.nextInt(), true);
+            int x = random.nextInt(SIZE);
+            int y = random.nextInt(SIZE);
+            graphics.setColor(color);
+            target.setColor(color);
+            if (spans) {
+                int x1 = x + random.nextInt(SIZE - x);
+                graphics.fillRect(x, y, x1 - x + 1, 1);
+                target.fillSpan(x, x1, y);
+            } else {
+                graphics.drawLine(x, y, x, y);
+                target.plot(x, y);
+            }
+        }
+        graphics.dispose();
+
+        assertArrayEquals(pixels(expected), pixels(actual));
+    }
+
+    /**
+     * Returns the colours of an image. The unused top byte of a
+     * TYPE_INT_RGB pixel is not compared.
+     * @param image the image
+     * @return the ARGB colour of every pixel
+     */
+    private static int[] pixels(BufferedImage image) {
+        return image.getRGB(0, 0, SIZE, SIZE, null, 0, SIZE);
+    }
+}
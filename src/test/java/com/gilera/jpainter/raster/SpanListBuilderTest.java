@@ -0,0 +1,129 @@
+package com.gilera.jpainter.raster;
+
+
+/**
+ * File: SpanListBuilderTest.java
+ *
+ * Description: Checks that span lists hold every pixel once.
+ */
+import java.awt.Color;
+import java.awt.Image;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * SpanListBuilderTest class
+ *
+ * Purpose: Collects random spans through a ScanlineCoverage into a
+ * SpanListBuilder, with more disjoint spans per row than the coverage
+ * keeps, so some of them go straight through and overlap the others. The
+ * span list must cover the same pixels, sorted and without overlaps, and
+ * countPixels must count each of them once.
+ *
+ * @author Ryan Gilera <jalapaomaji-github@yahoo.com>
+ */
+public class SpanListBuilderTest {
+
+    private static final int ROWS = 6;
+    private static final int WIDTH = 200;
+
+    @Test
+    public void mergesSpansPastTheRowCapacity() {
+        SpanListBuilder builder = SpanListBuilder.forCurrentThread();
+        ScanlineCoverage coverage = ScanlineCoverage.forCurrentThread();
+
+        // Twelve disjoint spans, then one across all of them.
+        coverage.begin(builder, 0, 0);
+        for (int i = 0; i < 12; i++) {
+            coverage.fillSpan(10 * i, 10 * i + 2, 0);
+        }
+        coverage.fillSpan(0, 112, 0);
+        coverage.flush();
+
+        int[] list = builder.toArray();
+        assertArrayEquals(new int[]{0, 0, 112}, list);
+        assertEquals(113, SpanListBuilder.countPixels(list));
+    }
+
+    @Test
+    public void countsEveryPixelOnce() {
+        Random random = new Random(51);
+        for (int round = 0; round < 200; round++) {
+            SpanListBuilder builder = SpanListBuilder.forCurrentThread();
+            ScanlineCoverage coverage = ScanlineCoverage.forCurrentThread();
+            Set<Long> pixels = new HashSet<>();
+
+            // Some rows are outside the coverage, they go straight through.
+            coverage.begin(builder, 1, ROWS - 2);
+            for (int n = random.nextInt(60); n > 0; n--) {
+                int y = random.nextInt(ROWS);
+                int x0 = random.nextInt(WIDTH) - 20;
+                int x1 = x0 + random.nextInt(random.nextBoolean() ? 4 : 40);
+                coverage.fillSpan(x0, x1, y);
+                for (int x = x0; x <= x1; x++) {
+                    pixels.add(key(x, y));
+                }
+            }
+            coverage.flush();
+
+            int[] list = builder.toArray();
+            assertEquals(pixels.size(), SpanListBuilder.countPixels(list));
+            for (int i = 3; i < list.length; i += 3) {
+                assertTrue("round " + round, list[i] > list[i - 3]
+                        || list[i] == list[i - 3]
+                        && list[i + 1] > list[i - 1] + 1);
+            }
+
+            CollectTarget replayed = new CollectTarget();
+            SpanListBuilder.replay(list, replayed);
+            assertEquals(pixels, replayed.pixels);
+        }
+    }
+
+    private static Long key(int x, int y) {
+        return ((long) y << 32) | (x & 0xFFFFFFFFL);
+    }
+
+    /**
+     * CollectTarget class
+     *
+     * Purpose: Collects the pixels it is given, once each.
+     */
+    private static final class CollectTarget implements PixelTarget {
+
+        private final Set<Long> pixels = new HashSet<>();
+
+        @Override
+        public void setColor(Color color) {
+        }
+
+        @Override
+        public void plot(int x, int y) {
+            this.pixels.add(key(x, y));
+        }
+
+        @Override
+        public void fillSpan(int x0, int x1, int y) {
+            for (int x = x0; x <= x1; x++) {
+                this.pixels.add(key(x, y));
+            }
+        }
+
+        @Override
+        public void fillMask(int[] spans, int[] overdraw, int xc, int yc) {
+            SpanListBuilder.replay(spans, xc, yc, this);
+            SpanListBuilder.replay(overdraw, xc, yc, this);
+        }
+
+        @Override
+        public void drawImage(Image image, int x, int y, int width,
+                int height) {
+        }
+    }
+}